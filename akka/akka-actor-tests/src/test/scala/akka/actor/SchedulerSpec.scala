@@ -25,14 +25,27 @@ object SchedulerSpec {
     akka.scheduler.ticks-per-wheel = 32
     akka.actor.serialize-messages = off
   """).withFallback(AkkaSpec.testConf)
+  val testConfTimingWheel = ConfigFactory.parseString("""
+    akka.scheduler.implementation = akka.actor.HierarchicalTimingWheelScheduler
+    akka.scheduler.ticks-per-wheel = 8
+    akka.actor.serialize-messages = off
+  """).withFallback(AkkaSpec.testConf)
 }
 
 trait SchedulerSpec extends BeforeAndAfterEach with DefaultTimeout with ImplicitSender { this: AkkaSpec ⇒
-  import system.dispatcher
 
   def collectCancellable(c: Cancellable): Cancellable
 
+  def tickDuration: FiniteDuration
+
+  /**
+   * Creates a scheduler of the implementation under test whose time is given by `manualClock`
+   * and which starts at tick `_startTick`, for the schedulers which count ticks in an Int.
+   */
+  def controlledScheduler(manualClock: ManualClock, _startTick: Int, config: Config): Scheduler with Closeable
+
   "A Scheduler" must {
+    import system.dispatcher
 
     "schedule more than once" taggedAs TimingTest in {
       case object Tick
@@ -301,16 +314,6 @@ trait SchedulerSpec extends BeforeAndAfterEach with DefaultTimeout with Implicit
         system.log.info(f"${k * 100}%3d: ${histogram(k).size}")
       }
     }
-  }
-}
-
-class LightArrayRevolverSchedulerSpec extends AkkaSpec(SchedulerSpec.testConfRevolver) with SchedulerSpec {
-
-  def collectCancellable(c: Cancellable): Cancellable = c
-
-  def tickDuration = system.scheduler.asInstanceOf[LightArrayRevolverScheduler].TickDuration
-
-  "A LightArrayRevolverScheduler" must {
 
     "reject tasks scheduled too far into the future" in {
       val maxDelay = tickDuration * Int.MaxValue
@@ -372,29 +375,9 @@ class LightArrayRevolverSchedulerSpec extends AkkaSpec(SchedulerSpec.testConfRev
       }
       expectNoMsg(1.second)
     }
+  }
 
-    "survive vicious enqueueing" in {
-      withScheduler(config = ConfigFactory.parseString("akka.scheduler.ticks-per-wheel=2")) { (sched, driver) ⇒
-        import driver._
-        import system.dispatcher
-        val counter = new AtomicInteger
-        val terminated = future {
-          var rounds = 0
-          while (Try(sched.scheduleOnce(Duration.Zero)(())(localEC)).isSuccess) {
-            Thread.sleep(1)
-            driver.wakeUp(step)
-            rounds += 1
-          }
-          rounds
-        }
-        def delay = if (ThreadLocalRandom.current.nextBoolean) step * 2 else step
-        val N = 1000000
-        (1 to N) foreach (_ ⇒ sched.scheduleOnce(delay)(counter.incrementAndGet()))
-        sched.close()
-        Await.result(terminated, 3.seconds.dilated) should be > 10
-        awaitCond(counter.get == N)
-      }
-    }
+  "A Scheduler driven by a manual clock" must {
 
     "execute multiple jobs at once when expiring multiple buckets" in {
       withScheduler() { (sched, driver) ⇒
@@ -480,33 +463,6 @@ class LightArrayRevolverSchedulerSpec extends AkkaSpec(SchedulerSpec.testConfRev
       }
     }
 
-    "correctly wrap around ticks" in {
-      val numEvents = 40
-      val targetTicks = Int.MaxValue - numEvents + 20
-
-      withScheduler(_startTick = Int.MaxValue - 100) { (sched, driver) ⇒
-        implicit def ec = localEC
-        import driver._
-
-        val start = step / 2
-
-        wakeUp(step * targetTicks)
-        probe.expectMsgType[Long]
-
-        val nums = 0 until numEvents
-        nums foreach (i ⇒ sched.scheduleOnce(start + step * i, testActor, "hello-" + i))
-        expectNoMsg(step)
-        wakeUp(step)
-        expectWait(step)
-
-        nums foreach { i ⇒
-          wakeUp(step)
-          expectMsg("hello-" + i)
-          expectWait(step)
-        }
-      }
-    }
-
     "reliably reject jobs when shutting down" in {
       withScheduler() { (sched, driver) ⇒
         import system.dispatcher
@@ -542,42 +498,40 @@ class LightArrayRevolverSchedulerSpec extends AkkaSpec(SchedulerSpec.testConfRev
     def reportFailure(t: Throwable) { t.printStackTrace() }
   }
 
-  def withScheduler(start: Long = 0L, _startTick: Int = 0, config: Config = ConfigFactory.empty)(thunk: (Scheduler with Closeable, Driver) ⇒ Unit): Unit = {
-    import akka.actor.{ LightArrayRevolverScheduler ⇒ LARS }
+  /**
+   * The clock of a scheduler created by `withScheduler`: the timer thread reports each of its
+   * waits to `probe`, and the time only advances when the driver wakes it up.
+   */
+  class ManualClock(start: Long) {
+    @volatile var time = start
     val lbq = new AtomicReference[LinkedBlockingQueue[Long]](new LinkedBlockingQueue[Long])
-    val prb = TestProbe()
-    val tf = system.asInstanceOf[ActorSystemImpl].threadFactory
-    val sched =
-      new { @volatile var time = start } with LARS(config.withFallback(system.settings.config), log, tf) {
-        override protected def clock(): Long = {
-          // println(s"clock=$time")
-          time
-        }
-
-        override protected def getShutdownTimeout: FiniteDuration = (10 seconds).dilated
-
-        override protected def waitNanos(ns: Long): Unit = {
-          // println(s"waiting $ns")
-          prb.ref ! ns
-          try time += (lbq.get match {
-            case q: LinkedBlockingQueue[Long] ⇒ q.take()
-            case _                            ⇒ 0L
-          })
-          catch {
-            case _: InterruptedException ⇒ Thread.currentThread.interrupt()
-          }
-        }
-
-        override protected def startTick: Int = _startTick
+    val probe = TestProbe()
+
+    def waitNanos(ns: Long): Unit = {
+      // println(s"waiting $ns")
+      probe.ref ! ns
+      try time += (lbq.get match {
+        case q: LinkedBlockingQueue[Long] ⇒ q.take()
+        case _                            ⇒ 0L
+      })
+      catch {
+        case _: InterruptedException ⇒ Thread.currentThread.interrupt()
       }
+    }
+  }
+
+  def withScheduler(start: Long = 0L, _startTick: Int = 0, config: Config = ConfigFactory.empty)(thunk: (Scheduler with Closeable, Driver) ⇒ Unit): Unit = {
+    val manualClock = new ManualClock(start)
+    val lbq = manualClock.lbq
+    val sched = controlledScheduler(manualClock, _startTick, config.withFallback(system.settings.config))
     val driver = new Driver {
       def wakeUp(d: FiniteDuration) = lbq.get match {
         case q: LinkedBlockingQueue[Long] ⇒ q.offer(d.toNanos)
         case _                            ⇒
       }
       def expectWait(): FiniteDuration = probe.expectMsgType[Long].nanos
-      def probe = prb
-      def step = sched.TickDuration
+      def probe = manualClock.probe
+      def step = tickDuration
       def close() = lbq.getAndSet(null) match {
         case q: LinkedBlockingQueue[Long] ⇒ q.offer(0L)
         case _                            ⇒
@@ -598,3 +552,141 @@ class LightArrayRevolverSchedulerSpec extends AkkaSpec(SchedulerSpec.testConfRev
   }
 
 }
+
+class LightArrayRevolverSchedulerSpec extends AkkaSpec(SchedulerSpec.testConfRevolver) with SchedulerSpec {
+
+  def collectCancellable(c: Cancellable): Cancellable = c
+
+  def tickDuration = system.scheduler.asInstanceOf[LightArrayRevolverScheduler].TickDuration
+
+  "A LightArrayRevolverScheduler" must {
+
+    "survive vicious enqueueing" in {
+      withScheduler(config = ConfigFactory.parseString("akka.scheduler.ticks-per-wheel=2")) { (sched, driver) ⇒
+        import driver._
+        import system.dispatcher
+        val counter = new AtomicInteger
+        val terminated = future {
+          var rounds = 0
+          while (Try(sched.scheduleOnce(Duration.Zero)(())(localEC)).isSuccess) {
+            Thread.sleep(1)
+            driver.wakeUp(step)
+            rounds += 1
+          }
+          rounds
+        }
+        def delay = if (ThreadLocalRandom.current.nextBoolean) step * 2 else step
+        val N = 1000000
+        (1 to N) foreach (_ ⇒ sched.scheduleOnce(delay)(counter.incrementAndGet()))
+        sched.close()
+        Await.result(terminated, 3.seconds.dilated) should be > 10
+        awaitCond(counter.get == N)
+      }
+    }
+
+    "correctly wrap around ticks" in {
+      val numEvents = 40
+      val targetTicks = Int.MaxValue - numEvents + 20
+
+      withScheduler(_startTick = Int.MaxValue - 100) { (sched, driver) ⇒
+        implicit def ec = localEC
+        import driver._
+
+        val start = step / 2
+
+        wakeUp(step * targetTicks)
+        probe.expectMsgType[Long]
+
+        val nums = 0 until numEvents
+        nums foreach (i ⇒ sched.scheduleOnce(start + step * i, testActor, "hello-" + i))
+        expectNoMsg(step)
+        wakeUp(step)
+        expectWait(step)
+
+        nums foreach { i ⇒
+          wakeUp(step)
+          expectMsg("hello-" + i)
+          expectWait(step)
+        }
+      }
+    }
+
+  }
+
+  def controlledScheduler(manualClock: ManualClock, _startTick: Int, config: Config): Scheduler with Closeable =
+    new { val clockSource = manualClock } with LightArrayRevolverScheduler(config, log, system.asInstanceOf[ActorSystemImpl].threadFactory) {
+      override protected def clock(): Long = clockSource.time
+
+      override protected def getShutdownTimeout: FiniteDuration = (10 seconds).dilated
+
+      override protected def waitNanos(ns: Long): Unit = clockSource.waitNanos(ns)
+
+      override protected def startTick: Int = _startTick
+    }
+}
+
+class HierarchicalTimingWheelSchedulerSpec extends AkkaSpec(SchedulerSpec.testConfTimingWheel) with SchedulerSpec {
+
+  def collectCancellable(c: Cancellable): Cancellable = c
+
+  def tickDuration = system.scheduler.asInstanceOf[HierarchicalTimingWheelScheduler].TickDuration
+
+  "A HierarchicalTimingWheelScheduler" must {
+
+    "execute tasks which span several wheels in order" taggedAs TimingTest in {
+      import system.dispatcher
+      // with 8 ticks per wheel, these delays go into the first three wheels
+      val delays = Seq(3, 7, 9, 30, 65, 100).map(tickDuration * _)
+      val start = System.nanoTime
+      delays.reverse.foreach { d ⇒
+        system.scheduler.scheduleOnce(d) { testActor ! ((d, System.nanoTime - start)) }
+      }
+      for (d ← delays) {
+        val (delay, elapsed) = expectMsgType[(FiniteDuration, Long)]
+        delay should ===(d)
+        elapsed should be >= d.toNanos
+      }
+    }
+
+    "not execute cancelled tasks of any wheel" taggedAs TimingTest in {
+      import system.dispatcher
+      val counter = new AtomicInteger
+      val tasks = for (i ← 1 to 1000) yield system.scheduler.scheduleOnce(tickDuration * (i % 100 + 10)) {
+        counter.incrementAndGet()
+      }
+      tasks.zipWithIndex.foreach { case (t, i) ⇒ if (i % 2 == 0) t.cancel() should ===(true) }
+      tasks.count(_.isCancelled) should ===(500)
+      awaitCond(counter.get == 500)
+      expectNoMsg(tickDuration * 20)
+      counter.get should ===(500)
+    }
+
+    "cascade tasks from the top wheel down to the lowest one" in {
+      // with 2048 ticks per wheel there are three wheels, and a bucket of the top one spans 2048 * 2048 ticks
+      withScheduler(config = ConfigFactory.parseString("akka.scheduler.ticks-per-wheel=2048")) { (sched, driver) ⇒
+        implicit def ec = localEC
+        import driver._
+        val ticks = 2048L * 2048 + 2048 + 3
+        sched.scheduleOnce(step * ticks, probe.ref, "hello")
+        wakeUp(step)
+        expectWait(step)
+        // the task moves through the middle wheel on its way down, and must not run on either cascade
+        wakeUp(step * (ticks - 1))
+        expectWait(step)
+        wakeUp(step)
+        probe.expectMsg("hello")
+        expectWait(step)
+      }
+    }
+  }
+
+  def controlledScheduler(manualClock: ManualClock, _startTick: Int, config: Config): Scheduler with Closeable =
+    // this scheduler counts its ticks in a Long from its start, so it has no start tick
+    new { val clockSource = manualClock } with HierarchicalTimingWheelScheduler(config, log, system.asInstanceOf[ActorSystemImpl].threadFactory) {
+      override protected def clock(): Long = clockSource.time
+
+      override protected def getShutdownTimeout: FiniteDuration = (10 seconds).dilated
+
+      override protected def waitNanos(ns: Long): Unit = clockSource.waitNanos(ns)
+    }
+}
@@ -255,6 +255,40 @@ class SingleConsumerOnlyMailboxSpec extends MailboxSpec {
   }
 }
 
+class SingleConsumerOnlyChunkedMailboxSpec extends MailboxSpec {
+  lazy val name = "The single-consumer-only chunked mailbox implementation"
+  override def maxConsumers = 1
+  def factory = {
+    // a small chunk size, so that the tests go through many chunks
+    case u: UnboundedMailbox             ⇒ SingleConsumerOnlyChunkedMailbox(4).create(None, None)
+    case b @ BoundedMailbox(capacity, _) ⇒ NonBlockingBoundedMailbox(capacity).create(None, None)
+  }
+
+  "A ChunkedMessageQueue" must {
+    "drain messages in order, up to the limit or until told to stop" in {
+      val q = new ChunkedMessageQueue(3)
+      val messages = (1 to 10).map(createMessageInvocation(_))
+      messages.foreach(q.enqueue(testActor, _))
+      q.numberOfMessages should ===(10)
+
+      val drained = Vector.newBuilder[Envelope]
+      val drain = new AbstractChunkedArrayQueue.Drain[Envelope] {
+        override def accept(e: Envelope): Boolean = {
+          drained += e
+          e.message != 6
+        }
+      }
+      q.drain(drain, 4) should ===(4)
+      q.drain(drain, 4) should ===(2)
+      q.numberOfMessages should ===(4)
+      q.drain(drain, 10) should ===(4)
+      q.drain(drain, 10) should ===(0)
+      drained.result() should ===(messages)
+      q.hasMessages should ===(false)
+    }
+  }
+}
+
 object SingleConsumerOnlyMailboxVerificationSpec {
   case object Ping
   val mailboxConf = ConfigFactory.parseString("""
@@ -263,6 +297,11 @@ object SingleConsumerOnlyMailboxVerificationSpec {
       mailbox-type = "akka.dispatch.SingleConsumerOnlyUnboundedMailbox"
       throughput = 1
       }
+      test-chunked-dispatcher {
+      mailbox-type = "akka.dispatch.SingleConsumerOnlyChunkedMailbox"
+      mailbox-chunk-size = 4
+      throughput = 5
+      }
       test-bounded-dispatcher {
       mailbox-type = "akka.dispatch.NonBlockingBoundedMailbox"
       mailbox-capacity = 1
@@ -302,6 +341,10 @@ class SingleConsumerOnlyMailboxVerificationSpec extends AkkaSpec(SingleConsumerO
       pathologicalPingPong("test-unbounded-dispatcher")
     }
 
+    "support pathological ping-ponging for the chunked case" in within(30.seconds) {
+      pathologicalPingPong("test-chunked-dispatcher")
+    }
+
     "support pathological ping-ponging for the bounded case" in within(30.seconds) {
       pathologicalPingPong("test-bounded-dispatcher")
     }
@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.dispatch;
+
+import akka.util.Unsafe;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free MPSC linked queue which stores its elements in a linked list of fixed-size array
+ * chunks, instead of allocating one node per element like AbstractNodeQueue.
+ *
+ * A producer claims a slot of the head chunk with one atomic increment and then publishes its
+ * element into that slot; the producer that finds the head chunk full links (and allocates) the
+ * next chunk. The consumer reads the slots of the tail chunk in order.
+ *
+ * Like AbstractNodeQueue, the consumer spins on a slot that has been claimed but whose element is
+ * not yet visible instead of reporting the queue as empty, since that would break actor scheduling.
+ */
+@SuppressWarnings("serial")
+public abstract class AbstractChunkedArrayQueue<T> extends AtomicReference<AbstractChunkedArrayQueue.Chunk> {
+
+    /*
+     * Extends AtomicReference for the "head" chunk (which is the one that is appended to), for the
+     * same reason as AbstractNodeQueue.
+     */
+
+    private final int chunkSize;
+
+    @SuppressWarnings("unused")
+    private volatile Chunk _tailDoNotCallMeDirectly;
+
+    protected AbstractChunkedArrayQueue(final int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("AbstractChunkedArrayQueue.chunkSize must be positive");
+        this.chunkSize = chunkSize;
+        final Chunk c = new Chunk(chunkSize);
+        _tailDoNotCallMeDirectly = c;
+        set(c);
+    }
+
+    /**
+     * The number of elements stored in each chunk of this queue.
+     */
+    public final int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Add an element to the head of the queue.
+     *
+     * This method can be used from any thread.
+     *
+     * @param value the element to be added; must not be null
+     */
+    public final void add(final T value) {
+        Chunk chunk = get();
+        for (;;) {
+            final int index = chunk.claim();
+            if (index < chunkSize) {
+                chunk.publish(index, value);
+                return;
+            }
+            chunk = nextForProducer(chunk);
+        }
+    }
+
+    /**
+     * Returns the chunk after the given full one, linking a new chunk if there is none yet, and
+     * makes it the head of the queue unless another producer already moved the head further.
+     */
+    private Chunk nextForProducer(final Chunk full) {
+        Chunk next = full.next();
+        if (next == null) {
+            final Chunk c = new Chunk(chunkSize);
+            next = full.casNext(c) ? c : full.next();
+        }
+        compareAndSet(full, next);
+        return next;
+    }
+
+    /**
+     * Query the queue whether it is empty right now.
+     *
+     * This method can be used from any thread.
+     *
+     * @return true if queue was empty at some point in the past
+     */
+    public final boolean isEmpty() {
+        Chunk chunk = (Chunk) Unsafe.instance.getObjectVolatile(this, tailOffset);
+        for (;;) {
+            final int consumed = chunk.consumed();
+            if (consumed < chunkSize) return chunk.claimed() <= consumed;
+            final Chunk next = chunk.next();
+            if (next == null) return chunk.claimed() <= chunkSize;
+            chunk = next;
+        }
+    }
+
+    /**
+     * This method returns an upper bound on the queue size at the time it
+     * starts executing. It may spuriously return smaller values (including
+     * zero) if the consumer pulls items out concurrently.
+     *
+     * This method can be used from any thread.
+     *
+     * @return an upper bound on queue length at some time in the past
+     */
+    public final int count() {
+        long count = 0;
+        for (Chunk chunk = (Chunk) Unsafe.instance.getObjectVolatile(this, tailOffset);
+             chunk != null && count < Integer.MAX_VALUE;
+             chunk = chunk.next()) {
+            final int consumed = chunk.consumed();
+            final int claimed = Math.min(chunk.claimed(), chunkSize);
+            if (claimed > consumed) count += claimed - consumed;
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Pull one item from the queue’s tail if there is one.
+     *
+     * Use this method only from the consumer thread!
+     *
+     * @return element if there was one, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public final T poll() {
+        Chunk chunk = (Chunk) Unsafe.instance.getObject(this, tailOffset);
+        int index = chunk.consumedByConsumer();
+        if (index == chunkSize) {
+            chunk = nextForConsumer(chunk);
+            if (chunk == null) return null;
+            index = 0;
+        }
+        Object value = chunk.slot(index);
+        if (value == null) {
+            if (chunk.claimed() <= index) return null;
+            // the slot has been claimed, which is not going to change until the producer publishes
+            // into it: spin until the element shows up
+            do {
+                value = chunk.slot(index);
+            } while (value == null);
+        }
+        chunk.take(index);
+        return (T) value;
+    }
+
+    /**
+     * Hand the items at the queue’s tail to `drain`, one at a time and in order, until the queue is
+     * empty, `limit` items have been handed over or `drain` returns false.
+     *
+     * Each item is removed from the queue before it is handed over, so that `drain` may itself
+     * poll the queue, and an exception thrown by `drain` loses no other item.
+     *
+     * Use this method only from the consumer thread!
+     *
+     * @return the number of items handed to `drain`
+     */
+    public final int drain(final Drain<? super T> drain, final int limit) {
+        int drained = 0;
+        while (drained < limit) {
+            final T value = poll();
+            if (value == null) break;
+            drained += 1;
+            if (!drain.accept(value)) break;
+        }
+        return drained;
+    }
+
+    /**
+     * Moves the consumer from the given fully consumed chunk to the next one.
+     *
+     * @return the next chunk, or null if the queue is empty
+     */
+    private Chunk nextForConsumer(final Chunk consumed) {
+        Chunk next = consumed.next();
+        if (next == null) {
+            if (consumed.claimed() <= chunkSize) return null;
+            // a producer found the chunk full and is going to link the next one: spin until it does
+            do {
+                next = consumed.next();
+            } while (next == null);
+        }
+        Unsafe.instance.putOrderedObject(this, tailOffset, next);
+        return next;
+    }
+
+    private final static long tailOffset;
+
+    static {
+        try {
+          tailOffset = Unsafe.instance.objectFieldOffset(AbstractChunkedArrayQueue.class.getDeclaredField("_tailDoNotCallMeDirectly"));
+        } catch(Throwable t){
+            throw new ExceptionInInitializerError(t);
+        }
+    }
+
+    /**
+     * Receives the items taken from the queue by drain().
+     */
+    public interface Drain<T> {
+        /**
+         * @return whether drain() should hand over the next item, if there is one
+         */
+        boolean accept(T value);
+    }
+
+    public static final class Chunk {
+        private final Object[] slots;
+
+        // The number of slots claimed by producers; grows past the length of slots when the chunk is full.
+        @SuppressWarnings("unused")
+        private volatile int _claimedDoNotCallMeDirectly;
+
+        // The number of slots taken by the consumer; only written by the consumer.
+        @SuppressWarnings("unused")
+        private volatile int _consumedDoNotCallMeDirectly;
+
+        @SuppressWarnings("unused")
+        private volatile Chunk _nextDoNotCallMeDirectly;
+
+        Chunk(final int size) {
+            slots = new Object[size];
+        }
+
+        final int claim() {
+            return Unsafe.instance.getAndAddInt(this, claimedOffset, 1);
+        }
+
+        final int claimed() {
+            return Unsafe.instance.getIntVolatile(this, claimedOffset);
+        }
+
+        final void publish(final int index, final Object value) {
+            Unsafe.instance.putOrderedObject(slots, slotOffset(index), value);
+        }
+
+        final Object slot(final int index) {
+            return Unsafe.instance.getObjectVolatile(slots, slotOffset(index));
+        }
+
+        final int consumed() {
+            return Unsafe.instance.getIntVolatile(this, consumedOffset);
+        }
+
+        final int consumedByConsumer() {
+            return Unsafe.instance.getInt(this, consumedOffset);
+        }
+
+        final void take(final int index) {
+            slots[index] = null;
+            Unsafe.instance.putOrderedInt(this, consumedOffset, index + 1);
+        }
+
+        final Chunk next() {
+            return (Chunk) Unsafe.instance.getObjectVolatile(this, nextOffset);
+        }
+
+        final boolean casNext(final Chunk next) {
+            return Unsafe.instance.compareAndSwapObject(this, nextOffset, null, next);
+        }
+
+        private static long slotOffset(final int index) {
+            return slotsBase + ((long) index << slotsShift);
+        }
+
+        private final static long claimedOffset;
+        private final static long consumedOffset;
+        private final static long nextOffset;
+        private final static long slotsBase;
+        private final static int slotsShift;
+
+        static {
+            try {
+                claimedOffset = Unsafe.instance.objectFieldOffset(Chunk.class.getDeclaredField("_claimedDoNotCallMeDirectly"));
+                consumedOffset = Unsafe.instance.objectFieldOffset(Chunk.class.getDeclaredField("_consumedDoNotCallMeDirectly"));
+                nextOffset = Unsafe.instance.objectFieldOffset(Chunk.class.getDeclaredField("_nextDoNotCallMeDirectly"));
+                slotsBase = Unsafe.instance.arrayBaseOffset(Object[].class);
+                slotsShift = 31 - Integer.numberOfLeadingZeros(Unsafe.instance.arrayIndexScale(Object[].class));
+            } catch(Throwable t){
+                throw new ExceptionInInitializerError(t);
+            }
+        }
+    }
+}
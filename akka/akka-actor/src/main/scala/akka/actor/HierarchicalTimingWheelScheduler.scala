@@ -0,0 +1,444 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.actor
+
+import java.io.Closeable
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.{ AtomicLong, AtomicReference }
+import scala.annotation.tailrec
+import scala.collection.immutable
+import scala.concurrent.{ Await, ExecutionContext, Future, Promise }
+import scala.concurrent.duration._
+import scala.util.control.{ NonFatal }
+import com.typesafe.config.Config
+import akka.event.LoggingAdapter
+import akka.util.Helpers
+import akka.util.Unsafe.{ instance ⇒ unsafe }
+import akka.dispatch.AbstractChunkedArrayQueue
+
+/**
+ * This scheduler implementation is based on a hierarchy of timing wheels, as
+ * described by Varghese and Lauck: the lowest wheel has one bucket per tick,
+ * and each bucket of a higher wheel spans a whole rotation of the wheel below.
+ * A task is put into the lowest wheel that can hold its deadline, and moves
+ * down one wheel when the timer reaches its bucket, so that every task is
+ * handled at most once per wheel instead of once per rotation, whatever its
+ * delay.
+ *
+ * The tasks are kept in doubly linked lists, which are only touched by the
+ * timer thread. Cancelling a task releases the actual task immediately and
+ * hands its TaskHolder to the timer thread, which unlinks it from its bucket
+ * at the next tick instead of when the wheel reaches that bucket.
+ *
+ * Newly scheduled and cancelled tasks are passed to the timer thread through
+ * chunked MPSC queues, which the timer thread drains in one go before going to
+ * sleep, so that scheduling a task allocates nothing but its TaskHolder most
+ * of the time.
+ *
+ * Like the [[LightArrayRevolverScheduler]] it rounds up the task delays to a
+ * full multiple of the TickDuration, and it accepts the same settings, where
+ * `ticks-per-wheel` is the number of buckets of each wheel.
+ */
+class HierarchicalTimingWheelScheduler(
+  config:        Config,
+  log:           LoggingAdapter,
+  threadFactory: ThreadFactory)
+  extends Scheduler with Closeable {
+
+  import Helpers.Requiring
+  import Helpers.ConfigOps
+
+  val WheelSize =
+    config.getInt("akka.scheduler.ticks-per-wheel")
+      .requiring(ticks ⇒ ticks > 1 && (ticks & (ticks - 1)) == 0, "ticks-per-wheel must be a power of 2 greater than 1")
+  val TickDuration =
+    config.getMillisDuration("akka.scheduler.tick-duration")
+      .requiring(_ >= 10.millis || !Helpers.isWindows, "minimum supported akka.scheduler.tick-duration on Windows is 10ms")
+      .requiring(_ >= 1.millis, "minimum supported akka.scheduler.tick-duration is 1ms")
+  val ShutdownTimeout = config.getMillisDuration("akka.scheduler.shutdown-timeout")
+
+  import HierarchicalTimingWheelScheduler._
+
+  private val oneNs = Duration.fromNanos(1l)
+  private def roundUp(d: FiniteDuration): FiniteDuration =
+    try {
+      ((d + TickDuration - oneNs) / TickDuration).toLong * TickDuration
+    } catch {
+      case _: IllegalArgumentException ⇒ d // rounding up Long.MaxValue.nanos overflows
+    }
+
+  /**
+   * Clock implementation is replaceable (for testing); the implementation must
+   * return a monotonically increasing series of Long nanoseconds.
+   */
+  protected def clock(): Long = System.nanoTime
+
+  /**
+   * Overridable for tests
+   */
+  protected def getShutdownTimeout: FiniteDuration = ShutdownTimeout
+
+  /**
+   * Overridable for tests
+   */
+  protected def waitNanos(nanos: Long): Unit = {
+    // see http://www.javamex.com/tutorials/threads/sleep_issues.shtml
+    val sleepMs = if (Helpers.isWindows) (nanos + 4999999) / 10000000 * 10 else (nanos + 999999) / 1000000
+    try Thread.sleep(sleepMs) catch {
+      case _: InterruptedException ⇒ Thread.currentThread.interrupt() // we got woken up
+    }
+  }
+
+  override def schedule(
+    initialDelay: FiniteDuration,
+    delay:        FiniteDuration,
+    runnable:     Runnable)(implicit executor: ExecutionContext): Cancellable = {
+    checkMaxDelay(roundUp(delay).toNanos)
+    val preparedEC = executor.prepare()
+    try new AtomicReference[Cancellable](InitialRepeatMarker) with Cancellable { self ⇒
+      compareAndSet(InitialRepeatMarker, schedule(
+        preparedEC,
+        new AtomicLong(clock() + initialDelay.toNanos) with Runnable {
+          override def run(): Unit = {
+            try {
+              runnable.run()
+              val driftNanos = clock() - getAndAdd(delay.toNanos)
+              if (self.get != null)
+                swap(schedule(preparedEC, this, Duration.fromNanos(Math.max(delay.toNanos - driftNanos, 1))))
+            } catch {
+              case _: SchedulerException ⇒ // ignore failure to enqueue or terminated target actor
+            }
+          }
+        }, roundUp(initialDelay)))
+
+      @tailrec private def swap(c: Cancellable): Unit = {
+        get match {
+          case null ⇒ if (c != null) c.cancel()
+          case old  ⇒ if (!compareAndSet(old, c)) swap(c)
+        }
+      }
+
+      @tailrec final def cancel(): Boolean = {
+        get match {
+          case null ⇒ false
+          case c ⇒
+            if (c.cancel()) compareAndSet(c, null)
+            else compareAndSet(c, null) || cancel()
+        }
+      }
+
+      override def isCancelled: Boolean = get == null
+    } catch {
+      case SchedulerException(msg) ⇒ throw new IllegalStateException(msg)
+    }
+  }
+
+  override def scheduleOnce(delay: FiniteDuration, runnable: Runnable)(implicit executor: ExecutionContext): Cancellable =
+    try schedule(executor.prepare(), runnable, roundUp(delay))
+    catch {
+      case SchedulerException(msg) ⇒ throw new IllegalStateException(msg)
+    }
+
+  override def close(): Unit = Await.result(stop(), getShutdownTimeout) foreach {
+    task ⇒
+      try task.run() catch {
+        case e: InterruptedException ⇒ throw e
+        case _: SchedulerException   ⇒ // ignore terminated actors
+        case NonFatal(e)             ⇒ log.error(e, "exception while executing timer task")
+      }
+  }
+
+  override val maxFrequency: Double = 1.second / TickDuration
+
+  /*
+   * BELOW IS THE ACTUAL TIMER IMPLEMENTATION
+   */
+
+  private val start = clock()
+  private val tickNanos = TickDuration.toNanos
+  private val wheelBits = Integer.numberOfTrailingZeros(WheelSize)
+  private val wheelMask = WheelSize - 1
+  // enough wheels to hold the deadline of any delay accepted by checkMaxDelay, plus rounding
+  private val levels = (32 + wheelBits - 1) / wheelBits
+  // the tasks which have been scheduled but not yet put into the wheels
+  private val queue = new TaskQueue
+  // the tasks which have been cancelled and may have to be unlinked from the wheels
+  private val cancelled = new TaskQueue
+
+  private def schedule(ec: ExecutionContext, r: Runnable, delay: FiniteDuration): TimerTask =
+    if (delay <= Duration.Zero) {
+      if (stopped.get != null) throw new SchedulerException("cannot enqueue after timer shutdown")
+      ec.execute(r)
+      NotCancellable
+    } else if (stopped.get != null) {
+      throw new SchedulerException("cannot enqueue after timer shutdown")
+    } else {
+      val delayNanos = delay.toNanos
+      checkMaxDelay(delayNanos)
+
+      val ticks = (delayNanos / tickNanos).toInt
+      val task = new TaskHolder(r, ticks, ec, cancelled)
+      queue.add(task)
+      if (stopped.get != null && task.cancel())
+        throw new SchedulerException("cannot enqueue after timer shutdown")
+      task
+    }
+
+  private def checkMaxDelay(delayNanos: Long): Unit =
+    if (delayNanos / tickNanos > Int.MaxValue)
+      // 1 second margin in the error message due to rounding
+      throw new IllegalArgumentException(s"Task scheduled with [${delayNanos.nanos.toSeconds}] seconds delay, " +
+        s"which is too far in future, maximum delay is [${(tickNanos * Int.MaxValue).nanos.toSeconds - 1}] seconds")
+
+  private val stopped = new AtomicReference[Promise[immutable.Seq[TimerTask]]]
+  private def stop(): Future[immutable.Seq[TimerTask]] = {
+    val p = Promise[immutable.Seq[TimerTask]]()
+    if (stopped.compareAndSet(null, p)) {
+      // Interrupting the timer thread to make it shut down faster is not good since
+      // it could be in the middle of executing the scheduled tasks, which might not
+      // respond well to being interrupted.
+      // Instead we just wait one more tick for it to finish.
+      p.future
+    } else Future.successful(Nil)
+  }
+
+  @volatile private var timerThread: Thread = threadFactory.newThread(new Runnable {
+
+    var tick = 0L // the next tick to expire, counted from start
+    // wheels(0) has one bucket per tick, wheels(level) one bucket per WheelSize^level ticks
+    val wheels = Array.fill(levels)(new Array[TaskHolder](WheelSize))
+
+    private def clearAll(): immutable.Seq[TimerTask] = {
+      val tasks = Vector.newBuilder[TimerTask]
+      for (wheel ← wheels; bucket ← 0 until WheelSize) {
+        var task = wheel(bucket)
+        while (task ne null) {
+          tasks += task
+          task = task.next
+        }
+        wheel(bucket) = null
+      }
+      @tailrec def collect(q: TaskQueue): Unit = q.poll() match {
+        case null ⇒ ()
+        case x    ⇒ tasks += x; collect(q)
+      }
+      collect(queue)
+      while (cancelled.poll() ne null) ()
+      tasks.result()
+    }
+
+    /**
+     * Puts the task into the lowest wheel which can hold its deadline.
+     */
+    private def insert(task: TaskHolder, deadline: Long): Unit = {
+      val delta = deadline - tick
+      var level = 0
+      while (level < levels - 1 && (delta >>> (wheelBits * (level + 1))) != 0) level += 1
+      val bucket = ((deadline >>> (wheelBits * level)) & wheelMask).toInt
+      val wheel = wheels(level)
+      val head = wheel(bucket)
+      task.deadline = deadline
+      task.level = level
+      task.bucket = bucket
+      task.prev = null
+      task.next = head
+      if (head ne null) head.prev = task
+      wheel(bucket) = task
+    }
+
+    private def unlink(task: TaskHolder): Unit =
+      if (task.level >= 0) {
+        if (task.prev ne null) task.prev.next = task.next
+        else wheels(task.level)(task.bucket) = task.next
+        if (task.next ne null) task.next.prev = task.prev
+        task.prev = null
+        task.next = null
+        task.level = NotInWheel
+      }
+
+    /**
+     * Takes the list of tasks out of a bucket.
+     */
+    private def detach(level: Int, bucket: Int): TaskHolder = {
+      val wheel = wheels(level)
+      val head = wheel(bucket)
+      wheel(bucket) = null
+      head
+    }
+
+    @tailrec
+    private def checkQueue(time: Long): Unit = queue.poll() match {
+      case null ⇒ ()
+      case task ⇒
+        if (!task.isCancelled) task.ticks match {
+          case 0 ⇒ task.executeTask()
+          case ticks ⇒
+            val futureTick = (
+              time - start + // calculate the nanos since timer start
+              (ticks * tickNanos) + // adding the desired delay
+              tickNanos - 1 // rounding up
+            ) / tickNanos // and converting to tick number
+            insert(task, Math.max(futureTick, tick))
+        }
+        checkQueue(time)
+    }
+
+    @tailrec
+    private def checkCancelled(): Unit = cancelled.poll() match {
+      case null ⇒ ()
+      case task ⇒
+        unlink(task)
+        checkCancelled()
+    }
+
+    private def expireTick(): Unit = {
+      // move the tasks of the buckets of the higher wheels which start at this tick
+      // down into the lower wheels, top down so that they can cascade several wheels
+      var level = 0
+      while (level < levels - 1 && (tick & ((1L << (wheelBits * (level + 1))) - 1)) == 0) level += 1
+      while (level > 0) {
+        var task = detach(level, ((tick >>> (wheelBits * level)) & wheelMask).toInt)
+        while (task ne null) {
+          val next = task.next
+          insert(task, task.deadline)
+          task = next
+        }
+        level -= 1
+      }
+      var task = detach(0, (tick & wheelMask).toInt)
+      while (task ne null) {
+        val next = task.next
+        task.prev = null
+        task.next = null
+        task.level = NotInWheel
+        task.executeTask()
+        task = next
+      }
+    }
+
+    override final def run =
+      try nextTick()
+      catch {
+        case t: Throwable ⇒
+          log.error(t, "exception on the timer thread of the HierarchicalTimingWheelScheduler")
+          stopped.get match {
+            case null ⇒
+              val thread = threadFactory.newThread(this)
+              log.info("starting new timer thread")
+              try thread.start()
+              catch {
+                case e: Throwable ⇒
+                  log.error(e, "cannot start new timer thread, HierarchicalTimingWheelScheduler is going down!")
+                  stopped.set(Promise successful Nil)
+                  clearAll()
+              }
+              timerThread = thread
+            case p ⇒
+              assert(stopped.compareAndSet(p, Promise successful Nil), "Stop signal violated in HierarchicalTimingWheelScheduler")
+              p success clearAll()
+          }
+          throw t
+      }
+
+    @tailrec final def nextTick(): Unit = {
+      val time = clock()
+      val sleepTime = start + (tick * tickNanos) - time
+
+      if (sleepTime > 0) {
+        // check the queues before taking a nap
+        checkQueue(time)
+        checkCancelled()
+        waitNanos(sleepTime)
+      } else {
+        expireTick()
+        tick += 1
+      }
+      stopped.get match {
+        case null ⇒ nextTick()
+        case p ⇒
+          assert(stopped.compareAndSet(p, Promise successful Nil), "Stop signal violated in HierarchicalTimingWheelScheduler")
+          p success clearAll()
+      }
+    }
+  })
+
+  timerThread.start()
+}
+
+object HierarchicalTimingWheelScheduler {
+  private[this] val taskOffset = unsafe.objectFieldOffset(classOf[TaskHolder].getDeclaredField("task"))
+
+  private final val NotInWheel = -1
+
+  private[actor] class TaskQueue extends AbstractChunkedArrayQueue[TaskHolder](256)
+
+  /**
+   * INTERNAL API
+   */
+  protected[actor] trait TimerTask extends Runnable with Cancellable
+
+  /**
+   * INTERNAL API
+   */
+  protected[actor] class TaskHolder(
+    @volatile var task: Runnable,
+    val ticks:          Int,
+    executionContext:   ExecutionContext,
+    cancelled:          TaskQueue)
+    extends TimerTask {
+
+    // the position of the task in the wheels, only accessed by the timer thread
+    private[actor] var deadline = 0L
+    private[actor] var level = NotInWheel
+    private[actor] var bucket = 0
+    private[actor] var prev: TaskHolder = null
+    private[actor] var next: TaskHolder = null
+
+    @tailrec
+    private final def extractTask(replaceWith: Runnable): Runnable =
+      task match {
+        case t @ (ExecutedTask | CancelledTask) ⇒ t
+        case x                                  ⇒ if (unsafe.compareAndSwapObject(this, taskOffset, x, replaceWith)) x else extractTask(replaceWith)
+      }
+
+    private[akka] final def executeTask(): Boolean = extractTask(ExecutedTask) match {
+      case ExecutedTask | CancelledTask ⇒ false
+      case other ⇒
+        try {
+          executionContext execute other
+          true
+        } catch {
+          case _: InterruptedException ⇒ { Thread.currentThread.interrupt(); false }
+          case NonFatal(e)             ⇒ { executionContext.reportFailure(e); false }
+        }
+    }
+
+    // Runs the task on the calling thread, which close() does for the tasks still pending on shutdown
+    override def run(): Unit = extractTask(ExecutedTask).run()
+
+    override def cancel(): Boolean = extractTask(CancelledTask) match {
+      case ExecutedTask | CancelledTask ⇒ false
+      case _ ⇒
+        cancelled.add(this)
+        true
+    }
+
+    override def isCancelled: Boolean = task eq CancelledTask
+  }
+
+  private[this] val CancelledTask = new Runnable { def run = () }
+  private[this] val ExecutedTask = new Runnable { def run = () }
+
+  private val NotCancellable: TimerTask = new TimerTask {
+    def cancel(): Boolean = false
+    def isCancelled: Boolean = false
+    def run(): Unit = ()
+  }
+
+  private val InitialRepeatMarker: Cancellable = new Cancellable {
+    def cancel(): Boolean = false
+    def isCancelled: Boolean = false
+  }
+}
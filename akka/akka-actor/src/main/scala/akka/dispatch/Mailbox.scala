@@ -79,6 +79,15 @@ private[akka] abstract class Mailbox(val messageQueue: MessageQueue)
 
   def dispatcher: MessageDispatcher = actor.dispatcher
 
+  /*
+   * Hands the messages of a ChunkedMessageQueue to the actor in one drain per run, instead of
+   * one dequeue per message. Only allocated for such queues.
+   */
+  private[this] val messageBatch: MessageBatch = messageQueue match {
+    case q: ChunkedMessageQueue ⇒ new MessageBatch(q)
+    case _                      ⇒ null
+  }
+
   /**
    * Try to enqueue the message to this queue, or throw an exception.
    */
@@ -221,7 +230,8 @@ private[akka] abstract class Mailbox(val messageQueue: MessageQueue)
     try {
       if (!isClosed) { //Volatile read, needed here
         processAllSystemMessages() //First, deal with any system messages
-        processMailbox() //Then deal with messages
+        if (messageBatch eq null) processMailbox() //Then deal with messages
+        else processMailboxBatch()
       }
     } finally {
       setAsIdle() //Volatile write, needed here
@@ -263,6 +273,34 @@ private[akka] abstract class Mailbox(val messageQueue: MessageQueue)
       }
     }
 
+  /**
+   * Process the messages in the mailbox, draining them from a ChunkedMessageQueue
+   */
+  private final def processMailboxBatch(): Unit =
+    if (shouldProcessMessage) {
+      messageBatch.deadlineNs =
+        if (dispatcher.isThroughputDeadlineTimeDefined == true) System.nanoTime + dispatcher.throughputDeadlineTime.toNanos else 0L
+      messageBatch.queue.drain(messageBatch, java.lang.Math.max(dispatcher.throughput, 1))
+    }
+
+  /**
+   * Processes one message drained by processMailboxBatch, and tells whether the next one may be
+   * processed as well, the same way as processMailbox.
+   */
+  private final class MessageBatch(val queue: ChunkedMessageQueue) extends AbstractChunkedArrayQueue.Drain[Envelope] {
+    var deadlineNs = 0L
+
+    override def accept(next: Envelope): Boolean = {
+      if (Mailbox.debug) println(actor.self + " processing message " + next)
+      actor invoke next
+      if (Thread.interrupted())
+        throw new InterruptedException("Interrupted while processing actor messages")
+      processAllSystemMessages()
+      shouldProcessMessage &&
+        ((dispatcher.isThroughputDeadlineTimeDefined == false) || (System.nanoTime - deadlineNs) < 0)
+    }
+  }
+
   /**
    * Will at least try to process all queued system messages: in case of
    * failure simply drop and go on to the next, because there is nothing to
@@ -386,6 +424,30 @@ class NodeMessageQueue extends AbstractNodeQueue[Envelope] with MessageQueue wit
   }
 }
 
+/**
+ * Lock-free unbounded multiple-producer single-consumer queue which stores messages in chunks of
+ * `chunkSize` slots, see [[AbstractChunkedArrayQueue]].
+ */
+class ChunkedMessageQueue(chunkSize: Int) extends AbstractChunkedArrayQueue[Envelope](chunkSize)
+  with MessageQueue with UnboundedMessageQueueSemantics {
+
+  final def enqueue(receiver: ActorRef, handle: Envelope): Unit = add(handle)
+
+  final def dequeue(): Envelope = poll()
+
+  final def numberOfMessages: Int = count()
+
+  final def hasMessages: Boolean = !isEmpty()
+
+  @tailrec final def cleanUp(owner: ActorRef, deadLetters: MessageQueue): Unit = {
+    val envelope = dequeue()
+    if (envelope ne null) {
+      deadLetters.enqueue(owner, envelope)
+      cleanUp(owner, deadLetters)
+    }
+  }
+}
+
 /**
  * Lock-free bounded non-blocking multiple-producer single-consumer queue.
  * Discards overflowing messages into DeadLetters.
@@ -632,6 +694,25 @@ final case class SingleConsumerOnlyUnboundedMailbox() extends MailboxType with P
   final override def create(owner: Option[ActorRef], system: Option[ActorSystem]): MessageQueue = new NodeMessageQueue
 }
 
+/**
+ * SingleConsumerOnlyChunkedMailbox is a multiple producer—single consumer, unbounded MailboxType like
+ * [[SingleConsumerOnlyUnboundedMailbox]], which stores messages in arrays of `mailbox-chunk-size` slots
+ * instead of allocating one queue node per message, and whose messages are processed in batches of up to
+ * the dispatcher throughput.
+ *
+ * It can't have multiple consumers, which rules out using it with BalancingPool (BalancingDispatcher) for instance.
+ */
+final case class SingleConsumerOnlyChunkedMailbox(val chunkSize: Int) extends MailboxType
+  with ProducesMessageQueue[ChunkedMessageQueue] {
+
+  def this(settings: ActorSystem.Settings, config: Config) = this(config.getInt("mailbox-chunk-size"))
+
+  if (chunkSize <= 0) throw new IllegalArgumentException("The chunk size for SingleConsumerOnlyChunkedMailbox must be positive")
+
+  final override def create(owner: Option[ActorRef], system: Option[ActorSystem]): MessageQueue =
+    new ChunkedMessageQueue(chunkSize)
+}
+
 /**
  * NonBlockingBoundedMailbox is a high-performance, multiple-producer single-consumer, bounded MailboxType,
  * Noteworthy is that it discards overflow as DeadLetters.
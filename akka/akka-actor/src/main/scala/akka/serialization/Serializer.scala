@@ -5,6 +5,7 @@ package akka.serialization
  */
 
 import java.io.{ ObjectOutputStream, ByteArrayOutputStream, ByteArrayInputStream }
+import java.nio.ByteBuffer
 import java.util.concurrent.Callable
 import akka.util.ClassLoaderObjectInputStream
 import akka.actor.ExtendedActorSystem
@@ -132,6 +133,38 @@ abstract class SerializerWithStringManifest extends Serializer {
 
 }
 
+/**
+ * Serializer between an object and a `ByteBuffer` representing that object.
+ *
+ * This is an optional addition to a [[Serializer]]: transports that own a buffer, such as
+ * Akka Remoting, use it to let the serializer write straight into that buffer instead of
+ * returning a fresh array which then has to be copied. The array based methods of the
+ * [[Serializer]] are still used everywhere else, e.g. by Akka Persistence, and as a fallback
+ * when the object does not fit into the provided buffer.
+ *
+ * The `manifest` passed to `fromBinary` is the same as for the array based methods: the
+ * result of `manifest(o)` for a [[SerializerWithStringManifest]], otherwise the class name
+ * if `includeManifest` is true, and `""` if not.
+ */
+trait ByteBufferSerializer {
+
+  /**
+   * Serializes the given object into the `ByteBuffer`, starting at its current position.
+   *
+   * Throws `java.nio.BufferOverflowException` if the remaining space of the buffer is not
+   * enough for the serialized form of the object; the caller then discards what has been
+   * written so far.
+   */
+  def toBinary(o: AnyRef, buf: ByteBuffer): Unit
+
+  /**
+   * Produces an object from the remaining bytes of the `ByteBuffer`, with an optional type-hint;
+   * the class should be loaded using ActorSystem.dynamicAccess.
+   */
+  def fromBinary(buf: ByteBuffer, manifest: String): AnyRef
+
+}
+
 /**
  *  Base serializer trait with serialization identifiers configuration contract,
  *  when globally unique serialization identifier is configured in the `reference.conf`.
@@ -260,7 +293,7 @@ class NullSerializer extends Serializer {
  * This is a special Serializer that Serializes and deserializes byte arrays only,
  * (just returns the byte array unchanged/uncopied)
  */
-class ByteArraySerializer(val system: ExtendedActorSystem) extends BaseSerializer {
+class ByteArraySerializer(val system: ExtendedActorSystem) extends BaseSerializer with ByteBufferSerializer {
 
   @deprecated("Use constructor with ExtendedActorSystem", "2.4")
   def this() = this(null)
@@ -277,4 +310,16 @@ class ByteArraySerializer(val system: ExtendedActorSystem) extends BaseSerialize
     case other          ⇒ throw new IllegalArgumentException("ByteArraySerializer only serializes byte arrays, not [" + other + "]")
   }
   def fromBinary(bytes: Array[Byte], clazz: Option[Class[_]]): AnyRef = bytes
+
+  override def toBinary(o: AnyRef, buf: ByteBuffer): Unit = o match {
+    case null           ⇒
+    case o: Array[Byte] ⇒ buf.put(o)
+    case other          ⇒ throw new IllegalArgumentException("ByteArraySerializer only serializes byte arrays, not [" + other + "]")
+  }
+
+  override def fromBinary(buf: ByteBuffer, manifest: String): AnyRef = {
+    val bytes = new Array[Byte](buf.remaining())
+    buf.get(bytes)
+    bytes
+  }
 }
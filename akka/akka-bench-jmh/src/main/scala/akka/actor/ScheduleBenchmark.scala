@@ -7,6 +7,7 @@ import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
 import akka.util.Timeout
+import com.typesafe.config.ConfigFactory
 import org.openjdk.jmh.annotations._
 
 import scala.concurrent.ExecutionContext.Implicits.global
@@ -34,14 +35,23 @@ import scala.concurrent.{ Await, Promise }
 [info] a.a.ScheduleBenchmark.oneSchedule                0.9   16  thrpt        40   820986.574    22058.708    ops/s
 [info] a.a.ScheduleBenchmark.oneSchedule                0.9   64  thrpt        40   210115.907    14176.402    ops/s
  */
+object ScheduleBenchmark {
+  final val churn = 10000
+}
+
 @State(Scope.Benchmark)
 @BenchmarkMode(Array(Mode.Throughput))
 @Fork(2)
 @Warmup(iterations = 10, time = 1700, timeUnit = TimeUnit.MILLISECONDS)
 @Measurement(iterations = 20, time = 1700, timeUnit = TimeUnit.MILLISECONDS)
 class ScheduleBenchmark {
-  implicit val system: ActorSystem = ActorSystem()
-  val scheduler: Scheduler = system.scheduler
+  import ScheduleBenchmark._
+
+  @Param(Array("akka.actor.LightArrayRevolverScheduler", "akka.actor.HierarchicalTimingWheelScheduler"))
+  var implementation = ""
+
+  implicit var system: ActorSystem = _
+  var scheduler: Scheduler = _
   val interval: FiniteDuration = 25.millis
   val within: FiniteDuration = 2.seconds
   implicit val timeout: Timeout = Timeout(within)
@@ -55,6 +65,15 @@ class ScheduleBenchmark {
   var winner: Int = _
   var promise: Promise[Any] = _
 
+  val noop: Runnable = new Runnable { def run(): Unit = () }
+
+  @Setup(Level.Trial)
+  def startSystem(): Unit = {
+    system = ActorSystem("ScheduleBenchmark", ConfigFactory.parseString(
+      s"akka.scheduler.implementation = $implementation").withFallback(ConfigFactory.load()))
+    scheduler = system.scheduler
+  }
+
   @Setup(Level.Iteration)
   def setup(): Unit = {
     winner = (to * ratio + 1).toInt
@@ -97,4 +116,17 @@ class ScheduleBenchmark {
     }
     Await.result(promise.future, within)
   }
+
+  /**
+   * Schedules timeouts which are cancelled before they expire, as asks which are answered in time do.
+   */
+  @Benchmark
+  @OperationsPerInvocation(churn)
+  def scheduleOnceAndCancel(): Unit = {
+    var i = 0
+    while (i < churn) {
+      scheduler.scheduleOnce(within, noop).cancel()
+      i += 1
+    }
+  }
 }
@@ -22,6 +22,9 @@ import scala.concurrent.Await
 class TellOnlyBenchmark {
   import TellOnlyBenchmark._
 
+  @Param(Array("UnboundedDroppingMailbox", "ChunkedDroppingMailbox"))
+  var mailbox = ""
+
   implicit var system: ActorSystem = _
 
   @Setup(Level.Trial)
@@ -44,7 +47,7 @@ class TellOnlyBenchmark {
           |   fork-join-executor.parallelism-min = 1
           |   fork-join-executor.parallelism-max = 1
           |   type = "akka.actor.TellOnlyBenchmark$$DroppingDispatcherConfigurator"
-          |   mailbox-type = "akka.actor.TellOnlyBenchmark$$UnboundedDroppingMailbox"
+          |   mailbox-type = "akka.actor.TellOnlyBenchmark$$$mailbox"
           | }
           | """.stripMargin
     ))
@@ -103,15 +106,15 @@ object TellOnlyBenchmark {
     }
   }
 
-  class DroppingMessageQueue extends UnboundedMailbox.MessageQueue {
+  /** A message queue into which the DroppingDispatcher does not enqueue messages while `dropping`. */
+  trait DroppingQueue {
     @volatile var dropping = false
-
-    override def enqueue(receiver: ActorRef, handle: Envelope): Unit = {
-      if (handle.message == flipDrop) dropping = !dropping
-      else if (!dropping) super.enqueue(receiver, handle)
-    }
   }
 
+  class DroppingMessageQueue extends UnboundedMailbox.MessageQueue with DroppingQueue
+
+  class DroppingChunkedMessageQueue extends ChunkedMessageQueue(128) with DroppingQueue
+
   case class UnboundedDroppingMailbox() extends MailboxType with ProducesMessageQueue[DroppingMessageQueue] {
 
     def this(settings: ActorSystem.Settings, config: Config) = this()
@@ -120,6 +123,14 @@ object TellOnlyBenchmark {
       new DroppingMessageQueue
   }
 
+  case class ChunkedDroppingMailbox() extends MailboxType with ProducesMessageQueue[DroppingChunkedMessageQueue] {
+
+    def this(settings: ActorSystem.Settings, config: Config) = this()
+
+    final override def create(owner: Option[ActorRef], system: Option[ActorSystem]): MessageQueue =
+      new DroppingChunkedMessageQueue
+  }
+
   class DroppingDispatcher(
     _configurator: MessageDispatcherConfigurator,
     _id: String,
@@ -132,10 +143,12 @@ object TellOnlyBenchmark {
 
     override protected[akka] def dispatch(receiver: ActorCell, invocation: Envelope): Unit = {
       val mbox = receiver.mailbox
-      mbox.enqueue(receiver.self, invocation)
       mbox.messageQueue match {
-        case mb: DroppingMessageQueue if mb.dropping ⇒ // do nothing
-        case _ ⇒ registerForExecution(mbox, true, false)
+        case mb: DroppingQueue if invocation.message == flipDrop ⇒ mb.dropping = !mb.dropping
+        case mb: DroppingQueue if mb.dropping ⇒ // do nothing
+        case _ ⇒
+          mbox.enqueue(receiver.self, invocation)
+          registerForExecution(mbox, true, false)
       }
     }
   }
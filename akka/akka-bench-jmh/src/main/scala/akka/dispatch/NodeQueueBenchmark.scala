@@ -25,7 +25,15 @@ object NodeQueueBenchmark {
 class NodeQueueBenchmark {
   import NodeQueueBenchmark._
 
-  val config = ConfigFactory.parseString("""
+  @Param(Array("SingleConsumerOnlyUnboundedMailbox", "SingleConsumerOnlyChunkedMailbox"))
+  var mailbox = ""
+
+  implicit var sys: ActorSystem = _
+  var ref: ActorRef = _
+
+  @Setup
+  def setup(): Unit = {
+    val config = ConfigFactory.parseString(s"""
 dispatcher {
   executor = "thread-pool-executor"
   throughput = 1000
@@ -34,17 +42,18 @@ dispatcher {
   }
 }
 mailbox {
-  mailbox-type = "akka.dispatch.SingleConsumerOnlyUnboundedMailbox"
+  mailbox-type = "akka.dispatch.$mailbox"
   mailbox-capacity = 1000000
 }
 """).withFallback(ConfigFactory.load())
-  implicit val sys = ActorSystem("ANQ", config)
-  val ref = sys.actorOf(Props(new Actor {
-    def receive = {
-      case Stop => sender() ! Stop
-      case _ =>
-    }
-  }).withDispatcher("dispatcher").withMailbox("mailbox"), "receiver")
+    sys = ActorSystem("ANQ", config)
+    ref = sys.actorOf(Props(new Actor {
+      def receive = {
+        case Stop => sender() ! Stop
+        case _ =>
+      }
+    }).withDispatcher("dispatcher").withMailbox("mailbox"), "receiver")
+  }
 
   @TearDown
   def teardown(): Unit = Await.result(sys.terminate(), 5.seconds)
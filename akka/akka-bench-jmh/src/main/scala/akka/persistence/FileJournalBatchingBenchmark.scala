@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+package akka.persistence
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import akka.actor._
+import akka.persistence.JournalProtocol._
+import akka.testkit.TestProbe
+import org.apache.commons.io.FileUtils
+import org.openjdk.jmh.annotations._
+
+/*
+  Writes batches of events to the segmented file journal from 10 threads, each of them writing as
+  its own persistent actor would. Compare with LevelDbBatchingBenchmark; the journal commits the
+  batches of all writers that arrive during one fsync together with the next one.
+ */
+@Fork(1)
+@Threads(10)
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+class FileJournalBatchingBenchmark {
+
+  var sys: ActorSystem = _
+  var journal: ActorRef = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    sys = ActorSystem("sys", PersistenceSpec.config("file", "FileJournalBatchingBenchmark"))
+    deleteStorage(sys)
+    journal = Persistence(sys).journalFor("akka.persistence.journal.file")
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit = {
+    sys.terminate()
+    Await.ready(sys.whenTerminated, 10.seconds)
+    deleteStorage(sys)
+  }
+
+  @Benchmark
+  @Measurement(timeUnit = TimeUnit.MICROSECONDS)
+  @OperationsPerInvocation(1)
+  def write_1(writer: FileJournalWriter): Unit =
+    writer.write(journal, 1)
+
+  @Benchmark
+  @Measurement(timeUnit = TimeUnit.MICROSECONDS)
+  @OperationsPerInvocation(10)
+  def writeBatch_10(writer: FileJournalWriter): Unit =
+    writer.write(journal, 10)
+
+  @Benchmark
+  @Measurement(timeUnit = TimeUnit.MICROSECONDS)
+  @OperationsPerInvocation(100)
+  def writeBatch_100(writer: FileJournalWriter): Unit =
+    writer.write(journal, 100)
+
+  @Benchmark
+  @Measurement(timeUnit = TimeUnit.MICROSECONDS)
+  @OperationsPerInvocation(200)
+  def writeBatch_200(writer: FileJournalWriter): Unit =
+    writer.write(journal, 200)
+
+  // TOOLS
+
+  private def deleteStorage(sys: ActorSystem) {
+    val storageLocations = List(
+      "akka.persistence.journal.file.dir",
+      "akka.persistence.snapshot-store.local.dir"
+    ).map(s ⇒ new File(sys.settings.config.getString(s)))
+
+    storageLocations.foreach(FileUtils.deleteDirectory)
+  }
+
+}
+
+object FileJournalWriter {
+  private val ids = new AtomicInteger
+}
+
+/** The persistence id and sequence numbers of one benchmark thread. */
+@State(Scope.Thread)
+class FileJournalWriter {
+  var probe: TestProbe = _
+  val persistenceId = "pa-" + FileJournalWriter.ids.incrementAndGet()
+  var sequenceNr = 0L
+
+  @Setup(Level.Trial)
+  def setup(benchmark: FileJournalBatchingBenchmark): Unit =
+    probe = TestProbe()(benchmark.sys)
+
+  def write(journal: ActorRef, events: Int): Unit = {
+    val batch = List.fill(events) {
+      sequenceNr += 1
+      AtomicWrite(PersistentRepr("data", sequenceNr, persistenceId))
+    }
+    probe.send(journal, WriteMessages(batch, probe.ref, 1))
+    probe.expectMsg(WriteMessagesSuccessful)
+    probe.receiveN(events)
+  }
+}
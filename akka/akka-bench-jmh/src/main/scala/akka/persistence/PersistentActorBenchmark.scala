@@ -16,11 +16,13 @@ import scala.concurrent.Await
 @BenchmarkMode(Array(Mode.Throughput))
 class PersistentActorThroughputBenchmark {
 
-  val config = PersistenceSpec.config("leveldb", "benchmark")
+  @Param(Array("leveldb", "file"))
+  var journal = ""
 
   lazy val storageLocations = List(
     "akka.persistence.journal.leveldb.dir",
     "akka.persistence.journal.leveldb-shared.store.dir",
+    "akka.persistence.journal.file.dir",
     "akka.persistence.snapshot-store.local.dir"
   ).map(s ⇒ new File(system.settings.config.getString(s)))
 
@@ -37,7 +39,7 @@ class PersistentActorThroughputBenchmark {
 
   @Setup
   def setup(): Unit = {
-    system = ActorSystem("test", config)
+    system = ActorSystem("test", PersistenceSpec.config(journal, "benchmark"))
 
     probe = TestProbe()(system)
 
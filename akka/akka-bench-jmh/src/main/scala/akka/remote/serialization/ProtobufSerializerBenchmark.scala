@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+package akka.remote.serialization
+
+import java.nio.ByteBuffer
+import java.util.concurrent.TimeUnit
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import akka.actor.{ ActorSystem, ExtendedActorSystem }
+import akka.cluster.protobuf.msg.ClusterMessages
+import akka.protobuf.{ ByteString => PByteString }
+import akka.remote.WireFormats
+import com.typesafe.config.ConfigFactory
+import org.openjdk.jmh.annotations._
+
+@Fork(2)
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@Warmup(iterations = 4)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ProtobufSerializerBenchmark {
+
+  @Param(Array("Join", "GossipStatus", "SerializedMessage", "AckAndEnvelopeContainer"))
+  var messageType = ""
+
+  var system: ActorSystem = _
+  var serializer: ProtobufSerializer = _
+  var message: AnyRef = _
+  var messageClass: Option[Class[_]] = _
+  var bytes: Array[Byte] = _
+  val buffer = ByteBuffer.allocate(64 * 1024)
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = ActorSystem("ProtobufSerializerBenchmark", ConfigFactory.parseString(
+      """akka.actor.provider = "akka.remote.RemoteActorRefProvider"
+         akka.remote.netty.tcp.port = 0"""))
+    serializer = new ProtobufSerializer(system.asInstanceOf[ExtendedActorSystem])
+    message = messageType match {
+      case "Join"                    => join
+      case "GossipStatus"            => gossipStatus
+      case "SerializedMessage"       => serializedMessage
+      case "AckAndEnvelopeContainer" => ackAndEnvelopeContainer
+    }
+    messageClass = Some(message.getClass)
+    bytes = serializer.toBinary(message)
+  }
+
+  @TearDown(Level.Trial)
+  def shutdown(): Unit = {
+    Await.result(system.terminate(), 5.seconds)
+  }
+
+  private def uniqueAddress(host: String, uid: Int): ClusterMessages.UniqueAddress =
+    ClusterMessages.UniqueAddress.newBuilder()
+      .setAddress(ClusterMessages.Address.newBuilder()
+        .setSystem("ProtobufSerializerBenchmark").setHostname(host).setPort(2552).setProtocol("akka.tcp"))
+      .setUid(uid)
+      .build()
+
+  private def join: AnyRef =
+    ClusterMessages.Join.newBuilder()
+      .setNode(uniqueAddress("node-1.example.com", 17))
+      .addRoles("frontend").addRoles("backend")
+      .build()
+
+  private def gossipStatus: AnyRef = {
+    val version = ClusterMessages.VectorClock.newBuilder().setTimestamp(0L)
+    (0 until 10) foreach { n =>
+      version.addVersions(ClusterMessages.VectorClock.Version.newBuilder().setHashIndex(n).setTimestamp(1000L * n))
+    }
+    val status = ClusterMessages.GossipStatus.newBuilder()
+      .setFrom(uniqueAddress("node-1.example.com", 17))
+      .setVersion(version)
+    (0 until 10) foreach { n => status.addAllHashes(s"node-$n.example.com:2552-$n") }
+    status.build()
+  }
+
+  private def serializedMessage: WireFormats.SerializedMessage =
+    WireFormats.SerializedMessage.newBuilder()
+      .setMessage(PByteString.copyFrom(new Array[Byte](256)))
+      .setSerializerId(2)
+      .setMessageManifest(PByteString.copyFromUtf8("akka.cluster.protobuf.msg.ClusterMessages$Join"))
+      .build()
+
+  private def ackAndEnvelopeContainer: AnyRef = {
+    val path = "akka.tcp://ProtobufSerializerBenchmark@node-1.example.com:2552/user/service#1234567"
+    WireFormats.AckAndEnvelopeContainer.newBuilder()
+      .setAck(WireFormats.AcknowledgementInfo.newBuilder().setCumulativeAck(42L).addNacks(40L))
+      .setEnvelope(WireFormats.RemoteEnvelope.newBuilder()
+        .setRecipient(WireFormats.ActorRefData.newBuilder().setPath(path))
+        .setSender(WireFormats.ActorRefData.newBuilder().setPath(path))
+        .setMessage(serializedMessage)
+        .setSeq(43L))
+      .build()
+  }
+
+  @Benchmark
+  def toBinary: Array[Byte] =
+    serializer.toBinary(message)
+
+  @Benchmark
+  def toBinaryIntoBuffer: Int = {
+    buffer.clear()
+    serializer.toBinary(message, buffer)
+    buffer.position
+  }
+
+  @Benchmark
+  def fromBinary: AnyRef =
+    serializer.fromBinary(bytes, messageClass)
+
+}
@@ -7,6 +7,7 @@ import org.scalatest.BeforeAndAfterAll
 trait PluginCleanup extends BeforeAndAfterAll { _: PluginSpec ⇒
   val storageLocations = List(
     "akka.persistence.journal.leveldb.dir",
+    "akka.persistence.journal.file.dir",
     "akka.persistence.snapshot-store.local.dir").map(s ⇒ new File(system.settings.config.getString(s)))
 
   override def beforeAll() {
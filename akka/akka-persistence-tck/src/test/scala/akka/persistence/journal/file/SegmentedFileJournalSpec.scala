@@ -0,0 +1,17 @@
+package akka.persistence.journal.file
+
+import akka.persistence.journal.JournalSpec
+import akka.persistence.{ PersistenceSpec, PluginCleanup }
+
+class SegmentedFileJournalSpec extends JournalSpec(
+  config = PersistenceSpec.config(
+    "file",
+    "SegmentedFileJournalSpec",
+    extraConfig = Some("""
+      akka.persistence.journal.file.segment-size = 1 KiB
+      akka.persistence.journal.file.index-interval = 2
+      """)))
+  with PluginCleanup {
+
+  override def supportsRejectingNonSerializableObjects = true
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.persistence.journal.file;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import akka.dispatch.Futures;
+import akka.persistence.AtomicWrite;
+import akka.persistence.PersistentRepr;
+import akka.persistence.journal.Tagged;
+import akka.persistence.journal.japi.AsyncWriteJournal;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import com.typesafe.config.Config;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+
+/**
+ * Journal which appends the events of all persistent actors to one log of segment files in a
+ * local directory, see `akka.persistence.journal.file` in reference.conf. It only depends on the JVM.
+ *
+ * The batches written by `doAsyncWriteMessages` are committed together with the other batches
+ * that arrive while the previous commit is in progress, with one fsync for all of them. Each
+ * AtomicWrite is stored as one checksummed record, so that it is either recovered completely or
+ * not at all after a crash.
+ */
+public class SegmentedFileJournal extends AsyncWriteJournal {
+
+  private final Serialization serialization = SerializationExtension.get(context().system());
+  private final ExecutionContext replayDispatcher;
+  private final SegmentedLog log;
+
+  public SegmentedFileJournal(Config config) {
+    replayDispatcher = context().system().dispatchers().lookup(config.getString("replay-dispatcher"));
+    final long segmentSize = config.getBytes("segment-size");
+    if (segmentSize > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("segment-size must be less than 2 GiB");
+    log = new SegmentedLog(new File(config.getString("dir")), (int) segmentSize,
+        config.getInt("index-interval"), config.getBoolean("fsync"));
+  }
+
+  @Override
+  public void preStart() throws Exception {
+    log.open(self().path().name() + "-writer");
+    super.preStart();
+  }
+
+  @Override
+  public void postStop() throws Exception {
+    log.close();
+    super.postStop();
+  }
+
+  @Override
+  public Future<Iterable<Optional<Exception>>> doAsyncWriteMessages(Iterable<AtomicWrite> messages) {
+    final List<Optional<Exception>> results = new ArrayList<>();
+    final SegmentedLog.Batch batch = new SegmentedLog.Batch();
+    for (AtomicWrite write : messages) {
+      final List<byte[]> events = new ArrayList<>(write.size());
+      try {
+        final scala.collection.Iterator<PersistentRepr> it = write.payload().iterator();
+        while (it.hasNext()) events.add(serialize(it.next()));
+      } catch (Exception e) {
+        results.add(Optional.of(e));
+        continue;
+      }
+      batch.addEvents(write.persistenceId(), write.lowestSequenceNr(), events);
+      results.add(Optional.empty());
+    }
+    if (batch.isEmpty()) return Futures.successful(results);
+    else return log.append(batch, results);
+  }
+
+  private byte[] serialize(PersistentRepr persistent) {
+    final PersistentRepr p = persistent.payload() instanceof Tagged ?
+        persistent.withPayload(((Tagged) persistent.payload()).payload()) : persistent;
+    return serialization.serialize(p).get();
+  }
+
+  @Override
+  public Future<Void> doAsyncDeleteMessagesTo(String persistenceId, long toSequenceNr) {
+    final SegmentedLog.Batch batch = new SegmentedLog.Batch();
+    batch.addDeletion(persistenceId, toSequenceNr);
+    return log.append(batch, null);
+  }
+
+  @Override
+  public Future<Void> doAsyncReplayMessages(String persistenceId, long fromSequenceNr,
+      long toSequenceNr, long max, Consumer<PersistentRepr> replayCallback) {
+    return Futures.future(() -> {
+      log.replay(persistenceId, fromSequenceNr, toSequenceNr, max, bytes ->
+          replayCallback.accept(serialization.deserialize(bytes, PersistentRepr.class).get()));
+      return null;
+    }, replayDispatcher);
+  }
+
+  @Override
+  public Future<Long> doAsyncReadHighestSequenceNr(String persistenceId, long fromSequenceNr) {
+    return Futures.successful(log.highestSequenceNr(persistenceId));
+  }
+}
@@ -0,0 +1,609 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.persistence.journal.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import akka.dispatch.Futures;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+
+/**
+ * INTERNAL API
+ *
+ * Append-only log of records of all persistenceIds, stored in segment files of a directory, which
+ * are named after the log position of their first byte. Segments are allocated at their full size
+ * up front and memory-mapped for reading; the unwritten rest of a segment is zero.
+ *
+ * A record holds either the events of one AtomicWrite or a deletion marker:
+ *
+ * <pre>
+ * int   size of the record after this field
+ * int   CRC32 of the record after this field
+ * byte  type: EVENTS or DELETION
+ * long  lowest sequence number of the events, or the toSequenceNr of the deletion
+ * long  highest sequence number of the events, or the toSequenceNr of the deletion
+ * int   length of the persistenceId, followed by its UTF-8 bytes
+ * for each event: long sequence number, int length, followed by the serialized event
+ * </pre>
+ *
+ * Appends are queued for a single writer thread, which writes everything that queued up while it
+ * was busy with one write and one fsync, and only then indexes the records and completes the appends.
+ * Readers therefore never see records that are not durable yet.
+ *
+ * For each persistenceId an index in memory holds the highest sequence number, the deletion mark
+ * and the log position of every record that starts at least `indexInterval` sequence numbers after
+ * the previous entry. Replay starts at the closest preceding entry and reads the log from there,
+ * skipping the records of other persistenceIds.
+ *
+ * When a write or fsync fails, the part of it that may have reached the active segment is zeroed
+ * through a new channel and the log continues in a new segment, so that the records of the failed
+ * appends cannot be recovered later.
+ */
+class SegmentedLog {
+
+  static final byte EVENTS = 1;
+  static final byte DELETION = 2;
+
+  private static final int HEADER_SIZE = 8;
+  private static final int TYPE_OFFSET = HEADER_SIZE;
+  private static final int FROM_OFFSET = TYPE_OFFSET + 1;
+  private static final int TO_OFFSET = FROM_OFFSET + 8;
+  private static final int PERSISTENCE_ID_OFFSET = TO_OFFSET + 8;
+
+  private static final String SEGMENT_SUFFIX = ".segment";
+
+  private final File dir;
+  private final int segmentSize;
+  private final int indexInterval;
+  private final boolean fsync;
+
+  private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  private final ConcurrentHashMap<String, PersistenceIdIndex> index = new ConcurrentHashMap<>();
+  private final LinkedBlockingQueue<Append<?>> appends = new LinkedBlockingQueue<>();
+
+  // log position up to which all records are durable; it is advanced before they are indexed
+  private volatile long committed;
+
+  // only accessed by the writer thread once the log is open
+  private Segment active;
+  private FileChannel activeChannel;
+  private long writePosition;
+  // set when the tail of a failed write could not be discarded yet; no record is written until it is
+  private boolean damaged = false;
+
+  private Thread writer;
+
+  SegmentedLog(final File dir, final int segmentSize, final int indexInterval, final boolean fsync) {
+    if (segmentSize < 1024) throw new IllegalArgumentException("segment-size must be at least 1 KiB");
+    if (indexInterval < 1) throw new IllegalArgumentException("index-interval must be positive");
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    this.indexInterval = indexInterval;
+    this.fsync = fsync;
+  }
+
+  /**
+   * Rebuilds the index from the segments found in the directory and starts the writer thread.
+   */
+  void open(final String writerName) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Failed to create journal directory " + dir);
+
+    final File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+    final long[] bases = new long[files.length];
+    for (int i = 0; i < files.length; i++) {
+      final String name = files[i].getName();
+      bases[i] = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+    Arrays.sort(bases);
+
+    long end = 0L;
+    for (int i = 0; i < bases.length; i++) {
+      final boolean last = i == bases.length - 1;
+      final Segment segment = Segment.map(segmentFile(bases[i]), bases[i]);
+      final int recovered = recover(segment, last);
+      // replay must not read past the valid records of an earlier segment, which can only be followed
+      // by garbage if that segment got corrupted
+      if (!last) segment.limit = recovered;
+      segments.put(segment.base, segment);
+      end = segment.base + recovered;
+    }
+
+    if (segments.isEmpty()) {
+      roll(0L, segmentSize);
+    } else {
+      active = segments.lastEntry().getValue();
+      activeChannel = openChannel(active.file);
+    }
+    writePosition = end;
+    committed = end;
+
+    writer = new Thread(this::writeLoop, writerName);
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Stops the writer thread once it has written the appends queued so far.
+   */
+  void close() throws IOException, InterruptedException {
+    if (writer != null) {
+      appends.put(Append.STOP);
+      writer.join();
+      writer = null;
+    }
+    if (activeChannel != null) {
+      activeChannel.close();
+      activeChannel = null;
+    }
+  }
+
+  /**
+   * Queues the records of the batch for writing.
+   *
+   * @return a future completed with `result` when the records are durable
+   */
+  <T> Future<T> append(final Batch batch, final T result) {
+    final Append<T> append = new Append<>(batch, result);
+    appends.add(append);
+    return append.promise.future();
+  }
+
+  long highestSequenceNr(final String persistenceId) {
+    final PersistenceIdIndex idx = index.get(persistenceId);
+    return idx == null ? 0L : idx.highestSequenceNr();
+  }
+
+  /**
+   * Hands the serialized events of the persistenceId between `fromSequenceNr` and `toSequenceNr`
+   * (inclusive) that have not been deleted to `replay`, up to `max` events and in order.
+   */
+  void replay(final String persistenceId, final long fromSequenceNr, final long toSequenceNr, final long max,
+      final Consumer<byte[]> replay) {
+    final PersistenceIdIndex idx = index.get(persistenceId);
+    if (idx == null || max <= 0) return;
+
+    final long from;
+    final long to;
+    long position;
+    synchronized (idx) {
+      from = Math.max(fromSequenceNr, idx.deletedTo + 1);
+      to = Math.min(toSequenceNr, idx.highestSequenceNr);
+      if (from > to) return;
+      position = idx.floorPosition(from);
+    }
+    // read after the index, so that all indexed records are before it
+    final long end = committed;
+
+    final byte[] id = persistenceId.getBytes(StandardCharsets.UTF_8);
+    Segment segment = segments.floorEntry(position).getValue();
+    ByteBuffer buffer = segment.buffer.duplicate();
+    long replayed = 0L;
+    while (position < end) {
+      final int offset = (int) (position - segment.base);
+      final int size = offset + HEADER_SIZE <= segment.limit ? buffer.getInt(offset) : 0;
+      if (size == 0) {
+        final Map.Entry<Long, Segment> next = segments.higherEntry(segment.base);
+        if (next == null) return;
+        segment = next.getValue();
+        buffer = segment.buffer.duplicate();
+        position = segment.base;
+        continue;
+      }
+
+      if (buffer.get(offset + TYPE_OFFSET) == EVENTS && isPersistenceId(buffer, offset, id)) {
+        final long recordTo = buffer.getLong(offset + TO_OFFSET);
+        int eventOffset = offset + PERSISTENCE_ID_OFFSET + 4 + id.length;
+        final int recordEnd = offset + HEADER_SIZE + size;
+        while (eventOffset < recordEnd) {
+          final long sequenceNr = buffer.getLong(eventOffset);
+          final int length = buffer.getInt(eventOffset + 8);
+          if (sequenceNr > to) return;
+          if (sequenceNr >= from) {
+            final byte[] bytes = new byte[length];
+            buffer.position(eventOffset + 12);
+            buffer.get(bytes);
+            replay.accept(bytes);
+            replayed += 1;
+            if (replayed == max) return;
+          }
+          eventOffset += 12 + length;
+        }
+        if (recordTo >= to) return;
+      }
+      position += HEADER_SIZE + size;
+    }
+  }
+
+  private static boolean isPersistenceId(final ByteBuffer buffer, final int offset, final byte[] id) {
+    if (buffer.getInt(offset + PERSISTENCE_ID_OFFSET) != id.length) return false;
+    final int idOffset = offset + PERSISTENCE_ID_OFFSET + 4;
+    for (int i = 0; i < id.length; i++) {
+      if (buffer.get(idOffset + i) != id[i]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Validates and indexes the records of a segment found when opening the log.
+   *
+   * @return the offset after the last valid record
+   */
+  private int recover(final Segment segment, final boolean last) throws IOException {
+    final ByteBuffer buffer = segment.buffer.duplicate();
+    final CRC32 crc = new CRC32();
+    int offset = 0;
+    while (offset + HEADER_SIZE <= segment.capacity) {
+      final int size = buffer.getInt(offset);
+      if (size <= 0 || size > segment.capacity - offset - HEADER_SIZE) break;
+      buffer.limit(offset + HEADER_SIZE + size).position(offset + HEADER_SIZE);
+      crc.reset();
+      crc.update(buffer);
+      buffer.clear();
+      if ((int) crc.getValue() != buffer.getInt(offset + 4)) break;
+      final int idLength = buffer.getInt(offset + PERSISTENCE_ID_OFFSET);
+      final byte[] id = new byte[idLength];
+      buffer.position(offset + PERSISTENCE_ID_OFFSET + 4);
+      buffer.get(id);
+      indexRecord(new String(id, StandardCharsets.UTF_8), buffer.get(offset + TYPE_OFFSET),
+          buffer.getLong(offset + FROM_OFFSET), buffer.getLong(offset + TO_OFFSET), segment.base + offset);
+      offset += HEADER_SIZE + size;
+    }
+    if (last && offset + 4 <= segment.capacity && buffer.getInt(offset) != 0) {
+      // the tail of an interrupted write: zero it so that it cannot be mistaken for records later
+      try (FileChannel channel = openChannel(segment.file)) {
+        zero(channel, offset, segment.capacity);
+      }
+    }
+    return offset;
+  }
+
+  private static void zero(final FileChannel channel, final long from, final long to) throws IOException {
+    final ByteBuffer zeros = ByteBuffer.allocate(64 * 1024);
+    long position = from;
+    while (position < to) {
+      zeros.clear().limit((int) Math.min(zeros.capacity(), to - position));
+      position += channel.write(zeros, position);
+    }
+    channel.force(false);
+  }
+
+  private void indexRecord(final String persistenceId, final byte type, final long from, final long to, final long position) {
+    PersistenceIdIndex idx = index.get(persistenceId);
+    if (idx == null) {
+      final PersistenceIdIndex created = new PersistenceIdIndex();
+      idx = index.putIfAbsent(persistenceId, created);
+      if (idx == null) idx = created;
+    }
+    if (type == DELETION) idx.delete(to);
+    else idx.add(from, to, position, indexInterval);
+  }
+
+  /**
+   * Opens a segment file for writing; overridden by tests to inject failures.
+   */
+  FileChannel openChannel(final File file) throws IOException {
+    return new RandomAccessFile(file, "rw").getChannel();
+  }
+
+  private File segmentFile(final long base) {
+    return new File(dir, String.format("%020d%s", base, SEGMENT_SUFFIX));
+  }
+
+  /**
+   * Creates and activates a new segment starting at the given log position.
+   */
+  private void roll(final long base, final int capacity) throws IOException {
+    final File file = segmentFile(base);
+    final FileChannel channel = openChannel(file);
+    try {
+      // writing the last byte allocates the whole segment, which is then zero
+      channel.write(ByteBuffer.allocate(1), capacity - 1);
+      channel.force(true);
+      final Segment segment = Segment.map(file, base);
+      if (activeChannel != null) activeChannel.close();
+      active = segment;
+      activeChannel = channel;
+      writePosition = base;
+      segments.put(base, segment);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private void writeLoop() {
+    final List<Append<?>> group = new ArrayList<>();
+    boolean running = true;
+    while (running) {
+      try {
+        group.add(appends.take());
+        appends.drainTo(group);
+      } catch (InterruptedException e) {
+        running = false;
+      }
+      final int stop = group.indexOf(Append.STOP);
+      if (stop >= 0) {
+        running = false;
+        for (Append<?> append : group.subList(stop + 1, group.size())) {
+          append.fail(new IllegalStateException("Journal log is closed"));
+        }
+        group.subList(stop, group.size()).clear();
+      }
+      if (!group.isEmpty()) commit(group);
+      group.clear();
+    }
+  }
+
+  /**
+   * Writes the records of all appends of the group with one write and one fsync.
+   */
+  private void commit(final List<Append<?>> group) {
+    long size = 0L;
+    for (Append<?> append : group) size += append.batch.size();
+    try {
+      if (damaged) discardTail();
+      if (size > Integer.MAX_VALUE - HEADER_SIZE)
+        throw new IOException("Journal write of " + size + " bytes exceeds the maximum segment size");
+      if (writePosition + size + HEADER_SIZE > active.base + active.capacity)
+        roll(active.base + active.capacity, (int) Math.max(segmentSize, size + HEADER_SIZE));
+
+      final ByteBuffer[] buffers = new ByteBuffer[group.size()];
+      for (int i = 0; i < buffers.length; i++) buffers[i] = group.get(i).batch.records();
+      long position = writePosition - active.base;
+      activeChannel.position(position);
+      while (position < writePosition - active.base + size) {
+        position += activeChannel.write(buffers);
+      }
+      if (fsync) activeChannel.force(false);
+    } catch (Throwable e) {
+      for (Append<?> append : group) append.fail(e);
+      // whatever part of the group reached the segment must not be recovered, nor be followed by the
+      // records of the next group
+      damaged = true;
+      try {
+        discardTail();
+      } catch (Throwable ignored) {
+        // retried before the next group is written
+      }
+      return;
+    }
+
+    final long start = writePosition;
+    writePosition += size;
+    committed = writePosition;
+
+    long recordPosition = start;
+    for (Append<?> append : group) {
+      final Batch batch = append.batch;
+      for (int i = 0; i < batch.records.size(); i++) {
+        final Batch.Record r = batch.records.get(i);
+        indexRecord(r.persistenceId, r.type, r.from, r.to, recordPosition + r.offset);
+      }
+      recordPosition += batch.size();
+    }
+    for (Append<?> append : group) append.complete();
+  }
+
+  /**
+   * Zeroes the active segment from the write position on, through a new channel since the state of
+   * the one that failed is unknown, and continues the log in a new segment.
+   */
+  private void discardTail() throws IOException {
+    if (activeChannel != null) {
+      try {
+        activeChannel.close();
+      } catch (IOException ignored) {
+        // the channel is abandoned anyway
+      }
+      activeChannel = null;
+    }
+    final int offset = (int) (writePosition - active.base);
+    try (FileChannel channel = openChannel(active.file)) {
+      zero(channel, offset, active.capacity);
+    }
+    // published to replays by the next write to `committed`
+    active.limit = offset;
+    roll(active.base + active.capacity, segmentSize);
+    damaged = false;
+  }
+
+  /**
+   * Records to be appended to the log together, built by the journal actor.
+   */
+  static final class Batch {
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private final List<Record> records = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    boolean isEmpty() {
+      return records.isEmpty();
+    }
+
+    int size() {
+      return buffer.position();
+    }
+
+    /**
+     * Adds a record holding the given serialized events, which must have consecutive sequence numbers
+     * starting at `from`.
+     */
+    void addEvents(final String persistenceId, final long from, final List<byte[]> events) {
+      final byte[] id = persistenceId.getBytes(StandardCharsets.UTF_8);
+      long size = PERSISTENCE_ID_OFFSET - HEADER_SIZE + 4 + id.length;
+      for (byte[] event : events) size += 12 + event.length;
+      final int start = begin(size);
+      buffer.put(EVENTS).putLong(from).putLong(from + events.size() - 1).putInt(id.length).put(id);
+      long sequenceNr = from;
+      for (byte[] event : events) {
+        buffer.putLong(sequenceNr).putInt(event.length).put(event);
+        sequenceNr += 1;
+      }
+      end(start, new Record(persistenceId, EVENTS, from, from + events.size() - 1, start));
+    }
+
+    void addDeletion(final String persistenceId, final long toSequenceNr) {
+      final byte[] id = persistenceId.getBytes(StandardCharsets.UTF_8);
+      final int start = begin(PERSISTENCE_ID_OFFSET - HEADER_SIZE + 4 + id.length);
+      buffer.put(DELETION).putLong(toSequenceNr).putLong(toSequenceNr).putInt(id.length).put(id);
+      end(start, new Record(persistenceId, DELETION, toSequenceNr, toSequenceNr, start));
+    }
+
+    private int begin(final long size) {
+      if (size > Integer.MAX_VALUE - HEADER_SIZE - buffer.position())
+        throw new IllegalArgumentException("Journal record of " + size + " bytes is too large");
+      final int required = buffer.position() + HEADER_SIZE + (int) size;
+      if (required > buffer.capacity()) {
+        final ByteBuffer larger = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity())));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+      final int start = buffer.position();
+      buffer.putInt((int) size).putInt(0);
+      return start;
+    }
+
+    private void end(final int start, final Record record) {
+      crc.reset();
+      crc.update(buffer.array(), start + HEADER_SIZE, buffer.position() - start - HEADER_SIZE);
+      buffer.putInt(start + 4, (int) crc.getValue());
+      records.add(record);
+    }
+
+    ByteBuffer records() {
+      final ByteBuffer records = buffer.duplicate();
+      records.flip();
+      return records;
+    }
+
+    static final class Record {
+      final String persistenceId;
+      final byte type;
+      final long from;
+      final long to;
+      final int offset;
+
+      Record(final String persistenceId, final byte type, final long from, final long to, final int offset) {
+        this.persistenceId = persistenceId;
+        this.type = type;
+        this.from = from;
+        this.to = to;
+        this.offset = offset;
+      }
+    }
+  }
+
+  private static final class Append<T> {
+    static final Append<Object> STOP = new Append<>(null, null);
+
+    final Batch batch;
+    final T result;
+    final Promise<T> promise = Futures.promise();
+
+    Append(final Batch batch, final T result) {
+      this.batch = batch;
+      this.result = result;
+    }
+
+    void complete() {
+      promise.success(result);
+    }
+
+    void fail(final Throwable cause) {
+      promise.failure(cause);
+    }
+  }
+
+  private static final class Segment {
+    final File file;
+    final long base;
+    final int capacity;
+    final MappedByteBuffer buffer;
+    // the offset up to which the segment may hold records, set before the segment is published or, when
+    // the tail of a failed write is discarded, before `committed` moves past the segment
+    int limit;
+
+    private Segment(final File file, final long base, final MappedByteBuffer buffer) {
+      this.file = file;
+      this.base = base;
+      this.capacity = buffer.capacity();
+      this.buffer = buffer;
+      this.limit = capacity;
+    }
+
+    static Segment map(final File file, final long base) throws IOException {
+      try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+        // the mapping stays valid after the channel is closed
+        return new Segment(file, base, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+    }
+  }
+
+  /**
+   * Sparse index of the records of one persistenceId; guarded by its own lock, since it is updated
+   * by the writer thread and read by replays.
+   */
+  private static final class PersistenceIdIndex {
+    long highestSequenceNr = 0L;
+    long deletedTo = 0L;
+    private long[] sequenceNrs = new long[4];
+    private long[] positions = new long[4];
+    private int size = 0;
+
+    synchronized long highestSequenceNr() {
+      return highestSequenceNr;
+    }
+
+    synchronized void add(final long from, final long to, final long position, final int interval) {
+      if (size == 0 || from >= sequenceNrs[size - 1] + interval) {
+        if (size == sequenceNrs.length) {
+          sequenceNrs = Arrays.copyOf(sequenceNrs, size * 2);
+          positions = Arrays.copyOf(positions, size * 2);
+        }
+        sequenceNrs[size] = from;
+        positions[size] = position;
+        size += 1;
+      }
+      highestSequenceNr = Math.max(highestSequenceNr, to);
+    }
+
+    synchronized void delete(final long toSequenceNr) {
+      // like the LevelDB journal, deleting beyond the highest sequence number does not delete the
+      // events written later, and keeps `deletedTo + 1` from overflowing
+      deletedTo = Math.max(deletedTo, Math.min(toSequenceNr, highestSequenceNr));
+    }
+
+    /**
+     * @return the position of the last indexed record starting at or before the sequence number, or
+     *         the position of the first record if there is none
+     */
+    long floorPosition(final long sequenceNr) {
+      int low = 0;
+      int high = size - 1;
+      while (low < high) {
+        final int mid = (low + high + 1) >>> 1;
+        if (sequenceNrs[mid] <= sequenceNr) low = mid;
+        else high = mid - 1;
+      }
+      return positions[low];
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.persistence.journal.file
+
+import java.io.{ File, RandomAccessFile }
+import java.nio.ByteBuffer
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+import akka.actor.{ ActorRef, ActorSystem, Props }
+import akka.persistence._
+import akka.testkit.TestProbe
+
+object SegmentedFileJournalRecoverySpec {
+  case object GetEvents
+  final case class Delete(toSequenceNr: Long)
+
+  class Writer(name: String) extends NamedPersistentActor(name) {
+    var events = Vector.empty[String]
+    var deleteRequester: ActorRef = _
+
+    def receiveCommand = {
+      case GetEvents ⇒ sender() ! (events → lastSequenceNr)
+      case Delete(toSequenceNr) ⇒
+        deleteRequester = sender()
+        deleteMessages(toSequenceNr)
+      case DeleteMessagesSuccess(toSequenceNr) ⇒ deleteRequester ! toSequenceNr
+      case cmd: String ⇒
+        persistAll(List(s"$cmd-1", s"$cmd-2")) { evt ⇒
+          events :+= evt
+          if (evt == s"$cmd-2") sender() ! evt
+        }
+    }
+
+    def receiveRecover = {
+      case evt: String ⇒ events :+= evt
+    }
+  }
+}
+
+class SegmentedFileJournalRecoverySpec extends PersistenceSpec(PersistenceSpec.config("file", "SegmentedFileJournalRecoverySpec",
+  extraConfig = Some("""
+    akka.persistence.journal.file.segment-size = 1 KiB
+    akka.persistence.journal.file.index-interval = 4
+    """))) {
+
+  import SegmentedFileJournalRecoverySpec._
+
+  val dir = new File(system.settings.config.getString("akka.persistence.journal.file.dir"))
+
+  def withActorSystem[T](name: String)(block: ActorSystem ⇒ T): T = {
+    val sys = ActorSystem(name, system.settings.config)
+    try block(sys) finally Await.ready(sys.terminate(), 10.seconds)
+  }
+
+  def write(sys: ActorSystem, name: String, commands: Seq[String]): Unit = {
+    val probe = TestProbe()(sys)
+    val writer = sys.actorOf(Props(classOf[Writer], name))
+    commands foreach { cmd ⇒
+      probe.send(writer, cmd)
+      probe.expectMsg(s"$cmd-2")
+    }
+  }
+
+  def recover(sys: ActorSystem, name: String): (Vector[String], Long) = {
+    val probe = TestProbe()(sys)
+    probe.send(sys.actorOf(Props(classOf[Writer], name)), GetEvents)
+    probe.expectMsgType[(Vector[String], Long)]
+  }
+
+  def expectedEvents(commands: Seq[String]): Vector[String] =
+    commands.flatMap(cmd ⇒ List(s"$cmd-1", s"$cmd-2"))(collection.breakOut)
+
+  def segments: Array[File] = dir.listFiles.filter(_.getName.endsWith(".segment")).sortBy(_.getName)
+
+  val commandsA = (1 to 30).map("a" + _)
+  val commandsB = (1 to 30).map("b" + _)
+
+  "A segmented file journal" must {
+
+    "recover the events written by an earlier journal from several segments" in {
+      withActorSystem("writer") { sys ⇒
+        write(sys, "a", commandsA)
+        write(sys, "b", commandsB)
+      }
+      segments.length should be > 1
+
+      withActorSystem("reader") { sys ⇒
+        recover(sys, "a") should ===(expectedEvents(commandsA) → 60L)
+        recover(sys, "b") should ===(expectedEvents(commandsB) → 60L)
+        recover(sys, "c") should ===(Vector.empty[String] → 0L)
+      }
+    }
+
+    "not recover deleted events after a restart" in {
+      withActorSystem("deleter") { sys ⇒
+        val probe = TestProbe()(sys)
+        probe.send(sys.actorOf(Props(classOf[Writer], "b")), Delete(21L))
+        probe.expectMsg(21L)
+      }
+
+      withActorSystem("reader") { sys ⇒
+        recover(sys, "b") should ===(expectedEvents(commandsB).drop(21) → 60L)
+      }
+    }
+
+    "ignore the incomplete tail of an interrupted write" in {
+      val last = segments.last
+      val file = new RandomAccessFile(last, "rw")
+      try {
+        // skip the valid records, then add the start of a record that never completed
+        var offset = 0L
+        var size = 0
+        do {
+          file.seek(offset)
+          size = file.readInt()
+          if (size != 0) offset += 8 + size
+        } while (size != 0 && offset + 8 <= file.length)
+        if (offset + 16 <= file.length) {
+          file.seek(offset)
+          file.write(ByteBuffer.allocate(16).putInt(100).putInt(42).putLong(17L).array)
+        }
+      } finally file.close()
+
+      withActorSystem("restarted") { sys ⇒
+        recover(sys, "a") should ===(expectedEvents(commandsA) → 60L)
+        write(sys, "a", List("a31"))
+      }
+
+      withActorSystem("reader") { sys ⇒
+        recover(sys, "a") should ===(expectedEvents(commandsA :+ "a31") → 62L)
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.persistence.journal.file
+
+import java.io.{ File, IOException }
+import java.nio.{ ByteBuffer, MappedByteBuffer }
+import java.nio.channels.{ FileChannel, FileLock, ReadableByteChannel, WritableByteChannel }
+import java.util.concurrent.atomic.AtomicBoolean
+
+import scala.collection.JavaConverters._
+import scala.concurrent.{ Await, Future }
+import scala.concurrent.duration._
+
+import org.apache.commons.io.FileUtils
+import org.scalatest.{ BeforeAndAfterEach, Matchers, WordSpec }
+
+object SegmentedLogSpec {
+
+  /**
+   * Channel which fails the next `force` after `failNextForce` has been set, after the data of the
+   * write has reached the file.
+   */
+  class FailingChannel(delegate: FileChannel, failNextForce: AtomicBoolean) extends FileChannel {
+    override def force(metaData: Boolean): Unit =
+      if (failNextForce.compareAndSet(true, false)) throw new IOException("injected fsync failure")
+      else delegate.force(metaData)
+
+    override def read(dst: ByteBuffer): Int = delegate.read(dst)
+    override def read(dsts: Array[ByteBuffer], offset: Int, length: Int): Long = delegate.read(dsts, offset, length)
+    override def read(dst: ByteBuffer, position: Long): Int = delegate.read(dst, position)
+    override def write(src: ByteBuffer): Int = delegate.write(src)
+    override def write(srcs: Array[ByteBuffer], offset: Int, length: Int): Long = delegate.write(srcs, offset, length)
+    override def write(src: ByteBuffer, position: Long): Int = delegate.write(src, position)
+    override def position(): Long = delegate.position()
+    override def position(newPosition: Long): FileChannel = { delegate.position(newPosition); this }
+    override def size(): Long = delegate.size()
+    override def truncate(size: Long): FileChannel = { delegate.truncate(size); this }
+    override def transferTo(position: Long, count: Long, target: WritableByteChannel): Long =
+      delegate.transferTo(position, count, target)
+    override def transferFrom(src: ReadableByteChannel, position: Long, count: Long): Long =
+      delegate.transferFrom(src, position, count)
+    override def map(mode: FileChannel.MapMode, position: Long, size: Long): MappedByteBuffer =
+      delegate.map(mode, position, size)
+    override def lock(position: Long, size: Long, shared: Boolean): FileLock = delegate.lock(position, size, shared)
+    override def tryLock(position: Long, size: Long, shared: Boolean): FileLock = delegate.tryLock(position, size, shared)
+    override protected def implCloseChannel(): Unit = delegate.close()
+  }
+}
+
+class SegmentedLogSpec extends WordSpec with Matchers with BeforeAndAfterEach {
+  import SegmentedLogSpec._
+
+  val dir = new File("target/journal-file-SegmentedLogSpec")
+  val failNextForce = new AtomicBoolean(false)
+
+  override protected def beforeEach(): Unit = FileUtils.deleteDirectory(dir)
+  override protected def afterEach(): Unit = FileUtils.deleteDirectory(dir)
+
+  def withLog[T](block: SegmentedLog ⇒ T): T = {
+    val log = new SegmentedLog(dir, 4096, 2, true) {
+      override def openChannel(file: File): FileChannel = new FailingChannel(super.openChannel(file), failNextForce)
+    }
+    log.open("SegmentedLogSpec-writer")
+    try block(log) finally log.close()
+  }
+
+  def write(log: SegmentedLog, persistenceId: String, from: Long, events: String*): Future[String] = {
+    val batch = new SegmentedLog.Batch
+    batch.addEvents(persistenceId, from, events.map(_.getBytes("UTF-8")).asJava)
+    log.append(batch, "ok")
+  }
+
+  def delete(log: SegmentedLog, persistenceId: String, toSequenceNr: Long): Unit = {
+    val batch = new SegmentedLog.Batch
+    batch.addDeletion(persistenceId, toSequenceNr)
+    Await.result(log.append(batch, "ok"), 3.seconds)
+  }
+
+  def replay(log: SegmentedLog, persistenceId: String): Vector[String] = {
+    var events = Vector.empty[String]
+    log.replay(persistenceId, 1L, Long.MaxValue, Long.MaxValue, new java.util.function.Consumer[Array[Byte]] {
+      def accept(bytes: Array[Byte]): Unit = events :+= new String(bytes, "UTF-8")
+    })
+    events
+  }
+
+  "A SegmentedLog" must {
+
+    "not recover the records of a write whose fsync failed" in {
+      withLog { log ⇒
+        Await.result(write(log, "a", 1L, "a-1", "a-2"), 3.seconds) should ===("ok")
+
+        failNextForce.set(true)
+        val failed = write(log, "a", 3L, (3 to 10).map("failed-" + _): _*)
+        intercept[IOException] { Await.result(failed, 3.seconds) }
+
+        // shorter than the failed write, which must not be recovered behind it
+        Await.result(write(log, "b", 1L, "b-1"), 3.seconds) should ===("ok")
+        Await.result(write(log, "a", 3L, "a-3"), 3.seconds) should ===("ok")
+
+        replay(log, "a") should ===(Vector("a-1", "a-2", "a-3"))
+        replay(log, "b") should ===(Vector("b-1"))
+      }
+
+      withLog { log ⇒
+        replay(log, "a") should ===(Vector("a-1", "a-2", "a-3"))
+        replay(log, "b") should ===(Vector("b-1"))
+        log.highestSequenceNr("a") should ===(3L)
+      }
+    }
+
+    "keep the highest sequence number and later events when deleting up to Long.MaxValue" in {
+      withLog { log ⇒
+        Await.result(write(log, "a", 1L, "a-1", "a-2"), 3.seconds)
+        delete(log, "a", Long.MaxValue)
+        replay(log, "a") should ===(Vector.empty)
+        log.highestSequenceNr("a") should ===(2L)
+        Await.result(write(log, "a", 3L, "a-3"), 3.seconds)
+        replay(log, "a") should ===(Vector("a-3"))
+      }
+
+      withLog { log ⇒
+        replay(log, "a") should ===(Vector("a-3"))
+        log.highestSequenceNr("a") should ===(3L)
+      }
+    }
+  }
+}
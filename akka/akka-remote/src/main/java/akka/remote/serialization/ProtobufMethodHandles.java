@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+
+package akka.remote.serialization;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * INTERNAL API
+ *
+ * Binds the `parseFrom` and `toByteArray` methods of protobuf message classes to MethodHandles
+ * and invokes them for ProtobufSerializer.
+ *
+ * This is Java code because invoking a MethodHandle with invokeExact needs the compiler to emit
+ * the exact call site signature, which Scala 2.11 does not do.
+ */
+public final class ProtobufMethodHandles {
+
+    private ProtobufMethodHandles() {
+    }
+
+    private static final MethodType PARSE_FROM_TYPE = MethodType.methodType(Object.class, byte[].class);
+    private static final MethodType TO_BYTE_ARRAY_TYPE = MethodType.methodType(byte[].class, Object.class);
+
+    /**
+     * @return a handle of type (byte[])Object calling the static `parseFrom(byte[])` method of the class
+     */
+    public static MethodHandle parseFrom(final Class<?> clazz) throws NoSuchMethodException, IllegalAccessException {
+        return MethodHandles.publicLookup()
+            .findStatic(clazz, "parseFrom", MethodType.methodType(clazz, byte[].class))
+            .asType(PARSE_FROM_TYPE);
+    }
+
+    /**
+     * @return a handle of type (Object)byte[] calling the `toByteArray()` method of the class
+     */
+    public static MethodHandle toByteArray(final Class<?> clazz) throws NoSuchMethodException, IllegalAccessException {
+        return MethodHandles.publicLookup()
+            .findVirtual(clazz, "toByteArray", MethodType.methodType(byte[].class))
+            .asType(TO_BYTE_ARRAY_TYPE);
+    }
+
+    public static Object invokeParseFrom(final MethodHandle parseFrom, final byte[] bytes) throws Throwable {
+        return (Object) parseFrom.invokeExact(bytes);
+    }
+
+    public static byte[] invokeToByteArray(final MethodHandle toByteArray, final Object obj) throws Throwable {
+        return (byte[]) toByteArray.invokeExact(obj);
+    }
+}
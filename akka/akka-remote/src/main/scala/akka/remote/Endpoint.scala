@@ -779,8 +779,8 @@ private[remote] class EndpointWriter(
           s.recipient,
           serializeMessage(s.message),
           s.senderOption,
-          seqOption = s.seqOpt,
-          ackOption = lastAck)
+          s.seqOpt,
+          lastAck)
 
         val pduSize = pdu.size
         remoteMetrics.logPayloadBytes(s.message, pduSize)
@@ -880,10 +880,10 @@ private[remote] class EndpointWriter(
     Some(newReader)
   }
 
-  private def serializeMessage(msg: Any): SerializedMessage = handle match {
+  private def serializeMessage(msg: Any): MessageSerializer.Serialized = handle match {
     case Some(h) ⇒
       Serialization.currentTransportInformation.withValue(Serialization.Information(h.localAddress, extendedSystem)) {
-        (MessageSerializer.serialize(extendedSystem, msg.asInstanceOf[AnyRef]))
+        (MessageSerializer.serializeForTransport(extendedSystem, msg.asInstanceOf[AnyRef]))
       }
     case None ⇒
       throw new EndpointException("Internal error: No handle was present during serialization of outbound message.")
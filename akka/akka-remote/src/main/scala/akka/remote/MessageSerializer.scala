@@ -4,10 +4,14 @@
 
 package akka.remote
 
+import java.nio.{ BufferOverflowException, ByteBuffer }
+import scala.annotation.tailrec
 import akka.remote.WireFormats._
 import akka.protobuf.ByteString
 import akka.actor.ExtendedActorSystem
+import akka.serialization.ByteBufferSerializer
 import akka.serialization.SerializationExtension
+import akka.serialization.Serializer
 import akka.serialization.SerializerWithStringManifest
 
 /**
@@ -21,10 +25,14 @@ private[akka] object MessageSerializer {
    * Uses Akka Serialization for the specified ActorSystem to transform the given MessageProtocol to a message
    */
   def deserialize(system: ExtendedActorSystem, messageProtocol: SerializedMessage): AnyRef = {
-    SerializationExtension(system).deserialize(
-      messageProtocol.getMessage.toByteArray,
-      messageProtocol.getSerializerId,
-      if (messageProtocol.hasMessageManifest) messageProtocol.getMessageManifest.toStringUtf8 else "").get
+    val s = SerializationExtension(system)
+    val manifest = if (messageProtocol.hasMessageManifest) messageProtocol.getMessageManifest.toStringUtf8 else ""
+    s.serializerByIdentity.get(messageProtocol.getSerializerId) match {
+      case Some(bbs: ByteBufferSerializer) ⇒
+        bbs.fromBinary(messageProtocol.getMessage.asReadOnlyByteBuffer, manifest)
+      case _ ⇒
+        s.deserialize(messageProtocol.getMessage.toByteArray, messageProtocol.getSerializerId, manifest).get
+    }
   }
 
   /**
@@ -36,15 +44,81 @@ private[akka] object MessageSerializer {
     val builder = SerializedMessage.newBuilder
     builder.setMessage(ByteString.copyFrom(serializer.toBinary(message)))
     builder.setSerializerId(serializer.identifier)
-    serializer match {
-      case ser2: SerializerWithStringManifest ⇒
-        val manifest = ser2.manifest(message)
-        if (manifest != "")
-          builder.setMessageManifest(ByteString.copyFromUtf8(manifest))
-      case _ ⇒
-        if (serializer.includeManifest)
-          builder.setMessageManifest(ByteString.copyFromUtf8(message.getClass.getName))
-    }
+    val manifest = manifestFor(serializer, message)
+    if (manifest ne null) builder.setMessageManifest(manifest)
     builder.build
   }
+
+  /**
+   * The fields of a [[akka.remote.WireFormats.SerializedMessage]], before they are encoded.
+   *
+   * `bytes` may be a buffer that is reused by the serializing thread, so the serialized form of the
+   * message is only valid until that thread serializes the next message.
+   */
+  final class Serialized(
+    val serializerId: Int,
+    val manifest:     ByteString,
+    val bytes:        Array[Byte],
+    val length:       Int)
+
+  /**
+   * Like `serialize`, but leaves encoding the serialized form to the caller, which avoids copying it
+   * into an intermediate [[akka.remote.WireFormats.SerializedMessage]].
+   *
+   * A [[akka.serialization.ByteBufferSerializer]] writes into a buffer that is kept per thread, any
+   * other serializer, or a message that is too large for that buffer, uses `toBinary`.
+   */
+  def serializeForTransport(system: ExtendedActorSystem, message: AnyRef): Serialized = {
+    val serializer = SerializationExtension(system).findSerializerFor(message)
+    val manifest = manifestFor(serializer, message)
+    val buf = serializer match {
+      case bbs: ByteBufferSerializer ⇒ serializeToBuffer(bbs, message)
+      case _                         ⇒ null
+    }
+    if (buf ne null) new Serialized(serializer.identifier, manifest, buf.array, buf.position)
+    else {
+      val bytes = serializer.toBinary(message)
+      new Serialized(serializer.identifier, manifest, bytes, bytes.length)
+    }
+  }
+
+  private def manifestFor(serializer: Serializer, message: AnyRef): ByteString = serializer match {
+    case ser2: SerializerWithStringManifest ⇒
+      val manifest = ser2.manifest(message)
+      if (manifest != "") ByteString.copyFromUtf8(manifest) else null
+    case _ ⇒
+      if (serializer.includeManifest) ByteString.copyFromUtf8(message.getClass.getName) else null
+  }
+
+  private final val InitialBufferSize = 4 * 1024
+  // messages that do not fit into a buffer of this size fall back to toBinary instead of growing it further
+  private final val MaxBufferSize = 1024 * 1024
+  // larger buffers are only used for the message that needed them, so that a few large messages
+  // do not leave every remoting thread holding on to a buffer of MaxBufferSize bytes
+  private final val MaxRetainedBufferSize = 64 * 1024
+
+  private val buffers = new ThreadLocal[ByteBuffer] {
+    override def initialValue(): ByteBuffer = ByteBuffer.allocate(InitialBufferSize)
+  }
+
+  /**
+   * Returns the buffer of the current thread holding the serialized message between
+   * its start and position, or null if the message does not fit into MaxBufferSize bytes.
+   */
+  private def serializeToBuffer(serializer: ByteBufferSerializer, message: AnyRef): ByteBuffer = {
+    @tailrec def write(buf: ByteBuffer): ByteBuffer = {
+      buf.clear()
+      val fits =
+        try { serializer.toBinary(message, buf); true }
+        catch { case _: BufferOverflowException ⇒ false }
+      if (fits) buf
+      else if (buf.capacity >= MaxBufferSize) null
+      else {
+        val larger = ByteBuffer.allocate(buf.capacity * 2)
+        if (larger.capacity <= MaxRetainedBufferSize) buffers.set(larger)
+        write(larger)
+      }
+    }
+    write(buffers.get)
+  }
 }
@@ -4,14 +4,17 @@
 
 package akka.remote.serialization
 
-import java.lang.reflect.Method
-import java.util.concurrent.atomic.AtomicReference
+import java.io.NotSerializableException
+import java.lang.invoke.MethodHandle
+import java.nio.{ BufferOverflowException, ByteBuffer }
+import java.util.concurrent.ConcurrentHashMap
 
 import akka.actor.{ ActorRef, ExtendedActorSystem }
+import akka.protobuf.{ CodedOutputStream, MessageLite }
 import akka.remote.WireFormats.ActorRefData
-import akka.serialization.{ Serialization, BaseSerializer }
+import akka.serialization.{ Serialization, BaseSerializer, ByteBufferSerializer }
 
-import scala.annotation.tailrec
+import scala.util.{ Failure, Success }
 
 object ProtobufSerializer {
   private val ARRAY_OF_BYTE_ARRAY = Array[Class[_]](classOf[Array[Byte]])
@@ -35,10 +38,10 @@ object ProtobufSerializer {
 
 /**
  * This Serializer serializes `akka.protobuf.Message` and `com.google.protobuf.Message`
- * It is using reflection to find the `parseFrom` and `toByteArray` methods to avoid
- * dependency to `com.google.protobuf`.
+ * It is using MethodHandles to find the `parseFrom` and `toByteArray` methods to avoid
+ * dependency to `com.google.protobuf`; the handles are bound once per class.
  */
-class ProtobufSerializer(val system: ExtendedActorSystem) extends BaseSerializer {
+class ProtobufSerializer(val system: ExtendedActorSystem) extends BaseSerializer with ByteBufferSerializer {
 
   @deprecated("Use constructor with ExtendedActorSystem", "2.4")
   def this() = this(null)
@@ -51,52 +54,75 @@ class ProtobufSerializer(val system: ExtendedActorSystem) extends BaseSerializer
   @deprecated("Will be removed without replacement", "2.4")
   val ARRAY_OF_BYTE_ARRAY = Array[Class[_]](classOf[Array[Byte]])
 
-  private val parsingMethodBindingRef = new AtomicReference[Map[Class[_], Method]](Map.empty)
-  private val toByteArrayMethodBindingRef = new AtomicReference[Map[Class[_], Method]](Map.empty)
+  private val parsingMethodBindings = new ConcurrentHashMap[Class[_], MethodHandle]
+  private val toByteArrayMethodBindings = new ConcurrentHashMap[Class[_], MethodHandle]
+  private val manifestClasses = new ConcurrentHashMap[String, Class[_]]
 
   override def includeManifest: Boolean = true
 
   override def fromBinary(bytes: Array[Byte], manifest: Option[Class[_]]): AnyRef = {
     manifest match {
       case Some(clazz) ⇒
-        @tailrec
-        def parsingMethod(method: Method = null): Method = {
-          val parsingMethodBinding = parsingMethodBindingRef.get()
-          parsingMethodBinding.get(clazz) match {
-            case Some(cachedParsingMethod) ⇒ cachedParsingMethod
-            case None ⇒
-              val unCachedParsingMethod =
-                if (method eq null) clazz.getDeclaredMethod("parseFrom", ProtobufSerializer.ARRAY_OF_BYTE_ARRAY: _*)
-                else method
-              if (parsingMethodBindingRef.compareAndSet(parsingMethodBinding, parsingMethodBinding.updated(clazz, unCachedParsingMethod)))
-                unCachedParsingMethod
-              else
-                parsingMethod(unCachedParsingMethod)
+        val cachedParsingMethod = parsingMethodBindings.get(clazz)
+        val parsingMethod =
+          if (cachedParsingMethod ne null) cachedParsingMethod
+          else {
+            // racing threads may bind the method more than once, but they all end up using the same handle
+            val unCachedParsingMethod = ProtobufMethodHandles.parseFrom(clazz)
+            val previous = parsingMethodBindings.putIfAbsent(clazz, unCachedParsingMethod)
+            if (previous ne null) previous else unCachedParsingMethod
           }
-        }
-        parsingMethod().invoke(null, bytes)
+        ProtobufMethodHandles.invokeParseFrom(parsingMethod, bytes)
 
       case None ⇒ throw new IllegalArgumentException("Need a protobuf message class to be able to serialize bytes using protobuf")
     }
   }
 
-  override def toBinary(obj: AnyRef): Array[Byte] = {
-    val clazz = obj.getClass
-    @tailrec
-    def toByteArrayMethod(method: Method = null): Method = {
-      val toByteArrayMethodBinding = toByteArrayMethodBindingRef.get()
-      toByteArrayMethodBinding.get(clazz) match {
-        case Some(cachedtoByteArrayMethod) ⇒ cachedtoByteArrayMethod
-        case None ⇒
-          val unCachedtoByteArrayMethod =
-            if (method eq null) clazz.getMethod("toByteArray")
-            else method
-          if (toByteArrayMethodBindingRef.compareAndSet(toByteArrayMethodBinding, toByteArrayMethodBinding.updated(clazz, unCachedtoByteArrayMethod)))
-            unCachedtoByteArrayMethod
-          else
-            toByteArrayMethod(unCachedtoByteArrayMethod)
+  override def toBinary(obj: AnyRef): Array[Byte] = obj match {
+    case message: MessageLite ⇒ message.toByteArray
+    case _ ⇒
+      val clazz = obj.getClass
+      val cachedToByteArrayMethod = toByteArrayMethodBindings.get(clazz)
+      val toByteArrayMethod =
+        if (cachedToByteArrayMethod ne null) cachedToByteArrayMethod
+        else {
+          val unCachedToByteArrayMethod = ProtobufMethodHandles.toByteArray(clazz)
+          val previous = toByteArrayMethodBindings.putIfAbsent(clazz, unCachedToByteArrayMethod)
+          if (previous ne null) previous else unCachedToByteArrayMethod
+        }
+      ProtobufMethodHandles.invokeToByteArray(toByteArrayMethod, obj)
+  }
+
+  override def toBinary(obj: AnyRef, buf: ByteBuffer): Unit = obj match {
+    case message: MessageLite if buf.hasArray ⇒
+      // the size is known up front, so the message is encoded straight into the buffer
+      val size = message.getSerializedSize
+      if (size > buf.remaining) throw new BufferOverflowException
+      val out = CodedOutputStream.newInstance(buf.array, buf.arrayOffset + buf.position, size)
+      message.writeTo(out)
+      out.checkNoSpaceLeft()
+      buf.position(buf.position + size)
+    case _ ⇒
+      buf.put(toBinary(obj))
+  }
+
+  override def fromBinary(buf: ByteBuffer, manifest: String): AnyRef = {
+    val bytes = new Array[Byte](buf.remaining)
+    buf.get(bytes)
+    fromBinary(bytes, Some(manifestClass(manifest)))
+  }
+
+  private def manifestClass(manifest: String): Class[_] = {
+    val cachedClass = manifestClasses.get(manifest)
+    if (cachedClass ne null) cachedClass
+    else {
+      system.dynamicAccess.getClassFor[AnyRef](manifest) match {
+        case Success(clazz) ⇒
+          manifestClasses.putIfAbsent(manifest, clazz)
+          clazz
+        case Failure(_) ⇒
+          throw new NotSerializableException(s"Cannot find manifest class [$manifest] for serializer with id [$identifier].")
       }
     }
-    toByteArrayMethod().invoke(obj).asInstanceOf[Array[Byte]]
   }
 }
@@ -8,8 +8,7 @@ import akka.actor.{ AddressFromURIString, InternalActorRef, Address, ActorRef }
 import akka.remote.WireFormats._
 import akka.remote._
 import akka.util.ByteString
-import akka.protobuf.InvalidProtocolBufferException
-import akka.protobuf.{ ByteString ⇒ PByteString }
+import akka.protobuf.{ CodedOutputStream, InvalidProtocolBufferException, WireFormat }
 
 /**
  * INTERNAL API
@@ -101,6 +100,18 @@ private[remote] trait AkkaPduCodec {
     seqOption:         Option[SeqNo]     = None,
     ackOption:         Option[Ack]       = None): ByteString
 
+  /**
+   * Same as constructMessage, but takes the message in the form returned by
+   * [[akka.remote.MessageSerializer#serializeForTransport]] and encodes it directly into the returned PDU.
+   */
+  def constructMessage(
+    localAddress: Address,
+    recipient:    ActorRef,
+    serialized:   MessageSerializer.Serialized,
+    senderOption: Option[ActorRef],
+    seqOption:    Option[SeqNo],
+    ackOption:    Option[Ack]): ByteString
+
   def constructPureAck(ack: Ack): ByteString
 }
 
@@ -139,11 +150,76 @@ private[remote] object AkkaPduProtobufCodec extends AkkaPduCodec {
     ByteString.ByteString1C(ackAndEnvelopeBuilder.build.toByteArray) //Reuse Byte Array (naughty!)
   }
 
+  override def constructMessage(
+    localAddress: Address,
+    recipient:    ActorRef,
+    serialized:   MessageSerializer.Serialized,
+    senderOption: Option[ActorRef],
+    seqOption:    Option[SeqNo],
+    ackOption:    Option[Ack]): ByteString = {
+    import CodedOutputStream._
+
+    // Computes the sizes up front, so that the whole container can be written into one exactly sized array
+    // without building the intermediate protobuf messages, which would each copy the serialized message again
+    val recipientData = serializeActorRef(recipient.path.address, recipient)
+    val senderData = senderOption match {
+      case Some(ref) ⇒ serializeActorRef(localAddress, ref)
+      case None      ⇒ null
+    }
+    val ackInfo = ackOption match {
+      case Some(ack) ⇒ ackBuilder(ack).build()
+      case None      ⇒ null
+    }
+
+    val messageSize =
+      computeTagSize(SerializedMessage.MESSAGE_FIELD_NUMBER) + computeRawVarint32Size(serialized.length) + serialized.length +
+        computeInt32Size(SerializedMessage.SERIALIZERID_FIELD_NUMBER, serialized.serializerId) +
+        (if (serialized.manifest ne null) computeBytesSize(SerializedMessage.MESSAGEMANIFEST_FIELD_NUMBER, serialized.manifest) else 0)
+    val envelopeSize =
+      computeMessageSize(RemoteEnvelope.RECIPIENT_FIELD_NUMBER, recipientData) +
+        computeTagSize(RemoteEnvelope.MESSAGE_FIELD_NUMBER) + computeRawVarint32Size(messageSize) + messageSize +
+        (if (senderData ne null) computeMessageSize(RemoteEnvelope.SENDER_FIELD_NUMBER, senderData) else 0) +
+        (seqOption match {
+          case Some(seq) ⇒ computeFixed64Size(RemoteEnvelope.SEQ_FIELD_NUMBER, seq.rawValue)
+          case None      ⇒ 0
+        })
+    val containerSize =
+      (if (ackInfo ne null) computeMessageSize(AckAndEnvelopeContainer.ACK_FIELD_NUMBER, ackInfo) else 0) +
+        computeTagSize(AckAndEnvelopeContainer.ENVELOPE_FIELD_NUMBER) + computeRawVarint32Size(envelopeSize) + envelopeSize
+
+    val bytes = new Array[Byte](containerSize)
+    val out = newInstance(bytes)
+    if (ackInfo ne null) out.writeMessage(AckAndEnvelopeContainer.ACK_FIELD_NUMBER, ackInfo)
+    out.writeTag(AckAndEnvelopeContainer.ENVELOPE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+    out.writeRawVarint32(envelopeSize)
+    out.writeMessage(RemoteEnvelope.RECIPIENT_FIELD_NUMBER, recipientData)
+    out.writeTag(RemoteEnvelope.MESSAGE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+    out.writeRawVarint32(messageSize)
+    out.writeTag(SerializedMessage.MESSAGE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+    out.writeRawVarint32(serialized.length)
+    out.writeRawBytes(serialized.bytes, 0, serialized.length)
+    out.writeInt32(SerializedMessage.SERIALIZERID_FIELD_NUMBER, serialized.serializerId)
+    if (serialized.manifest ne null) out.writeBytes(SerializedMessage.MESSAGEMANIFEST_FIELD_NUMBER, serialized.manifest)
+    if (senderData ne null) out.writeMessage(RemoteEnvelope.SENDER_FIELD_NUMBER, senderData)
+    seqOption foreach { seq ⇒ out.writeFixed64(RemoteEnvelope.SEQ_FIELD_NUMBER, seq.rawValue) }
+    out.checkNoSpaceLeft()
+
+    ByteString.ByteString1C(bytes)
+  }
+
   override def constructPureAck(ack: Ack): ByteString =
     ByteString.ByteString1C(AckAndEnvelopeContainer.newBuilder.setAck(ackBuilder(ack)).build().toByteArray) //Reuse Byte Array (naughty!)
 
-  override def constructPayload(payload: ByteString): ByteString =
-    ByteString.ByteString1C(AkkaProtocolMessage.newBuilder().setPayload(PByteString.copyFrom(payload.asByteBuffer)).build.toByteArray) //Reuse Byte Array (naughty!)
+  override def constructPayload(payload: ByteString): ByteString = {
+    // Encodes only the tag and length of the payload field; the payload itself is appended without copying it
+    val header = new Array[Byte](
+      CodedOutputStream.computeTagSize(AkkaProtocolMessage.PAYLOAD_FIELD_NUMBER) + CodedOutputStream.computeRawVarint32Size(payload.size))
+    val out = CodedOutputStream.newInstance(header)
+    out.writeTag(AkkaProtocolMessage.PAYLOAD_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+    out.writeRawVarint32(payload.size)
+    out.checkNoSpaceLeft()
+    ByteString.ByteString1C(header) ++ payload
+  }
 
   override def constructAssociate(info: HandshakeInfo): ByteString = {
     val handshakeInfo = AkkaHandshakeInfo.newBuilder.setOrigin(serializeAddress(info.origin)).setUid(info.uid)
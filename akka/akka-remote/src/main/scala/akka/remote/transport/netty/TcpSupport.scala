@@ -88,7 +88,7 @@ private[remote] class TcpAssociationHandle(
 
   override def write(payload: ByteString): Boolean =
     if (channel.isWritable && channel.isOpen) {
-      channel.write(ChannelBuffers.wrappedBuffer(payload.asByteBuffer))
+      channel.write(ChannelBuffers.wrappedBuffer(payload.asByteBuffers.toSeq: _*))
       true
     } else false
 
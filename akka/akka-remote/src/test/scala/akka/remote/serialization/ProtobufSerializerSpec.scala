@@ -4,6 +4,8 @@
 
 package akka.remote.serialization
 
+import java.nio.{ BufferOverflowException, ByteBuffer }
+
 import akka.serialization.SerializationExtension
 import akka.testkit.AkkaSpec
 import akka.remote.WireFormats.SerializedMessage
@@ -33,6 +35,27 @@ class ProtobufSerializerSpec extends AkkaSpec {
       deserialized.getMessage should ===(protobufMessage.getMessage) // same "hello"
     }
 
+    "work for SerializedMessage serialized into a ByteBuffer" in {
+      val protobufMessage = MessageSerializer.serialize(system.asInstanceOf[ExtendedActorSystem], "hello")
+      val serializer = ser.findSerializerFor(protobufMessage).asInstanceOf[ProtobufSerializer]
+      val buf = ByteBuffer.allocate(1024)
+      buf.put(17: Byte)
+      serializer.toBinary(protobufMessage, buf)
+      buf.position should ===(1 + protobufMessage.getSerializedSize)
+      buf.flip()
+      buf.get() should ===(17: Byte)
+      val deserialized = serializer.fromBinary(buf, classOf[SerializedMessage].getName).asInstanceOf[SerializedMessage]
+      deserialized should ===(protobufMessage)
+    }
+
+    "signal that a message does not fit into the ByteBuffer" in {
+      val protobufMessage = MessageSerializer.serialize(system.asInstanceOf[ExtendedActorSystem], "hello")
+      val serializer = ser.findSerializerFor(protobufMessage).asInstanceOf[ProtobufSerializer]
+      intercept[BufferOverflowException] {
+        serializer.toBinary(protobufMessage, ByteBuffer.allocate(protobufMessage.getSerializedSize - 1))
+      }
+    }
+
   }
 }
 
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2016 Lightbend Inc. <http://www.lightbend.com>
+ */
+package akka.remote.transport
+
+import akka.actor.{ Address, ExtendedActorSystem }
+import akka.remote.transport.AkkaPduCodec.Payload
+import akka.remote.{ Ack, MessageSerializer, RemoteActorRefProvider, SeqNo }
+import akka.testkit.{ AkkaSpec, TestProbe }
+import akka.util.ByteString
+
+class AkkaPduCodecSpec extends AkkaSpec("""akka.actor.provider = "akka.remote.RemoteActorRefProvider" """) {
+
+  val codec = AkkaPduProtobufCodec
+  val localAkkaAddress = Address("akka.test", "testsystem", "testhost", 1234)
+  val extendedSystem = system.asInstanceOf[ExtendedActorSystem]
+  val provider = extendedSystem.provider.asInstanceOf[RemoteActorRefProvider]
+
+  val recipient = TestProbe().ref
+  val sender = TestProbe().ref
+
+  def encodings(message: AnyRef, seqOption: Option[SeqNo], ackOption: Option[Ack]): (ByteString, ByteString) = {
+    val senderOption = Some(sender)
+    val expected = codec.constructMessage(localAkkaAddress, recipient, MessageSerializer.serialize(extendedSystem, message),
+      senderOption, seqOption, ackOption)
+    val actual = codec.constructMessage(localAkkaAddress, recipient, MessageSerializer.serializeForTransport(extendedSystem, message),
+      senderOption, seqOption, ackOption)
+    (expected, actual)
+  }
+
+  "AkkaPduProtobufCodec" must {
+
+    "encode serialized messages the same way as the protobuf builders" in {
+      val messages = List[AnyRef](Array[Byte](1, 2, 3), Array.emptyByteArray, "hello", Some(17))
+      for {
+        message ← messages
+        seqOption ← List(None, Some(SeqNo(42)))
+        ackOption ← List(None, Some(Ack(SeqNo(7), Set(SeqNo(3), SeqNo(5)))))
+      } {
+        val (expected, actual) = encodings(message, seqOption, ackOption)
+        actual should ===(expected)
+      }
+    }
+
+    "encode messages larger than the serialization buffer" in {
+      val message = Array.tabulate[Byte](3 * 1024 * 1024)(_.toByte)
+      val (expected, actual) = encodings(message, Some(SeqNo(1)), None)
+      actual should ===(expected)
+    }
+
+    "decode the messages it encodes" in {
+      val pdu = codec.constructMessage(localAkkaAddress, recipient, MessageSerializer.serializeForTransport(extendedSystem, "hello"),
+        None, Some(SeqNo(42)), Some(Ack(SeqNo(7))))
+      val (ackOption, messageOption) = codec.decodeMessage(pdu, provider, localAkkaAddress)
+      ackOption should ===(Some(Ack(SeqNo(7))))
+      val message = messageOption.get
+      message.senderOption should ===(None)
+      message.seqOption should ===(Some(SeqNo(42)))
+      MessageSerializer.deserialize(extendedSystem, message.serializedMessage) should ===("hello")
+    }
+
+    "deserialize byte arrays from the serialized message" in {
+      val bytes = Array[Byte](1, 2, 3)
+      val serialized = MessageSerializer.serialize(extendedSystem, bytes)
+      MessageSerializer.deserialize(extendedSystem, serialized).asInstanceOf[Array[Byte]].toSeq should ===(bytes.toSeq)
+    }
+
+    "wrap payloads without copying them" in {
+      val payload = ByteString("payload")
+      val pdu = codec.constructPayload(payload)
+      pdu.asByteBuffers.size should ===(2)
+      codec.decodePdu(pdu) should ===(Payload(payload))
+    }
+  }
+
+}
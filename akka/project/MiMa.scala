@@ -900,7 +900,10 @@ object MiMa extends AutoPlugin {
         
         // #20846 change of internal Status message
         ProblemFilters.exclude[ReversedMissingMethodProblem]("akka.cluster.pubsub.protobuf.msg.DistributedPubSubMessages#StatusOrBuilder.getReplyToStatus"),
-        ProblemFilters.exclude[ReversedMissingMethodProblem]("akka.cluster.pubsub.protobuf.msg.DistributedPubSubMessages#StatusOrBuilder.hasReplyToStatus")
+        ProblemFilters.exclude[ReversedMissingMethodProblem]("akka.cluster.pubsub.protobuf.msg.DistributedPubSubMessages#StatusOrBuilder.hasReplyToStatus"),
+
+        // encoding of serialized remote messages without intermediate protobuf messages
+        ProblemFilters.exclude[ReversedMissingMethodProblem]("akka.remote.transport.AkkaPduCodec.constructMessage")
       )
     )
   }
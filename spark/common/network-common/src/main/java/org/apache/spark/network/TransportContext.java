@@ -37,6 +37,8 @@ import org.apache.spark.network.server.TransportChannelHandler;
 import org.apache.spark.network.server.TransportRequestHandler;
 import org.apache.spark.network.server.TransportServer;
 import org.apache.spark.network.server.TransportServerBootstrap;
+import org.apache.spark.network.util.FlushConsolidationHandler;
+import org.apache.spark.network.util.FlushMetrics;
 import org.apache.spark.network.util.NettyUtils;
 import org.apache.spark.network.util.TransportConf;
 import org.apache.spark.network.util.TransportFrameDecoder;
@@ -64,6 +66,7 @@ public class TransportContext {
 
   private final MessageEncoder encoder;
   private final MessageDecoder decoder;
+  private final FlushMetrics flushMetrics;
 
   public TransportContext(TransportConf conf, RpcHandler rpcHandler) {
     this(conf, rpcHandler, false);
@@ -77,6 +80,7 @@ public class TransportContext {
     this.rpcHandler = rpcHandler;
     this.encoder = new MessageEncoder();
     this.decoder = new MessageDecoder();
+    this.flushMetrics = new FlushMetrics();
     this.closeIdleConnections = closeIdleConnections;
   }
 
@@ -134,6 +138,11 @@ public class TransportContext {
       RpcHandler channelRpcHandler) {
     try {
       TransportChannelHandler channelHandler = createChannelHandler(channel, channelRpcHandler);
+      if (conf.consolidateFlushes()) {
+        channel.pipeline().addLast(FlushConsolidationHandler.HANDLER_NAME,
+          new FlushConsolidationHandler(conf.maxMessagesPerFlush(), conf.maxFlushDelayMicros(),
+            flushMetrics));
+      }
       channel.pipeline()
         .addLast("encoder", encoder)
         .addLast(TransportFrameDecoder.HANDLER_NAME, NettyUtils.createFrameDecoder())
@@ -164,4 +173,10 @@ public class TransportContext {
   }
 
   public TransportConf getConf() { return conf; }
+
+  /**
+   * Flush statistics of the channels initialized by this context. Only updated when flushes are
+   * consolidated (see {@link TransportConf#consolidateFlushes()}).
+   */
+  public FlushMetrics getFlushMetrics() { return flushMetrics; }
 }
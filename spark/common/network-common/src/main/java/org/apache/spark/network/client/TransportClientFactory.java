@@ -21,14 +21,23 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
@@ -80,7 +89,7 @@ public class TransportClientFactory implements Closeable {
   private final List<TransportClientBootstrap> clientBootstraps;
   private final ConcurrentHashMap<SocketAddress, ClientPool> connectionPool;
 
-  /** Random number generator for picking connections between peers. */
+  /** Random number generator for breaking ties between connections to a peer. */
   private final Random rand;
   private final int numConnectionsPerPeer;
 
@@ -88,6 +97,9 @@ public class TransportClientFactory implements Closeable {
   private EventLoopGroup workerGroup;
   private PooledByteBufAllocator pooledAllocator;
 
+  /** Runs the asynchronous creation of clients, see {@link #createClientAsync(String, int)}. */
+  private final ListeningExecutorService connectionExecutor;
+
   public TransportClientFactory(
       TransportContext context,
       List<TransportClientBootstrap> clientBootstraps) {
@@ -104,14 +116,22 @@ public class TransportClientFactory implements Closeable {
     this.workerGroup = NettyUtils.createEventLoop(ioMode, conf.clientThreads(), "shuffle-client");
     this.pooledAllocator = NettyUtils.createPooledByteBufAllocator(
       conf.preferDirectBufs(), false /* allowCache */, conf.clientThreads());
+
+    int numConnectionThreads = conf.clientThreads() > 0
+      ? conf.clientThreads() : Runtime.getRuntime().availableProcessors();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(numConnectionThreads,
+      numConnectionThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+      NettyUtils.createThreadFactory("shuffle-client-connect"));
+    executor.allowCoreThreadTimeOut(true);
+    this.connectionExecutor = MoreExecutors.listeningDecorator(executor);
   }
 
   /**
    * Create a {@link TransportClient} connecting to the given remote host / port.
    *
    * We maintains an array of clients (size determined by spark.shuffle.io.numConnectionsPerPeer)
-   * and randomly picks one to use. If no client was previously created in the randomly selected
-   * spot, this function creates a new client and places it there.
+   * and picks the one with the fewest outstanding requests. If a spot has no active client, a new
+   * client is created and placed there before queueing requests behind busy connections.
    *
    * Prior to the creation of a new TransportClient, we will execute all
    * {@link TransportClientBootstrap}s that are registered with this factory.
@@ -121,8 +141,71 @@ public class TransportClientFactory implements Closeable {
    * Concurrency: This method is safe to call from multiple threads.
    */
   public TransportClient createClient(String remoteHost, int remotePort) throws IOException {
-    // Get connection from the connection pool first.
-    // If it is not found or not active, create a new one.
+    ClientPool clientPool = getClientPool(remoteHost, remotePort);
+    int clientIndex = selectClientIndex(clientPool);
+    TransportClient cachedClient = getCachedClient(clientPool, clientIndex);
+    if (cachedClient != null) {
+      return cachedClient;
+    }
+    return createPooledClient(clientPool, clientIndex, remoteHost, remotePort);
+  }
+
+  /**
+   * Asynchronous version of {@link #createClient(String, int)}. If a new connection needs to be
+   * opened, it is established and bootstrapped on a separate thread pool, so that the caller
+   * does not block on DNS resolution, connection or bootstrap.
+   */
+  public ListenableFuture<TransportClient> createClientAsync(
+      final String remoteHost,
+      final int remotePort) {
+    final ClientPool clientPool = getClientPool(remoteHost, remotePort);
+    final int clientIndex = selectClientIndex(clientPool);
+    TransportClient cachedClient = getCachedClient(clientPool, clientIndex);
+    if (cachedClient != null) {
+      return Futures.immediateFuture(cachedClient);
+    }
+    return connectionExecutor.submit(new Callable<TransportClient>() {
+      @Override
+      public TransportClient call() throws IOException {
+        return createPooledClient(clientPool, clientIndex, remoteHost, remotePort);
+      }
+    });
+  }
+
+  /**
+   * Opens all the pooled connections (spark.shuffle.io.numConnectionsPerPeer per peer) to the
+   * given peers in the background, so that later calls to {@link #createClient(String, int)}
+   * find them ready instead of all establishing them at the same time.
+   *
+   * This is a best-effort operation: the returned future completes once all the connections were
+   * attempted, and contains null for the connections that could not be established.
+   */
+  public ListenableFuture<List<TransportClient>> warmUpConnections(
+      Collection<InetSocketAddress> peers) {
+    List<ListenableFuture<TransportClient>> futures = Lists.newArrayList();
+    for (InetSocketAddress peer : peers) {
+      final String remoteHost = peer.getHostString();
+      final int remotePort = peer.getPort();
+      final ClientPool clientPool = getClientPool(remoteHost, remotePort);
+      for (int i = 0; i < clientPool.clients.length; i++) {
+        final int clientIndex = i;
+        futures.add(connectionExecutor.submit(new Callable<TransportClient>() {
+          @Override
+          public TransportClient call() throws IOException {
+            try {
+              return createPooledClient(clientPool, clientIndex, remoteHost, remotePort);
+            } catch (IOException | RuntimeException e) {
+              logger.warn("Failed to warm up connection to " + remoteHost + ":" + remotePort, e);
+              throw e;
+            }
+          }
+        }));
+      }
+    }
+    return Futures.successfulAsList(futures);
+  }
+
+  private ClientPool getClientPool(String remoteHost, int remotePort) {
     // Use unresolved address here to avoid DNS resolution each time we creates a client.
     final InetSocketAddress unresolvedAddress =
       InetSocketAddress.createUnresolved(remoteHost, remotePort);
@@ -133,8 +216,40 @@ public class TransportClientFactory implements Closeable {
       connectionPool.putIfAbsent(unresolvedAddress, new ClientPool(numConnectionsPerPeer));
       clientPool = connectionPool.get(unresolvedAddress);
     }
+    return clientPool;
+  }
+
+  /**
+   * Picks the spot of the pool to use for a request: the first spot without an active client,
+   * or else the client with the fewest outstanding requests. The search starts at a random spot
+   * so that ties are spread over the connections.
+   */
+  private int selectClientIndex(ClientPool clientPool) {
+    int numClients = clientPool.clients.length;
+    if (numClients == 1) {
+      return 0;
+    }
 
-    int clientIndex = rand.nextInt(numConnectionsPerPeer);
+    int offset = rand.nextInt(numClients);
+    int selectedIndex = offset;
+    int minOutstandingRequests = Integer.MAX_VALUE;
+    for (int i = 0; i < numClients; i++) {
+      int index = (offset + i) % numClients;
+      TransportClient client = clientPool.clients[index];
+      if (client == null || !client.isActive()) {
+        return index;
+      }
+      int outstandingRequests = client.getHandler().numOutstandingRequests();
+      if (outstandingRequests < minOutstandingRequests) {
+        selectedIndex = index;
+        minOutstandingRequests = outstandingRequests;
+      }
+    }
+    return selectedIndex;
+  }
+
+  /** Returns the active client in the given spot of the pool, or null if there is none. */
+  private TransportClient getCachedClient(ClientPool clientPool, int clientIndex) {
     TransportClient cachedClient = clientPool.clients[clientIndex];
 
     if (cachedClient != null && cachedClient.isActive()) {
@@ -153,29 +268,43 @@ public class TransportClientFactory implements Closeable {
         return cachedClient;
       }
     }
+    return null;
+  }
 
-    // If we reach here, we don't have an existing connection open. Let's create a new one.
-    // Multiple threads might race here to create new connections. Keep only one of them active.
-    final long preResolveHost = System.nanoTime();
-    final InetSocketAddress resolvedAddress = new InetSocketAddress(remoteHost, remotePort);
-    final long hostResolveTimeMs = (System.nanoTime() - preResolveHost) / 1000000;
-    if (hostResolveTimeMs > 2000) {
-      logger.warn("DNS resolution for {} took {} ms", resolvedAddress, hostResolveTimeMs);
-    } else {
-      logger.trace("DNS resolution for {} took {} ms", resolvedAddress, hostResolveTimeMs);
-    }
-
+  /**
+   * Returns the client in the given spot of the pool, creating it if there is no active one.
+   * Multiple threads might race here to create new connections. Keep only one of them active.
+   */
+  private TransportClient createPooledClient(
+      ClientPool clientPool,
+      int clientIndex,
+      String remoteHost,
+      int remotePort) throws IOException {
     synchronized (clientPool.locks[clientIndex]) {
-      cachedClient = clientPool.clients[clientIndex];
+      TransportClient cachedClient = clientPool.clients[clientIndex];
 
       if (cachedClient != null) {
         if (cachedClient.isActive()) {
-          logger.trace("Returning cached connection to {}: {}", resolvedAddress, cachedClient);
+          logger.trace("Returning cached connection to {}: {}", cachedClient.getSocketAddress(),
+            cachedClient);
           return cachedClient;
         } else {
-          logger.info("Found inactive connection to {}, creating a new one.", resolvedAddress);
+          logger.info("Found inactive connection to {}:{}, creating a new one.", remoteHost,
+            remotePort);
         }
       }
+
+      // Only resolve the host once we know that a new connection is needed, so that the threads
+      // which lost the race above do not wait for DNS.
+      final long preResolveHost = System.nanoTime();
+      final InetSocketAddress resolvedAddress = new InetSocketAddress(remoteHost, remotePort);
+      final long hostResolveTimeMs = (System.nanoTime() - preResolveHost) / 1000000;
+      if (hostResolveTimeMs > 2000) {
+        logger.warn("DNS resolution for {} took {} ms", resolvedAddress, hostResolveTimeMs);
+      } else {
+        logger.trace("DNS resolution for {} took {} ms", resolvedAddress, hostResolveTimeMs);
+      }
+
       clientPool.clients[clientIndex] = createClient(resolvedAddress);
       return clientPool.clients[clientIndex];
     }
@@ -267,6 +396,7 @@ public class TransportClientFactory implements Closeable {
       }
     }
     connectionPool.clear();
+    connectionExecutor.shutdownNow();
 
     if (workerGroup != null) {
       workerGroup.shutdownGracefully();
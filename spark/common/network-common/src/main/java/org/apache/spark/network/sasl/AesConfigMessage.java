@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.sasl;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.apache.spark.network.protocol.Encodable;
+import org.apache.spark.network.protocol.Encoders;
+
+/**
+ * The keys and initialization vectors of an AES encrypted connection. The client generates them
+ * once SASL authentication has negotiated encryption, and sends them to the server wrapped by the
+ * SASL backend, so that they are only readable by the authenticated peer.
+ */
+class AesConfigMessage implements Encodable {
+
+  /** Serialization tag used to catch incorrect payloads. */
+  private static final byte TAG_BYTE = (byte) 0xEB;
+
+  /** Size of the initialization vectors, which is the AES block size. */
+  static final int IV_SIZE = 16;
+
+  /** Key and IV of the data sent by the client. */
+  final byte[] clientKey;
+  final byte[] clientIv;
+
+  /** Key and IV of the data sent by the server. */
+  final byte[] serverKey;
+  final byte[] serverIv;
+
+  AesConfigMessage(byte[] clientKey, byte[] clientIv, byte[] serverKey, byte[] serverIv) {
+    this.clientKey = clientKey;
+    this.clientIv = clientIv;
+    this.serverKey = serverKey;
+    this.serverIv = serverIv;
+  }
+
+  /**
+   * Generates random keys of the given size (in bits) and random IVs.
+   */
+  static AesConfigMessage generate(int keySizeBits) {
+    if (keySizeBits != 128 && keySizeBits != 192 && keySizeBits != 256) {
+      throw new IllegalArgumentException("Invalid AES key size: " + keySizeBits);
+    }
+    SecureRandom random = new SecureRandom();
+    byte[][] values = new byte[][] {
+      new byte[keySizeBits / 8], new byte[IV_SIZE], new byte[keySizeBits / 8], new byte[IV_SIZE]
+    };
+    for (byte[] value : values) {
+      random.nextBytes(value);
+    }
+    return new AesConfigMessage(values[0], values[1], values[2], values[3]);
+  }
+
+  @Override
+  public int encodedLength() {
+    return 1 + Encoders.ByteArrays.encodedLength(clientKey)
+      + Encoders.ByteArrays.encodedLength(clientIv)
+      + Encoders.ByteArrays.encodedLength(serverKey)
+      + Encoders.ByteArrays.encodedLength(serverIv);
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    buf.writeByte(TAG_BYTE);
+    Encoders.ByteArrays.encode(buf, clientKey);
+    Encoders.ByteArrays.encode(buf, clientIv);
+    Encoders.ByteArrays.encode(buf, serverKey);
+    Encoders.ByteArrays.encode(buf, serverIv);
+  }
+
+  byte[] toByteArray() {
+    ByteBuf buf = Unpooled.buffer(encodedLength());
+    encode(buf);
+    return buf.array();
+  }
+
+  static AesConfigMessage decode(ByteBuffer message) {
+    ByteBuf buf = Unpooled.wrappedBuffer(message);
+    if (buf.readByte() != TAG_BYTE) {
+      throw new IllegalStateException("Expected AesConfigMessage, received something else"
+        + " (maybe your client does not have AES encryption enabled?)");
+    }
+    return new AesConfigMessage(
+      Encoders.ByteArrays.decode(buf),
+      Encoders.ByteArrays.decode(buf),
+      Encoders.ByteArrays.decode(buf),
+      Encoders.ByteArrays.decode(buf));
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.sasl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+
+/**
+ * Provides AES stream encryption for transport channels, as an alternative to SASL encryption
+ * for connections that negotiated encryption during SASL authentication (see
+ * {@link AesConfigMessage}).
+ *
+ * AES is used in CTR mode, so the encrypted stream has the same length as the original one and
+ * needs no framing of its own: data is encrypted and decrypted in place in the byte stream, using
+ * NIO buffers obtained from Netty's buffers without copying them into byte arrays. Outgoing file
+ * regions are read and encrypted in chunks of bounded size. Note that CTR mode provides
+ * confidentiality only; the integrity of the data is not verified.
+ */
+class AesEncryption {
+
+  @VisibleForTesting
+  static final String ENCRYPTION_HANDLER_NAME = "aesEncryption";
+
+  private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+
+  /**
+   * Adds channel handlers that perform encryption / decryption of data using AES.
+   *
+   * @param channel The channel.
+   * @param config The keys and IVs negotiated for the connection.
+   * @param isClient Whether this is the client side of the connection.
+   * @param maxOutboundChunkSize Max size in bytes of outgoing data encrypted at a time, to control
+   *                             memory usage.
+   */
+  static void addToChannel(
+      Channel channel,
+      AesConfigMessage config,
+      boolean isClient,
+      int maxOutboundChunkSize) throws GeneralSecurityException {
+    Cipher encryptor = isClient
+      ? createCipher(Cipher.ENCRYPT_MODE, config.clientKey, config.clientIv)
+      : createCipher(Cipher.ENCRYPT_MODE, config.serverKey, config.serverIv);
+    Cipher decryptor = isClient
+      ? createCipher(Cipher.DECRYPT_MODE, config.serverKey, config.serverIv)
+      : createCipher(Cipher.DECRYPT_MODE, config.clientKey, config.clientIv);
+    channel.pipeline()
+      .addFirst(ENCRYPTION_HANDLER_NAME, new EncryptionHandler(encryptor, maxOutboundChunkSize))
+      .addFirst("aesDecryption", new DecryptionHandler(decryptor));
+  }
+
+  @VisibleForTesting
+  static Cipher createCipher(int mode, byte[] key, byte[] iv) throws GeneralSecurityException {
+    Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+    cipher.init(mode, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+    return cipher;
+  }
+
+  /**
+   * Runs the cipher over all the remaining bytes of `input`, writing the result to `output`. As
+   * the cipher is a stream cipher, this consumes exactly as many bytes as it produces.
+   */
+  private static void update(Cipher cipher, ByteBuffer input, ByteBuffer output)
+      throws IOException {
+    try {
+      cipher.update(input, output);
+    } catch (ShortBufferException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static class EncryptionHandler extends ChannelOutboundHandlerAdapter {
+
+    private final Cipher cipher;
+    // Buffers shared by the messages of the channel, which are transferred one after another.
+    private final ByteBuffer plainChunk;
+    private final ByteBuffer encryptedChunk;
+
+    EncryptionHandler(Cipher cipher, int maxOutboundChunkSize) {
+      this.cipher = cipher;
+      this.plainChunk = ByteBuffer.allocateDirect(maxOutboundChunkSize);
+      this.encryptedChunk = ByteBuffer.allocateDirect(maxOutboundChunkSize);
+      // A message is only done once all of its encrypted data was written, so the next one always
+      // starts with an empty chunk.
+      this.encryptedChunk.flip();
+    }
+
+    /**
+     * Wrap the outgoing message in an implementation that will perform encryption lazily, when it
+     * is transferred. The cipher is a stream over the whole connection, so messages have to be
+     * encrypted in the order in which they are written to the socket, which netty does not
+     * guarantee for ChannelHandlerContext.write() calls.
+     */
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+
+      ctx.write(new EncryptedMessage(cipher, msg, plainChunk, encryptedChunk), promise);
+    }
+
+  }
+
+  private static class DecryptionHandler extends ChannelInboundHandlerAdapter {
+
+    private final Cipher cipher;
+
+    DecryptionHandler(Cipher cipher) {
+      this.cipher = cipher;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+      ByteBuf in = (ByteBuf) msg;
+      ByteBuf out;
+      try {
+        int length = in.readableBytes();
+        out = ctx.alloc().buffer(length);
+        try {
+          update(cipher, in.nioBuffer(), out.nioBuffer(out.writerIndex(), length));
+          out.writerIndex(out.writerIndex() + length);
+        } catch (IOException e) {
+          out.release();
+          throw e;
+        }
+      } finally {
+        in.release();
+      }
+      ctx.fireChannelRead(out);
+    }
+
+  }
+
+  @VisibleForTesting
+  static class EncryptedMessage extends AbstractReferenceCounted implements FileRegion {
+
+    private final Cipher cipher;
+    private final boolean isByteBuf;
+    private final ByteBuf buf;
+    private final FileRegion region;
+    private final long count;
+
+    private final ByteBuffer plainChunk;
+    private final ByteBuffer encryptedChunk;
+    private final WritableByteChannel plainChannel;
+    private long transferred;
+
+    EncryptedMessage(
+        Cipher cipher,
+        Object msg,
+        ByteBuffer plainChunk,
+        ByteBuffer encryptedChunk) {
+      Preconditions.checkArgument(msg instanceof ByteBuf || msg instanceof FileRegion,
+        "Unrecognized message type: %s", msg.getClass().getName());
+      this.cipher = cipher;
+      this.isByteBuf = msg instanceof ByteBuf;
+      this.buf = isByteBuf ? (ByteBuf) msg : null;
+      this.region = isByteBuf ? null : (FileRegion) msg;
+      this.count = isByteBuf ? buf.readableBytes() : region.count();
+      this.plainChunk = plainChunk;
+      this.encryptedChunk = encryptedChunk;
+      this.plainChannel = new ChunkChannel(plainChunk);
+    }
+
+    /**
+     * Returns the size of the message, which is the same encrypted or not.
+     */
+    @Override
+    public long count() {
+      return count;
+    }
+
+    @Override
+    public long position() {
+      return 0;
+    }
+
+    @Override
+    public long transfered() {
+      return transferred;
+    }
+
+    /**
+     * Transfers data from the original message to the channel, encrypting it one chunk at a time
+     * on the way.
+     */
+    @Override
+    public long transferTo(final WritableByteChannel target, final long position)
+      throws IOException {
+
+      Preconditions.checkArgument(position == transfered(), "Invalid position.");
+
+      long written = 0L;
+      while (transferred < count) {
+        if (!encryptedChunk.hasRemaining() && !nextChunk()) {
+          break;
+        }
+        int bytesWritten = target.write(encryptedChunk);
+        written += bytesWritten;
+        transferred += bytesWritten;
+        if (encryptedChunk.hasRemaining()) {
+          // The target can't take more data for now.
+          break;
+        }
+      }
+      return written;
+    }
+
+    /**
+     * Encrypts the next chunk of the message into `encryptedChunk`. Returns false if no data could
+     * be read from the message.
+     */
+    private boolean nextChunk() throws IOException {
+      encryptedChunk.clear();
+      if (isByteBuf) {
+        int length = Math.min(buf.readableBytes(), encryptedChunk.capacity());
+        update(cipher, buf.nioBuffer(buf.readerIndex(), length), encryptedChunk);
+        buf.skipBytes(length);
+      } else {
+        plainChunk.clear();
+        while (plainChunk.hasRemaining() && region.transfered() < region.count()) {
+          if (region.transferTo(plainChannel, region.transfered()) <= 0) {
+            break;
+          }
+        }
+        plainChunk.flip();
+        update(cipher, plainChunk, encryptedChunk);
+      }
+      encryptedChunk.flip();
+      return encryptedChunk.hasRemaining();
+    }
+
+    @Override
+    protected void deallocate() {
+      if (buf != null) {
+        buf.release();
+      }
+      if (region != null) {
+        region.release();
+      }
+    }
+
+  }
+
+  /** A channel that copies the data written to it into a buffer, until the buffer is full. */
+  private static class ChunkChannel implements WritableByteChannel {
+
+    private final ByteBuffer chunk;
+
+    ChunkChannel(ByteBuffer chunk) {
+      this.chunk = chunk;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      int length = Math.min(src.remaining(), chunk.remaining());
+      ByteBuffer slice = src.duplicate();
+      slice.limit(slice.position() + length);
+      chunk.put(slice);
+      src.position(src.position() + length);
+      return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+  }
+
+}
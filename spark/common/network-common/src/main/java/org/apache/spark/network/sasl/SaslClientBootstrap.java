@@ -19,6 +19,7 @@ package org.apache.spark.network.sasl;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import javax.security.sasl.Sasl;
 import javax.security.sasl.SaslException;
 
@@ -88,12 +89,23 @@ public class SaslClientBootstrap implements TransportClientBootstrap {
           throw new RuntimeException(
             new SaslException("Encryption requests by negotiated non-encrypted connection."));
         }
-        SaslEncryption.addToChannel(channel, saslClient, conf.maxSaslEncryptedBlockSize());
-        saslClient = null;
-        logger.debug("Channel {} configured for SASL encryption.", client);
+        if (conf.aesEncryptionEnabled()) {
+          // Send the AES keys to the server through the SASL-encrypted channel; once the server
+          // acknowledges them, both sides switch to AES and the SASL client is no longer needed.
+          AesConfigMessage aesConfig = AesConfigMessage.generate(conf.aesCipherKeySize());
+          byte[] config = aesConfig.toByteArray();
+          byte[] wrapped = saslClient.wrap(config, 0, config.length);
+          client.sendRpcSync(ByteBuffer.wrap(wrapped), conf.saslRTTimeoutMs());
+          AesEncryption.addToChannel(channel, aesConfig, true, conf.maxSaslEncryptedBlockSize());
+          logger.debug("Channel {} configured for AES encryption.", client);
+        } else {
+          SaslEncryption.addToChannel(channel, saslClient, conf.maxSaslEncryptedBlockSize());
+          saslClient = null;
+          logger.debug("Channel {} configured for SASL encryption.", client);
+        }
       }
-    } catch (IOException ioe) {
-      throw new RuntimeException(ioe);
+    } catch (IOException | GeneralSecurityException e) {
+      throw new RuntimeException(e);
     } finally {
       if (saslClient != null) {
         try {
@@ -19,6 +19,7 @@ package org.apache.spark.network.sasl;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import javax.security.sasl.Sasl;
 
 import io.netty.buffer.ByteBuf;
@@ -60,6 +61,9 @@ class SaslRpcHandler extends RpcHandler {
   private SparkSaslServer saslServer;
   private boolean isComplete;
 
+  /** Whether authentication is done, and the client is expected to send its AES keys next. */
+  private boolean awaitingAesConfig;
+
   SaslRpcHandler(
       TransportConf conf,
       Channel channel,
@@ -71,6 +75,7 @@ class SaslRpcHandler extends RpcHandler {
     this.secretKeyHolder = secretKeyHolder;
     this.saslServer = null;
     this.isComplete = false;
+    this.awaitingAesConfig = false;
   }
 
   @Override
@@ -81,6 +86,11 @@ class SaslRpcHandler extends RpcHandler {
       return;
     }
 
+    if (awaitingAesConfig) {
+      setupAesEncryption(client, message, callback);
+      return;
+    }
+
     ByteBuf nettyBuf = Unpooled.wrappedBuffer(message);
     SaslMessage saslMessage;
     try {
@@ -112,18 +122,55 @@ class SaslRpcHandler extends RpcHandler {
     // messages are being written to the channel while negotiation is still going on.
     if (saslServer.isComplete()) {
       logger.debug("SASL authentication successful for channel {}", client);
-      isComplete = true;
-      if (SparkSaslServer.QOP_AUTH_CONF.equals(saslServer.getNegotiatedProperty(Sasl.QOP))) {
+      boolean encrypt =
+        SparkSaslServer.QOP_AUTH_CONF.equals(saslServer.getNegotiatedProperty(Sasl.QOP));
+      if (encrypt && conf.aesEncryptionEnabled()) {
+        // Keep the SASL server around to unwrap the AES keys the client sends next.
+        awaitingAesConfig = true;
+      } else if (encrypt) {
+        isComplete = true;
         logger.debug("Enabling encryption for channel {}", client);
         SaslEncryption.addToChannel(channel, saslServer, conf.maxSaslEncryptedBlockSize());
         saslServer = null;
       } else {
+        isComplete = true;
         saslServer.dispose();
         saslServer = null;
       }
     }
   }
 
+  /**
+   * Reads the AES keys sent by the client, wrapped by the SASL backend, and switches the channel
+   * to AES encryption once the response is sent, for the same reasons as SASL encryption above.
+   */
+  private void setupAesEncryption(
+      TransportClient client,
+      ByteBuffer message,
+      RpcResponseCallback callback) {
+    AesConfigMessage aesConfig;
+    try {
+      byte[] wrapped = JavaUtils.bufferToArray(message);
+      aesConfig = AesConfigMessage.decode(
+        ByteBuffer.wrap(saslServer.unwrap(wrapped, 0, wrapped.length)));
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    } finally {
+      saslServer.dispose();
+      saslServer = null;
+      awaitingAesConfig = false;
+    }
+    callback.onSuccess(ByteBuffer.allocate(0));
+
+    try {
+      AesEncryption.addToChannel(channel, aesConfig, false, conf.maxSaslEncryptedBlockSize());
+    } catch (GeneralSecurityException e) {
+      throw new RuntimeException(e);
+    }
+    isComplete = true;
+    logger.debug("Enabling AES encryption for channel {}", client);
+  }
+
   @Override
   public void receive(TransportClient client, ByteBuffer message) {
     delegate.receive(client, message);
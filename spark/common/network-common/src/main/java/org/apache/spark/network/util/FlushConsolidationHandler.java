@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.util;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * A channel handler that consolidates the flushes of outgoing messages, so that many small
+ * messages (e.g. RPC responses) are written to the socket with a single system call.
+ * <p>
+ * Flushes requested while the channel is reading are delayed until the read completes, since
+ * handling the read data usually produces more messages. Other flushes are delayed until the
+ * event loop runs the tasks submitted after them (or for at most `maxDelayMicros` if positive),
+ * so that messages written from several threads in the meantime share the flush. In both cases,
+ * messages are flushed as soon as `maxPendingMessages` of them are waiting, and when the channel
+ * becomes unwritable or is closed.
+ * <p>
+ * This handler must be added at the head of the pipeline, so that it sees all the flushes and
+ * reads of the channel.
+ */
+public class FlushConsolidationHandler extends ChannelDuplexHandler {
+
+  public static final String HANDLER_NAME = "flushConsolidation";
+
+  private final int maxPendingMessages;
+  private final long maxDelayMicros;
+  private final FlushMetrics metrics;
+  private final Runnable flushTask;
+
+  private ChannelHandlerContext ctx;
+  private boolean readInProgress;
+  private boolean flushPending;
+  private boolean flushScheduled;
+  /** Number of messages written since the last flush. */
+  private int pendingMessages;
+
+  public FlushConsolidationHandler(
+      int maxPendingMessages,
+      long maxDelayMicros,
+      FlushMetrics metrics) {
+    Preconditions.checkArgument(maxPendingMessages > 0, "maxPendingMessages must be positive.");
+    this.maxPendingMessages = maxPendingMessages;
+    this.maxDelayMicros = maxDelayMicros;
+    this.metrics = metrics;
+    this.flushTask = new Runnable() {
+      @Override
+      public void run() {
+        flushScheduled = false;
+        if (flushPending && !readInProgress) {
+          flushNow();
+        }
+      }
+    };
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+    this.ctx = ctx;
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    flushIfPending();
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+    throws Exception {
+    pendingMessages++;
+    ctx.write(msg, promise);
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) throws Exception {
+    flushPending = true;
+    if (pendingMessages >= maxPendingMessages) {
+      flushNow();
+    } else if (!readInProgress && !flushScheduled) {
+      flushScheduled = true;
+      if (maxDelayMicros > 0) {
+        ctx.executor().schedule(flushTask, maxDelayMicros, TimeUnit.MICROSECONDS);
+      } else {
+        ctx.executor().execute(flushTask);
+      }
+    }
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    readInProgress = true;
+    ctx.fireChannelRead(msg);
+  }
+
+  @Override
+  public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+    readInProgress = false;
+    flushIfPending();
+    ctx.fireChannelReadComplete();
+  }
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    if (!ctx.channel().isWritable()) {
+      // Let the pending data go out so that the channel can become writable again.
+      flushIfPending();
+    }
+    ctx.fireChannelWritabilityChanged();
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    flushIfPending();
+    ctx.fireExceptionCaught(cause);
+  }
+
+  @Override
+  public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    flushIfPending();
+    ctx.disconnect(promise);
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    flushIfPending();
+    ctx.close(promise);
+  }
+
+  private void flushIfPending() {
+    if (flushPending) {
+      flushNow();
+    }
+  }
+
+  private void flushNow() {
+    flushPending = false;
+    if (metrics != null) {
+      metrics.recordFlush(pendingMessages);
+    }
+    pendingMessages = 0;
+    ctx.flush();
+  }
+
+}
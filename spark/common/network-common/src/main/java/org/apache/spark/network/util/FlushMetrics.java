@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the flushes performed by the {@link FlushConsolidationHandler}s of a
+ * {@link org.apache.spark.network.TransportContext}, and the messages written by them.
+ */
+public class FlushMetrics {
+
+  private final AtomicLong numFlushes = new AtomicLong();
+  private final AtomicLong numMessages = new AtomicLong();
+
+  void recordFlush(int messages) {
+    numFlushes.incrementAndGet();
+    numMessages.addAndGet(messages);
+  }
+
+  /** Number of flushes that were passed on to the underlying channels. */
+  public long getNumFlushes() {
+    return numFlushes.get();
+  }
+
+  /** Number of messages written by those flushes. */
+  public long getNumMessages() {
+    return numMessages.get();
+  }
+
+  /** Average number of messages written by a flush, or 0 if nothing was flushed yet. */
+  public double getMessagesPerFlush() {
+    long flushes = numFlushes.get();
+    return flushes == 0 ? 0.0 : (double) numMessages.get() / flushes;
+  }
+
+}
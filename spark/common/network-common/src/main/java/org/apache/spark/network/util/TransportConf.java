@@ -17,6 +17,8 @@
 
 package org.apache.spark.network.util;
 
+import java.util.concurrent.TimeUnit;
+
 import com.google.common.primitives.Ints;
 
 /**
@@ -37,6 +39,9 @@ public class TransportConf {
   private final String SPARK_NETWORK_IO_MAXRETRIES_KEY;
   private final String SPARK_NETWORK_IO_RETRYWAIT_KEY;
   private final String SPARK_NETWORK_IO_LAZYFD_KEY;
+  private final String SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_KEY;
+  private final String SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_MAXMESSAGES_KEY;
+  private final String SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_MAXDELAY_KEY;
 
   private final ConfigProvider conf;
 
@@ -58,6 +63,11 @@ public class TransportConf {
     SPARK_NETWORK_IO_MAXRETRIES_KEY = getConfKey("io.maxRetries");
     SPARK_NETWORK_IO_RETRYWAIT_KEY = getConfKey("io.retryWait");
     SPARK_NETWORK_IO_LAZYFD_KEY = getConfKey("io.lazyFD");
+    SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_KEY = getConfKey("io.consolidateFlushes");
+    SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_MAXMESSAGES_KEY =
+      getConfKey("io.consolidateFlushes.maxMessages");
+    SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_MAXDELAY_KEY =
+      getConfKey("io.consolidateFlushes.maxDelay");
   }
 
   private String getConfKey(String suffix) {
@@ -95,6 +105,29 @@ public class TransportConf {
   /** Number of threads used in the client thread pool. Default to 0, which is 2x#cores. */
   public int clientThreads() { return conf.getInt(SPARK_NETWORK_IO_CLIENTTHREADS_KEY, 0); }
 
+  /**
+   * Whether to consolidate the flushes of outgoing messages, so that messages written in the same
+   * event loop iteration are sent with a single system call.
+   */
+  public boolean consolidateFlushes() {
+    return conf.getBoolean(SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_KEY, false);
+  }
+
+  /** Maximum number of messages waiting for a flush when flushes are consolidated. */
+  public int maxMessagesPerFlush() {
+    return conf.getInt(SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_MAXMESSAGES_KEY, 256);
+  }
+
+  /**
+   * Maximum time in microseconds a flush can be delayed to be consolidated with later ones, when
+   * no read is in progress. Default to 0, which only waits for the tasks already queued in the
+   * event loop.
+   */
+  public long maxFlushDelayMicros() {
+    return JavaUtils.timeStringAs(
+      conf.get(SPARK_NETWORK_IO_CONSOLIDATEFLUSHES_MAXDELAY_KEY, "0us"), TimeUnit.MICROSECONDS);
+  }
+
   /**
    * Receive buffer size (SO_RCVBUF).
    * Note: the optimal size for receive buffer and send buffer should be
@@ -166,4 +199,27 @@ public class TransportConf {
     return conf.getBoolean("spark.network.sasl.serverAlwaysEncrypt", false);
   }
 
+  /**
+   * Whether connections that negotiate encryption during SASL authentication should encrypt
+   * their data with AES instead of SASL. Both ends of a connection must agree on this setting.
+   */
+  public boolean aesEncryptionEnabled() {
+    return conf.getBoolean("spark.network.aes.enabled", false);
+  }
+
+  /**
+   * The size, in bits, of the AES keys generated when AES encryption is enabled.
+   */
+  public int aesCipherKeySize() {
+    return conf.getInt("spark.network.aes.keySize", 128);
+  }
+
+  /**
+   * Maximum total size, in bytes, of the shuffle index files cached in memory by the external
+   * shuffle service.
+   */
+  public long shuffleIndexCacheSize() {
+    return JavaUtils.byteStringAsBytes(conf.get("spark.shuffle.service.index.cache.size", "100m"));
+  }
+
 }
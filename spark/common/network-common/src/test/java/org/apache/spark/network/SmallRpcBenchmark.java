@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Maps;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import org.apache.spark.network.client.RpcResponseCallback;
+import org.apache.spark.network.client.TransportClient;
+import org.apache.spark.network.client.TransportClientFactory;
+import org.apache.spark.network.server.OneForOneStreamManager;
+import org.apache.spark.network.server.RpcHandler;
+import org.apache.spark.network.server.StreamManager;
+import org.apache.spark.network.server.TransportServer;
+import org.apache.spark.network.util.MapConfigProvider;
+import org.apache.spark.network.util.TransportConf;
+
+/**
+ * Benchmark of the throughput of small RPCs, with and without flush consolidation.
+ * To run this:
+ *  build/mvn test -pl common/network-common -Dtest=SmallRpcBenchmark
+ * after removing the @Ignore annotation below.
+ */
+@Ignore("Benchmark, skipped in normal builds.")
+public class SmallRpcBenchmark {
+
+  private static final int NUM_RPCS = 500000;
+  private static final int MAX_IN_FLIGHT = 1000;
+  private static final int NUM_ITERATIONS = 5;
+
+  @Test
+  public void smallRpcThroughput() throws Exception {
+    for (boolean consolidateFlushes : new boolean[] { false, true }) {
+      runBenchmark(consolidateFlushes);
+    }
+  }
+
+  private void runBenchmark(boolean consolidateFlushes) throws Exception {
+    Map<String, String> configMap = Maps.newHashMap();
+    configMap.put("spark.shuffle.io.consolidateFlushes", Boolean.toString(consolidateFlushes));
+    TransportConf conf = new TransportConf("shuffle", new MapConfigProvider(configMap));
+
+    RpcHandler rpcHandler = new RpcHandler() {
+      @Override
+      public void receive(
+          TransportClient client,
+          ByteBuffer message,
+          RpcResponseCallback callback) {
+        callback.onSuccess(message);
+      }
+
+      @Override
+      public StreamManager getStreamManager() { return new OneForOneStreamManager(); }
+    };
+
+    TransportContext serverContext = new TransportContext(conf, rpcHandler);
+    TransportContext clientContext = new TransportContext(conf, rpcHandler);
+    TransportServer server = serverContext.createServer();
+    TransportClientFactory clientFactory = clientContext.createClientFactory();
+    try {
+      TransportClient client = clientFactory.createClient(TestUtils.getLocalHost(),
+        server.getPort());
+      for (int i = 0; i < NUM_ITERATIONS; i++) {
+        long start = System.nanoTime();
+        sendRpcs(client);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println(String.format(
+          "consolidateFlushes=%s: %d RPCs in %d ms (%.0f RPCs/s)", consolidateFlushes, NUM_RPCS,
+          elapsedMs, NUM_RPCS * 1000.0 / Math.max(elapsedMs, 1)));
+      }
+      System.out.println(String.format(
+        "consolidateFlushes=%s: %.2f messages per flush on the server, %.2f on the client",
+        consolidateFlushes, serverContext.getFlushMetrics().getMessagesPerFlush(),
+        clientContext.getFlushMetrics().getMessagesPerFlush()));
+    } finally {
+      clientFactory.close();
+      server.close();
+    }
+  }
+
+  private void sendRpcs(TransportClient client) throws InterruptedException {
+    final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    RpcResponseCallback callback = new RpcResponseCallback() {
+      @Override
+      public void onSuccess(ByteBuffer response) {
+        inFlight.release();
+      }
+
+      @Override
+      public void onFailure(Throwable e) {
+        inFlight.release();
+      }
+    };
+    for (int i = 0; i < NUM_RPCS; i++) {
+      inFlight.acquire();
+      client.sendRpc(ByteBuffer.wrap(new byte[16]), callback);
+    }
+    inFlight.acquire(MAX_IN_FLIGHT);
+  }
+
+}
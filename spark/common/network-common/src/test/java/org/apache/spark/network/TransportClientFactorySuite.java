@@ -18,11 +18,16 @@
 package org.apache.spark.network;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.Maps;
@@ -34,6 +39,7 @@ import org.junit.Test;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import org.apache.spark.network.client.RpcResponseCallback;
 import org.apache.spark.network.client.TransportClient;
 import org.apache.spark.network.client.TransportClientFactory;
 import org.apache.spark.network.server.NoOpRpcHandler;
@@ -214,4 +220,84 @@ public class TransportClientFactorySuite {
       factory.close();
     }
   }
+
+  private TransportClientFactory createClientFactory(int numConnectionsPerPeer) {
+    Map<String, String> configMap = Maps.newHashMap();
+    configMap.put("spark.shuffle.io.numConnectionsPerPeer",
+      Integer.toString(numConnectionsPerPeer));
+    TransportConf conf = new TransportConf("shuffle", new MapConfigProvider(configMap));
+    return new TransportContext(conf, new NoOpRpcHandler()).createClientFactory();
+  }
+
+  @Test
+  public void createClientAsyncReturnsPooledClient() throws Exception {
+    TransportClientFactory factory = context.createClientFactory();
+    try {
+      TransportClient c1 = factory.createClientAsync(TestUtils.getLocalHost(), server1.getPort())
+        .get(10, TimeUnit.SECONDS);
+      assertTrue(c1.isActive());
+      TransportClient c2 = factory.createClient(TestUtils.getLocalHost(), server1.getPort());
+      Assert.assertSame(c1, c2);
+      // The client is cached now, so the future is already completed.
+      assertTrue(factory.createClientAsync(TestUtils.getLocalHost(), server1.getPort()).isDone());
+    } finally {
+      factory.close();
+    }
+  }
+
+  @Test
+  public void warmUpOpensAllConnections() throws Exception {
+    TransportClientFactory factory = createClientFactory(3);
+    try {
+      List<TransportClient> clients = factory.warmUpConnections(Arrays.asList(
+        InetSocketAddress.createUnresolved(TestUtils.getLocalHost(), server1.getPort()),
+        InetSocketAddress.createUnresolved(TestUtils.getLocalHost(), server2.getPort())))
+        .get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(6, clients.size());
+      Assert.assertEquals(6, new HashSet<>(clients).size());
+      for (TransportClient client : clients) {
+        assertTrue(client.isActive());
+      }
+
+      // Later requests only use the connections that were already opened.
+      for (int i = 0; i < 10; i++) {
+        assertTrue(clients.contains(
+          factory.createClient(TestUtils.getLocalHost(), server1.getPort())));
+      }
+    } finally {
+      factory.close();
+    }
+  }
+
+  @Test
+  public void selectClientWithFewestOutstandingRequests() throws Exception {
+    TransportClientFactory factory = createClientFactory(2);
+    try {
+      List<TransportClient> clients = factory.warmUpConnections(Arrays.asList(
+        InetSocketAddress.createUnresolved(TestUtils.getLocalHost(), server1.getPort())))
+        .get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(2, clients.size());
+      TransportClient busy = clients.get(0);
+      TransportClient idle = clients.get(1);
+
+      RpcResponseCallback callback = new RpcResponseCallback() {
+        @Override
+        public void onSuccess(ByteBuffer response) { }
+
+        @Override
+        public void onFailure(Throwable e) { }
+      };
+      busy.getHandler().addRpcRequest(1L, callback);
+      try {
+        for (int i = 0; i < 10; i++) {
+          Assert.assertSame(idle,
+            factory.createClient(TestUtils.getLocalHost(), server1.getPort()));
+        }
+      } finally {
+        busy.getHandler().removeRpcRequest(1L);
+      }
+    } finally {
+      factory.close();
+    }
+  }
 }
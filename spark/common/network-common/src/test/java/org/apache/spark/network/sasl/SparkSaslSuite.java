@@ -30,6 +30,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.Cipher;
 import javax.security.sasl.SaslException;
 
 import com.google.common.collect.Lists;
@@ -310,6 +311,90 @@ public class SparkSaslSuite {
     }
   }
 
+  @Test
+  public void testAesEncryption() throws Throwable {
+    final String aesConfName = "spark.network.aes.enabled";
+    System.setProperty(aesConfName, "true");
+    try {
+      testBasicSasl(true);
+    } finally {
+      System.clearProperty(aesConfName);
+    }
+  }
+
+  @Test
+  public void testAesEncryptedMessage() throws Exception {
+    AesConfigMessage config = AesConfigMessage.generate(128);
+    Cipher encryptor = AesEncryption.createCipher(Cipher.ENCRYPT_MODE, config.clientKey,
+      config.clientIv);
+    Cipher decryptor = AesEncryption.createCipher(Cipher.DECRYPT_MODE, config.clientKey,
+      config.clientIv);
+
+    byte[] data = new byte[1024];
+    new Random().nextBytes(data);
+    ByteBuf msg = Unpooled.buffer();
+    msg.writeBytes(data);
+
+    // The output buffer is smaller than the encrypted chunks, so they are written in pieces.
+    ByteArrayWritableChannel channel = new ByteArrayWritableChannel(32);
+    AesEncryption.EncryptedMessage emsg = newAesMessage(encryptor, msg, 256);
+    assertEquals(data.length, emsg.count());
+    byte[] encrypted = new byte[data.length];
+    int offset = 0;
+    while (emsg.transfered() < emsg.count()) {
+      channel.reset();
+      long count = emsg.transferTo(channel, emsg.transfered());
+      assertTrue(count > 0 && count <= 32);
+      System.arraycopy(channel.getData(), 0, encrypted, offset, (int) count);
+      offset += count;
+    }
+    assertFalse(Arrays.equals(data, encrypted));
+    assertTrue(Arrays.equals(data, decryptor.update(encrypted)));
+    assertTrue(emsg.release());
+    assertEquals(0, msg.refCnt());
+  }
+
+  @Test
+  public void testAesEncryptedFileRegion() throws Exception {
+    File file = File.createTempFile("sasltest", ".txt");
+    try {
+      TransportConf conf = new TransportConf("shuffle", new SystemPropertyConfigProvider());
+      AesConfigMessage config = AesConfigMessage.generate(256);
+      Cipher encryptor = AesEncryption.createCipher(Cipher.ENCRYPT_MODE, config.serverKey,
+        config.serverIv);
+      Cipher decryptor = AesEncryption.createCipher(Cipher.DECRYPT_MODE, config.serverKey,
+        config.serverIv);
+
+      byte[] data = new byte[8 * 1024 + 100];
+      new Random().nextBytes(data);
+      Files.write(data, file);
+
+      FileSegmentManagedBuffer msg = new FileSegmentManagedBuffer(conf, file, 0, file.length());
+      AesEncryption.EncryptedMessage emsg =
+        newAesMessage(encryptor, msg.convertToNetty(), data.length / 8);
+
+      ByteArrayWritableChannel channel = new ByteArrayWritableChannel(data.length);
+      while (emsg.transfered() < emsg.count()) {
+        emsg.transferTo(channel, emsg.transfered());
+      }
+      assertEquals(data.length, channel.length());
+      assertTrue(Arrays.equals(data, decryptor.update(channel.getData())));
+      emsg.release();
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static AesEncryption.EncryptedMessage newAesMessage(
+      Cipher cipher,
+      Object msg,
+      int chunkSize) {
+    ByteBuffer encryptedChunk = ByteBuffer.allocateDirect(chunkSize);
+    encryptedChunk.flip();
+    return new AesEncryption.EncryptedMessage(cipher, msg, ByteBuffer.allocateDirect(chunkSize),
+      encryptedChunk);
+  }
+
   @Test
   public void testServerAlwaysEncrypt() throws Exception {
     final String alwaysEncryptConfName = "spark.network.sasl.serverAlwaysEncrypt";
@@ -443,7 +528,8 @@ public class SparkSaslSuite {
       throws Exception {
       if (!foundEncryptionHandler) {
         foundEncryptionHandler =
-          ctx.channel().pipeline().get(SaslEncryption.ENCRYPTION_HANDLER_NAME) != null;
+          ctx.channel().pipeline().get(SaslEncryption.ENCRYPTION_HANDLER_NAME) != null ||
+          ctx.channel().pipeline().get(AesEncryption.ENCRYPTION_HANDLER_NAME) != null;
       }
       ctx.write(msg, promise);
     }
@@ -465,7 +551,11 @@ public class SparkSaslSuite {
 
     @Override
     public void doBootstrap(TransportClient client, Channel channel) {
-      channel.pipeline().remove(SaslEncryption.ENCRYPTION_HANDLER_NAME);
+      if (channel.pipeline().get(SaslEncryption.ENCRYPTION_HANDLER_NAME) != null) {
+        channel.pipeline().remove(SaslEncryption.ENCRYPTION_HANDLER_NAME);
+      } else {
+        channel.pipeline().remove(AesEncryption.ENCRYPTION_HANDLER_NAME);
+      }
     }
 
   }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.util;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlushConsolidationHandlerSuite {
+
+  private final FlushMetrics metrics = new FlushMetrics();
+
+  private EmbeddedChannel createChannel(int maxPendingMessages) {
+    return new EmbeddedChannel(new FlushConsolidationHandler(maxPendingMessages, 0, metrics));
+  }
+
+  @Test
+  public void flushesAreDelayedUntilReadCompletes() {
+    EmbeddedChannel channel = createChannel(16);
+    channel.pipeline().fireChannelRead("request");
+    channel.writeAndFlush("response1");
+    channel.writeAndFlush("response2");
+    assertNull(channel.readOutbound());
+
+    channel.pipeline().fireChannelReadComplete();
+    assertEquals("response1", channel.readOutbound());
+    assertEquals("response2", channel.readOutbound());
+    assertEquals(1, metrics.getNumFlushes());
+    assertEquals(2, metrics.getNumMessages());
+    channel.finish();
+  }
+
+  @Test
+  public void flushesOutsideOfReadsWaitForQueuedTasks() {
+    EmbeddedChannel channel = createChannel(16);
+    channel.writeAndFlush("message1");
+    channel.writeAndFlush("message2");
+    channel.writeAndFlush("message3");
+    assertNull(channel.readOutbound());
+
+    channel.runPendingTasks();
+    assertEquals("message1", channel.readOutbound());
+    assertEquals("message2", channel.readOutbound());
+    assertEquals("message3", channel.readOutbound());
+    assertEquals(1, metrics.getNumFlushes());
+    assertEquals(3.0, metrics.getMessagesPerFlush(), 0.0);
+
+    // Nothing left to flush, so the metrics don't change.
+    channel.runPendingTasks();
+    assertEquals(1, metrics.getNumFlushes());
+    channel.finish();
+  }
+
+  @Test
+  public void flushAfterMaxPendingMessages() {
+    EmbeddedChannel channel = createChannel(2);
+    channel.pipeline().fireChannelRead("request");
+    channel.writeAndFlush("response1");
+    assertNull(channel.readOutbound());
+    channel.writeAndFlush("response2");
+    assertEquals("response1", channel.readOutbound());
+    assertEquals("response2", channel.readOutbound());
+
+    channel.writeAndFlush("response3");
+    assertNull(channel.readOutbound());
+    channel.pipeline().fireChannelReadComplete();
+    assertEquals("response3", channel.readOutbound());
+    assertEquals(2, metrics.getNumFlushes());
+    assertEquals(1.5, metrics.getMessagesPerFlush(), 0.0);
+    channel.finish();
+  }
+
+  @Test
+  public void closeFlushesPendingMessages() {
+    EmbeddedChannel channel = createChannel(16);
+    channel.writeAndFlush("message");
+    assertNull(channel.readOutbound());
+    channel.close();
+    assertEquals("message", channel.readOutbound());
+    assertEquals(1, metrics.getNumFlushes());
+  }
+
+}
@@ -94,6 +94,24 @@ public class ExternalShuffleBlockHandler extends RpcHandler {
           NettyUtils.getRemoteAddress(client.getChannel()));
       callback.onSuccess(new StreamHandle(streamId, msg.blockIds.length).toByteBuffer());
 
+    } else if (msgObj instanceof OpenShuffleBlockRanges) {
+      OpenShuffleBlockRanges msg = (OpenShuffleBlockRanges) msgObj;
+      checkAuth(client, msg.appId);
+
+      // Each range of reduce partitions is served as one contiguous segment of the data file.
+      List<ManagedBuffer> blocks = Lists.newArrayListWithCapacity(msg.numRanges());
+      for (int i = 0; i < msg.numRanges(); i++) {
+        blocks.add(blockManager.getContinuousBlocksData(msg.appId, msg.execId, msg.shuffleId,
+          msg.mapIds[i], msg.startReduceIds[i], msg.endReduceIds[i]));
+      }
+      long streamId = streamManager.registerStream(client.getClientId(), blocks.iterator());
+      logger.trace("Registered streamId {} with {} block ranges for client {} from host {}",
+          streamId,
+          msg.numRanges(),
+          client.getClientId(),
+          NettyUtils.getRemoteAddress(client.getChannel()));
+      callback.onSuccess(new StreamHandle(streamId, msg.numRanges()).toByteBuffer());
+
     } else if (msgObj instanceof RegisterExecutor) {
       RegisterExecutor msg = (RegisterExecutor) msgObj;
       checkAuth(client, msg.appId);
@@ -20,7 +20,9 @@ package org.apache.spark.network.shuffle;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -29,6 +31,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Maps;
 import org.fusesource.leveldbjni.JniDBFactory;
 import org.fusesource.leveldbjni.internal.NativeDB;
@@ -66,6 +72,13 @@ public class ExternalShuffleBlockResolver {
   @VisibleForTesting
   final ConcurrentMap<AppExecId, ExecutorShuffleInfo> executors;
 
+  /**
+   *  Caches index file information so that we don't have to open and read the index file
+   *  of a map output on every block request. Bounded by the total size of the cached index
+   *  files, see {@link TransportConf#shuffleIndexCacheSize()}.
+   */
+  private final Cache<ShuffleIndexKey, ShuffleIndexInformation> shuffleIndexCache;
+
   // Single-threaded Java executor used to perform expensive recursive directory deletion.
   private final Executor directoryCleaner;
 
@@ -95,6 +108,16 @@ public class ExternalShuffleBlockResolver {
       Executor directoryCleaner) throws IOException {
     this.conf = conf;
     this.registeredExecutorFile = registeredExecutorFile;
+    this.shuffleIndexCache = CacheBuilder.newBuilder()
+      .maximumWeight(conf.shuffleIndexCacheSize())
+      .weigher(new Weigher<ShuffleIndexKey, ShuffleIndexInformation>() {
+        @Override
+        public int weigh(ShuffleIndexKey key, ShuffleIndexInformation value) {
+          return value.getSize();
+        }
+      })
+      .recordStats()
+      .build();
     if (registeredExecutorFile != null) {
       Options options = new Options();
       options.createIfMissing(false);
@@ -184,14 +207,40 @@ public class ExternalShuffleBlockResolver {
     int shuffleId = Integer.parseInt(blockIdParts[1]);
     int mapId = Integer.parseInt(blockIdParts[2]);
     int reduceId = Integer.parseInt(blockIdParts[3]);
+    return getContinuousBlocksData(appId, execId, shuffleId, mapId, reduceId, reduceId + 1);
+  }
 
+  /**
+   * Obtains a single FileSegmentManagedBuffer covering the shuffle blocks of the reduce ids in
+   * [startReduceId, endReduceId) of the given map output. The sort based shuffle stores these
+   * blocks next to each other, so they can be served as one contiguous file segment.
+   */
+  public ManagedBuffer getContinuousBlocksData(
+      String appId,
+      String execId,
+      int shuffleId,
+      int mapId,
+      int startReduceId,
+      int endReduceId) {
+    if (startReduceId < 0 || startReduceId >= endReduceId) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid reduce id range [%d, %d)", startReduceId, endReduceId));
+    }
     ExecutorShuffleInfo executor = executors.get(new AppExecId(appId, execId));
     if (executor == null) {
       throw new RuntimeException(
         String.format("Executor is not registered (appId=%s, execId=%s)", appId, execId));
     }
 
-    return getSortBasedShuffleBlockData(executor, shuffleId, mapId, reduceId);
+    return getSortBasedShuffleBlockData(
+      appId, execId, executor, shuffleId, mapId, startReduceId, endReduceId);
+  }
+
+  /**
+   * Returns hit/miss/load statistics of the shuffle index cache since this resolver was created.
+   */
+  public CacheStats shuffleIndexCacheStats() {
+    return shuffleIndexCache.stats();
   }
 
   /**
@@ -234,6 +283,14 @@ public class ExternalShuffleBlockResolver {
         }
       }
     }
+
+    // Drop any cached index information of the removed application; its files may be deleted.
+    Iterator<ShuffleIndexKey> cachedKeys = shuffleIndexCache.asMap().keySet().iterator();
+    while (cachedKeys.hasNext()) {
+      if (appId.equals(cachedKeys.next().appId)) {
+        cachedKeys.remove();
+      }
+    }
   }
 
   /**
@@ -257,28 +314,30 @@ public class ExternalShuffleBlockResolver {
    * and the block id format is from ShuffleDataBlockId and ShuffleIndexBlockId.
    */
   private ManagedBuffer getSortBasedShuffleBlockData(
-    ExecutorShuffleInfo executor, int shuffleId, int mapId, int reduceId) {
-    File indexFile = getFile(executor.localDirs, executor.subDirsPerLocalDir,
+    String appId, String execId, ExecutorShuffleInfo executor,
+    int shuffleId, int mapId, int startReduceId, int endReduceId) {
+    final File indexFile = getFile(executor.localDirs, executor.subDirsPerLocalDir,
       "shuffle_" + shuffleId + "_" + mapId + "_0.index");
 
-    DataInputStream in = null;
     try {
-      in = new DataInputStream(new FileInputStream(indexFile));
-      in.skipBytes(reduceId * 8);
-      long offset = in.readLong();
-      long nextOffset = in.readLong();
+      ShuffleIndexInformation shuffleIndexInformation = shuffleIndexCache.get(
+        new ShuffleIndexKey(appId, execId, shuffleId, mapId),
+        new Callable<ShuffleIndexInformation>() {
+          @Override
+          public ShuffleIndexInformation call() throws IOException {
+            return new ShuffleIndexInformation(indexFile);
+          }
+        });
+      ShuffleIndexRecord shuffleIndexRecord =
+        shuffleIndexInformation.getIndex(startReduceId, endReduceId);
       return new FileSegmentManagedBuffer(
         conf,
         getFile(executor.localDirs, executor.subDirsPerLocalDir,
           "shuffle_" + shuffleId + "_" + mapId + "_0.data"),
-        offset,
-        nextOffset - offset);
-    } catch (IOException e) {
+        shuffleIndexRecord.getOffset(),
+        shuffleIndexRecord.getLength());
+    } catch (ExecutionException e) {
       throw new RuntimeException("Failed to open file: " + indexFile, e);
-    } finally {
-      if (in != null) {
-        JavaUtils.closeQuietly(in);
-      }
     }
   }
 
@@ -338,6 +397,46 @@ public class ExternalShuffleBlockResolver {
     }
   }
 
+  /** Identifies the index file of a single map output of a registered executor. */
+  private static class ShuffleIndexKey {
+    final String appId;
+    final String execId;
+    final int shuffleId;
+    final int mapId;
+
+    ShuffleIndexKey(String appId, String execId, int shuffleId, int mapId) {
+      this.appId = appId;
+      this.execId = execId;
+      this.shuffleId = shuffleId;
+      this.mapId = mapId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      ShuffleIndexKey that = (ShuffleIndexKey) o;
+      return shuffleId == that.shuffleId && mapId == that.mapId &&
+        Objects.equal(appId, that.appId) && Objects.equal(execId, that.execId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(appId, execId, shuffleId, mapId);
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+        .add("appId", appId)
+        .add("execId", execId)
+        .add("shuffleId", shuffleId)
+        .add("mapId", mapId)
+        .toString();
+    }
+  }
+
   private static byte[] dbAppExecKey(AppExecId appExecId) throws IOException {
     // we stick a common prefix on all the keys so we can find them in the DB
     String appExecJson = mapper.writeValueAsString(appExecId);
@@ -103,7 +103,7 @@ public class ExternalShuffleClient extends ShuffleClient {
           public void createAndStart(String[] blockIds, BlockFetchingListener listener)
               throws IOException {
             TransportClient client = clientFactory.createClient(host, port);
-            new OneForOneBlockFetcher(client, appId, execId, blockIds, listener).start();
+            new OneForOneBlockFetcher(client, appId, execId, blockIds, listener, true).start();
           }
         };
 
@@ -29,6 +29,7 @@ import org.apache.spark.network.client.RpcResponseCallback;
 import org.apache.spark.network.client.TransportClient;
 import org.apache.spark.network.shuffle.protocol.BlockTransferMessage;
 import org.apache.spark.network.shuffle.protocol.OpenBlocks;
+import org.apache.spark.network.shuffle.protocol.OpenShuffleBlockRanges;
 import org.apache.spark.network.shuffle.protocol.StreamHandle;
 
 /**
@@ -39,12 +40,20 @@ import org.apache.spark.network.shuffle.protocol.StreamHandle;
  *
  * Note that this typically corresponds to a
  * {@link org.apache.spark.network.server.OneForOneStreamManager} on the server side.
+ *
+ * Besides regular block ids, the external shuffle service accepts ids of the form
+ * "shuffle_ShuffleId_MapId_StartReduceId_EndReduceId", which stand for the blocks of the reduce ids
+ * in [StartReduceId, EndReduceId) of one map output and are fetched as a single chunk. If the
+ * fetcher talks to the external shuffle service, any such id is requested, and all the ids are
+ * shuffle block ids of the same shuffle, the blocks are opened with {@link OpenShuffleBlockRanges}
+ * instead of {@link OpenBlocks}. Other servers, such as the block transfer service of executors,
+ * only understand {@link OpenBlocks}.
  */
 public class OneForOneBlockFetcher {
   private final Logger logger = LoggerFactory.getLogger(OneForOneBlockFetcher.class);
 
   private final TransportClient client;
-  private final OpenBlocks openMessage;
+  private final BlockTransferMessage openMessage;
   private final String[] blockIds;
   private final BlockFetchingListener listener;
   private final ChunkReceivedCallback chunkCallback;
@@ -57,13 +66,68 @@ public class OneForOneBlockFetcher {
       String execId,
       String[] blockIds,
       BlockFetchingListener listener) {
+    this(client, appId, execId, blockIds, listener, false);
+  }
+
+  /**
+   * @param openRanges whether the blocks may be opened with {@link OpenShuffleBlockRanges}, which
+   *                   is only handled by the external shuffle service.
+   */
+  public OneForOneBlockFetcher(
+      TransportClient client,
+      String appId,
+      String execId,
+      String[] blockIds,
+      BlockFetchingListener listener,
+      boolean openRanges) {
     this.client = client;
-    this.openMessage = new OpenBlocks(appId, execId, blockIds);
+    this.openMessage = openRanges ?
+      createOpenMessage(appId, execId, blockIds) : new OpenBlocks(appId, execId, blockIds);
     this.blockIds = blockIds;
     this.listener = listener;
     this.chunkCallback = new ChunkCallback();
   }
 
+  /**
+   * Creates the message opening the given blocks: an {@link OpenShuffleBlockRanges} if the block
+   * ids include ranges of reduce ids, or an {@link OpenBlocks} otherwise.
+   */
+  static BlockTransferMessage createOpenMessage(String appId, String execId, String[] blockIds) {
+    int shuffleId = -1;
+    boolean hasRanges = false;
+    int[] mapIds = new int[blockIds.length];
+    int[] startReduceIds = new int[blockIds.length];
+    int[] endReduceIds = new int[blockIds.length];
+    try {
+      for (int i = 0; i < blockIds.length; i++) {
+        String[] parts = blockIds[i].split("_");
+        if (!parts[0].equals("shuffle") || parts.length < 4 || parts.length > 5) {
+          return new OpenBlocks(appId, execId, blockIds);
+        }
+        int blockShuffleId = Integer.parseInt(parts[1]);
+        if (i > 0 && blockShuffleId != shuffleId) {
+          return new OpenBlocks(appId, execId, blockIds);
+        }
+        shuffleId = blockShuffleId;
+        mapIds[i] = Integer.parseInt(parts[2]);
+        startReduceIds[i] = Integer.parseInt(parts[3]);
+        if (parts.length == 5) {
+          endReduceIds[i] = Integer.parseInt(parts[4]);
+          hasRanges = true;
+        } else {
+          endReduceIds[i] = startReduceIds[i] + 1;
+        }
+      }
+    } catch (NumberFormatException e) {
+      return new OpenBlocks(appId, execId, blockIds);
+    }
+    if (!hasRanges) {
+      return new OpenBlocks(appId, execId, blockIds);
+    }
+    return new OpenShuffleBlockRanges(
+      appId, execId, shuffleId, mapIds, startReduceIds, endReduceIds);
+  }
+
   /** Callback invoked on receipt of each chunk. We equate a single chunk to a single block. */
   private class ChunkCallback implements ChunkReceivedCallback {
     @Override
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.shuffle;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+import org.apache.spark.network.util.JavaUtils;
+
+/**
+ * Keeps the index information for a particular map output
+ * as an in-memory LongBuffer for quick access.
+ */
+public class ShuffleIndexInformation {
+  /** offsets as long buffer */
+  private final LongBuffer offsets;
+  private final int size;
+  private final File indexFile;
+
+  public ShuffleIndexInformation(File indexFile) throws IOException {
+    this.indexFile = indexFile;
+    size = (int) indexFile.length();
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    offsets = buffer.asLongBuffer();
+    DataInputStream dis = null;
+    try {
+      dis = new DataInputStream(new FileInputStream(indexFile));
+      dis.readFully(buffer.array());
+    } finally {
+      if (dis != null) {
+        JavaUtils.closeQuietly(dis);
+      }
+    }
+  }
+
+  /**
+   * Size of the index file, in bytes. Used to weigh entries in the index cache.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Get index offset for a particular reducer.
+   */
+  public ShuffleIndexRecord getIndex(int reduceId) {
+    if (reduceId < 0 || reduceId >= offsets.limit() - 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid reduce id %d for index file %s of %d reduce partitions",
+        reduceId, indexFile, offsets.limit() - 1));
+    }
+    return getIndex(reduceId, reduceId + 1);
+  }
+
+  /**
+   * Get index offset for the contiguous range of reducers [startReduceId, endReduceId).
+   */
+  public ShuffleIndexRecord getIndex(int startReduceId, int endReduceId) {
+    // The index holds one offset more than there are reduce partitions.
+    if (startReduceId < 0 || startReduceId >= endReduceId || endReduceId > offsets.limit() - 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid reduce id range [%d, %d) for index file %s of %d reduce partitions",
+        startReduceId, endReduceId, indexFile, offsets.limit() - 1));
+    }
+    long offset = offsets.get(startReduceId);
+    long nextOffset = offsets.get(endReduceId);
+    return new ShuffleIndexRecord(offset, nextOffset - offset);
+  }
+}
@@ -33,6 +33,8 @@ import org.apache.spark.network.shuffle.protocol.mesos.ShuffleServiceHeartbeat;
  * At a high level:
  *   - OpenBlock is handled by both services, but only services shuffle files for the external
  *     shuffle service. It returns a StreamHandle.
+ *   - OpenShuffleBlockRanges is only handled by the external shuffle service. It returns a
+ *     StreamHandle with one chunk per range of reduce partitions.
  *   - UploadBlock is only handled by the NettyBlockTransferService.
  *   - RegisterExecutor is only handled by the external shuffle service.
  */
@@ -42,7 +44,7 @@ public abstract class BlockTransferMessage implements Encodable {
   /** Preceding every serialized message is its type, which allows us to deserialize it. */
   public enum Type {
     OPEN_BLOCKS(0), UPLOAD_BLOCK(1), REGISTER_EXECUTOR(2), STREAM_HANDLE(3), REGISTER_DRIVER(4),
-    HEARTBEAT(5);
+    HEARTBEAT(5), OPEN_SHUFFLE_BLOCK_RANGES(6);
 
     private final byte id;
 
@@ -67,6 +69,7 @@ public abstract class BlockTransferMessage implements Encodable {
         case 3: return StreamHandle.decode(buf);
         case 4: return RegisterDriver.decode(buf);
         case 5: return ShuffleServiceHeartbeat.decode(buf);
+        case 6: return OpenShuffleBlockRanges.decode(buf);
         default: throw new IllegalArgumentException("Unknown message type: " + type);
       }
     }
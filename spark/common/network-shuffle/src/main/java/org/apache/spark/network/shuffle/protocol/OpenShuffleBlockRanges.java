@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.shuffle.protocol;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+import org.apache.spark.network.protocol.Encoders;
+
+// Needed by ScalaDoc. See SPARK-7726
+import static org.apache.spark.network.shuffle.protocol.BlockTransferMessage.Type;
+
+/**
+ * Request to read ranges of reduce partitions of a shuffle. Range i covers the reduce ids in
+ * [startReduceIds[i], endReduceIds[i]) of the output of map mapIds[i], and is returned as a single
+ * chunk holding the contiguous data of these partitions. Returns {@link StreamHandle}.
+ */
+public class OpenShuffleBlockRanges extends BlockTransferMessage {
+  public final String appId;
+  public final String execId;
+  public final int shuffleId;
+  public final int[] mapIds;
+  public final int[] startReduceIds;
+  public final int[] endReduceIds;
+
+  public OpenShuffleBlockRanges(
+      String appId,
+      String execId,
+      int shuffleId,
+      int[] mapIds,
+      int[] startReduceIds,
+      int[] endReduceIds) {
+    if (mapIds.length != startReduceIds.length || mapIds.length != endReduceIds.length) {
+      throw new IllegalArgumentException("Map ids and reduce id ranges differ in length");
+    }
+    this.appId = appId;
+    this.execId = execId;
+    this.shuffleId = shuffleId;
+    this.mapIds = mapIds;
+    this.startReduceIds = startReduceIds;
+    this.endReduceIds = endReduceIds;
+  }
+
+  /** Number of ranges, each of which is returned as one chunk. */
+  public int numRanges() {
+    return mapIds.length;
+  }
+
+  @Override
+  protected Type type() { return Type.OPEN_SHUFFLE_BLOCK_RANGES; }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hashCode(appId, execId, shuffleId);
+    result = result * 41 + Arrays.hashCode(mapIds);
+    result = result * 41 + Arrays.hashCode(startReduceIds);
+    return result * 41 + Arrays.hashCode(endReduceIds);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("appId", appId)
+      .add("execId", execId)
+      .add("shuffleId", shuffleId)
+      .add("mapIds", Arrays.toString(mapIds))
+      .add("startReduceIds", Arrays.toString(startReduceIds))
+      .add("endReduceIds", Arrays.toString(endReduceIds))
+      .toString();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other != null && other instanceof OpenShuffleBlockRanges) {
+      OpenShuffleBlockRanges o = (OpenShuffleBlockRanges) other;
+      return Objects.equal(appId, o.appId)
+        && Objects.equal(execId, o.execId)
+        && shuffleId == o.shuffleId
+        && Arrays.equals(mapIds, o.mapIds)
+        && Arrays.equals(startReduceIds, o.startReduceIds)
+        && Arrays.equals(endReduceIds, o.endReduceIds);
+    }
+    return false;
+  }
+
+  @Override
+  public int encodedLength() {
+    return Encoders.Strings.encodedLength(appId)
+      + Encoders.Strings.encodedLength(execId)
+      + 4
+      + Encoders.IntArrays.encodedLength(mapIds)
+      + Encoders.IntArrays.encodedLength(startReduceIds)
+      + Encoders.IntArrays.encodedLength(endReduceIds);
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    Encoders.Strings.encode(buf, appId);
+    Encoders.Strings.encode(buf, execId);
+    buf.writeInt(shuffleId);
+    Encoders.IntArrays.encode(buf, mapIds);
+    Encoders.IntArrays.encode(buf, startReduceIds);
+    Encoders.IntArrays.encode(buf, endReduceIds);
+  }
+
+  public static OpenShuffleBlockRanges decode(ByteBuf buf) {
+    String appId = Encoders.Strings.decode(buf);
+    String execId = Encoders.Strings.decode(buf);
+    int shuffleId = buf.readInt();
+    int[] mapIds = Encoders.IntArrays.decode(buf);
+    int[] startReduceIds = Encoders.IntArrays.decode(buf);
+    int[] endReduceIds = Encoders.IntArrays.decode(buf);
+    return new OpenShuffleBlockRanges(
+      appId, execId, shuffleId, mapIds, startReduceIds, endReduceIds);
+  }
+}
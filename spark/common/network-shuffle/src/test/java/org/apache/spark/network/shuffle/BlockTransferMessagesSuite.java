@@ -33,6 +33,8 @@ public class BlockTransferMessagesSuite {
     checkSerializeDeserialize(new UploadBlock("app-1", "exec-2", "block-3", new byte[] { 1, 2 },
       new byte[] { 4, 5, 6, 7} ));
     checkSerializeDeserialize(new StreamHandle(12345, 16));
+    checkSerializeDeserialize(new OpenShuffleBlockRanges("app-1", "exec-2", 3,
+      new int[] { 0, 1 }, new int[] { 2, 0 }, new int[] { 5, 1 }));
   }
 
   private void checkSerializeDeserialize(BlockTransferMessage msg) {
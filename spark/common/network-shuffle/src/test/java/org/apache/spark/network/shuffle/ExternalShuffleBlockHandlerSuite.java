@@ -37,6 +37,7 @@ import org.apache.spark.network.server.RpcHandler;
 import org.apache.spark.network.shuffle.protocol.BlockTransferMessage;
 import org.apache.spark.network.shuffle.protocol.ExecutorShuffleInfo;
 import org.apache.spark.network.shuffle.protocol.OpenBlocks;
+import org.apache.spark.network.shuffle.protocol.OpenShuffleBlockRanges;
 import org.apache.spark.network.shuffle.protocol.RegisterExecutor;
 import org.apache.spark.network.shuffle.protocol.StreamHandle;
 import org.apache.spark.network.shuffle.protocol.UploadBlock;
@@ -101,6 +102,39 @@ public class ExternalShuffleBlockHandlerSuite {
     assertFalse(buffers.hasNext());
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testOpenShuffleBlockRanges() {
+    RpcResponseCallback callback = mock(RpcResponseCallback.class);
+
+    ManagedBuffer range0Marker = new NioManagedBuffer(ByteBuffer.wrap(new byte[3]));
+    ManagedBuffer range1Marker = new NioManagedBuffer(ByteBuffer.wrap(new byte[7]));
+    when(blockResolver.getContinuousBlocksData("app0", "exec1", 2, 0, 1, 4))
+      .thenReturn(range0Marker);
+    when(blockResolver.getContinuousBlocksData("app0", "exec1", 2, 1, 0, 1))
+      .thenReturn(range1Marker);
+    ByteBuffer openRanges = new OpenShuffleBlockRanges("app0", "exec1", 2,
+      new int[] { 0, 1 }, new int[] { 1, 0 }, new int[] { 4, 1 }).toByteBuffer();
+    handler.receive(client, openRanges, callback);
+
+    ArgumentCaptor<ByteBuffer> response = ArgumentCaptor.forClass(ByteBuffer.class);
+    verify(callback, times(1)).onSuccess(response.capture());
+    verify(callback, never()).onFailure((Throwable) any());
+
+    StreamHandle handle =
+      (StreamHandle) BlockTransferMessage.Decoder.fromByteBuffer(response.getValue());
+    assertEquals(2, handle.numChunks);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Iterator<ManagedBuffer>> stream = (ArgumentCaptor<Iterator<ManagedBuffer>>)
+        (ArgumentCaptor<?>) ArgumentCaptor.forClass(Iterator.class);
+    verify(streamManager, times(1)).registerStream(anyString(), stream.capture());
+    Iterator<ManagedBuffer> buffers = stream.getValue();
+    assertEquals(range0Marker, buffers.next());
+    assertEquals(range1Marker, buffers.next());
+    assertFalse(buffers.hasNext());
+  }
+
   @Test
   public void testBadMessages() {
     RpcResponseCallback callback = mock(RpcResponseCallback.class);
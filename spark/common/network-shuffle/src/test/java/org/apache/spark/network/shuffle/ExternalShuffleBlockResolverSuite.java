@@ -23,6 +23,7 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheStats;
 import com.google.common.io.CharStreams;
 import org.apache.spark.network.shuffle.protocol.ExecutorShuffleInfo;
 import org.apache.spark.network.util.SystemPropertyConfigProvider;
@@ -110,6 +111,65 @@ public class ExternalShuffleBlockResolverSuite {
         new InputStreamReader(block1Stream, StandardCharsets.UTF_8));
     block1Stream.close();
     assertEquals(sortBlock1, block1);
+
+    // Reduce id past the last partition of the map output
+    try {
+      resolver.getBlockData("app0", "exec0", "shuffle_0_0_2");
+      fail("Should have failed");
+    } catch (IllegalArgumentException e) {
+      assertTrue("Bad error message: " + e, e.getMessage().contains("shuffle_0_0_0.index"));
+    }
+  }
+
+  @Test
+  public void testContinuousSortShuffleBlocks() throws IOException {
+    ExternalShuffleBlockResolver resolver = new ExternalShuffleBlockResolver(conf, null);
+    resolver.registerExecutor("app0", "exec0",
+      dataContext.createExecutorInfo(SORT_MANAGER));
+
+    InputStream blocksStream =
+      resolver.getContinuousBlocksData("app0", "exec0", 0, 0, 0, 2).createInputStream();
+    String blocks = CharStreams.toString(
+        new InputStreamReader(blocksStream, StandardCharsets.UTF_8));
+    blocksStream.close();
+    assertEquals(sortBlock0 + sortBlock1, blocks);
+
+    try {
+      resolver.getContinuousBlocksData("app0", "exec0", 0, 0, 1, 1);
+      fail("Should have failed");
+    } catch (IllegalArgumentException e) {
+      // pass
+    }
+
+    // Range past the last reduce partition
+    try {
+      resolver.getContinuousBlocksData("app0", "exec0", 0, 0, 1, 3);
+      fail("Should have failed");
+    } catch (IllegalArgumentException e) {
+      assertTrue("Bad error message: " + e, e.getMessage().contains("shuffle_0_0_0.index"));
+    }
+  }
+
+  @Test
+  public void testShuffleIndexCache() throws IOException {
+    ExternalShuffleBlockResolver resolver = new ExternalShuffleBlockResolver(conf, null);
+    resolver.registerExecutor("app0", "exec0",
+      dataContext.createExecutorInfo(SORT_MANAGER));
+
+    assertEquals(sortBlock0.length(),
+      resolver.getBlockData("app0", "exec0", "shuffle_0_0_0").size());
+    assertEquals(sortBlock1.length(),
+      resolver.getBlockData("app0", "exec0", "shuffle_0_0_1").size());
+    CacheStats stats = resolver.shuffleIndexCacheStats();
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.hitCount());
+
+    // Removing the application must drop its cached index files.
+    resolver.applicationRemoved("app0", false);
+    resolver.registerExecutor("app0", "exec0",
+      dataContext.createExecutorInfo(SORT_MANAGER));
+    resolver.getBlockData("app0", "exec0", "shuffle_0_0_0");
+    assertEquals(2, resolver.shuffleIndexCacheStats().missCount());
   }
 
   @Test
@@ -47,6 +47,7 @@ import org.apache.spark.network.client.RpcResponseCallback;
 import org.apache.spark.network.client.TransportClient;
 import org.apache.spark.network.shuffle.protocol.BlockTransferMessage;
 import org.apache.spark.network.shuffle.protocol.OpenBlocks;
+import org.apache.spark.network.shuffle.protocol.OpenShuffleBlockRanges;
 import org.apache.spark.network.shuffle.protocol.StreamHandle;
 
 public class OneForOneBlockFetcherSuite {
@@ -74,6 +75,46 @@ public class OneForOneBlockFetcherSuite {
     }
   }
 
+  @Test
+  public void testFetchBlockRanges() {
+    LinkedHashMap<String, ManagedBuffer> blocks = Maps.newLinkedHashMap();
+    blocks.put("shuffle_0_0_0_3", new NioManagedBuffer(ByteBuffer.wrap(new byte[12])));
+    blocks.put("shuffle_0_1_2", new NioManagedBuffer(ByteBuffer.wrap(new byte[23])));
+
+    BlockFetchingListener listener = fetchBlocks(blocks, true);
+
+    verify(listener).onBlockFetchSuccess("shuffle_0_0_0_3", blocks.get("shuffle_0_0_0_3"));
+    verify(listener).onBlockFetchSuccess("shuffle_0_1_2", blocks.get("shuffle_0_1_2"));
+  }
+
+  @Test
+  public void testBlockRangesOnlyOpenedWhenAllowed() {
+    LinkedHashMap<String, ManagedBuffer> blocks = Maps.newLinkedHashMap();
+    blocks.put("shuffle_0_0_0_3", new NioManagedBuffer(ByteBuffer.wrap(new byte[12])));
+
+    // Executors' block transfer services only handle OpenBlocks, which fetchBlocks checks for.
+    BlockFetchingListener listener = fetchBlocks(blocks, false);
+
+    verify(listener).onBlockFetchSuccess("shuffle_0_0_0_3", blocks.get("shuffle_0_0_0_3"));
+  }
+
+  @Test
+  public void testCreateOpenMessage() {
+    String[] singleBlocks = { "shuffle_0_0_0", "shuffle_0_1_2" };
+    assertEquals(new OpenBlocks("app-id", "exec-id", singleBlocks),
+      OneForOneBlockFetcher.createOpenMessage("app-id", "exec-id", singleBlocks));
+
+    String[] ranges = { "shuffle_1_0_0_3", "shuffle_1_1_2" };
+    assertEquals(new OpenShuffleBlockRanges("app-id", "exec-id", 1,
+        new int[] { 0, 1 }, new int[] { 0, 2 }, new int[] { 3, 3 }),
+      OneForOneBlockFetcher.createOpenMessage("app-id", "exec-id", ranges));
+
+    // Ranges can only be requested within a single shuffle.
+    String[] mixed = { "shuffle_1_0_0_3", "shuffle_2_1_2", "rdd_1_1" };
+    assertEquals(new OpenBlocks("app-id", "exec-id", mixed),
+      OneForOneBlockFetcher.createOpenMessage("app-id", "exec-id", mixed));
+  }
+
   @Test
   public void testFailure() {
     LinkedHashMap<String, ManagedBuffer> blocks = Maps.newLinkedHashMap();
@@ -123,12 +164,22 @@ public class OneForOneBlockFetcherSuite {
    *
    * If a block's buffer is "null", an exception will be thrown instead.
    */
-  private BlockFetchingListener fetchBlocks(final LinkedHashMap<String, ManagedBuffer> blocks) {
+  private BlockFetchingListener fetchBlocks(LinkedHashMap<String, ManagedBuffer> blocks) {
+    return fetchBlocks(blocks, false);
+  }
+
+  /**
+   * Like {@link #fetchBlocks(LinkedHashMap)}, with a fetcher that may open ranges of shuffle
+   * blocks if `openRanges` is set.
+   */
+  private BlockFetchingListener fetchBlocks(
+      final LinkedHashMap<String, ManagedBuffer> blocks,
+      final boolean openRanges) {
     TransportClient client = mock(TransportClient.class);
     BlockFetchingListener listener = mock(BlockFetchingListener.class);
     final String[] blockIds = blocks.keySet().toArray(new String[blocks.size()]);
     OneForOneBlockFetcher fetcher =
-      new OneForOneBlockFetcher(client, "app-id", "exec-id", blockIds, listener);
+      new OneForOneBlockFetcher(client, "app-id", "exec-id", blockIds, listener, openRanges);
 
     // Respond to the "OpenBlocks" message with an appropirate ShuffleStreamHandle with streamId 123
     doAnswer(new Answer<Void>() {
@@ -138,7 +189,9 @@ public class OneForOneBlockFetcherSuite {
           (ByteBuffer) invocationOnMock.getArguments()[0]);
         RpcResponseCallback callback = (RpcResponseCallback) invocationOnMock.getArguments()[1];
         callback.onSuccess(new StreamHandle(123, blocks.size()).toByteBuffer());
-        assertEquals(new OpenBlocks("app-id", "exec-id", blockIds), message);
+        assertEquals(openRanges ?
+          OneForOneBlockFetcher.createOpenMessage("app-id", "exec-id", blockIds) :
+          new OpenBlocks("app-id", "exec-id", blockIds), message);
         return null;
       }
     }).when(client).sendRpc(any(ByteBuffer.class), any(RpcResponseCallback.class));
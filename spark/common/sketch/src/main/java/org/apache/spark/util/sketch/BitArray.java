@@ -20,6 +20,7 @@ package org.apache.spark.util.sketch;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 final class BitArray {
@@ -87,17 +88,24 @@ final class BitArray {
 
   void writeTo(DataOutputStream out) throws IOException {
     out.writeInt(data.length);
-    for (long datum : data) {
-      out.writeLong(datum);
-    }
+    Utils.writeLongs(out, data);
   }
 
   static BitArray readFrom(DataInputStream in) throws IOException {
     int numWords = in.readInt();
     long[] data = new long[numWords];
-    for (int i = 0; i < numWords; i++) {
-      data[i] = in.readLong();
-    }
+    Utils.readLongs(in, data);
+    return new BitArray(data);
+  }
+
+  /**
+   * Reads a BitArray written by `writeTo` from `buffer`, starting at its current position, and
+   * advances the position of `buffer` past it. The words are copied in bulk.
+   */
+  static BitArray readFrom(ByteBuffer buffer) {
+    int numWords = buffer.getInt();
+    long[] data = new long[numWords];
+    Utils.readLongs(buffer, data);
     return new BitArray(data);
   }
 
@@ -17,9 +17,12 @@
 
 package org.apache.spark.util.sketch;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * A Bloom filter is a space-efficient probabilistic data structure that offers an approximate
@@ -51,7 +54,21 @@ public abstract class BloomFilter {
      *   <li>The words/longs (numWords * 64 bit)</li>
      * </ul>
      */
-    V1(1);
+    V1(1),
+
+    /**
+     * Binary format of the blocked {@code BloomFilter} created by
+     * {@linkplain #createBlocked(long, double)}, whose bit array is split into blocks of 512 bits.
+     * Same layout as {@link #V1}, except for the version number and that the number of words is
+     * always a multiple of 8:
+     * <ul>
+     *   <li>Version number, always 2 (32 bit)</li>
+     *   <li>Number of hash functions (32 bit)</li>
+     *   <li>Total number of words of the underlying bit array (32 bit)</li>
+     *   <li>The words/longs (numWords * 64 bit)</li>
+     * </ul>
+     */
+    V2(2);
 
     private final int versionNumber;
 
@@ -108,6 +125,16 @@ public abstract class BloomFilter {
    */
   public abstract boolean putBinary(byte[] item);
 
+  /**
+   * Puts all the given {@code long} items into this {@code BloomFilter}. Equivalent to calling
+   * {@linkplain #putLong(long)} for each item, but implementations may process them in batches.
+   */
+  public void putLongs(long[] items) {
+    for (long item : items) {
+      putLong(item);
+    }
+  }
+
   /**
    * Determines whether a given bloom filter is compatible with this bloom filter. For two
    * bloom filters to be compatible, they must have the same bit size.
@@ -147,6 +174,21 @@ public abstract class BloomFilter {
    */
   public abstract boolean mightContainBinary(byte[] item);
 
+  /**
+   * Tests all the given {@code long} items at once, storing the result of
+   * {@linkplain #mightContainLong(long)} for {@code items[i]} in {@code results[i]}.
+   *
+   * @param results array receiving the results, must be at least as long as {@code items}
+   */
+  public void mightContainLongs(long[] items, boolean[] results) {
+    if (results.length < items.length) {
+      throw new IllegalArgumentException("results must be at least as long as items");
+    }
+    for (int i = 0; i < items.length; i++) {
+      results[i] = mightContainLong(items[i]);
+    }
+  }
+
   /**
    * Writes out this {@link BloomFilter} to an output stream in binary format. It is the caller's
    * responsibility to close the stream.
@@ -158,7 +200,57 @@ public abstract class BloomFilter {
    * the stream.
    */
   public static BloomFilter readFrom(InputStream in) throws IOException {
-    return BloomFilterImpl.readFrom(in);
+    DataInputStream dis = new DataInputStream(in);
+
+    int version = dis.readInt();
+    if (version == Version.V1.getVersionNumber()) {
+      return BloomFilterImpl.readFromBody(dis);
+    } else if (version == Version.V2.getVersionNumber()) {
+      return BlockedBloomFilterImpl.readFromBody(dis);
+    } else {
+      throw new IOException("Unexpected Bloom filter version number (" + version + ")");
+    }
+  }
+
+  /**
+   * Reads in a {@link BloomFilter} written by {@linkplain #writeTo(OutputStream)} from a buffer,
+   * starting at its current position, and advances the position of the buffer past it.
+   *
+   * The buffer can be a direct buffer or a file mapped with
+   * {@link java.nio.channels.FileChannel#map}. The bits of the filter are copied out of it in bulk,
+   * so the returned {@code BloomFilter} does not share the memory of {@code buffer}. Use
+   * {@linkplain #wrap(ByteBuffer)} to test items against the filter without copying it.
+   */
+  public static BloomFilter readFrom(ByteBuffer buffer) throws IOException {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    BloomFilter filter;
+
+    int version = in.getInt();
+    if (version == Version.V1.getVersionNumber()) {
+      filter = BloomFilterImpl.readFromBody(in);
+    } else if (version == Version.V2.getVersionNumber()) {
+      filter = BlockedBloomFilterImpl.readFromBody(in);
+    } else {
+      throw new IOException("Unexpected Bloom filter version number (" + version + ")");
+    }
+
+    buffer.position(in.position());
+    return filter;
+  }
+
+  /**
+   * Returns a read-only {@link BloomFilter} over a filter written by
+   * {@linkplain #writeTo(OutputStream)} in a buffer, starting at its current position, and
+   * advances the position of the buffer past it.
+   *
+   * Unlike {@linkplain #readFrom(ByteBuffer)}, the bits are not copied: the returned
+   * {@code BloomFilter} reads them from {@code buffer}, which can be a direct buffer or a file
+   * mapped with {@link java.nio.channels.FileChannel#map}, and must not be modified while the
+   * filter is in use. All the methods which would modify the returned filter, including
+   * {@linkplain #mergeInPlace(BloomFilter)}, throw {@link UnsupportedOperationException}.
+   */
+  public static BloomFilter wrap(ByteBuffer buffer) throws IOException {
+    return BufferBloomFilterImpl.wrap(buffer);
   }
 
   /**
@@ -233,4 +325,54 @@ public abstract class BloomFilter {
 
     return new BloomFilterImpl(optimalNumOfHashFunctions(expectedNumItems, numBits), numBits);
   }
+
+  /**
+   * Creates a blocked {@link BloomFilter} with the expected number of insertions and a default
+   * expected false positive probability of 3%.
+   *
+   * @see #createBlocked(long, double)
+   */
+  public static BloomFilter createBlocked(long expectedNumItems) {
+    return createBlocked(expectedNumItems, DEFAULT_FPP);
+  }
+
+  /**
+   * Creates a blocked {@link BloomFilter} with the expected number of insertions and expected
+   * false positive probability.
+   *
+   * A blocked {@code BloomFilter} sets all the bits of an item within a single 512-bit block (a
+   * 64-byte cache line), so that {@code put} and {@code mightContain} cost one cache miss instead
+   * of one per hash function. Because items are not spread evenly over the whole bit array, its
+   * false positive probability is slightly higher than the one of a regular {@code BloomFilter}
+   * with the same number of bits. It is only compatible with other blocked filters, and is
+   * serialized with format {@link Version#V2}.
+   */
+  public static BloomFilter createBlocked(long expectedNumItems, double fpp) {
+    if (fpp <= 0D || fpp >= 1D) {
+      throw new IllegalArgumentException(
+        "False positive probability must be within range (0.0, 1.0)"
+      );
+    }
+
+    return createBlocked(expectedNumItems, optimalNumOfBits(expectedNumItems, fpp));
+  }
+
+  /**
+   * Creates a blocked {@link BloomFilter} with given {@code expectedNumItems} and {@code numBits}.
+   * {@code numBits} is rounded up to a multiple of the block size (512 bits).
+   *
+   * @see #createBlocked(long, double)
+   */
+  public static BloomFilter createBlocked(long expectedNumItems, long numBits) {
+    if (expectedNumItems <= 0) {
+      throw new IllegalArgumentException("Expected insertions must be positive");
+    }
+
+    if (numBits <= 0) {
+      throw new IllegalArgumentException("Number of bits must be positive");
+    }
+
+    return new BlockedBloomFilterImpl(
+      optimalNumOfHashFunctions(expectedNumItems, numBits), numBits);
+  }
 }
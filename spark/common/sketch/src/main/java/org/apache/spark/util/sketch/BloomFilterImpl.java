@@ -18,6 +18,7 @@
 package org.apache.spark.util.sketch;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 class BloomFilterImpl extends BloomFilter implements Serializable {
 
@@ -237,6 +238,10 @@ class BloomFilterImpl extends BloomFilter implements Serializable {
       throw new IOException("Unexpected Bloom filter version number (" + version + ")");
     }
 
+    readBody0(dis);
+  }
+
+  private void readBody0(DataInputStream dis) throws IOException {
     this.numHashFunctions = dis.readInt();
     this.bits = BitArray.readFrom(dis);
   }
@@ -247,6 +252,23 @@ class BloomFilterImpl extends BloomFilter implements Serializable {
     return filter;
   }
 
+  /**
+   * Reads the rest of a {@link BloomFilterImpl} after its version number.
+   */
+  static BloomFilterImpl readFromBody(DataInputStream dis) throws IOException {
+    BloomFilterImpl filter = new BloomFilterImpl();
+    filter.readBody0(dis);
+    return filter;
+  }
+
+  /**
+   * Reads the rest of a {@link BloomFilterImpl} after its version number, in place from a buffer.
+   */
+  static BloomFilterImpl readFromBody(ByteBuffer buffer) {
+    int numHashFunctions = buffer.getInt();
+    return new BloomFilterImpl(BitArray.readFrom(buffer), numHashFunctions);
+  }
+
   private void writeObject(ObjectOutputStream out) throws IOException {
     writeTo(out);
   }
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.util.sketch;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A read-only {@link BloomFilter} returned by {@link BloomFilter#wrap(ByteBuffer)}, which reads
+ * the bits of a serialized {@link BloomFilterImpl} or {@link BlockedBloomFilterImpl} from the
+ * buffer holding it. It probes the bits the same way as the filter that wrote them, and throws
+ * {@link UnsupportedOperationException} from all the methods that would modify it.
+ *
+ * Java serialization writes a mutable copy of the filter, as the buffer can't be serialized.
+ */
+final class BufferBloomFilterImpl extends BloomFilter implements Serializable {
+
+  // Whether the bits were written by a BlockedBloomFilterImpl.
+  private final boolean blocked;
+
+  private final int numHashFunctions;
+
+  private final ReadOnlyBitArray bits;
+
+  // Number of blocks of a blocked filter, cached as it is needed for every item.
+  private final long numBlocks;
+
+  // The whole serialized filter, which writeTo writes out as is.
+  private final ByteBuffer serialized;
+
+  private BufferBloomFilterImpl(
+      boolean blocked,
+      int numHashFunctions,
+      ReadOnlyBitArray bits,
+      ByteBuffer serialized) {
+    this.blocked = blocked;
+    this.numHashFunctions = numHashFunctions;
+    this.bits = bits;
+    this.numBlocks = bits.bitSize() / BlockedBloomFilterImpl.BLOCK_SIZE_IN_BITS;
+    this.serialized = serialized;
+  }
+
+  /**
+   * Wraps a filter written by `writeTo` in `buffer`, starting at its current position, and
+   * advances the position of `buffer` past it. See {@link BloomFilter#wrap(ByteBuffer)}.
+   */
+  public static BufferBloomFilterImpl wrap(ByteBuffer buffer) throws IOException {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    int start = in.position();
+
+    boolean blocked;
+    int version = in.getInt();
+    if (version == Version.V1.getVersionNumber()) {
+      blocked = false;
+    } else if (version == Version.V2.getVersionNumber()) {
+      blocked = true;
+    } else {
+      throw new IOException("Unexpected Bloom filter version number (" + version + ")");
+    }
+
+    int numHashFunctions = in.getInt();
+    ReadOnlyBitArray bits = ReadOnlyBitArray.wrap(in);
+    if (blocked) {
+      BlockedBloomFilterImpl.checkBitSize(bits.bitSize());
+    }
+
+    ByteBuffer serialized = buffer.duplicate();
+    serialized.position(start);
+    serialized.limit(in.position());
+    BufferBloomFilterImpl filter = new BufferBloomFilterImpl(
+      blocked, numHashFunctions, bits, serialized.slice().asReadOnlyBuffer());
+
+    buffer.position(in.position());
+    return filter;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+
+    if (other == null || !(other instanceof BufferBloomFilterImpl)) {
+      return false;
+    }
+
+    BufferBloomFilterImpl that = (BufferBloomFilterImpl) other;
+
+    return this.blocked == that.blocked &&
+      this.numHashFunctions == that.numHashFunctions &&
+      this.bits.equals(that.bits);
+  }
+
+  @Override
+  public int hashCode() {
+    return bits.hashCode() * 31 + numHashFunctions;
+  }
+
+  @Override
+  public double expectedFpp() {
+    return Math.pow((double) bits.cardinality() / bits.bitSize(), numHashFunctions);
+  }
+
+  @Override
+  public long bitSize() {
+    return bits.bitSize();
+  }
+
+  private boolean mightContain(int h1, int h2) {
+    if (blocked) {
+      // Same as BlockedBloomFilterImpl.
+      int blockSize = BlockedBloomFilterImpl.BLOCK_SIZE_IN_BITS;
+      long blockOffset = (((h1 & 0xFFFFFFFFL) * numBlocks) >>> 32) * blockSize;
+      for (int i = 1; i <= numHashFunctions; i++) {
+        int combinedHash = h2 + (i * h1);
+        if (!bits.get(blockOffset + (combinedHash & (blockSize - 1)))) {
+          return false;
+        }
+      }
+    } else {
+      // Same as BloomFilterImpl.
+      long bitSize = bits.bitSize();
+      for (int i = 1; i <= numHashFunctions; i++) {
+        int combinedHash = h1 + (i * h2);
+        // Flip all the bits if it's negative (guaranteed positive number)
+        if (combinedHash < 0) {
+          combinedHash = ~combinedHash;
+        }
+        if (!bits.get(combinedHash % bitSize)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean mightContain(Object item) {
+    if (item instanceof String) {
+      return mightContainString((String) item);
+    } else if (item instanceof byte[]) {
+      return mightContainBinary((byte[]) item);
+    } else {
+      return mightContainLong(Utils.integralToLong(item));
+    }
+  }
+
+  @Override
+  public boolean mightContainString(String item) {
+    return mightContainBinary(Utils.getBytesFromUTF8String(item));
+  }
+
+  @Override
+  public boolean mightContainBinary(byte[] item) {
+    int h1 = Murmur3_x86_32.hashUnsafeBytes(item, Platform.BYTE_ARRAY_OFFSET, item.length, 0);
+    int h2 = Murmur3_x86_32.hashUnsafeBytes(item, Platform.BYTE_ARRAY_OFFSET, item.length, h1);
+    return mightContain(h1, h2);
+  }
+
+  @Override
+  public boolean mightContainLong(long item) {
+    int h1 = Murmur3_x86_32.hashLong(item, 0);
+    int h2 = Murmur3_x86_32.hashLong(item, h1);
+    return mightContain(h1, h2);
+  }
+
+  @Override
+  public boolean put(Object item) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean putString(String item) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean putLong(long item) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean putBinary(byte[] item) {
+    throw readOnly();
+  }
+
+  @Override
+  public void putLongs(long[] items) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean isCompatible(BloomFilter other) {
+    return false;
+  }
+
+  @Override
+  public BloomFilter mergeInPlace(BloomFilter other) {
+    throw readOnly();
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("Cannot modify a Bloom filter over a buffer");
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    Utils.writeBuffer(new DataOutputStream(out), serialized);
+  }
+
+  private Object writeReplace() throws ObjectStreamException {
+    try {
+      return BloomFilter.readFrom(serialized.duplicate());
+    } catch (IOException e) {
+      // The buffer was already read successfully by wrap.
+      throw new IllegalStateException(e);
+    }
+  }
+}
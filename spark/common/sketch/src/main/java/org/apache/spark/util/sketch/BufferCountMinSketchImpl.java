@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.util.sketch;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A read-only {@link CountMinSketch} returned by {@link CountMinSketch#wrap(ByteBuffer)}, which
+ * reads the counters of a serialized {@link CountMinSketchImpl} from the buffer holding it. Only
+ * the hash coefficients, one per row, are copied to the heap. All the methods which would modify
+ * the sketch throw {@link UnsupportedOperationException}.
+ *
+ * Java serialization writes a mutable copy of the sketch, as the buffer can't be serialized.
+ */
+final class BufferCountMinSketchImpl extends CountMinSketch implements Serializable {
+
+  private final int depth;
+  private final int width;
+  private final long totalCount;
+  private final long[] hashA;
+  // The `depth` x `width` big-endian counters, stored row by row from index 0.
+  private final ByteBuffer table;
+  // The whole serialized sketch, which writeTo writes out as is.
+  private final ByteBuffer serialized;
+
+  private BufferCountMinSketchImpl(
+      int depth,
+      int width,
+      long totalCount,
+      long[] hashA,
+      ByteBuffer table,
+      ByteBuffer serialized) {
+    this.depth = depth;
+    this.width = width;
+    this.totalCount = totalCount;
+    this.hashA = hashA;
+    this.table = table;
+    this.serialized = serialized;
+  }
+
+  /**
+   * Wraps a sketch written by `writeTo` in `buffer`, starting at its current position, and
+   * advances the position of `buffer` past it. See {@link CountMinSketch#wrap(ByteBuffer)}.
+   */
+  public static BufferCountMinSketchImpl wrap(ByteBuffer buffer) throws IOException {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    int start = in.position();
+
+    int version = in.getInt();
+    if (version != Version.V1.getVersionNumber()) {
+      throw new IOException("Unexpected Count-Min Sketch version number (" + version + ")");
+    }
+
+    long totalCount = in.getLong();
+    int depth = in.getInt();
+    int width = in.getInt();
+    CountMinSketchImpl.checkTableSize(depth, width);
+
+    long[] hashA = new long[depth];
+    Utils.readLongs(in, hashA);
+
+    if ((long) depth * width * 8 > in.remaining()) {
+      throw new IllegalArgumentException("Buffer is too small for " + depth * width + " longs");
+    }
+    int tableBytes = depth * width * 8;
+    ByteBuffer table = in.slice();
+    table.limit(tableBytes);
+    in.position(in.position() + tableBytes);
+
+    ByteBuffer serialized = buffer.duplicate();
+    serialized.position(start);
+    serialized.limit(in.position());
+    BufferCountMinSketchImpl sketch = new BufferCountMinSketchImpl(
+      depth,
+      width,
+      totalCount,
+      hashA,
+      table.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN),
+      serialized.slice().asReadOnlyBuffer());
+
+    buffer.position(in.position());
+    return sketch;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+
+    if (other == null || !(other instanceof BufferCountMinSketchImpl)) {
+      return false;
+    }
+
+    BufferCountMinSketchImpl that = (BufferCountMinSketchImpl) other;
+
+    return
+      this.depth == that.depth &&
+      this.width == that.width &&
+      this.totalCount == that.totalCount &&
+      Arrays.equals(this.hashA, that.hashA) &&
+      this.table.equals(that.table);
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = depth;
+
+    hash = hash * 31 + width;
+    hash = hash * 31 + (int) (totalCount ^ (totalCount >>> 32));
+    hash = hash * 31 + Arrays.hashCode(hashA);
+    hash = hash * 31 + table.hashCode();
+
+    return hash;
+  }
+
+  @Override
+  public double relativeError() {
+    return 2.0 / width;
+  }
+
+  @Override
+  public double confidence() {
+    return 1 - 1 / Math.pow(2, depth);
+  }
+
+  @Override
+  public int depth() {
+    return depth;
+  }
+
+  @Override
+  public int width() {
+    return width;
+  }
+
+  @Override
+  public long totalCount() {
+    return totalCount;
+  }
+
+  private long get(int row, int column) {
+    return table.getLong((row * width + column) << 3);
+  }
+
+  @Override
+  public long estimateCount(Object item) {
+    long res = Long.MAX_VALUE;
+    if (item instanceof String) {
+      int[] buckets = CountMinSketchImpl.getHashBuckets((String) item, depth, width);
+      for (int i = 0; i < depth; ++i) {
+        res = Math.min(res, get(i, buckets[i]));
+      }
+    } else {
+      long longItem = Utils.integralToLong(item);
+      for (int i = 0; i < depth; ++i) {
+        res = Math.min(res, get(i, CountMinSketchImpl.hash(hashA[i], longItem, width)));
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public void add(Object item) {
+    throw readOnly();
+  }
+
+  @Override
+  public void add(Object item, long count) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addLong(long item) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addLong(long item, long count) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addString(String item) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addString(String item, long count) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addBinary(byte[] item) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addBinary(byte[] item, long count) {
+    throw readOnly();
+  }
+
+  @Override
+  public CountMinSketch mergeInPlace(CountMinSketch other) {
+    throw readOnly();
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("Cannot modify a Count-Min Sketch over a buffer");
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    Utils.writeBuffer(new DataOutputStream(out), serialized);
+  }
+
+  private Object writeReplace() throws ObjectStreamException {
+    try {
+      return CountMinSketchImpl.readFrom(serialized.duplicate());
+    } catch (IOException e) {
+      // The buffer was already read successfully by wrap.
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.spark.util.sketch;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A Count-min sketch is a probabilistic data structure used for summarizing streams of data in
@@ -181,6 +182,34 @@ public abstract class CountMinSketch {
     return CountMinSketchImpl.readFrom(in);
   }
 
+  /**
+   * Reads in a {@link CountMinSketch} written by {@linkplain #writeTo(OutputStream)} from a buffer,
+   * starting at its current position, and advances the position of the buffer past it.
+   *
+   * The buffer can be a direct buffer or a file mapped with
+   * {@link java.nio.channels.FileChannel#map}. The counters of the sketch are copied out of it in
+   * bulk, so the returned {@code CountMinSketch} does not share the memory of {@code buffer}. Use
+   * {@linkplain #wrap(ByteBuffer)} to estimate counts without copying the sketch.
+   */
+  public static CountMinSketch readFrom(ByteBuffer buffer) throws IOException {
+    return CountMinSketchImpl.readFrom(buffer);
+  }
+
+  /**
+   * Returns a read-only {@link CountMinSketch} over a sketch written by
+   * {@linkplain #writeTo(OutputStream)} in a buffer, starting at its current position, and
+   * advances the position of the buffer past it.
+   *
+   * Unlike {@linkplain #readFrom(ByteBuffer)}, the counters are not copied: the returned
+   * {@code CountMinSketch} reads them from {@code buffer}, which can be a direct buffer or a file
+   * mapped with {@link java.nio.channels.FileChannel#map}, and must not be modified while the
+   * sketch is in use. All the methods which would modify the returned sketch, including
+   * {@linkplain #mergeInPlace(CountMinSketch)}, throw {@link UnsupportedOperationException}.
+   */
+  public static CountMinSketch wrap(ByteBuffer buffer) throws IOException {
+    return BufferCountMinSketchImpl.wrap(buffer);
+  }
+
   /**
    * Creates a {@link CountMinSketch} with given {@code depth}, {@code width}, and random
    * {@code seed}.
@@ -25,6 +25,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -33,7 +35,8 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
 
   private int depth;
   private int width;
-  private long[][] table;
+  // The `depth` x `width` counters, stored row by row.
+  private long[] table;
   private long[] hashA;
   private long totalCount;
   private double eps;
@@ -88,7 +91,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
       this.width == that.width &&
       this.totalCount == that.totalCount &&
       Arrays.equals(this.hashA, that.hashA) &&
-      Arrays.deepEquals(this.table, that.table);
+      Arrays.equals(this.table, that.table);
   }
 
   @Override
@@ -98,13 +101,16 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
     hash = hash * 31 + width;
     hash = hash * 31 + (int) (totalCount ^ (totalCount >>> 32));
     hash = hash * 31 + Arrays.hashCode(hashA);
-    hash = hash * 31 + Arrays.deepHashCode(table);
+    hash = hash * 31 + Arrays.hashCode(table);
 
     return hash;
   }
 
   private void initTablesWith(int depth, int width, int seed) {
-    this.table = new long[depth][width];
+    if ((long) depth * width > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Can't allocate a table of " + depth + " x " + width);
+    }
+    this.table = new long[depth * width];
     this.hashA = new long[depth];
     Random r = new Random(seed);
     // We're using a linear hash functions
@@ -179,7 +185,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
     }
 
     for (int i = 0; i < depth; ++i) {
-      table[i][hash(item, i)] += count;
+      increment(i, hash(item, i), count);
     }
 
     totalCount += count;
@@ -199,14 +205,26 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
     int[] buckets = getHashBuckets(item, depth, width);
 
     for (int i = 0; i < depth; ++i) {
-      table[i][buckets[i]] += count;
+      increment(i, buckets[i], count);
     }
 
     totalCount += count;
   }
 
+  private void increment(int row, int column, long count) {
+    table[row * width + column] += count;
+  }
+
+  private long get(int row, int column) {
+    return table[row * width + column];
+  }
+
   private int hash(long item, int count) {
-    long hash = hashA[count] * item;
+    return hash(hashA[count], item, width);
+  }
+
+  static int hash(long a, long item, int width) {
+    long hash = a * item;
     // A super fast way of computing x mod 2^p-1
     // See http://www.cs.princeton.edu/courses/archive/fall09/cos521/Handouts/universalclasses.pdf
     // page 149, right after Proposition 7.
@@ -216,7 +234,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
     return ((int) hash) % width;
   }
 
-  private static int[] getHashBuckets(String key, int hashCount, int max) {
+  static int[] getHashBuckets(String key, int hashCount, int max) {
     return getHashBuckets(Utils.getBytesFromUTF8String(key), hashCount, max);
   }
 
@@ -242,7 +260,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
   private long estimateCountForLongItem(long item) {
     long res = Long.MAX_VALUE;
     for (int i = 0; i < depth; ++i) {
-      res = Math.min(res, table[i][hash(item, i)]);
+      res = Math.min(res, get(i, hash(item, i)));
     }
     return res;
   }
@@ -251,7 +269,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
     long res = Long.MAX_VALUE;
     int[] buckets = getHashBuckets(item, depth, width);
     for (int i = 0; i < depth; ++i) {
-      res = Math.min(res, table[i][buckets[i]]);
+      res = Math.min(res, get(i, buckets[i]));
     }
     return res;
   }
@@ -283,9 +301,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
     }
 
     for (int i = 0; i < this.table.length; ++i) {
-      for (int j = 0; j < this.table[i].length; ++j) {
-        this.table[i][j] = this.table[i][j] + that.table[i][j];
-      }
+      this.table[i] += that.table[i];
     }
 
     this.totalCount += that.totalCount;
@@ -307,11 +323,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
       dos.writeLong(this.hashA[i]);
     }
 
-    for (int i = 0; i < this.depth; ++i) {
-      for (int j = 0; j < this.width; ++j) {
-        dos.writeLong(table[i][j]);
-      }
-    }
+    Utils.writeLongs(dos, table);
   }
 
   public static CountMinSketchImpl readFrom(InputStream in) throws IOException {
@@ -331,6 +343,7 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
     this.totalCount = dis.readLong();
     this.depth = dis.readInt();
     this.width = dis.readInt();
+    checkTableSize(depth, width);
     this.eps = 2.0 / width;
     this.confidence = 1 - 1 / Math.pow(2, depth);
 
@@ -339,14 +352,46 @@ class CountMinSketchImpl extends CountMinSketch implements Serializable {
       this.hashA[i] = dis.readLong();
     }
 
-    this.table = new long[depth][width];
-    for (int i = 0; i < depth; ++i) {
-      for (int j = 0; j < width; ++j) {
-        this.table[i][j] = dis.readLong();
-      }
+    this.table = new long[depth * width];
+    Utils.readLongs(dis, table);
+  }
+
+  static void checkTableSize(int depth, int width) throws IOException {
+    if (depth <= 0 || width <= 0 || (long) depth * width > Integer.MAX_VALUE) {
+      throw new IOException("Unexpected Count-Min Sketch table size " + depth + " x " + width);
     }
   }
 
+  /**
+   * Reads a {@link CountMinSketchImpl} from a buffer, starting at its current position. See
+   * {@link CountMinSketch#readFrom(ByteBuffer)}.
+   */
+  public static CountMinSketchImpl readFrom(ByteBuffer buffer) throws IOException {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+    int version = in.getInt();
+    if (version != Version.V1.getVersionNumber()) {
+      throw new IOException("Unexpected Count-Min Sketch version number (" + version + ")");
+    }
+
+    CountMinSketchImpl sketch = new CountMinSketchImpl();
+    sketch.totalCount = in.getLong();
+    sketch.depth = in.getInt();
+    sketch.width = in.getInt();
+    checkTableSize(sketch.depth, sketch.width);
+    sketch.eps = 2.0 / sketch.width;
+    sketch.confidence = 1 - 1 / Math.pow(2, sketch.depth);
+
+    sketch.hashA = new long[sketch.depth];
+    Utils.readLongs(in, sketch.hashA);
+
+    sketch.table = new long[sketch.depth * sketch.width];
+    Utils.readLongs(in, sketch.table);
+
+    buffer.position(in.position());
+    return sketch;
+  }
+
   private void writeObject(ObjectOutputStream out) throws IOException {
     this.writeTo(out);
   }
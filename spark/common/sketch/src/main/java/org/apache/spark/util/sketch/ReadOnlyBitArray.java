@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.util.sketch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A read-only view of the words of a {@link BitArray} written by {@code BitArray.writeTo}, which
+ * reads them from the buffer they were written to instead of copying them to the heap.
+ */
+final class ReadOnlyBitArray {
+  // The big-endian words, starting at index 0.
+  private final ByteBuffer words;
+  private final int numWords;
+  // Computed on first use, as it requires a pass over all the words.
+  private long bitCount = -1;
+
+  private ReadOnlyBitArray(ByteBuffer words, int numWords) {
+    this.words = words;
+    this.numWords = numWords;
+  }
+
+  /**
+   * Wraps a BitArray written by `BitArray.writeTo` in `buffer`, starting at its current position,
+   * and advances the position of `buffer` past it.
+   */
+  static ReadOnlyBitArray wrap(ByteBuffer buffer) {
+    int numWords = buffer.getInt();
+    if (numWords < 0 || (long) numWords * 8 > buffer.remaining()) {
+      throw new IllegalArgumentException("Buffer is too small for " + numWords + " longs");
+    }
+    ByteBuffer words = buffer.slice();
+    words.limit(numWords * 8);
+    buffer.position(buffer.position() + numWords * 8);
+    return new ReadOnlyBitArray(words.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN), numWords);
+  }
+
+  boolean get(long index) {
+    return (words.getLong((int) (index >>> 6) << 3) & (1L << index)) != 0;
+  }
+
+  /** Number of bits */
+  long bitSize() {
+    return (long) numWords * Long.SIZE;
+  }
+
+  /** Number of set bits (1s) */
+  long cardinality() {
+    if (bitCount < 0) {
+      long bitCount = 0;
+      for (int i = 0; i < numWords; i++) {
+        bitCount += Long.bitCount(words.getLong(i << 3));
+      }
+      this.bitCount = bitCount;
+    }
+    return bitCount;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) return true;
+    if (other == null || !(other instanceof ReadOnlyBitArray)) return false;
+    ReadOnlyBitArray that = (ReadOnlyBitArray) other;
+    return words.equals(that.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return words.hashCode();
+  }
+}
@@ -17,6 +17,12 @@
 
 package org.apache.spark.util.sketch;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
 import java.nio.charset.StandardCharsets;
 
 class Utils {
@@ -41,4 +47,72 @@ class Utils {
 
     return longValue;
   }
+
+  // Size of the intermediate buffer used to transfer longs from/to streams in bulk.
+  private static final int TRANSFER_BUFFER_SIZE = 8192;
+
+  /**
+   * Writes all the longs of `src` to `out` in big-endian order, going through an intermediate byte
+   * buffer instead of calling `writeLong` for each of them.
+   */
+  static void writeLongs(DataOutputStream out, long[] src) throws IOException {
+    byte[] bytes = new byte[TRANSFER_BUFFER_SIZE];
+    LongBuffer transfer = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+    int offset = 0;
+    while (offset < src.length) {
+      int n = Math.min(src.length - offset, transfer.capacity());
+      transfer.clear();
+      transfer.put(src, offset, n);
+      out.write(bytes, 0, n * 8);
+      offset += n;
+    }
+  }
+
+  /**
+   * Reads `dst.length` big-endian longs from `in` into `dst`, in bulk.
+   */
+  static void readLongs(DataInputStream in, long[] dst) throws IOException {
+    byte[] bytes = new byte[TRANSFER_BUFFER_SIZE];
+    LongBuffer transfer = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+    int offset = 0;
+    while (offset < dst.length) {
+      int n = Math.min(dst.length - offset, transfer.capacity());
+      in.readFully(bytes, 0, n * 8);
+      transfer.clear();
+      transfer.get(dst, offset, n);
+      offset += n;
+    }
+  }
+
+  /**
+   * Reads `dst.length` big-endian longs from `buffer` into `dst` in bulk, and advances the
+   * position of `buffer` past them.
+   */
+  static void readLongs(ByteBuffer buffer, long[] dst) {
+    if ((long) dst.length * 8 > buffer.remaining()) {
+      throw new IllegalArgumentException("Buffer is too small for " + dst.length + " longs");
+    }
+    ByteBuffer slice = buffer.slice();
+    slice.limit(dst.length * 8);
+    slice.order(ByteOrder.BIG_ENDIAN).asLongBuffer().get(dst);
+    buffer.position(buffer.position() + dst.length * 8);
+  }
+
+  /**
+   * Writes the remaining bytes of `buffer` to `out`, going through an intermediate byte array if
+   * the buffer is not backed by one. Does not change the position of `buffer`.
+   */
+  static void writeBuffer(DataOutputStream out, ByteBuffer buffer) throws IOException {
+    if (buffer.hasArray()) {
+      out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    } else {
+      ByteBuffer src = buffer.duplicate();
+      byte[] bytes = new byte[Math.min(TRANSFER_BUFFER_SIZE, src.remaining())];
+      while (src.hasRemaining()) {
+        int n = Math.min(bytes.length, src.remaining());
+        src.get(bytes, 0, n);
+        out.write(bytes, 0, n);
+      }
+    }
+  }
 }
@@ -18,6 +18,7 @@
 package org.apache.spark.util.sketch
 
 import java.io.{ByteArrayInputStream, ByteArrayOutputStream}
+import java.nio.ByteBuffer
 
 import scala.reflect.ClassTag
 import scala.util.Random
@@ -39,10 +40,36 @@ class BloomFilterSuite extends FunSuite { // scalastyle:ignore funsuite
     in.close()
 
     assert(filter == deserialized)
+
+    // Also reads it from an off-heap buffer, both as a copy and in place.
+    val bytes = out.toByteArray
+    val buffer = ByteBuffer.allocateDirect(bytes.length)
+    buffer.put(bytes).flip()
+    val copy = BloomFilter.readFrom(buffer.duplicate())
+    assert(filter == copy)
+
+    val wrapped = BloomFilter.wrap(buffer)
+    assert(!buffer.hasRemaining)
+    assert(wrapped.bitSize() == filter.bitSize())
+    assert(wrapped.expectedFpp() == filter.expectedFpp())
+    val rewritten = new ByteArrayOutputStream()
+    wrapped.writeTo(rewritten)
+    assert(rewritten.toByteArray.sameElements(bytes))
   }
 
-  def testAccuracy[T: ClassTag](typeName: String, numItems: Int)(itemGen: Random => T): Unit = {
-    test(s"accuracy - $typeName") {
+  private def createFilter(blocked: Boolean, expectedNumItems: Long, fpp: Double): BloomFilter = {
+    if (blocked) {
+      BloomFilter.createBlocked(expectedNumItems, fpp)
+    } else {
+      BloomFilter.create(expectedNumItems, fpp)
+    }
+  }
+
+  private def variant(blocked: Boolean): String = if (blocked) " (blocked)" else ""
+
+  def testAccuracy[T: ClassTag](typeName: String, numItems: Int, blocked: Boolean)(
+      itemGen: Random => T): Unit = {
+    test(s"accuracy - $typeName${variant(blocked)}") {
       // use a fixed seed to make the test predictable.
       val r = new Random(37)
       val fpp = 0.05
@@ -50,7 +77,7 @@ class BloomFilterSuite extends FunSuite { // scalastyle:ignore funsuite
 
       val allItems = Array.fill(numItems)(itemGen(r))
 
-      val filter = BloomFilter.create(numInsertion, fpp)
+      val filter = createFilter(blocked, numInsertion, fpp)
 
       // insert first `numInsertion` items.
       allItems.take(numInsertion).foreach(filter.put)
@@ -72,18 +99,19 @@ class BloomFilterSuite extends FunSuite { // scalastyle:ignore funsuite
     }
   }
 
-  def testMergeInPlace[T: ClassTag](typeName: String, numItems: Int)(itemGen: Random => T): Unit = {
-    test(s"mergeInPlace - $typeName") {
+  def testMergeInPlace[T: ClassTag](typeName: String, numItems: Int, blocked: Boolean)(
+      itemGen: Random => T): Unit = {
+    test(s"mergeInPlace - $typeName${variant(blocked)}") {
       // use a fixed seed to make the test predictable.
       val r = new Random(37)
 
       val items1 = Array.fill(numItems / 2)(itemGen(r))
       val items2 = Array.fill(numItems / 2)(itemGen(r))
 
-      val filter1 = BloomFilter.create(numItems)
+      val filter1 = createFilter(blocked, numItems, BloomFilter.DEFAULT_FPP)
       items1.foreach(filter1.put)
 
-      val filter2 = BloomFilter.create(numItems)
+      val filter2 = createFilter(blocked, numItems, BloomFilter.DEFAULT_FPP)
       items2.foreach(filter2.put)
 
       filter1.mergeInPlace(filter2)
@@ -100,8 +128,10 @@ class BloomFilterSuite extends FunSuite { // scalastyle:ignore funsuite
   }
 
   def testItemType[T: ClassTag](typeName: String, numItems: Int)(itemGen: Random => T): Unit = {
-    testAccuracy[T](typeName, numItems)(itemGen)
-    testMergeInPlace[T](typeName, numItems)(itemGen)
+    Seq(false, true).foreach { blocked =>
+      testAccuracy[T](typeName, numItems, blocked)(itemGen)
+      testMergeInPlace[T](typeName, numItems, blocked)(itemGen)
+    }
   }
 
   testItemType[Byte]("Byte", 160) { _.nextInt().toByte }
@@ -130,5 +160,96 @@ class BloomFilterSuite extends FunSuite { // scalastyle:ignore funsuite
       val filter2 = BloomFilter.create(2000, 6400)
       filter1.mergeInPlace(filter2)
     }
+
+    intercept[IncompatibleMergeException] {
+      val filter1 = BloomFilter.create(1000, 6400)
+      val filter2 = BloomFilter.createBlocked(1000, 6400)
+      filter1.mergeInPlace(filter2)
+    }
+
+    intercept[IncompatibleMergeException] {
+      val filter1 = BloomFilter.createBlocked(1000, 6400)
+      val filter2 = BloomFilter.create(1000, 6400)
+      filter1.mergeInPlace(filter2)
+    }
+  }
+
+  test("blocked filter rounds bit size up to whole blocks") {
+    assert(BloomFilter.createBlocked(1000, 1).bitSize() == 512)
+    assert(BloomFilter.createBlocked(1000, 512).bitSize() == 512)
+    assert(BloomFilter.createBlocked(1000, 513).bitSize() == 1024)
+  }
+
+  test("filter read from a buffer does not share its memory") {
+    Seq(BloomFilter.create(1000), BloomFilter.createBlocked(1000)).foreach { filter =>
+      filter.putLong(1L)
+      val out = new ByteArrayOutputStream()
+      filter.writeTo(out)
+      val buffer = ByteBuffer.wrap(out.toByteArray).asReadOnlyBuffer()
+
+      val copy = BloomFilter.readFrom(buffer.duplicate())
+      assert(copy.mightContainLong(1L))
+      (2L to 100L).foreach(copy.putLong)
+      assert(BloomFilter.readFrom(buffer.duplicate()) == filter)
+    }
+  }
+
+  test("wrapped filter reads the bits from the buffer") {
+    Seq(BloomFilter.create(1000), BloomFilter.createBlocked(1000)).foreach { filter =>
+      (1L to 100L).foreach(filter.putLong)
+      filter.putString("a")
+      val out = new ByteArrayOutputStream()
+      filter.writeTo(out)
+      val bytes = out.toByteArray
+      val buffer = ByteBuffer.allocateDirect(bytes.length)
+      buffer.put(bytes).flip()
+
+      val wrapped = BloomFilter.wrap(buffer.duplicate())
+      (1L to 100L).foreach(i => assert(wrapped.mightContainLong(i)))
+      assert(wrapped.mightContain("a"))
+      assert((101L to 10000L).count(wrapped.mightContainLong) ==
+        (101L to 10000L).count(filter.mightContainLong))
+
+      // Clears the bits in the buffer, after the version, number of hash functions and words.
+      (12 until bytes.length).foreach(i => buffer.put(i, 0.toByte))
+      assert(!wrapped.mightContainLong(1L))
+      assert(wrapped.expectedFpp() == 0.0)
+    }
+  }
+
+  test("wrapped filter can't be modified") {
+    val filter = BloomFilter.create(1000)
+    val out = new ByteArrayOutputStream()
+    filter.writeTo(out)
+    val wrapped = BloomFilter.wrap(ByteBuffer.wrap(out.toByteArray))
+
+    intercept[UnsupportedOperationException] { wrapped.put(1L) }
+    intercept[UnsupportedOperationException] { wrapped.putLong(1L) }
+    intercept[UnsupportedOperationException] { wrapped.putString("a") }
+    intercept[UnsupportedOperationException] { wrapped.putBinary(Array[Byte](1)) }
+    intercept[UnsupportedOperationException] { wrapped.putLongs(Array(1L)) }
+    intercept[UnsupportedOperationException] { wrapped.mergeInPlace(BloomFilter.create(1000)) }
+    assert(!wrapped.mightContainLong(1L))
+  }
+
+  test("putLongs and mightContainLongs") {
+    val r = new Random(37)
+    val items = Array.fill(10000)(r.nextLong())
+    val inserted = items.take(1000)
+
+    Seq(BloomFilter.create(1000), BloomFilter.createBlocked(1000)).foreach { filter =>
+      filter.putLongs(inserted)
+      inserted.foreach(i => assert(filter.mightContainLong(i)))
+
+      val results = new Array[Boolean](items.length)
+      filter.mightContainLongs(items, results)
+      items.zip(results).foreach { case (item, result) =>
+        assert(result == filter.mightContainLong(item))
+      }
+
+      intercept[IllegalArgumentException] {
+        filter.mightContainLongs(items, new Array[Boolean](items.length - 1))
+      }
+    }
   }
 }
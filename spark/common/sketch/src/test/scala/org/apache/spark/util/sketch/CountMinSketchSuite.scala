@@ -17,7 +17,8 @@
 
 package org.apache.spark.util.sketch
 
-import java.io.{ByteArrayInputStream, ByteArrayOutputStream}
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataOutputStream, IOException}
+import java.nio.ByteBuffer
 
 import scala.reflect.ClassTag
 import scala.util.Random
@@ -41,6 +42,22 @@ class CountMinSketchSuite extends FunSuite { // scalastyle:ignore funsuite
     val deserialized = CountMinSketch.readFrom(in)
 
     assert(sketch === deserialized)
+
+    // Also reads it from an off-heap buffer, both as a copy and in place.
+    val bytes = out.toByteArray
+    val buffer = ByteBuffer.allocateDirect(bytes.length)
+    buffer.put(bytes).flip()
+    val copy = CountMinSketch.readFrom(buffer.duplicate())
+    assert(sketch === copy)
+
+    val wrapped = CountMinSketch.wrap(buffer)
+    assert(!buffer.hasRemaining)
+    assert(wrapped.depth() === sketch.depth())
+    assert(wrapped.width() === sketch.width())
+    assert(wrapped.totalCount() === sketch.totalCount())
+    val rewritten = new ByteArrayOutputStream()
+    wrapped.writeTo(rewritten)
+    assert(rewritten.toByteArray.sameElements(bytes))
   }
 
   def testAccuracy[T: ClassTag](typeName: String)(itemGenerator: Random => T): Unit = {
@@ -135,6 +152,83 @@ class CountMinSketchSuite extends FunSuite { // scalastyle:ignore funsuite
 
   testItemType[String]("String") { r => r.nextString(r.nextInt(20)) }
 
+  test("sketch read from a buffer does not share its memory") {
+    val sketch = CountMinSketch.create(epsOfTotalCount, confidence, seed)
+    sketch.addLong(1L)
+
+    val out = new ByteArrayOutputStream()
+    sketch.writeTo(out)
+    val buffer = ByteBuffer.wrap(out.toByteArray).asReadOnlyBuffer()
+    val copy = CountMinSketch.readFrom(buffer.duplicate())
+
+    assert(copy.estimateCount(1L) === 1L)
+    copy.addLong(1L)
+    assert(copy.estimateCount(1L) === 2L)
+    assert(copy.totalCount() === 2L)
+    assert(CountMinSketch.readFrom(buffer.duplicate()) === sketch)
+
+    sketch.mergeInPlace(copy)
+    assert(sketch.estimateCount(1L) === 3L)
+  }
+
+  test("wrapped sketch reads the counters from the buffer") {
+    val sketch = CountMinSketch.create(10, 100, seed)
+    (1L to 100L).foreach(i => sketch.addLong(i, i))
+    sketch.addString("a", 7)
+    val out = new ByteArrayOutputStream()
+    sketch.writeTo(out)
+    val bytes = out.toByteArray
+    val buffer = ByteBuffer.allocateDirect(bytes.length)
+    buffer.put(bytes).flip()
+
+    val wrapped = CountMinSketch.wrap(buffer.duplicate())
+    (1L to 100L).foreach(i => assert(wrapped.estimateCount(i) === sketch.estimateCount(i)))
+    assert(wrapped.estimateCount("a") === sketch.estimateCount("a"))
+
+    // Clears the counters in the buffer, which follow the header and the hash coefficients.
+    val tableOffset = 4 + 8 + 4 + 4 + 8 * sketch.depth()
+    (tableOffset until bytes.length).foreach(i => buffer.put(i, 0.toByte))
+    assert(wrapped.estimateCount(1L) === 0L)
+    assert(wrapped.estimateCount("a") === 0L)
+  }
+
+  test("wrapped sketch can't be modified") {
+    val sketch = CountMinSketch.create(10, 100, seed)
+    val out = new ByteArrayOutputStream()
+    sketch.writeTo(out)
+    val wrapped = CountMinSketch.wrap(ByteBuffer.wrap(out.toByteArray))
+
+    intercept[UnsupportedOperationException] { wrapped.add(1L) }
+    intercept[UnsupportedOperationException] { wrapped.addLong(1L) }
+    intercept[UnsupportedOperationException] { wrapped.addLong(1L, 2L) }
+    intercept[UnsupportedOperationException] { wrapped.addString("a") }
+    intercept[UnsupportedOperationException] { wrapped.addBinary(Array[Byte](1)) }
+    intercept[UnsupportedOperationException] {
+      wrapped.mergeInPlace(CountMinSketch.create(10, 100, seed))
+    }
+    assert(wrapped.estimateCount(1L) === 0L)
+  }
+
+  test("reject serialized sketches whose table size overflows") {
+    val out = new ByteArrayOutputStream()
+    val dos = new DataOutputStream(out)
+    dos.writeInt(CountMinSketch.Version.V1.getVersionNumber)
+    dos.writeLong(0L)
+    dos.writeInt(1 << 16)
+    dos.writeInt(1 << 16)
+    dos.close()
+
+    intercept[IOException] {
+      CountMinSketch.readFrom(new ByteArrayInputStream(out.toByteArray))
+    }
+    intercept[IOException] {
+      CountMinSketch.readFrom(ByteBuffer.wrap(out.toByteArray))
+    }
+    intercept[IOException] {
+      CountMinSketch.wrap(ByteBuffer.wrap(out.toByteArray))
+    }
+  }
+
   test("incompatible merge") {
     intercept[IncompatibleMergeException] {
       CountMinSketch.create(10, 10, 1).mergeInPlace(null)
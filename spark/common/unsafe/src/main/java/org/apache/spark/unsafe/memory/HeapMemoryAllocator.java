@@ -17,51 +17,45 @@
 
 package org.apache.spark.unsafe.memory;
 
-import javax.annotation.concurrent.GuardedBy;
-import java.lang.ref.WeakReference;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-
 import org.apache.spark.unsafe.Platform;
 
 /**
  * A simple {@link MemoryAllocator} that can allocate up to 16GB using a JVM long primitive array.
+ *
+ * Freed blocks of at least 1MB are kept in a {@link MemoryBlockPool} and reused by later
+ * allocations of the same size class. The pool only holds weak references to them, so pooled
+ * arrays are still reclaimed by the garbage collector when the heap runs low.
  */
 public class HeapMemoryAllocator implements MemoryAllocator {
 
-  @GuardedBy("this")
-  private final Map<Long, LinkedList<WeakReference<MemoryBlock>>> bufferPoolsBySize =
-    new HashMap<>();
-
   private static final int POOLING_THRESHOLD_BYTES = 1024 * 1024;
 
+  private final MemoryBlockPool pool;
+
+  public HeapMemoryAllocator() {
+    this(Long.MAX_VALUE);
+  }
+
+  public HeapMemoryAllocator(long maxRetainedBytes) {
+    this.pool = new MemoryBlockPool(maxRetainedBytes, true);
+  }
+
   /**
    * Returns true if allocations of the given size should go through the pooling mechanism and
    * false otherwise.
    */
   private boolean shouldPool(long size) {
     // Very small allocations are less likely to benefit from pooling.
-    return size >= POOLING_THRESHOLD_BYTES;
+    return size >= POOLING_THRESHOLD_BYTES && pool.canPool(MemoryBlockPool.sizeClass(size));
   }
 
   @Override
   public MemoryBlock allocate(long size) throws OutOfMemoryError {
     if (shouldPool(size)) {
-      synchronized (this) {
-        final LinkedList<WeakReference<MemoryBlock>> pool = bufferPoolsBySize.get(size);
-        if (pool != null) {
-          while (!pool.isEmpty()) {
-            final WeakReference<MemoryBlock> blockReference = pool.pop();
-            final MemoryBlock memory = blockReference.get();
-            if (memory != null) {
-              assert (memory.size() == size);
-              return memory;
-            }
-          }
-          bufferPoolsBySize.remove(size);
-        }
-      }
+      final long sizeClass = MemoryBlockPool.sizeClass(size);
+      final MemoryBlock block = pool.acquire(sizeClass);
+      final Object array = block != null ? block.getBaseObject() : new long[(int) (sizeClass / 8)];
+      return new MemoryBlock(array, Platform.LONG_ARRAY_OFFSET, size);
     }
     long[] array = new long[(int) ((size + 7) / 8)];
     return new MemoryBlock(array, Platform.LONG_ARRAY_OFFSET, size);
@@ -71,16 +65,32 @@ public class HeapMemoryAllocator implements MemoryAllocator {
   public void free(MemoryBlock memory) {
     final long size = memory.size();
     if (shouldPool(size)) {
-      synchronized (this) {
-        LinkedList<WeakReference<MemoryBlock>> pool = bufferPoolsBySize.get(size);
-        if (pool == null) {
-          pool = new LinkedList<>();
-          bufferPoolsBySize.put(size, pool);
-        }
-        pool.add(new WeakReference<>(memory));
-      }
+      // If the pool is full, the array is left to the garbage collector.
+      pool.release(memory, MemoryBlockPool.sizeClass(size));
     } else {
       // Do nothing
     }
   }
+
+  /**
+   * Returns the number of pooled allocations that reused a freed block.
+   */
+  public long getPoolHits() {
+    return pool.getHits();
+  }
+
+  /**
+   * Returns the number of pooled allocations that had to allocate a new block.
+   */
+  public long getPoolMisses() {
+    return pool.getMisses();
+  }
+
+  /**
+   * Returns the total size of the freed blocks currently kept for reuse, including blocks that
+   * were garbage collected since.
+   */
+  public long getPoolRetainedBytes() {
+    return pool.getRetainedBytes();
+  }
 }
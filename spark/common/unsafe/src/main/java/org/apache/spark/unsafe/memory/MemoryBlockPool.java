@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.unsafe.memory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A pool of freed memory blocks, used by the {@link MemoryAllocator}s to recycle pages.
+ *
+ * Requested sizes are rounded up to size classes (four per power of two, so at most 25% of a
+ * block is wasted), and blocks of the same class are interchangeable. To keep concurrent tasks
+ * from contending on a single lock, the pool is split into shards and a thread first uses the
+ * shard picked by its id, so that a thread usually gets back the pages it freed itself. Shards
+ * are not tied to the lifetime of threads, which matters for off-heap memory: pages freed by a
+ * thread that exits stay reachable from the pool. The total size of the retained blocks is
+ * bounded; blocks freed beyond the bound are given back to the underlying allocator.
+ *
+ * A pool of on-heap blocks only keeps weak references to them, so that the garbage collector can
+ * still reclaim freed pages under memory pressure. Its retained bytes then also count the blocks
+ * that were collected but not yet dropped from the pool.
+ */
+final class MemoryBlockPool {
+
+  private final class Shard {
+    // Holds MemoryBlocks, or WeakReferences to them if the pool is weak.
+    @GuardedBy("this")
+    private final Map<Long, ArrayDeque<Object>> blocksBySizeClass = new HashMap<>();
+
+    synchronized MemoryBlock poll(long sizeClass) {
+      final ArrayDeque<Object> blocks = blocksBySizeClass.get(sizeClass);
+      if (blocks == null) {
+        return null;
+      }
+      while (!blocks.isEmpty()) {
+        final MemoryBlock block = deref(blocks.pollLast());
+        retainedBytes.addAndGet(-sizeClass);
+        if (block != null) {
+          return block;
+        }
+      }
+      return null;
+    }
+
+    synchronized void add(MemoryBlock block, long sizeClass) {
+      ArrayDeque<Object> blocks = blocksBySizeClass.get(sizeClass);
+      if (blocks == null) {
+        blocks = new ArrayDeque<>();
+        blocksBySizeClass.put(sizeClass, blocks);
+      }
+      // Drop the oldest blocks of this size class if they were garbage collected.
+      while (!blocks.isEmpty() && deref(blocks.peekFirst()) == null) {
+        blocks.pollFirst();
+        retainedBytes.addAndGet(-sizeClass);
+      }
+      blocks.addLast(weak ? new WeakReference<>(block) : block);
+    }
+
+    synchronized void drainTo(List<MemoryBlock> drained) {
+      for (Map.Entry<Long, ArrayDeque<Object>> blocks : blocksBySizeClass.entrySet()) {
+        for (Object entry : blocks.getValue()) {
+          final MemoryBlock block = deref(entry);
+          retainedBytes.addAndGet(-blocks.getKey());
+          if (block != null) {
+            drained.add(block);
+          }
+        }
+      }
+      blocksBySizeClass.clear();
+    }
+  }
+
+  private final Shard[] shards;
+  private final long maxRetainedBytes;
+  private final boolean weak;
+
+  private final AtomicLong retainedBytes = new AtomicLong(0L);
+  private final AtomicLong hits = new AtomicLong(0L);
+  private final AtomicLong misses = new AtomicLong(0L);
+
+  /**
+   * @param maxRetainedBytes bound on the total size of the retained blocks; 0 disables pooling.
+   * @param weak whether blocks are only weakly referenced, which requires on-heap blocks.
+   */
+  MemoryBlockPool(long maxRetainedBytes, boolean weak) {
+    this.maxRetainedBytes = maxRetainedBytes;
+    this.weak = weak;
+    final int numShards =
+      Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) * 2;
+    this.shards = new Shard[numShards];
+    for (int i = 0; i < numShards; i++) {
+      shards[i] = new Shard();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private MemoryBlock deref(Object entry) {
+    return weak ? ((WeakReference<MemoryBlock>) entry).get() : (MemoryBlock) entry;
+  }
+
+  /**
+   * Rounds a size up to its size class: sizes in (2^k, 2^(k+1)] are rounded up to a multiple of
+   * 2^(k-2). Sizes must be at least 8 bytes.
+   */
+  static long sizeClass(long size) {
+    final long step = 1L << (63 - Long.numberOfLeadingZeros(size - 1) - 2);
+    return (size + step - 1) & -step;
+  }
+
+  /**
+   * Returns true if blocks of this size class may be retained by the pool.
+   */
+  boolean canPool(long sizeClass) {
+    return sizeClass <= maxRetainedBytes;
+  }
+
+  /**
+   * Takes a block of the given size class out of the pool, or returns null if there is none.
+   */
+  MemoryBlock acquire(long sizeClass) {
+    final int start = shardIndex();
+    for (int i = 0; i < shards.length; i++) {
+      final MemoryBlock block = shards[(start + i) & (shards.length - 1)].poll(sizeClass);
+      if (block != null) {
+        hits.incrementAndGet();
+        return block;
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Gives a block, whose memory spans the given size class, back to the pool. Returns false if the
+   * pool is full, in which case the caller should free the block.
+   */
+  boolean release(MemoryBlock block, long sizeClass) {
+    if (retainedBytes.addAndGet(sizeClass) > maxRetainedBytes) {
+      retainedBytes.addAndGet(-sizeClass);
+      return false;
+    }
+    shards[shardIndex()].add(block, sizeClass);
+    return true;
+  }
+
+  /**
+   * Takes all the blocks out of the pool.
+   */
+  List<MemoryBlock> drain() {
+    final List<MemoryBlock> drained = new ArrayList<>();
+    for (Shard shard : shards) {
+      shard.drainTo(drained);
+    }
+    return drained;
+  }
+
+  private int shardIndex() {
+    return (int) (Thread.currentThread().getId() & (shards.length - 1));
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  long getRetainedBytes() {
+    return retainedBytes.get();
+  }
+}
@@ -21,11 +21,39 @@ import org.apache.spark.unsafe.Platform;
 
 /**
  * A simple {@link MemoryAllocator} that uses {@code Unsafe} to allocate off-heap memory.
+ *
+ * If created with a positive bound on retained bytes, freed blocks of at least 1MB are kept in a
+ * {@link MemoryBlockPool} and reused by later allocations of the same size class instead of going
+ * back to the system allocator. The retained memory is not accounted for by the memory manager,
+ * so pooling is off by default and is enabled through `spark.memory.offHeap.pageCache.size`.
  */
 public class UnsafeMemoryAllocator implements MemoryAllocator {
 
+  private static final int POOLING_THRESHOLD_BYTES = 1024 * 1024;
+
+  private final MemoryBlockPool pool;
+
+  public UnsafeMemoryAllocator() {
+    this(0L);
+  }
+
+  public UnsafeMemoryAllocator(long maxRetainedBytes) {
+    this.pool = new MemoryBlockPool(maxRetainedBytes, false);
+  }
+
+  private boolean shouldPool(long size) {
+    return size >= POOLING_THRESHOLD_BYTES && pool.canPool(MemoryBlockPool.sizeClass(size));
+  }
+
   @Override
   public MemoryBlock allocate(long size) throws OutOfMemoryError {
+    if (shouldPool(size)) {
+      final long sizeClass = MemoryBlockPool.sizeClass(size);
+      final MemoryBlock block = pool.acquire(sizeClass);
+      final long address =
+        block != null ? block.getBaseOffset() : Platform.allocateMemory(sizeClass);
+      return new MemoryBlock(null, address, size);
+    }
     long address = Platform.allocateMemory(size);
     return new MemoryBlock(null, address, size);
   }
@@ -34,6 +62,40 @@ public class UnsafeMemoryAllocator implements MemoryAllocator {
   public void free(MemoryBlock memory) {
     assert (memory.obj == null) :
       "baseObject not null; are you trying to use the off-heap allocator to free on-heap memory?";
+    final long size = memory.size();
+    if (shouldPool(size) && pool.release(memory, MemoryBlockPool.sizeClass(size))) {
+      return;
+    }
     Platform.freeMemory(memory.offset);
   }
+
+  /**
+   * Gives the freed blocks kept for reuse back to the system allocator.
+   */
+  public void releasePooledMemory() {
+    for (MemoryBlock block : pool.drain()) {
+      Platform.freeMemory(block.getBaseOffset());
+    }
+  }
+
+  /**
+   * Returns the number of pooled allocations that reused a freed block.
+   */
+  public long getPoolHits() {
+    return pool.getHits();
+  }
+
+  /**
+   * Returns the number of pooled allocations that had to allocate a new block.
+   */
+  public long getPoolMisses() {
+    return pool.getMisses();
+  }
+
+  /**
+   * Returns the total size of the freed blocks currently kept for reuse.
+   */
+  public long getPoolRetainedBytes() {
+    return pool.getRetainedBytes();
+  }
 }
@@ -792,7 +792,52 @@ public final class UTF8String implements Comparable<UTF8String>, Externalizable,
     return fromBytes(result);
   }
 
+  /**
+   * Splits this string around matches of the given regex `pattern`, with the semantics of
+   * `String.split(regex, limit)`. If the pattern is a literal (contains no regex meta characters,
+   * or is a single escaped non-alphanumeric character), the string is split at the byte level and
+   * the returned strings are slices that share the memory of this string. Otherwise this falls
+   * back to `java.util.regex`.
+   */
   public UTF8String[] split(UTF8String pattern, int limit) {
+    UTF8String delimiter = literalDelimiter(pattern);
+    if (delimiter == null) {
+      return splitRegex(pattern, limit);
+    }
+    if (delimiter.numBytes == 1) {
+      return splitByByte(delimiter.getByte(0), limit);
+    }
+    return splitByLiteral(delimiter, limit);
+  }
+
+  private static final String REGEX_META_CHARS = ".$|()[{^?*+\\";
+
+  /**
+   * Returns the literal string matched by `pattern`, or null if it is a real regex.
+   */
+  private static UTF8String literalDelimiter(UTF8String pattern) {
+    int n = pattern.numBytes;
+    if (n == 0) {
+      // An empty regex matches between every character.
+      return null;
+    }
+    if (n == 2 && pattern.getByte(0) == '\\') {
+      byte c = pattern.getByte(1);
+      if (c >= 0 && !Character.isLetterOrDigit(c)) {
+        return pattern.copyUTF8String(1, 1);
+      }
+      return null;
+    }
+    for (int i = 0; i < n; i++) {
+      byte b = pattern.getByte(i);
+      if (b >= 0 && REGEX_META_CHARS.indexOf(b) >= 0) {
+        return null;
+      }
+    }
+    return pattern;
+  }
+
+  private UTF8String[] splitRegex(UTF8String pattern, int limit) {
     String[] splits = toString().split(pattern.toString(), limit);
     UTF8String[] res = new UTF8String[splits.length];
     for (int i = 0; i < res.length; i++) {
@@ -801,8 +846,158 @@ public final class UTF8String implements Comparable<UTF8String>, Externalizable,
     return res;
   }
 
-  // TODO: Need to use `Code Point` here instead of Char in case the character longer than 2 bytes
+  private UTF8String[] splitByByte(byte delimiter, int limit) {
+    int count = 1;
+    for (int i = 0; i < numBytes && (limit <= 0 || count < limit); i++) {
+      if (getByte(i) == delimiter) {
+        count++;
+      }
+    }
+    int[] starts = new int[count];
+    int[] ends = new int[count];
+    int idx = 0;
+    int start = 0;
+    for (int i = 0; i < numBytes && idx < count - 1; i++) {
+      if (getByte(i) == delimiter) {
+        starts[idx] = start;
+        ends[idx] = i;
+        idx++;
+        start = i + 1;
+      }
+    }
+    starts[idx] = start;
+    ends[idx] = numBytes;
+    return slices(starts, ends, count, limit);
+  }
+
+  private UTF8String[] splitByLiteral(UTF8String delimiter, int limit) {
+    int count = 1;
+    int i = find(delimiter, 0);
+    while (i >= 0 && (limit <= 0 || count < limit)) {
+      count++;
+      i = find(delimiter, i + delimiter.numBytes);
+    }
+    int[] starts = new int[count];
+    int[] ends = new int[count];
+    int start = 0;
+    for (int idx = 0; idx < count - 1; idx++) {
+      int end = find(delimiter, start);
+      starts[idx] = start;
+      ends[idx] = end;
+      start = end + delimiter.numBytes;
+    }
+    starts[count - 1] = start;
+    ends[count - 1] = numBytes;
+    return slices(starts, ends, count, limit);
+  }
+
+  /**
+   * Creates the result of split() from the byte ranges of the pieces, dropping trailing empty
+   * pieces if `limit` is 0 just like `String.split`.
+   */
+  private UTF8String[] slices(int[] starts, int[] ends, int count, int limit) {
+    if (count == 1) {
+      // No match, the result is the string itself.
+      return new UTF8String[]{this};
+    }
+    int resultSize = count;
+    if (limit == 0) {
+      while (resultSize > 0 && starts[resultSize - 1] == ends[resultSize - 1]) {
+        resultSize--;
+      }
+    }
+    UTF8String[] res = new UTF8String[resultSize];
+    for (int i = 0; i < resultSize; i++) {
+      res[i] = fromAddress(base, offset + starts[i], ends[i] - starts[i]);
+    }
+    return res;
+  }
+
+  /**
+   * Replaces every character of this string that is a key of `dict` by its value, or removes it
+   * if the value is '\0'. Works on the UTF-8 bytes directly, and only decodes to a Java String if
+   * this string contains characters outside of the Basic Multilingual Plane (which are made of
+   * two chars in UTF-16), invalid UTF-8, or if a replacement is a surrogate char.
+   */
   public UTF8String translate(Map<Character, Character> dict) {
+    byte[] result = null;
+    int resultSize = 0;
+    int i = 0;
+    while (i < numBytes) {
+      byte b = getByte(i);
+      int len = numBytesForFirstByte(b);
+      int codePoint;
+      if (len == 1 && b >= 0) {
+        codePoint = b;
+      } else if (len == 2 && (b & 0xE0) == 0xC0 && i + 1 < numBytes) {
+        codePoint = ((b & 0x1F) << 6) | (getByte(i + 1) & 0x3F);
+      } else if (len == 3 && i + 2 < numBytes) {
+        codePoint = ((b & 0x0F) << 12) | ((getByte(i + 1) & 0x3F) << 6) | (getByte(i + 2) & 0x3F);
+      } else {
+        return translateSlow(dict);
+      }
+
+      Character replacement = dict.get((char) codePoint);
+      if (replacement != null && Character.isSurrogate(replacement)) {
+        return translateSlow(dict);
+      }
+      if (replacement == null) {
+        if (result != null) {
+          result = ensureCapacity(result, resultSize + len);
+          copyMemory(base, offset + i, result, BYTE_ARRAY_OFFSET + resultSize, len);
+          resultSize += len;
+        }
+      } else {
+        if (result == null) {
+          // First translated character, copy everything before it.
+          result = new byte[Math.max(numBytes, 16)];
+          copyMemory(base, offset, result, BYTE_ARRAY_OFFSET, i);
+          resultSize = i;
+        }
+        char c = replacement;
+        if (c != '\0') {
+          result = ensureCapacity(result, resultSize + 3);
+          resultSize += encodeChar(c, result, resultSize);
+        }
+      }
+      i += len;
+    }
+    if (result == null) {
+      // Nothing was translated.
+      return this;
+    }
+    return fromBytes(result, 0, resultSize);
+  }
+
+  private static byte[] ensureCapacity(byte[] bytes, int size) {
+    if (bytes.length >= size) {
+      return bytes;
+    }
+    return Arrays.copyOf(bytes, Math.max(size, bytes.length * 2));
+  }
+
+  /**
+   * Writes the UTF-8 encoding of the (non surrogate) char `c` into `dst` at `pos`, and returns
+   * the number of bytes written.
+   */
+  private static int encodeChar(char c, byte[] dst, int pos) {
+    if (c < 0x80) {
+      dst[pos] = (byte) c;
+      return 1;
+    } else if (c < 0x800) {
+      dst[pos] = (byte) (0xC0 | (c >> 6));
+      dst[pos + 1] = (byte) (0x80 | (c & 0x3F));
+      return 2;
+    } else {
+      dst[pos] = (byte) (0xE0 | (c >> 12));
+      dst[pos + 1] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      dst[pos + 2] = (byte) (0x80 | (c & 0x3F));
+      return 3;
+    }
+  }
+
+  // TODO: Need to use `Code Point` here instead of Char in case the character longer than 2 bytes
+  private UTF8String translateSlow(Map<Character, Character> dict) {
     String srcStr = this.toString();
 
     StringBuilder sb = new StringBuilder();
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.unsafe.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemoryAllocatorSuite {
+
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  public void sizeClasses() {
+    Assert.assertEquals(MB, MemoryBlockPool.sizeClass(MB));
+    Assert.assertEquals(MB + MB / 4, MemoryBlockPool.sizeClass(MB + 1));
+    Assert.assertEquals(MB + MB / 2, MemoryBlockPool.sizeClass(MB + MB / 4 + 1));
+    Assert.assertEquals(2 * MB, MemoryBlockPool.sizeClass(2 * MB - 1));
+    Assert.assertEquals(2 * MB, MemoryBlockPool.sizeClass(2 * MB));
+    for (long size = 8; size < 64 * MB; size = size * 3 / 2 + 1) {
+      final long sizeClass = MemoryBlockPool.sizeClass(size);
+      Assert.assertTrue(sizeClass >= size);
+      Assert.assertTrue(sizeClass <= size + size / 4 + 1);
+      Assert.assertEquals(sizeClass, MemoryBlockPool.sizeClass(sizeClass));
+    }
+  }
+
+  @Test
+  public void heapAllocatorReusesFreedBlocks() {
+    final HeapMemoryAllocator allocator = new HeapMemoryAllocator();
+    final MemoryBlock first = allocator.allocate(MB + 100);
+    Assert.assertEquals(MB + 100, first.size());
+    allocator.free(first);
+    Assert.assertEquals(MB + MB / 4, allocator.getPoolRetainedBytes());
+    // A different size of the same size class gets the same array back.
+    final MemoryBlock second = allocator.allocate(MB + 200);
+    Assert.assertSame(first.getBaseObject(), second.getBaseObject());
+    Assert.assertEquals(MB + 200, second.size());
+    Assert.assertEquals(1, allocator.getPoolHits());
+    Assert.assertEquals(1, allocator.getPoolMisses());
+    Assert.assertEquals(0, allocator.getPoolRetainedBytes());
+    allocator.free(second);
+  }
+
+  @Test
+  public void smallBlocksAreNotPooled() {
+    final HeapMemoryAllocator allocator = new HeapMemoryAllocator();
+    final MemoryBlock block = allocator.allocate(1024);
+    allocator.free(block);
+    Assert.assertEquals(0, allocator.getPoolRetainedBytes());
+    Assert.assertNotSame(block.getBaseObject(), allocator.allocate(1024).getBaseObject());
+    Assert.assertEquals(0, allocator.getPoolHits() + allocator.getPoolMisses());
+  }
+
+  @Test
+  public void retentionIsBounded() {
+    final HeapMemoryAllocator allocator = new HeapMemoryAllocator(4 * MB);
+    final MemoryBlock[] blocks = new MemoryBlock[4];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = allocator.allocate(2 * MB);
+    }
+    for (MemoryBlock block : blocks) {
+      allocator.free(block);
+    }
+    Assert.assertEquals(4 * MB, allocator.getPoolRetainedBytes());
+    // Blocks larger than the bound are never pooled.
+    allocator.free(allocator.allocate(8 * MB));
+    Assert.assertEquals(4 * MB, allocator.getPoolRetainedBytes());
+    Assert.assertEquals(4, allocator.getPoolMisses());
+  }
+
+  @Test
+  public void offHeapAllocatorReusesFreedBlocks() {
+    final UnsafeMemoryAllocator allocator = new UnsafeMemoryAllocator(4 * MB);
+    final MemoryBlock first = allocator.allocate(3 * MB);
+    allocator.free(first);
+    Assert.assertEquals(3 * MB, allocator.getPoolRetainedBytes());
+    final MemoryBlock second = allocator.allocate(3 * MB - 1);
+    Assert.assertEquals(first.getBaseOffset(), second.getBaseOffset());
+    Assert.assertEquals(1, allocator.getPoolHits());
+    // The pool is full, so this block goes back to the system allocator.
+    final MemoryBlock third = allocator.allocate(3 * MB);
+    allocator.free(second);
+    allocator.free(third);
+    Assert.assertEquals(3 * MB, allocator.getPoolRetainedBytes());
+    allocator.releasePooledMemory();
+    Assert.assertEquals(0, allocator.getPoolRetainedBytes());
+  }
+
+  @Test
+  public void offHeapPoolingIsOffByDefault() {
+    final UnsafeMemoryAllocator allocator = new UnsafeMemoryAllocator();
+    allocator.free(allocator.allocate(2 * MB));
+    Assert.assertEquals(0, allocator.getPoolRetainedBytes());
+    Assert.assertEquals(0, allocator.getPoolHits() + allocator.getPoolMisses());
+  }
+
+  @Test
+  public void concurrentAllocations() throws Exception {
+    final HeapMemoryAllocator allocator = new HeapMemoryAllocator();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int seed = t;
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (int i = 0; i < 1000; i++) {
+              final long size = MB + ((i * 31 + seed) % 16) * 64 * 1024;
+              final MemoryBlock block = allocator.allocate(size);
+              Assert.assertEquals(size, block.size());
+              Assert.assertTrue(((long[]) block.getBaseObject()).length * 8L >= size);
+              allocator.free(block);
+            }
+          }
+        }));
+      }
+      // Rethrows the assertion errors of the workers, wrapped in an ExecutionException.
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(8000, allocator.getPoolHits() + allocator.getPoolMisses());
+  }
+}
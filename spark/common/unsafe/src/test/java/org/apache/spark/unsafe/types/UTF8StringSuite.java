@@ -377,6 +377,34 @@ public class UTF8StringSuite {
       new UTF8String[]{fromString("ab"), fromString("def,ghi")}));
     assertTrue(Arrays.equals(fromString("ab,def,ghi").split(fromString(","), 2),
       new UTF8String[]{fromString("ab"), fromString("def,ghi")}));
+    // Trailing empty strings are removed with limit 0, like String.split.
+    assertTrue(Arrays.equals(fromString(",ab,,").split(fromString(","), 0),
+      new UTF8String[]{fromString(""), fromString("ab")}));
+    assertTrue(Arrays.equals(fromString(",ab,,").split(fromString(","), -1),
+      new UTF8String[]{fromString(""), fromString("ab"), fromString(""), fromString("")}));
+    assertTrue(Arrays.equals(fromString(",,").split(fromString(","), 0), new UTF8String[]{}));
+    assertTrue(Arrays.equals(fromString("").split(fromString(","), 0),
+      new UTF8String[]{fromString("")}));
+    // Multi-byte and escaped literals.
+    assertTrue(Arrays.equals(fromString("a世界b世界c").split(fromString("世界"), -1),
+      new UTF8String[]{fromString("a"), fromString("b"), fromString("c")}));
+    assertTrue(Arrays.equals(fromString("a.b|c").split(fromString("\\."), -1),
+      new UTF8String[]{fromString("a"), fromString("b|c")}));
+    // Real regex patterns.
+    assertTrue(Arrays.equals(fromString("a1b22c").split(fromString("[0-9]+"), -1),
+      new UTF8String[]{fromString("a"), fromString("b"), fromString("c")}));
+    assertTrue(Arrays.equals(fromString("a.b").split(fromString("."), -1),
+      new UTF8String[]{fromString(""), fromString(""), fromString(""), fromString("")}));
+  }
+
+  @Test
+  public void splitLiteralIsZeroCopy() {
+    UTF8String str = fromString("ab,def");
+    UTF8String[] splits = str.split(fromString(","), -1);
+    assertEquals(2, splits.length);
+    assertSame(str.getBaseObject(), splits[0].getBaseObject());
+    assertSame(str.getBaseObject(), splits[1].getBaseObject());
+    assertEquals(str.getBaseOffset() + 3, splits[1].getBaseOffset());
   }
 
   @Test
@@ -420,6 +448,12 @@ public class UTF8StringSuite {
         '花', 'a',
         '界', 'b'
       )));
+    assertEquals(
+      fromString("世ransla世é"),
+      fromString("translate").translate(ImmutableMap.of(
+        't', '世',
+        'e', 'é'
+      )));
   }
 
   @Test
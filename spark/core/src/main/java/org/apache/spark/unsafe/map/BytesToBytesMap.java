@@ -68,6 +68,25 @@ public final class BytesToBytesMap extends MemoryConsumer {
 
   private static final HashMapGrowthStrategy growthStrategy = HashMapGrowthStrategy.DOUBLING;
 
+  /**
+   * How the map resolves collisions between keys whose hashcodes map to the same position.
+   */
+  public enum ProbingStrategy {
+    /**
+     * Triangular probing: the i-th probe is i * (i + 1) / 2 positions after the key's home
+     * position. A lookup of a missing key only stops at an empty position.
+     */
+    TRIANGULAR,
+
+    /**
+     * Linear probing with Robin Hood insertion: the keys of a cluster are kept ordered by home
+     * position, so a lookup stops as soon as it reaches a key whose probe distance is smaller than
+     * its own, without comparing more keys. The probe distance of a key is derived from its
+     * stored hashcode and its position, so this uses the same array layout as TRIANGULAR.
+     */
+    ROBIN_HOOD
+  }
+
   private final TaskMemoryManager taskMemoryManager;
 
   /**
@@ -124,6 +143,8 @@ public final class BytesToBytesMap extends MemoryConsumer {
 
   private final double loadFactor;
 
+  private final ProbingStrategy probingStrategy;
+
   /**
    * The size of the data pages that hold key and value data. Map entries cannot span multiple
    * pages, so this limits the maximum entry size.
@@ -182,11 +203,25 @@ public final class BytesToBytesMap extends MemoryConsumer {
       double loadFactor,
       long pageSizeBytes,
       boolean enablePerfMetrics) {
+    this(taskMemoryManager, blockManager, serializerManager, initialCapacity, loadFactor,
+      pageSizeBytes, enablePerfMetrics, ProbingStrategy.TRIANGULAR);
+  }
+
+  public BytesToBytesMap(
+      TaskMemoryManager taskMemoryManager,
+      BlockManager blockManager,
+      SerializerManager serializerManager,
+      int initialCapacity,
+      double loadFactor,
+      long pageSizeBytes,
+      boolean enablePerfMetrics,
+      ProbingStrategy probingStrategy) {
     super(taskMemoryManager, pageSizeBytes, taskMemoryManager.getTungstenMemoryMode());
     this.taskMemoryManager = taskMemoryManager;
     this.blockManager = blockManager;
     this.serializerManager = serializerManager;
     this.loadFactor = loadFactor;
+    this.probingStrategy = probingStrategy;
     this.loc = new Location();
     this.pageSizeBytes = pageSizeBytes;
     this.enablePerfMetrics = enablePerfMetrics;
@@ -216,6 +251,16 @@ public final class BytesToBytesMap extends MemoryConsumer {
       int initialCapacity,
       long pageSizeBytes,
       boolean enablePerfMetrics) {
+    this(taskMemoryManager, initialCapacity, pageSizeBytes, enablePerfMetrics,
+      ProbingStrategy.TRIANGULAR);
+  }
+
+  public BytesToBytesMap(
+      TaskMemoryManager taskMemoryManager,
+      int initialCapacity,
+      long pageSizeBytes,
+      boolean enablePerfMetrics,
+      ProbingStrategy probingStrategy) {
     this(
       taskMemoryManager,
       SparkEnv.get() != null ? SparkEnv.get().blockManager() :  null,
@@ -224,7 +269,8 @@ public final class BytesToBytesMap extends MemoryConsumer {
       // In order to re-use the longArray for sorting, the load factor cannot be larger than 0.5.
       0.5,
       pageSizeBytes,
-      enablePerfMetrics);
+      enablePerfMetrics,
+      probingStrategy);
   }
 
   /**
@@ -370,7 +416,8 @@ public final class BytesToBytesMap extends MemoryConsumer {
           int numRecords = Platform.getInt(base, offset);
           offset += 4;
           final UnsafeSorterSpillWriter writer =
-            new UnsafeSorterSpillWriter(blockManager, 32 * 1024, writeMetrics, numRecords);
+            new UnsafeSorterSpillWriter(
+              blockManager, serializerManager, 32 * 1024, writeMetrics, numRecords);
           while (numRecords > 0) {
             int length = Platform.getInt(base, offset);
             writer.write(base, offset + 4, length, 0);
@@ -459,6 +506,10 @@ public final class BytesToBytesMap extends MemoryConsumer {
     if (enablePerfMetrics) {
       numKeyLookups++;
     }
+    if (probingStrategy == ProbingStrategy.ROBIN_HOOD) {
+      robinHoodLookup(keyBase, keyOffset, keyLength, loc, hash);
+      return;
+    }
     int pos = hash & mask;
     int step = 1;
     while (true) {
@@ -497,6 +548,88 @@ public final class BytesToBytesMap extends MemoryConsumer {
     }
   }
 
+  /**
+   * Implementation of `safeLookup` for {@link ProbingStrategy#ROBIN_HOOD}. If the key is not
+   * found, `loc` points to the position where it must be inserted, which may be taken by a key
+   * that `Location.append` moves forward.
+   */
+  private void robinHoodLookup(
+      Object keyBase, long keyOffset, int keyLength, Location loc, int hash) {
+    int pos = hash & mask;
+    int distance = 0;
+    while (true) {
+      if (enablePerfMetrics) {
+        numProbes++;
+      }
+      if (longArray.get(pos * 2) == 0) {
+        loc.with(pos, hash, false);
+        return;
+      }
+      int storedHash = (int) longArray.get(pos * 2 + 1);
+      if (((pos - storedHash) & mask) < distance) {
+        // The stored key is closer to its home position than this key would be, so this key
+        // can't be in the rest of the cluster.
+        loc.with(pos, hash, false);
+        return;
+      }
+      if (storedHash == hash) {
+        loc.with(pos, hash, true);
+        if (loc.getKeyLength() == keyLength && ByteArrayMethods.arrayEquals(
+            keyBase, keyOffset, loc.getKeyBase(), loc.getKeyOffset(), keyLength)) {
+          return;
+        } else if (enablePerfMetrics) {
+          numHashCollisions++;
+        }
+      }
+      pos = (pos + 1) & mask;
+      distance++;
+    }
+  }
+
+  /**
+   * Makes room for a new key at `pos` with {@link ProbingStrategy#ROBIN_HOOD}, by moving the keys
+   * from `pos` to the end of its cluster forward by one position.
+   */
+  private void robinHoodShift(int pos) {
+    int end = pos;
+    while (longArray.get(end * 2) != 0) {
+      end = (end + 1) & mask;
+    }
+    while (end != pos) {
+      int prev = (end - 1) & mask;
+      longArray.set(end * 2, longArray.get(prev * 2));
+      longArray.set(end * 2 + 1, longArray.get(prev * 2 + 1));
+      end = prev;
+    }
+    longArray.set(pos * 2, 0);
+  }
+
+  /**
+   * Finds the position to insert a key with the given hashcode into `longArray`, making room for
+   * it if needed. Only used when re-hashing, as all the keys are known to be distinct.
+   */
+  private int findInsertPosition(int hashcode) {
+    int pos = hashcode & mask;
+    if (probingStrategy == ProbingStrategy.ROBIN_HOOD) {
+      int distance = 0;
+      while (longArray.get(pos * 2) != 0 &&
+          ((pos - (int) longArray.get(pos * 2 + 1)) & mask) >= distance) {
+        pos = (pos + 1) & mask;
+        distance++;
+      }
+      if (longArray.get(pos * 2) != 0) {
+        robinHoodShift(pos);
+      }
+    } else {
+      int step = 1;
+      while (longArray.get(pos * 2) != 0) {
+        pos = (pos + step) & mask;
+        step++;
+      }
+    }
+    return pos;
+  }
+
   /**
    * Handle returned by {@link BytesToBytesMap#lookup(Object, long, int)} function.
    */
@@ -719,6 +852,10 @@ public final class BytesToBytesMap extends MemoryConsumer {
       offset += vlen;
       // put this value at the beginning of the list
       Platform.putLong(base, offset, isDefined ? longArray.get(pos * 2) : 0);
+      if (!isDefined && longArray.get(pos * 2) != 0) {
+        // With Robin Hood probing, a new key may take the position of another one.
+        robinHoodShift(pos);
+      }
 
       // --- Update bookkeeping data structures ----------------------------------------------------
       offset = currentPage.getBaseOffset();
@@ -932,12 +1069,7 @@ public final class BytesToBytesMap extends MemoryConsumer {
         continue;
       }
       final int hashcode = (int) oldLongArray.get(i + 1);
-      int newPos = hashcode & mask;
-      int step = 1;
-      while (longArray.get(newPos * 2) != 0) {
-        newPos = (newPos + step) & mask;
-        step++;
-      }
+      int newPos = findInsertPosition(hashcode);
       longArray.set(newPos * 2, keyPointer);
       longArray.set(newPos * 2 + 1, hashcode);
     }
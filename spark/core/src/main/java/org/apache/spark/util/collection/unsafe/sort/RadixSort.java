@@ -17,11 +17,29 @@
 
 package org.apache.spark.util.collection.unsafe.sort;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
 import org.apache.spark.unsafe.Platform;
 import org.apache.spark.unsafe.array.LongArray;
 
 public class RadixSort {
 
+  /**
+   * In the MSD sorts, buckets with at most this many records are sorted by insertion sort, which
+   * is cheaper than clearing and scanning 256 counters per remaining byte.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+
+  /**
+   * In the MSD sorts, buckets with at least this many records are sorted as separate tasks when a
+   * fork-join pool is given. Smaller buckets are sorted by the calling thread.
+   */
+  static final int PARALLEL_BUCKET_THRESHOLD = 1 << 14;
+
   /**
    * Sorts a given array of longs using least-significant-digit radix sort. This routine assumes
    * you have extra space at the end of the array at least equal to the number of records. The
@@ -49,7 +67,7 @@ public class RadixSort {
     int inIndex = 0;
     int outIndex = numRecords;
     if (numRecords > 0) {
-      long[][] counts = getCounts(array, numRecords, startByteIndex, endByteIndex);
+      long[][] counts = getCounts(array, 0, numRecords, startByteIndex, endByteIndex);
       for (int i = startByteIndex; i <= endByteIndex; i++) {
         if (counts[i] != null) {
           sortAtByte(
@@ -98,6 +116,7 @@ public class RadixSort {
    * Computes a value histogram for each byte in the given array.
    *
    * @param array array to count records in.
+   * @param startIndex index in the array of the first record to count.
    * @param numRecords number of data records in the array.
    * @param startByteIndex the first byte to compute counts for (the prior are skipped).
    * @param endByteIndex the last byte to compute counts for.
@@ -106,15 +125,16 @@ public class RadixSort {
    *         significant byte. If the byte does not need sorting the array will be null.
    */
   private static long[][] getCounts(
-      LongArray array, int numRecords, int startByteIndex, int endByteIndex) {
+      LongArray array, int startIndex, int numRecords, int startByteIndex, int endByteIndex) {
     long[][] counts = new long[8][];
     // Optimization: do a fast pre-pass to determine which byte indices we can skip for sorting.
     // If all the byte values at a particular index are the same we don't need to count it.
     long bitwiseMax = 0;
     long bitwiseMin = -1L;
-    long maxOffset = array.getBaseOffset() + numRecords * 8;
+    long baseOffset = array.getBaseOffset() + startIndex * 8L;
+    long maxOffset = baseOffset + numRecords * 8L;
     Object baseObject = array.getBaseObject();
-    for (long offset = array.getBaseOffset(); offset < maxOffset; offset += 8) {
+    for (long offset = baseOffset; offset < maxOffset; offset += 8) {
       long value = Platform.getLong(baseObject, offset);
       bitwiseMax |= value;
       bitwiseMin &= value;
@@ -125,7 +145,7 @@ public class RadixSort {
       if (((bitsChanged >>> (i * 8)) & 0xff) != 0) {
         counts[i] = new long[256];
         // TODO(ekl) consider computing all the counts in one pass.
-        for (long offset = array.getBaseOffset(); offset < maxOffset; offset += 8) {
+        for (long offset = baseOffset; offset < maxOffset; offset += 8) {
           counts[i][(int)((Platform.getLong(baseObject, offset) >>> (i * 8)) & 0xff)]++;
         }
       }
@@ -256,4 +276,243 @@ public class RadixSort {
       offsets[bucket] += 16;
     }
   }
+
+  /**
+   * Sorts a given array of longs like {@link #sort}, but most-significant-digit first: the array
+   * is first split into up to 256 buckets on the most significant byte that varies, then each
+   * bucket is sorted independently on the remaining bytes. Each bucket skips the bytes that are
+   * constant within it, and small buckets fit in cache. If {@code pool} is not null, large buckets
+   * are sorted in parallel on it.
+   *
+   * Like {@link #sort}, this needs extra space at the end of the array at least equal to the
+   * number of records.
+   *
+   * @param pool pool to sort large buckets on, or null to sort all of them in the calling thread.
+   *
+   * @return The starting index of the sorted data within the given array.
+   */
+  public static int sortMSD(
+      LongArray array, int numRecords, int startByteIndex, int endByteIndex,
+      boolean desc, boolean signed, ForkJoinPool pool) {
+    assert startByteIndex >= 0 : "startByteIndex (" + startByteIndex + ") should >= 0";
+    assert endByteIndex <= 7 : "endByteIndex (" + endByteIndex + ") should <= 7";
+    assert endByteIndex > startByteIndex;
+    assert numRecords * 2 <= array.size();
+    return sortMSD(array, 0, numRecords, 1, startByteIndex, endByteIndex, desc, signed, pool);
+  }
+
+  /**
+   * Specialization of sortMSD() for key-prefix arrays, see {@link #sortKeyPrefixArray}.
+   */
+  public static int sortKeyPrefixArrayMSD(
+      LongArray array,
+      int startIndex,
+      int numRecords,
+      int startByteIndex,
+      int endByteIndex,
+      boolean desc,
+      boolean signed,
+      ForkJoinPool pool) {
+    assert startByteIndex >= 0 : "startByteIndex (" + startByteIndex + ") should >= 0";
+    assert endByteIndex <= 7 : "endByteIndex (" + endByteIndex + ") should <= 7";
+    assert endByteIndex > startByteIndex;
+    assert numRecords * 4 <= array.size();
+    return sortMSD(
+      array, startIndex, numRecords, 2, startByteIndex, endByteIndex, desc, signed, pool);
+  }
+
+  /**
+   * Shared implementation of the MSD sorts. Records are `recordLongs` longs wide and sorted on
+   * their last long.
+   */
+  private static int sortMSD(
+      LongArray array, int startIndex, int numRecords, int recordLongs,
+      int startByteIndex, int endByteIndex, boolean desc, boolean signed, ForkJoinPool pool) {
+    int inIndex = startIndex;
+    int outIndex = startIndex + numRecords * recordLongs;
+    if (numRecords == 0) {
+      return inIndex;
+    }
+    long bitsChanged = getBitsChanged(array, inIndex, numRecords, recordLongs);
+    int topByteIndex = endByteIndex;
+    while (topByteIndex >= startByteIndex && ((bitsChanged >>> (topByteIndex * 8)) & 0xff) == 0) {
+      topByteIndex--;
+    }
+    if (topByteIndex < startByteIndex) {
+      // All the records are equal on the sorted bytes.
+      return inIndex;
+    }
+
+    // Scatter the records into buckets on the top byte. Afterwards, `offsets[b]` is the end
+    // address of bucket b in the output, and `sizes[b]` its number of records.
+    long[] offsets = getCountsAtByte(array, inIndex, numRecords, recordLongs, topByteIndex);
+    long[] sizes = offsets.clone();
+    boolean signedTopByte = signed && topByteIndex == endByteIndex;
+    if (recordLongs == 1) {
+      sortAtByte(array, numRecords, offsets, topByteIndex, inIndex, outIndex, desc, signedTopByte);
+    } else {
+      sortKeyPrefixArrayAtByte(
+        array, numRecords, offsets, topByteIndex, inIndex, outIndex, desc, signedTopByte);
+    }
+    if (topByteIndex == startByteIndex) {
+      return outIndex;
+    }
+
+    // Sort each bucket on the remaining bytes, using the matching range of the input as scratch
+    // space, so buckets never overlap.
+    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int b = 0; b < 256; b++) {
+      int bucketSize = (int) sizes[b];
+      if (bucketSize <= 1) {
+        continue;
+      }
+      int bucketIndex = (int) ((offsets[b] - array.getBaseOffset()) / 8) - bucketSize * recordLongs;
+      BucketSort bucket = new BucketSort(array, bucketIndex, inIndex + (bucketIndex - outIndex),
+        bucketSize, recordLongs, startByteIndex, topByteIndex - 1, desc);
+      if (pool != null && bucketSize >= PARALLEL_BUCKET_THRESHOLD) {
+        tasks.add(pool.submit(bucket));
+      } else {
+        bucket.compute();
+      }
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    return outIndex;
+  }
+
+  /**
+   * Sorts one bucket of an MSD sort on bytes [startByteIndex, endByteIndex], leaving the sorted
+   * records at `index`. `scratchIndex` points to a free range of the same size.
+   */
+  private static final class BucketSort extends RecursiveAction {
+    private final LongArray array;
+    private final int index;
+    private final int scratchIndex;
+    private final int numRecords;
+    private final int recordLongs;
+    private final int startByteIndex;
+    private final int endByteIndex;
+    private final boolean desc;
+
+    BucketSort(
+        LongArray array, int index, int scratchIndex, int numRecords, int recordLongs,
+        int startByteIndex, int endByteIndex, boolean desc) {
+      this.array = array;
+      this.index = index;
+      this.scratchIndex = scratchIndex;
+      this.numRecords = numRecords;
+      this.recordLongs = recordLongs;
+      this.startByteIndex = startByteIndex;
+      this.endByteIndex = endByteIndex;
+      this.desc = desc;
+    }
+
+    @Override
+    protected void compute() {
+      if (numRecords <= INSERTION_SORT_THRESHOLD) {
+        insertionSort(array, index, numRecords, recordLongs, startByteIndex, endByteIndex, desc);
+        return;
+      }
+      // The counts skip the bytes that are constant within this bucket.
+      long[][] counts = recordLongs == 1 ?
+        getCounts(array, index, numRecords, startByteIndex, endByteIndex) :
+        getKeyPrefixArrayCounts(array, index, numRecords, startByteIndex, endByteIndex);
+      int inIndex = index;
+      int outIndex = scratchIndex;
+      for (int i = startByteIndex; i <= endByteIndex; i++) {
+        if (counts[i] != null) {
+          if (recordLongs == 1) {
+            sortAtByte(array, numRecords, counts[i], i, inIndex, outIndex, desc, false);
+          } else {
+            sortKeyPrefixArrayAtByte(array, numRecords, counts[i], i, inIndex, outIndex, desc,
+              false);
+          }
+          int tmp = inIndex;
+          inIndex = outIndex;
+          outIndex = tmp;
+        }
+      }
+      if (inIndex != index) {
+        // An odd number of passes left the records in the scratch range.
+        Platform.copyMemory(
+          array.getBaseObject(), array.getBaseOffset() + inIndex * 8L,
+          array.getBaseObject(), array.getBaseOffset() + index * 8L,
+          numRecords * recordLongs * 8L);
+      }
+    }
+  }
+
+  /**
+   * Returns the bits that are not the same in the sorted long of all the records, for records of
+   * `recordLongs` longs sorted on their last long.
+   */
+  private static long getBitsChanged(
+      LongArray array, int startIndex, int numRecords, int recordLongs) {
+    long bitwiseMax = 0;
+    long bitwiseMin = -1L;
+    int recordBytes = recordLongs * 8;
+    long baseOffset = array.getBaseOffset() + startIndex * 8L + (recordBytes - 8);
+    long limit = baseOffset + (long) numRecords * recordBytes;
+    Object baseObject = array.getBaseObject();
+    for (long offset = baseOffset; offset < limit; offset += recordBytes) {
+      long value = Platform.getLong(baseObject, offset);
+      bitwiseMax |= value;
+      bitwiseMin &= value;
+    }
+    return bitwiseMin ^ bitwiseMax;
+  }
+
+  /**
+   * Computes the value histogram of a single byte, for records of `recordLongs` longs sorted on
+   * their last long.
+   */
+  private static long[] getCountsAtByte(
+      LongArray array, int startIndex, int numRecords, int recordLongs, int byteIdx) {
+    long[] counts = new long[256];
+    int recordBytes = recordLongs * 8;
+    long baseOffset = array.getBaseOffset() + startIndex * 8L + (recordBytes - 8);
+    long limit = baseOffset + (long) numRecords * recordBytes;
+    Object baseObject = array.getBaseObject();
+    for (long offset = baseOffset; offset < limit; offset += recordBytes) {
+      counts[(int)((Platform.getLong(baseObject, offset) >>> (byteIdx * 8)) & 0xff)]++;
+    }
+    return counts;
+  }
+
+  /**
+   * Stable insertion sort of the records at `index` on bytes [startByteIndex, endByteIndex] of
+   * their last long, compared as unsigned values.
+   */
+  private static void insertionSort(
+      LongArray array, int index, int numRecords, int recordLongs,
+      int startByteIndex, int endByteIndex, boolean desc) {
+    long mask = (endByteIndex == 7 ? -1L : (1L << ((endByteIndex + 1) * 8)) - 1) &
+      (-1L << (startByteIndex * 8));
+    int keyIndex = recordLongs - 1;
+    for (int i = 1; i < numRecords; i++) {
+      int pos = index + i * recordLongs;
+      long key = recordLongs == 2 ? array.get(pos) : 0L;
+      long prefix = array.get(pos + keyIndex);
+      // Flipping the sign bit makes signed comparison order the values as unsigned.
+      long cmpValue = (prefix & mask) ^ Long.MIN_VALUE;
+      int j = i - 1;
+      while (j >= 0) {
+        int prevPos = index + j * recordLongs;
+        long prevCmpValue = (array.get(prevPos + keyIndex) & mask) ^ Long.MIN_VALUE;
+        if (desc ? prevCmpValue >= cmpValue : prevCmpValue <= cmpValue) {
+          break;
+        }
+        for (int k = 0; k < recordLongs; k++) {
+          array.set(prevPos + recordLongs + k, array.get(prevPos + k));
+        }
+        j--;
+      }
+      int dest = index + (j + 1) * recordLongs;
+      if (recordLongs == 2) {
+        array.set(dest, key);
+      }
+      array.set(dest + keyIndex, prefix);
+    }
+  }
 }
@@ -77,6 +77,9 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
 
   private final LinkedList<UnsafeSorterSpillWriter> spillWriters = new LinkedList<>();
 
+  /** Readers opened on the spill files, kept to report the time spent waiting for disk reads. */
+  private final LinkedList<UnsafeSorterSpillReader> spillReaders = new LinkedList<>();
+
   // These variables are reset after spilling:
   @Nullable private volatile UnsafeInMemorySorter inMemSorter;
 
@@ -205,8 +208,8 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
     // We only write out contents of the inMemSorter if it is not empty.
     if (inMemSorter.numRecords() > 0) {
       final UnsafeSorterSpillWriter spillWriter =
-        new UnsafeSorterSpillWriter(blockManager, fileBufferSizeBytes, writeMetrics,
-          inMemSorter.numRecords());
+        new UnsafeSorterSpillWriter(blockManager, serializerManager, fileBufferSizeBytes,
+          writeMetrics, inMemSorter.numRecords());
       spillWriters.add(spillWriter);
       final UnsafeSorterIterator sortedRecords = inMemSorter.getSortedIterator();
       while (sortedRecords.hasNext()) {
@@ -271,6 +274,17 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
     return totalSortTimeNanos;
   }
 
+  /**
+   * @return the total amount of time spent waiting for spill files to be read from disk.
+   */
+  public long getSpillReadWaitTimeNanos() {
+    long total = 0L;
+    for (UnsafeSorterSpillReader reader : spillReaders) {
+      total += reader.getReadWaitTimeNanos();
+    }
+    return total;
+  }
+
   /**
    * Return the total number of bytes that has been spilled into disk so far.
    */
@@ -305,6 +319,14 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
    * Deletes any spill files created by this sorter.
    */
   private void deleteSpillFiles() {
+    // Close the readers that were not fully consumed, which also stops their read-ahead.
+    for (UnsafeSorterSpillReader reader : spillReaders) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        logger.error("Was unable to close spill reader", e);
+      }
+    }
     for (UnsafeSorterSpillWriter spill : spillWriters) {
       File file = spill.getFile();
       if (file != null && file.exists()) {
@@ -449,6 +471,13 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
     other.cleanupResources();
   }
 
+  private UnsafeSorterSpillReader openSpillReader(UnsafeSorterSpillWriter spillWriter)
+      throws IOException {
+    final UnsafeSorterSpillReader reader = spillWriter.getReader(serializerManager);
+    spillReaders.add(reader);
+    return reader;
+  }
+
   /**
    * Returns a sorted iterator. It is the caller's responsibility to call `cleanupResources()`
    * after consuming this iterator.
@@ -463,7 +492,7 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
       final UnsafeSorterSpillMerger spillMerger =
         new UnsafeSorterSpillMerger(recordComparator, prefixComparator, spillWriters.size());
       for (UnsafeSorterSpillWriter spillWriter : spillWriters) {
-        spillMerger.addSpillIfNotEmpty(spillWriter.getReader(serializerManager));
+        spillMerger.addSpillIfNotEmpty(openSpillReader(spillWriter));
       }
       if (inMemSorter != null) {
         readingIterator = new SpillableIterator(inMemSorter.getSortedIterator());
@@ -504,7 +533,8 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
 
         // Iterate over the records that have not been returned and spill them.
         final UnsafeSorterSpillWriter spillWriter =
-          new UnsafeSorterSpillWriter(blockManager, fileBufferSizeBytes, writeMetrics, numRecords);
+          new UnsafeSorterSpillWriter(
+            blockManager, serializerManager, fileBufferSizeBytes, writeMetrics, numRecords);
         while (inMemIterator.hasNext()) {
           inMemIterator.loadNext();
           final Object baseObject = inMemIterator.getBaseObject();
@@ -514,7 +544,7 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
         }
         spillWriter.close();
         spillWriters.add(spillWriter);
-        nextUpstream = spillWriter.getReader(serializerManager);
+        nextUpstream = openSpillReader(spillWriter);
 
         long released = 0L;
         synchronized (UnsafeExternalSorter.this) {
@@ -603,7 +633,7 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
     } else {
       LinkedList<UnsafeSorterIterator> queue = new LinkedList<>();
       for (UnsafeSorterSpillWriter spillWriter : spillWriters) {
-        queue.add(spillWriter.getReader(serializerManager));
+        queue.add(openSpillReader(spillWriter));
       }
       if (inMemSorter != null) {
         queue.add(inMemSorter.getSortedIterator());
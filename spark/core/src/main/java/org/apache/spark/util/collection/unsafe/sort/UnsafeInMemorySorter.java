@@ -19,9 +19,11 @@ package org.apache.spark.util.collection.unsafe.sort;
 
 import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.avro.reflect.Nullable;
 
+import org.apache.spark.SparkEnv;
 import org.apache.spark.memory.MemoryConsumer;
 import org.apache.spark.memory.TaskMemoryManager;
 import org.apache.spark.unsafe.Platform;
@@ -38,6 +40,12 @@ import org.apache.spark.util.collection.Sorter;
  */
 public final class UnsafeInMemorySorter {
 
+  /**
+   * Number of records from which radix sort is done most-significant-byte first, so that the
+   * remaining passes work on buckets that fit in cache (see RadixSort.sortKeyPrefixArrayMSD).
+   */
+  static final int MSD_RADIX_SORT_THRESHOLD = 1 << 20;
+
   private static final class SortComparator implements Comparator<RecordPointerAndKeyPrefix> {
 
     private final RecordComparator recordComparator;
@@ -110,6 +118,12 @@ public final class UnsafeInMemorySorter {
 
   private long totalSortTimeNanos = 0L;
 
+  /**
+   * Pool of the executor in which the buckets of large radix sorts are sorted in parallel, or null
+   * if `spark.sort.radix.parallelism` is not greater than 1.
+   */
+  @Nullable private final ForkJoinPool radixSortPool;
+
   public UnsafeInMemorySorter(
     final MemoryConsumer consumer,
     final TaskMemoryManager memoryManager,
@@ -144,6 +158,7 @@ public final class UnsafeInMemorySorter {
     }
     this.array = array;
     this.usableCapacity = getUsableCapacity();
+    this.radixSortPool = SparkEnv.get() != null ? SparkEnv.get().getRadixSortPool() : null;
   }
 
   private int getUsableCapacity() {
@@ -307,9 +322,14 @@ public final class UnsafeInMemorySorter {
     int offset = 0;
     long start = System.nanoTime();
     if (sortComparator != null) {
-      if (this.radixSortSupport != null) {
+      int numRadixSortRecords = (pos - nullBoundaryPos) / 2;
+      if (this.radixSortSupport != null && numRadixSortRecords >= MSD_RADIX_SORT_THRESHOLD) {
+        offset = RadixSort.sortKeyPrefixArrayMSD(
+          array, nullBoundaryPos, numRadixSortRecords, 0, 7,
+          radixSortSupport.sortDescending(), radixSortSupport.sortSigned(), radixSortPool);
+      } else if (this.radixSortSupport != null) {
         offset = RadixSort.sortKeyPrefixArray(
-          array, nullBoundaryPos, (pos - nullBoundaryPos) / 2, 0, 7,
+          array, nullBoundaryPos, numRadixSortRecords, 0, 7,
           radixSortSupport.sortDescending(), radixSortSupport.sortSigned());
       } else {
         MemoryBlock unused = new MemoryBlock(
@@ -18,10 +18,24 @@
 package org.apache.spark.util.collection.unsafe.sort;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
 
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 
+import org.apache.spark.SparkEnv;
+import org.apache.spark.io.CompressionCodec;
 import org.apache.spark.serializer.SerializerManager;
 import org.apache.spark.storage.BlockId;
 import org.apache.spark.unsafe.Platform;
@@ -29,36 +43,262 @@ import org.apache.spark.unsafe.Platform;
 /**
  * Reads spill files written by {@link UnsafeSorterSpillWriter} (see that class for a description
  * of the file format).
+ *
+ * Blocks are read with positional reads, using the block index at the end of the file. If
+ * `spark.unsafe.sorter.spill.readAhead.buffers` is greater than 0 (it is 0 by default), that many
+ * blocks are read ahead of the current one by the read-ahead thread pool of the SparkEnv (sized by
+ * `spark.unsafe.sorter.spill.readAhead.threads`), so that a merge of many spill files only blocks
+ * on disk when the next block of a reader has not been read yet. Checksum verification and
+ * decompression stay on the calling thread.
  */
 public final class UnsafeSorterSpillReader extends UnsafeSorterIterator implements Closeable {
 
-  private InputStream in;
-  private DataInputStream din;
+  private static final long BUFFER_SIZE_ALIGNMENT = 16 * 1024;
+
+  private final File file;
+  private final CompressionCodec codec;
+  private FileChannel channel;
 
   // Variables that change with every record read:
   private int recordLength;
   private long keyPrefix;
   private int numRecords;
   private int numRecordsRemaining;
+  private long baseOffset;
 
-  private byte[] arr = new byte[1024 * 1024];
-  private Object baseObject = arr;
-  private final long baseOffset = Platform.BYTE_ARRAY_OFFSET;
+  // Block index read from the end of the file. blockOffsets has an extra entry for the offset of
+  // the index, so that block i spans [blockOffsets[i], blockOffsets[i + 1]).
+  private long[] blockOffsets;
+  private int[] blockNumRecords;
+  private int numBlocksRead = 0;
+  private int numBlocksRequested = 0;
+
+  // Number of blocks read ahead of the current one, the pool reading them (null if there is no
+  // read-ahead), and the reads in flight, in block order.
+  private final int readAheadBuffers;
+  @Nullable private final ExecutorService readAheadPool;
+  private final ArrayDeque<Future<byte[]>> pendingReads = new ArrayDeque<>();
+  // Buffers of blocks that have been consumed, to be reused by later reads.
+  private final ConcurrentLinkedQueue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+  private long readWaitTimeNanos = 0L;
+
+  // The current block, as read from the file, and its records once decoded. If the block is not
+  // compressed, the records are read from `currentBlock` directly.
+  private byte[] currentBlock;
+  private byte[] decompressedBlock;
+  private byte[] arr;
+  private int numRecordsRemainingInBlock = 0;
+  private int positionInBlock = 0;
+  private final CRC32 checksum = new CRC32();
 
   public UnsafeSorterSpillReader(
       SerializerManager serializerManager,
       File file,
       BlockId blockId) throws IOException {
+    this(serializerManager, file, blockId, getReadAheadBuffers(SparkEnv.get()),
+      getReadAheadBuffers(SparkEnv.get()) > 0 ? SparkEnv.get().getSpillReadAheadPool() : null);
+  }
+
+  UnsafeSorterSpillReader(
+      SerializerManager serializerManager,
+      File file,
+      BlockId blockId,
+      int readAheadBuffers,
+      @Nullable ExecutorService readAheadPool) throws IOException {
     assert (file.length() > 0);
-    final BufferedInputStream bs = new BufferedInputStream(new FileInputStream(file));
+    assert (readAheadBuffers == 0 || readAheadPool != null);
+    this.file = file;
+    this.codec = serializerManager.getCompressionCodec(blockId);
+    this.readAheadBuffers = readAheadBuffers;
+    this.readAheadPool = readAheadPool;
+    final RandomAccessFile raf = new RandomAccessFile(file, "r");
     try {
-      this.in = serializerManager.wrapForCompression(blockId, bs);
-      this.din = new DataInputStream(this.in);
-      numRecords = numRecordsRemaining = din.readInt();
+      numRecords = numRecordsRemaining = raf.readInt();
+      readBlockIndex(raf);
+      this.channel = raf.getChannel();
     } catch (IOException e) {
-      Closeables.close(bs, /* swallowIOException = */ true);
+      Closeables.close(raf, /* swallowIOException = */ true);
       throw e;
     }
+    while (numBlocksRequested < getNumBlocks() && numBlocksRequested < readAheadBuffers) {
+      requestBlock();
+    }
+  }
+
+  private static int getReadAheadBuffers(@Nullable SparkEnv env) {
+    return env != null ? env.conf().getInt("spark.unsafe.sorter.spill.readAhead.buffers", 0) : 0;
+  }
+
+  /**
+   * Reads the block index at the end of the file, and checks that it is consistent with the
+   * number of records in the header.
+   */
+  private void readBlockIndex(RandomAccessFile raf) throws IOException {
+    raf.seek(raf.length() - 8);
+    final long indexOffset = raf.readLong();
+    raf.seek(indexOffset);
+    final int numBlocks = raf.readInt();
+    blockOffsets = new long[numBlocks + 1];
+    blockNumRecords = new int[numBlocks];
+    long numRecordsInBlocks = 0;
+    for (int i = 0; i < numBlocks; i++) {
+      blockOffsets[i] = raf.readLong();
+      blockNumRecords[i] = raf.readInt();
+      numRecordsInBlocks += blockNumRecords[i];
+    }
+    blockOffsets[numBlocks] = indexOffset;
+    if (numRecordsInBlocks != numRecords) {
+      throw new IOException("Corrupt spill file " + file + ": the block index has " +
+        numRecordsInBlocks + " records but the header has " + numRecords);
+    }
+  }
+
+  /**
+   * Returns the number of blocks in the spill file.
+   */
+  int getNumBlocks() {
+    return blockNumRecords.length;
+  }
+
+  /**
+   * Returns the time spent by the caller waiting for blocks to be read from disk. Without
+   * read-ahead, this is all the time spent reading blocks.
+   */
+  public long getReadWaitTimeNanos() {
+    return readWaitTimeNanos;
+  }
+
+  /**
+   * Reads a block (header and stored bytes) into a buffer, reusing a free buffer if possible.
+   * This is thread-safe, and is called from the read-ahead threads.
+   */
+  private byte[] readBlock(FileChannel channel, int blockIndex) throws IOException {
+    final long offset = blockOffsets[blockIndex];
+    final int length = (int) (blockOffsets[blockIndex + 1] - offset);
+    byte[] buffer = freeBuffers.poll();
+    if (buffer == null || buffer.length < length) {
+      buffer = new byte[bufferSize(length)];
+    }
+    final ByteBuffer bb = ByteBuffer.wrap(buffer, 0, length);
+    while (bb.hasRemaining()) {
+      if (channel.read(bb, offset + bb.position()) < 0) {
+        throw new EOFException("Unexpected end of spill file " + file + " in block " +
+          blockIndex);
+      }
+    }
+    return buffer;
+  }
+
+  private void requestBlock() {
+    final FileChannel channel = this.channel;
+    final int blockIndex = numBlocksRequested++;
+    pendingReads.add(readAheadPool.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws IOException {
+        return readBlock(channel, blockIndex);
+      }
+    }));
+  }
+
+  /**
+   * Returns the next block as read from the file, waiting for it if it is being read ahead.
+   */
+  private byte[] nextBlock() throws IOException {
+    final long startTime = System.nanoTime();
+    final byte[] block;
+    if (readAheadBuffers > 0) {
+      final Future<byte[]> read = pendingReads.poll();
+      try {
+        block = read.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reading spill file " + file);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException("Failed to read spill file " + file, e.getCause());
+      }
+      if (numBlocksRequested < getNumBlocks()) {
+        requestBlock();
+      }
+    } else {
+      block = readBlock(channel, numBlocksRead);
+    }
+    readWaitTimeNanos += System.nanoTime() - startTime;
+    return block;
+  }
+
+  /**
+   * Checks the checksum of the next block and decompresses it if needed.
+   */
+  private void decodeNextBlock() throws IOException {
+    if (currentBlock != null) {
+      freeBuffers.add(currentBlock);
+    }
+    currentBlock = nextBlock();
+    final int storedLength = readIntFromBuffer(currentBlock, 0);
+    final int uncompressedLength = readIntFromBuffer(currentBlock, 4);
+    final int numRecordsInBlock = readIntFromBuffer(currentBlock, 8);
+    final long expectedChecksum = readLongFromBuffer(currentBlock, 12);
+    final int blockLength =
+      (int) (blockOffsets[numBlocksRead + 1] - blockOffsets[numBlocksRead]);
+    if (numRecordsInBlock != blockNumRecords[numBlocksRead] ||
+        UnsafeSorterSpillWriter.BLOCK_HEADER_SIZE + storedLength != blockLength) {
+      throw new IOException("Corrupt spill file " + file + ": the header of block " +
+        numBlocksRead + " does not match the block index");
+    }
+    checksum.reset();
+    checksum.update(currentBlock, UnsafeSorterSpillWriter.BLOCK_HEADER_SIZE, storedLength);
+    if (checksum.getValue() != expectedChecksum) {
+      throw new IOException("Corrupt spill file " + file + ": checksum mismatch in block " +
+        numBlocksRead);
+    }
+
+    if (codec != null) {
+      if (decompressedBlock == null || uncompressedLength > decompressedBlock.length) {
+        decompressedBlock = new byte[bufferSize(uncompressedLength)];
+      }
+      final InputStream blockIn = codec.compressedInputStream(new ByteArrayInputStream(
+        currentBlock, UnsafeSorterSpillWriter.BLOCK_HEADER_SIZE, storedLength));
+      try {
+        ByteStreams.readFully(blockIn, decompressedBlock, 0, uncompressedLength);
+      } finally {
+        blockIn.close();
+      }
+      arr = decompressedBlock;
+      positionInBlock = 0;
+    } else {
+      arr = currentBlock;
+      positionInBlock = UnsafeSorterSpillWriter.BLOCK_HEADER_SIZE;
+    }
+    numBlocksRead++;
+    numRecordsRemainingInBlock = numRecordsInBlock;
+  }
+
+  /**
+   * Returns the size of a buffer for a block of the given length. Buffers are sized after the
+   * blocks (which are only as large as `spark.unsafe.sorter.spill.reader.buffer.size` when
+   * written, or smaller when compressed) rather than after the largest possible block, rounded up
+   * so that blocks of slightly different lengths can reuse a buffer.
+   */
+  private static int bufferSize(int length) {
+    return (int) Math.min(Integer.MAX_VALUE - 8, (length + BUFFER_SIZE_ALIGNMENT - 1L) &
+      -BUFFER_SIZE_ALIGNMENT);
+  }
+
+  // Inverse of UnsafeSorterSpillWriter.writeIntToBuffer.
+  private static int readIntFromBuffer(byte[] buffer, int offset) {
+    return ((buffer[offset] & 0xFF) << 24) |
+      ((buffer[offset + 1] & 0xFF) << 16) |
+      ((buffer[offset + 2] & 0xFF) << 8) |
+      (buffer[offset + 3] & 0xFF);
+  }
+
+  // Inverse of UnsafeSorterSpillWriter.writeLongToBuffer.
+  private static long readLongFromBuffer(byte[] buffer, int offset) {
+    return ((long) readIntFromBuffer(buffer, offset) << 32) |
+      (readIntFromBuffer(buffer, offset + 4) & 0xFFFFFFFFL);
   }
 
   @Override
@@ -73,13 +313,15 @@ public final class UnsafeSorterSpillReader extends UnsafeSorterIterator implemen
 
   @Override
   public void loadNext() throws IOException {
-    recordLength = din.readInt();
-    keyPrefix = din.readLong();
-    if (recordLength > arr.length) {
-      arr = new byte[recordLength];
-      baseObject = arr;
+    if (numRecordsRemainingInBlock == 0) {
+      decodeNextBlock();
     }
-    ByteStreams.readFully(in, arr, 0, recordLength);
+    recordLength = readIntFromBuffer(arr, positionInBlock);
+    keyPrefix = readLongFromBuffer(arr, positionInBlock + 4);
+    baseOffset = Platform.BYTE_ARRAY_OFFSET + positionInBlock +
+      UnsafeSorterSpillWriter.RECORD_HEADER_SIZE;
+    positionInBlock += UnsafeSorterSpillWriter.RECORD_HEADER_SIZE + recordLength;
+    numRecordsRemainingInBlock--;
     numRecordsRemaining--;
     if (numRecordsRemaining == 0) {
       close();
@@ -88,7 +330,7 @@ public final class UnsafeSorterSpillReader extends UnsafeSorterIterator implemen
 
   @Override
   public Object getBaseObject() {
-    return baseObject;
+    return arr;
   }
 
   @Override
@@ -108,12 +350,26 @@ public final class UnsafeSorterSpillReader extends UnsafeSorterIterator implemen
 
   @Override
   public void close() throws IOException {
-   if (in != null) {
+   if (channel != null) {
+     // Reads still in flight will fail once the channel is closed; nobody waits for them.
+     for (Future<byte[]> read : pendingReads) {
+       read.cancel(false);
+     }
+     pendingReads.clear();
+     // The sorter keeps closed readers around, so they must not hold on to their block buffers.
+     // Only the current record is kept, since the caller may still be reading it.
+     if (arr != null) {
+       final int recordOffset = (int) (baseOffset - Platform.BYTE_ARRAY_OFFSET);
+       arr = Arrays.copyOfRange(arr, recordOffset, recordOffset + recordLength);
+       baseOffset = Platform.BYTE_ARRAY_OFFSET;
+     }
+     currentBlock = null;
+     decompressedBlock = null;
+     freeBuffers.clear();
      try {
-       in.close();
+       channel.close();
      } finally {
-       in = null;
-       din = null;
+       channel = null;
      }
    }
   }
@@ -19,31 +19,81 @@ package org.apache.spark.util.collection.unsafe.sort;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
 
-import org.apache.spark.serializer.SerializerManager;
 import scala.Tuple2;
 
+import org.apache.spark.SparkEnv;
 import org.apache.spark.executor.ShuffleWriteMetrics;
+import org.apache.spark.io.CompressionCodec;
 import org.apache.spark.serializer.DummySerializerInstance;
+import org.apache.spark.serializer.SerializerManager;
 import org.apache.spark.storage.BlockId;
 import org.apache.spark.storage.BlockManager;
 import org.apache.spark.storage.DiskBlockObjectWriter;
 import org.apache.spark.storage.TempLocalBlockId;
 import org.apache.spark.unsafe.Platform;
+import org.apache.spark.util.ByteBufferOutputStream;
 
 /**
- * Spills a list of sorted records to disk. Spill files have the following format:
+ * Spills a list of sorted records to disk. Records are grouped into blocks of about
+ * `spark.unsafe.sorter.spill.reader.buffer.size` bytes (default {@link #DEFAULT_BLOCK_SIZE}), each
+ * compressed on its own with the spill compression codec (if
+ * `spark.shuffle.spill.compress` is enabled) and protected by a checksum. Spill files have the
+ * following format (all numbers are big-endian):
+ *
+ *   [# of records (int)]
+ *   [block]*
+ *   [# of blocks (int)] [[block offset (long)] [# of records in block (int)]]*  (block index)
+ *   [block index offset (long)]
+ *
+ * where each block is:
  *
- *   [# of records (int)] [[len (int)][prefix (long)][data (bytes)]...]
+ *   [stored length (int)] [uncompressed length (int)] [# of records (int)] [CRC32 (long)]
+ *   [stored (possibly compressed) bytes]
+ *
+ * and the uncompressed bytes of a block are:
+ *
+ *   [[len (int)][prefix (long)][data (bytes)]...]
+ *
+ * A record is never split across blocks, so a block can be larger than the block size if it holds
+ * a single large record. The block index lets a reader locate the blocks without decoding them.
  */
 public final class UnsafeSorterSpillWriter {
 
-  static final int DISK_WRITE_BUFFER_SIZE = 1024 * 1024;
+  /**
+   * Default target size of the uncompressed data of a block. Each reader of a spill file holds a
+   * block and, if the file is compressed, its compressed bytes in memory.
+   */
+  static final int DEFAULT_BLOCK_SIZE = 512 * 1024;
+
+  /** Size of the header of each block. */
+  static final int BLOCK_HEADER_SIZE = 4 + 4 + 4 + 8;
+
+  /** Size of the header of each record in a block: length and key prefix. */
+  static final int RECORD_HEADER_SIZE = 4 + 8;
+
+  // Records are appended to this buffer until it holds a full block, which is then compressed and
+  // written out. It only grows if a single record doesn't fit in it.
+  private byte[] blockBuffer;
+  private int blockBufferPosition = 0;
+  private int numRecordsInBlock = 0;
 
-  // Small writes to DiskBlockObjectWriter will be fairly inefficient. Since there doesn't seem to
-  // be an API to directly transfer bytes from managed memory to the disk writer, we buffer
-  // data through a byte array.
-  private byte[] writeBuffer = new byte[DISK_WRITE_BUFFER_SIZE];
+  @Nullable private final CompressionCodec codec;
+  private final ByteBufferOutputStream compressedBlock;
+  private final CRC32 checksum = new CRC32();
+  private final byte[] headerBuffer = new byte[BLOCK_HEADER_SIZE];
+
+  // Offsets (in the file) and record counts of the blocks written so far.
+  private long[] blockOffsets = new long[16];
+  private int[] blockNumRecords = new int[16];
+  private int numBlocks = 0;
+  private long bytesWritten = 0;
 
   private final File file;
   private final BlockId blockId;
@@ -53,6 +103,7 @@ public final class UnsafeSorterSpillWriter {
 
   public UnsafeSorterSpillWriter(
       BlockManager blockManager,
+      SerializerManager serializerManager,
       int fileBufferSize,
       ShuffleWriteMetrics writeMetrics,
       int numRecordsToWrite) throws IOException {
@@ -61,35 +112,48 @@ public final class UnsafeSorterSpillWriter {
     this.file = spilledFileInfo._2();
     this.blockId = spilledFileInfo._1();
     this.numRecordsToWrite = numRecordsToWrite;
+    this.codec = serializerManager.getCompressionCodec(blockId);
+    final int blockSize = SparkEnv.get() != null ? (int) Math.min(Integer.MAX_VALUE / 2,
+      Math.max(4096, SparkEnv.get().conf().getSizeAsBytes(
+        "spark.unsafe.sorter.spill.reader.buffer.size", DEFAULT_BLOCK_SIZE + "b")))
+      : DEFAULT_BLOCK_SIZE;
+    this.blockBuffer = new byte[blockSize];
+    this.compressedBlock = new ByteBufferOutputStream(codec != null ? blockSize : 0);
     // Unfortunately, we need a serializer instance in order to construct a DiskBlockObjectWriter.
     // Our write path doesn't actually use this serializer (since we end up calling the `write()`
     // OutputStream methods), but DiskBlockObjectWriter still calls some methods on it. To work
-    // around this, we pass a dummy no-op serializer.
+    // around this, we pass a dummy no-op serializer. The blocks are compressed here, so the writer
+    // must not compress the stream again.
     writer = blockManager.getDiskWriter(
-      blockId, file, DummySerializerInstance.INSTANCE, fileBufferSize, writeMetrics);
+      blockId, file, DummySerializerInstance.INSTANCE, fileBufferSize, writeMetrics, false);
     // Write the number of records
-    writeIntToBuffer(numRecordsToWrite, 0);
-    writer.write(writeBuffer, 0, 4);
+    writeIntToBuffer(headerBuffer, numRecordsToWrite, 0);
+    writeToFile(headerBuffer, 0, 4);
   }
 
   // Based on DataOutputStream.writeLong.
-  private void writeLongToBuffer(long v, int offset) throws IOException {
-    writeBuffer[offset + 0] = (byte)(v >>> 56);
-    writeBuffer[offset + 1] = (byte)(v >>> 48);
-    writeBuffer[offset + 2] = (byte)(v >>> 40);
-    writeBuffer[offset + 3] = (byte)(v >>> 32);
-    writeBuffer[offset + 4] = (byte)(v >>> 24);
-    writeBuffer[offset + 5] = (byte)(v >>> 16);
-    writeBuffer[offset + 6] = (byte)(v >>>  8);
-    writeBuffer[offset + 7] = (byte)(v >>>  0);
+  private static void writeLongToBuffer(byte[] buffer, long v, int offset) {
+    buffer[offset + 0] = (byte)(v >>> 56);
+    buffer[offset + 1] = (byte)(v >>> 48);
+    buffer[offset + 2] = (byte)(v >>> 40);
+    buffer[offset + 3] = (byte)(v >>> 32);
+    buffer[offset + 4] = (byte)(v >>> 24);
+    buffer[offset + 5] = (byte)(v >>> 16);
+    buffer[offset + 6] = (byte)(v >>>  8);
+    buffer[offset + 7] = (byte)(v >>>  0);
   }
 
   // Based on DataOutputStream.writeInt.
-  private void writeIntToBuffer(int v, int offset) throws IOException {
-    writeBuffer[offset + 0] = (byte)(v >>> 24);
-    writeBuffer[offset + 1] = (byte)(v >>> 16);
-    writeBuffer[offset + 2] = (byte)(v >>>  8);
-    writeBuffer[offset + 3] = (byte)(v >>>  0);
+  private static void writeIntToBuffer(byte[] buffer, int v, int offset) {
+    buffer[offset + 0] = (byte)(v >>> 24);
+    buffer[offset + 1] = (byte)(v >>> 16);
+    buffer[offset + 2] = (byte)(v >>>  8);
+    buffer[offset + 3] = (byte)(v >>>  0);
+  }
+
+  private void writeToFile(byte[] bytes, int offset, int length) throws IOException {
+    writer.write(bytes, offset, length);
+    bytesWritten += length;
   }
 
   /**
@@ -111,34 +175,92 @@ public final class UnsafeSorterSpillWriter {
     } else {
       numRecordsSpilled++;
     }
-    writeIntToBuffer(recordLength, 0);
-    writeLongToBuffer(keyPrefix, 4);
-    int dataRemaining = recordLength;
-    int freeSpaceInWriteBuffer = DISK_WRITE_BUFFER_SIZE - 4 - 8; // space used by prefix + len
-    long recordReadPosition = baseOffset;
-    while (dataRemaining > 0) {
-      final int toTransfer = Math.min(freeSpaceInWriteBuffer, dataRemaining);
-      Platform.copyMemory(
-        baseObject,
-        recordReadPosition,
-        writeBuffer,
-        Platform.BYTE_ARRAY_OFFSET + (DISK_WRITE_BUFFER_SIZE - freeSpaceInWriteBuffer),
-        toTransfer);
-      writer.write(writeBuffer, 0, (DISK_WRITE_BUFFER_SIZE - freeSpaceInWriteBuffer) + toTransfer);
-      recordReadPosition += toTransfer;
-      dataRemaining -= toTransfer;
-      freeSpaceInWriteBuffer = DISK_WRITE_BUFFER_SIZE;
-    }
-    if (freeSpaceInWriteBuffer < DISK_WRITE_BUFFER_SIZE) {
-      writer.write(writeBuffer, 0, (DISK_WRITE_BUFFER_SIZE - freeSpaceInWriteBuffer));
+    final int requiredSpace = RECORD_HEADER_SIZE + recordLength;
+    if (blockBufferPosition + requiredSpace > blockBuffer.length) {
+      if (numRecordsInBlock > 0) {
+        writeBlock();
+      }
+      if (requiredSpace > blockBuffer.length) {
+        blockBuffer = new byte[requiredSpace];
+      }
     }
+    writeIntToBuffer(blockBuffer, recordLength, blockBufferPosition);
+    writeLongToBuffer(blockBuffer, keyPrefix, blockBufferPosition + 4);
+    Platform.copyMemory(
+      baseObject,
+      baseOffset,
+      blockBuffer,
+      Platform.BYTE_ARRAY_OFFSET + blockBufferPosition + RECORD_HEADER_SIZE,
+      recordLength);
+    blockBufferPosition += requiredSpace;
+    numRecordsInBlock++;
     writer.recordWritten();
   }
 
+  /**
+   * Compresses the records buffered so far and writes them out as a block.
+   */
+  private void writeBlock() throws IOException {
+    final byte[] stored;
+    final int storedLength;
+    if (codec != null) {
+      compressedBlock.reset();
+      OutputStream out = codec.compressedOutputStream(compressedBlock);
+      out.write(blockBuffer, 0, blockBufferPosition);
+      out.close();
+      ByteBuffer compressed = compressedBlock.toByteBuffer();
+      stored = compressed.array();
+      storedLength = compressed.limit();
+    } else {
+      stored = blockBuffer;
+      storedLength = blockBufferPosition;
+    }
+    checksum.reset();
+    checksum.update(stored, 0, storedLength);
+
+    if (numBlocks == blockOffsets.length) {
+      blockOffsets = Arrays.copyOf(blockOffsets, numBlocks * 2);
+      blockNumRecords = Arrays.copyOf(blockNumRecords, numBlocks * 2);
+    }
+    blockOffsets[numBlocks] = bytesWritten;
+    blockNumRecords[numBlocks] = numRecordsInBlock;
+    numBlocks++;
+
+    writeIntToBuffer(headerBuffer, storedLength, 0);
+    writeIntToBuffer(headerBuffer, blockBufferPosition, 4);
+    writeIntToBuffer(headerBuffer, numRecordsInBlock, 8);
+    writeLongToBuffer(headerBuffer, checksum.getValue(), 12);
+    writeToFile(headerBuffer, 0, BLOCK_HEADER_SIZE);
+    writeToFile(stored, 0, storedLength);
+
+    blockBufferPosition = 0;
+    numRecordsInBlock = 0;
+  }
+
+  /**
+   * Writes the block index at the end of the file.
+   */
+  private void writeBlockIndex() throws IOException {
+    final long indexOffset = bytesWritten;
+    writeIntToBuffer(headerBuffer, numBlocks, 0);
+    writeToFile(headerBuffer, 0, 4);
+    for (int i = 0; i < numBlocks; i++) {
+      writeLongToBuffer(headerBuffer, blockOffsets[i], 0);
+      writeIntToBuffer(headerBuffer, blockNumRecords[i], 8);
+      writeToFile(headerBuffer, 0, 12);
+    }
+    writeLongToBuffer(headerBuffer, indexOffset, 0);
+    writeToFile(headerBuffer, 0, 8);
+  }
+
   public void close() throws IOException {
+    if (numRecordsInBlock > 0) {
+      writeBlock();
+    }
+    writeBlockIndex();
     writer.commitAndClose();
     writer = null;
-    writeBuffer = null;
+    blockBuffer = null;
   }
 
   public File getFile() {
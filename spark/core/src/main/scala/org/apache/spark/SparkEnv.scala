@@ -19,6 +19,7 @@ package org.apache.spark
 
 import java.io.File
 import java.net.Socket
+import java.util.concurrent.{ExecutorService, ForkJoinPool}
 
 import scala.collection.mutable
 import scala.util.Properties
@@ -38,7 +39,7 @@ import org.apache.spark.scheduler.OutputCommitCoordinator.OutputCommitCoordinato
 import org.apache.spark.serializer.{JavaSerializer, Serializer, SerializerManager}
 import org.apache.spark.shuffle.ShuffleManager
 import org.apache.spark.storage._
-import org.apache.spark.util.{RpcUtils, Utils}
+import org.apache.spark.util.{RpcUtils, ThreadUtils, Utils}
 
 /**
  * :: DeveloperApi ::
@@ -76,11 +77,49 @@ class SparkEnv (
 
   private[spark] var driverTmpDir: Option[String] = None
 
+  // Reads spill blocks ahead of the merge for the UnsafeSorterSpillReaders of this environment;
+  // created on first use and shut down with the environment.
+  private var spillReadAheadPool: ExecutorService = _
+
+  /**
+   * Returns the thread pool that reads spill blocks ahead for UnsafeSorterSpillReader, which has
+   * `spark.unsafe.sorter.spill.readAhead.threads` threads.
+   */
+  private[spark] def getSpillReadAheadPool(): ExecutorService = synchronized {
+    if (spillReadAheadPool == null) {
+      spillReadAheadPool = ThreadUtils.newDaemonFixedThreadPool(
+        conf.getInt("spark.unsafe.sorter.spill.readAhead.threads", 4), "spill-read-ahead")
+    }
+    spillReadAheadPool
+  }
+
+  private var radixSortPool: ForkJoinPool = _
+
+  /**
+   * Returns the pool in which UnsafeInMemorySorter sorts the buckets of large radix sorts, which
+   * has `spark.sort.radix.parallelism` threads, or null if that is not greater than 1.
+   */
+  private[spark] def getRadixSortPool(): ForkJoinPool = synchronized {
+    val parallelism = conf.getInt("spark.sort.radix.parallelism", 1)
+    if (radixSortPool == null && parallelism > 1) {
+      radixSortPool = new ForkJoinPool(parallelism)
+    }
+    radixSortPool
+  }
+
   private[spark] def stop() {
 
     if (!isStopped) {
       isStopped = true
       pythonWorkers.values.foreach(_.stop())
+      synchronized {
+        if (spillReadAheadPool != null) {
+          spillReadAheadPool.shutdownNow()
+        }
+        if (radixSortPool != null) {
+          radixSortPool.shutdownNow()
+        }
+      }
       mapOutputTracker.stop()
       shuffleManager.stop()
       broadcastManager.stop()
@@ -90,6 +129,7 @@ class SparkEnv (
       outputCommitCoordinator.stop()
       rpcEnv.shutdown()
       rpcEnv.awaitTermination()
+      memoryManager.releasePooledMemory()
 
       // If we only stop sc, but the driver process still run as a services then we need to delete
       // the tmp dir, if not, it will create too many tmp dirs.
@@ -25,7 +25,7 @@ import org.apache.spark.storage.BlockId
 import org.apache.spark.storage.memory.MemoryStore
 import org.apache.spark.unsafe.Platform
 import org.apache.spark.unsafe.array.ByteArrayMethods
-import org.apache.spark.unsafe.memory.MemoryAllocator
+import org.apache.spark.unsafe.memory.{MemoryAllocator, UnsafeMemoryAllocator}
 
 /**
  * An abstract memory manager that enforces how memory is shared between execution and storage.
@@ -227,7 +227,18 @@ private[spark] abstract class MemoryManager(
   private[memory] final val tungstenMemoryAllocator: MemoryAllocator = {
     tungstenMemoryMode match {
       case MemoryMode.ON_HEAP => MemoryAllocator.HEAP
-      case MemoryMode.OFF_HEAP => MemoryAllocator.UNSAFE
+      case MemoryMode.OFF_HEAP =>
+        // Freed pages kept for reuse are not counted against spark.memory.offHeap.size.
+        val pageCacheSize = conf.getSizeAsBytes("spark.memory.offHeap.pageCache.size", 0)
+        if (pageCacheSize > 0) new UnsafeMemoryAllocator(pageCacheSize) else MemoryAllocator.UNSAFE
     }
   }
+
+  /**
+   * Frees the off-heap pages cached by this memory manager's allocator for reuse, if any.
+   */
+  private[spark] def releasePooledMemory(): Unit = tungstenMemoryAllocator match {
+    case allocator: UnsafeMemoryAllocator => allocator.releasePooledMemory()
+    case _ =>
+  }
 }
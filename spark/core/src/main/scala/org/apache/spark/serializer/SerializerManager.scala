@@ -109,6 +109,15 @@ private[spark] class SerializerManager(defaultSerializer: Serializer, conf: Spar
     if (shouldCompress(blockId)) compressionCodec.compressedOutputStream(s) else s
   }
 
+  /**
+   * Returns the codec to compress blocks of the given type with, or null if block compression is
+   * disabled for this type. Used by writers that compress their data in independent chunks rather
+   * than as a single stream.
+   */
+  def getCompressionCodec(blockId: BlockId): CompressionCodec = {
+    if (shouldCompress(blockId)) compressionCodec else null
+  }
+
   /**
    * Wrap an input stream for compression if block compression is enabled for its block type
    */
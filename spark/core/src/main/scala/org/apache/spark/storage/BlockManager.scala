@@ -719,8 +719,22 @@ private[spark] class BlockManager(
       serializerInstance: SerializerInstance,
       bufferSize: Int,
       writeMetrics: ShuffleWriteMetrics): DiskBlockObjectWriter = {
+    getDiskWriter(blockId, file, serializerInstance, bufferSize, writeMetrics, compress = true)
+  }
+
+  /**
+   * Variant of `getDiskWriter` for writers that compress their data themselves: if `compress` is
+   * false, the data is written without going through the compression codec of the block type.
+   */
+  def getDiskWriter(
+      blockId: BlockId,
+      file: File,
+      serializerInstance: SerializerInstance,
+      bufferSize: Int,
+      writeMetrics: ShuffleWriteMetrics,
+      compress: Boolean): DiskBlockObjectWriter = {
     val compressStream: OutputStream => OutputStream =
-      serializerManager.wrapForCompression(blockId, _)
+      if (compress) serializerManager.wrapForCompression(blockId, _) else identity
     val syncWrites = conf.getBoolean("spark.shuffle.sync", false)
     new DiskBlockObjectWriter(file, serializerInstance, bufferSize, compressStream,
       syncWrites, writeMetrics, blockId)
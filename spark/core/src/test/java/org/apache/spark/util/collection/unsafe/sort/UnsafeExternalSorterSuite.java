@@ -20,9 +20,11 @@ package org.apache.spark.util.collection.unsafe.sort;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
 import scala.Tuple2;
 import scala.Tuple2$;
@@ -47,6 +49,7 @@ import org.apache.spark.serializer.SerializerInstance;
 import org.apache.spark.serializer.SerializerManager;
 import org.apache.spark.storage.*;
 import org.apache.spark.unsafe.Platform;
+import org.apache.spark.util.ThreadUtils;
 import org.apache.spark.util.Utils;
 
 import static org.hamcrest.Matchers.greaterThan;
@@ -119,7 +122,8 @@ public class UnsafeExternalSorterSuite {
       any(File.class),
       any(SerializerInstance.class),
       anyInt(),
-      any(ShuffleWriteMetrics.class))).thenAnswer(new Answer<DiskBlockObjectWriter>() {
+      any(ShuffleWriteMetrics.class),
+      anyBoolean())).thenAnswer(new Answer<DiskBlockObjectWriter>() {
       @Override
       public DiskBlockObjectWriter answer(InvocationOnMock invocationOnMock) throws Throwable {
         Object[] args = invocationOnMock.getArguments();
@@ -423,6 +427,28 @@ public class UnsafeExternalSorterSuite {
     assertSpillFilesWereCleanedUp();
   }
 
+  @Test
+  public void testSpillReadWaitTimeMetric() throws Exception {
+    final UnsafeExternalSorter sorter = newSorter();
+    assertEquals(0L, sorter.getSpillReadWaitTimeNanos());
+    for (int i = 0; i < 1000; i++) {
+      insertNumber(sorter, i);
+    }
+    sorter.spill();
+    for (int i = 0; i < 1000; i++) {
+      insertNumber(sorter, i);
+    }
+    sorter.spill();
+    final UnsafeSorterIterator iter = sorter.getSortedIterator();
+    while (iter.hasNext()) {
+      iter.loadNext();
+    }
+    // Without read-ahead (the default), all the time spent reading the spills is waiting time.
+    assertThat(sorter.getSpillReadWaitTimeNanos(), greaterThan(0L));
+    sorter.cleanupResources();
+    assertSpillFilesWereCleanedUp();
+  }
+
   @Test
   public void testPeakMemoryUsed() throws Exception {
     final long recordLengthBytes = 8;
@@ -472,5 +498,94 @@ public class UnsafeExternalSorterSuite {
     }
   }
 
-}
+  private UnsafeSorterSpillWriter writeSpill(
+      SerializerManager serializerManager,
+      int numRecords) throws IOException {
+    final UnsafeSorterSpillWriter writer = new UnsafeSorterSpillWriter(
+      blockManager, serializerManager, 32 * 1024, new ShuffleWriteMetrics(), numRecords);
+    final int[] record = new int[64];
+    for (int i = 0; i < numRecords; i++) {
+      Arrays.fill(record, i);
+      writer.write(record, Platform.INT_ARRAY_OFFSET, record.length * 4, i);
+    }
+    writer.close();
+    return writer;
+  }
+
+  private void testSpillRoundTrip(boolean compress, int readAheadBuffers) throws Exception {
+    final SerializerManager manager = new SerializerManager(
+      new JavaSerializer(new SparkConf()),
+      new SparkConf().set("spark.shuffle.spill.compress", String.valueOf(compress)));
+    // Enough records to span several blocks.
+    final int numRecords = 3 * UnsafeSorterSpillWriter.DEFAULT_BLOCK_SIZE / 256;
+    final UnsafeSorterSpillWriter writer = writeSpill(manager, numRecords);
+    final ExecutorService readAheadPool = readAheadBuffers > 0 ?
+      ThreadUtils.newDaemonFixedThreadPool(2, "test-spill-read-ahead") : null;
+    try {
+      final UnsafeSorterSpillReader reader = new UnsafeSorterSpillReader(manager,
+        writer.getFile(), new TempLocalBlockId(UUID.randomUUID()), readAheadBuffers, readAheadPool);
+      assertEquals(numRecords, reader.getNumRecords());
+      assertThat(reader.getNumBlocks(), greaterThanOrEqualTo(3));
+      for (int i = 0; i < numRecords; i++) {
+        assertTrue(reader.hasNext());
+        reader.loadNext();
+        assertEquals(i, reader.getKeyPrefix());
+        assertEquals(256, reader.getRecordLength());
+        for (int j = 0; j < 64; j++) {
+          assertEquals(i, Platform.getInt(reader.getBaseObject(), reader.getBaseOffset() + j * 4));
+        }
+      }
+      assertFalse(reader.hasNext());
+      // The reader closed itself after the last record, and only kept that record.
+      assertEquals(256, ((byte[]) reader.getBaseObject()).length);
+      if (readAheadBuffers == 0) {
+        // Every block was read by the caller. With read-ahead, the blocks may all have been read
+        // before they were needed, so that there was no wait at all.
+        assertThat(reader.getReadWaitTimeNanos(), greaterThan(0L));
+      }
+    } finally {
+      if (readAheadPool != null) {
+        readAheadPool.shutdownNow();
+      }
+    }
+  }
+
+  @Test
+  public void spillFileRoundTripWithoutCompression() throws Exception {
+    testSpillRoundTrip(false, 0);
+  }
+
+  @Test
+  public void spillFileRoundTripWithCompression() throws Exception {
+    testSpillRoundTrip(true, 0);
+  }
 
+  @Test
+  public void spillFileRoundTripWithReadAhead() throws Exception {
+    testSpillRoundTrip(false, 1);
+    testSpillRoundTrip(true, 1);
+    testSpillRoundTrip(true, 4);
+  }
+
+  @Test
+  public void corruptedSpillFileIsDetected() throws Exception {
+    final UnsafeSorterSpillWriter writer = writeSpill(serializerManager, 100);
+    // Flip a byte in the data of the first block.
+    try (RandomAccessFile raf = new RandomAccessFile(writer.getFile(), "rw")) {
+      final long pos = 4 + UnsafeSorterSpillWriter.BLOCK_HEADER_SIZE + 100;
+      raf.seek(pos);
+      final int b = raf.read();
+      raf.seek(pos);
+      raf.write(b ^ 0xFF);
+    }
+    final UnsafeSorterSpillReader reader = writer.getReader(serializerManager);
+    try {
+      reader.loadNext();
+      fail("expected the checksum mismatch to be detected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("checksum mismatch"));
+    } finally {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.network.sasl
+
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
+import java.util.Random
+import javax.crypto.Cipher
+
+import io.netty.buffer.Unpooled
+import io.netty.channel.FileRegion
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.util.Benchmark
+
+/**
+ * Benchmark to compare the throughput of SASL (DIGEST-MD5 auth-conf) and AES encryption of
+ * outgoing transport messages.
+ * To run this:
+ *  build/sbt "core/test-only *sasl.EncryptionBenchmark"
+ *
+ * Benchmarks in this file are skipped in normal builds.
+ */
+class EncryptionBenchmark extends SparkFunSuite {
+
+  private val secretKeyHolder = new SecretKeyHolder {
+    override def getSaslUser(appId: String): String = "user"
+    override def getSecretKey(appId: String): String = appId
+  }
+
+  /** A channel that discards everything written to it. */
+  private object NullChannel extends WritableByteChannel {
+    override def write(src: ByteBuffer): Int = {
+      val length = src.remaining()
+      src.position(src.limit())
+      length
+    }
+    override def isOpen: Boolean = true
+    override def close(): Unit = {}
+  }
+
+  /** Returns a SASL client that negotiated encryption with an in-memory server. */
+  private def negotiateSasl(): SparkSaslClient = {
+    val client = new SparkSaslClient("secret", secretKeyHolder, true)
+    val server = new SparkSaslServer("secret", secretKeyHolder, true)
+    var token = client.firstToken()
+    while (!client.isComplete) {
+      token = client.response(server.response(token))
+    }
+    server.dispose()
+    client
+  }
+
+  private def transfer(msg: FileRegion): Unit = {
+    while (msg.transfered() < msg.count()) {
+      msg.transferTo(NullChannel, msg.transfered())
+    }
+    msg.release()
+  }
+
+  private def runBenchmark(messageSize: Int, numMessages: Int, chunkSize: Int): Unit = {
+    val data = new Array[Byte](messageSize)
+    new Random(42).nextBytes(data)
+
+    val benchmark = new Benchmark(s"encrypt $numMessages x $messageSize bytes",
+      messageSize.toLong * numMessages)
+
+    val saslClient = negotiateSasl()
+    benchmark.addCase("SASL") { _ =>
+      var i = 0
+      while (i < numMessages) {
+        transfer(new SaslEncryption.EncryptedMessage(saslClient, Unpooled.wrappedBuffer(data),
+          chunkSize))
+        i += 1
+      }
+    }
+
+    Seq(128, 256).foreach { keySize =>
+      val config = AesConfigMessage.generate(keySize)
+      val cipher = AesEncryption.createCipher(Cipher.ENCRYPT_MODE, config.clientKey,
+        config.clientIv)
+      val plainChunk = ByteBuffer.allocateDirect(chunkSize)
+      val encryptedChunk = ByteBuffer.allocateDirect(chunkSize)
+      encryptedChunk.flip()
+      benchmark.addCase(s"AES-$keySize") { _ =>
+        var i = 0
+        while (i < numMessages) {
+          transfer(new AesEncryption.EncryptedMessage(cipher, Unpooled.wrappedBuffer(data),
+            plainChunk, encryptedChunk))
+          i += 1
+        }
+      }
+    }
+
+    benchmark.run()
+    saslClient.dispose()
+  }
+
+  ignore("small messages") {
+    runBenchmark(1024, 16 * 1024, 64 * 1024)
+  }
+
+  ignore("large messages") {
+    runBenchmark(4 * 1024 * 1024, 16, 64 * 1024)
+  }
+}
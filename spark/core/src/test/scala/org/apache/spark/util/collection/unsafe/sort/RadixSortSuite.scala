@@ -19,6 +19,7 @@ package org.apache.spark.util.collection.unsafe.sort
 
 import java.lang.{Long => JLong}
 import java.util.{Arrays, Comparator}
+import java.util.concurrent.ForkJoinPool
 
 import scala.util.Random
 
@@ -183,5 +184,49 @@ class RadixSortSuite extends SparkFunSuite with Logging {
       val res2 = collectToArray(buf2, outOffset, N * 2)
       assert(res1.view == res2.view)
     }
+
+    fuzzTest(s"fuzz test MSD ${sortType.name} with random bitmasks") { seed =>
+      val rand = new XORShiftRandom(seed)
+      val mask = randomBitMask(rand)
+      val (ref, buffer) = generateTestData(N, rand.nextLong & mask)
+      Arrays.sort(ref, toJavaComparator(sortType.referenceComparator))
+      val outOffset = RadixSort.sortMSD(
+        buffer, N, sortType.startByteIdx, sortType.endByteIdx,
+        sortType.descending, sortType.signed, null)
+      val result = collectToArray(buffer, outOffset, N)
+      assert(ref.view == result.view)
+    }
+
+    fuzzTest(s"fuzz test MSD key prefix ${sortType.name} with random bitmasks") { seed =>
+      val rand = new XORShiftRandom(seed)
+      val mask = randomBitMask(rand)
+      val (buf1, buf2) = generateKeyPrefixTestData(N, rand.nextLong & mask)
+      referenceKeyPrefixSort(buf1, 0, N, sortType.referenceComparator)
+      val outOffset = RadixSort.sortKeyPrefixArrayMSD(
+        buf2, 0, N, sortType.startByteIdx, sortType.endByteIdx,
+        sortType.descending, sortType.signed, null)
+      val res1 = collectToArray(buf1, 0, N * 2)
+      val res2 = collectToArray(buf2, outOffset, N * 2)
+      assert(res1.view == res2.view)
+    }
+
+    test("parallel MSD sort key prefix " + sortType.name) {
+      // Few distinct top bytes, so that the buckets are large enough to be sorted in parallel.
+      val size = RadixSort.PARALLEL_BUCKET_THRESHOLD * 8
+      val rand = new XORShiftRandom(123)
+      val (buf1, buf2) = generateKeyPrefixTestData(size, rand.nextLong & 0x03ffffffffffffffL)
+      referenceKeyPrefixSort(buf1, 0, size, sortType.referenceComparator)
+      val pool = new ForkJoinPool(4)
+      try {
+        val outOffset = RadixSort.sortKeyPrefixArrayMSD(
+          buf2, 0, size, sortType.startByteIdx, sortType.endByteIdx,
+          sortType.descending, sortType.signed, pool)
+        val res1 = collectToArray(buf1, 0, size * 2)
+        val res2 = collectToArray(buf2, outOffset, size * 2)
+        assert(res1.view == res2.view)
+      } finally {
+        pool.shutdown()
+      }
+    }
   }
 }
@@ -133,6 +133,13 @@ public final class UnsafeExternalRowSorter {
     return sorter.getSortTimeNanos();
   }
 
+  /**
+   * @return the total amount of time spent waiting for spill files to be read from disk.
+   */
+  public long getSpillReadWaitTimeNanos() {
+    return sorter.getSpillReadWaitTimeNanos();
+  }
+
   private void cleanupResources() {
     sorter.cleanupResources();
   }
@@ -463,10 +463,22 @@ public class VectorizedColumnReader {
       this.dataColumn = new VectorizedRleValuesReader();
       this.useDictionary = true;
     } else {
-      if (dataEncoding != Encoding.PLAIN) {
-        throw new UnsupportedOperationException("Unsupported encoding: " + dataEncoding);
+      switch (dataEncoding) {
+        case PLAIN:
+          this.dataColumn = new VectorizedPlainValuesReader();
+          break;
+        case DELTA_BINARY_PACKED:
+          this.dataColumn = new VectorizedDeltaBinaryPackedReader();
+          break;
+        case DELTA_LENGTH_BYTE_ARRAY:
+          this.dataColumn = new VectorizedDeltaLengthByteArrayReader();
+          break;
+        case DELTA_BYTE_ARRAY:
+          this.dataColumn = new VectorizedDeltaByteArrayReader();
+          break;
+        default:
+          throw new UnsupportedOperationException("Unsupported encoding: " + dataEncoding);
       }
-      this.dataColumn = new VectorizedPlainValuesReader();
       this.useDictionary = false;
     }
 
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.parquet;
+
+import java.io.IOException;
+
+import org.apache.parquet.column.values.ValuesReader;
+import org.apache.parquet.io.api.Binary;
+
+import org.apache.spark.sql.execution.vectorized.ColumnVector;
+
+/**
+ * An implementation of the Parquet DELTA_BYTE_ARRAY (incremental encoding) decoder that supports
+ * the vectorized interface. Each value is stored as the length of the prefix it shares with the
+ * previous value (DELTA_BINARY_PACKED) plus its remaining suffix (DELTA_LENGTH_BYTE_ARRAY).
+ *
+ * Values are rebuilt in two reused buffers that are swapped after every value, so decoding does
+ * not allocate per value.
+ */
+public class VectorizedDeltaByteArrayReader extends ValuesReader
+    implements VectorizedValuesReader {
+  private final VectorizedDeltaBinaryPackedReader prefixLengthReader =
+      new VectorizedDeltaBinaryPackedReader();
+  private final VectorizedDeltaLengthByteArrayReader suffixReader =
+      new VectorizedDeltaLengthByteArrayReader();
+
+  // Decoded prefix lengths of the current page.
+  private int[] prefixLengths = new int[0];
+  private int prefixLengthsIdx;
+
+  // The previous and the current value.
+  private byte[] previous = new byte[64];
+  private int previousLen;
+  private byte[] current = new byte[64];
+  private int currentLen;
+
+  @Override
+  public void initFromPage(int valueCount, byte[] page, int start) throws IOException {
+    prefixLengthReader.initFromPage(valueCount, page, start);
+    int numValues = prefixLengthReader.numValues();
+    if (prefixLengths.length < numValues) {
+      prefixLengths = new int[numValues];
+    }
+    prefixLengthReader.readIntegers(numValues, prefixLengths, 0);
+    this.prefixLengthsIdx = 0;
+    suffixReader.initFromPage(valueCount, page, prefixLengthReader.getNextOffset());
+    // The first value of a page never shares a prefix with the previous page.
+    this.previousLen = 0;
+  }
+
+  /**
+   * Decodes the next value into `current`, then swaps it with `previous`. After this call the
+   * value is in `previous[0, previousLen)`.
+   */
+  private void nextValue() {
+    int prefixLen = prefixLengths[prefixLengthsIdx++];
+    int suffixLen = suffixReader.peekLength();
+    currentLen = prefixLen + suffixLen;
+    if (current.length < currentLen) {
+      current = new byte[Math.max(currentLen, current.length * 2)];
+    }
+    System.arraycopy(previous, 0, current, 0, prefixLen);
+    suffixReader.readBinary(current, prefixLen);
+
+    byte[] tmp = previous;
+    previous = current;
+    previousLen = currentLen;
+    current = tmp;
+  }
+
+  @Override
+  public void skip() {
+    nextValue();
+  }
+
+  @Override
+  public final void readBinary(int total, ColumnVector c, int rowId) {
+    for (int i = 0; i < total; i++) {
+      nextValue();
+      c.putByteArray(rowId + i, previous, 0, previousLen);
+    }
+  }
+
+  /**
+   * Returns a copy of the next value. `len` is ignored as the length is encoded in the page.
+   */
+  @Override
+  public final Binary readBinary(int len) {
+    nextValue();
+    byte[] bytes = new byte[previousLen];
+    System.arraycopy(previous, 0, bytes, 0, previousLen);
+    return Binary.fromByteArray(bytes);
+  }
+
+  @Override
+  public boolean readBoolean() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public byte readByte() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public int readInteger() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public long readLong() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public float readFloat() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public double readDouble() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readBooleans(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readBytes(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readIntegers(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readLongs(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readFloats(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readDoubles(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.parquet;
+
+import java.io.IOException;
+
+import org.apache.parquet.column.values.ValuesReader;
+import org.apache.parquet.io.api.Binary;
+
+import org.apache.spark.sql.execution.vectorized.ColumnVector;
+
+/**
+ * An implementation of the Parquet DELTA_LENGTH_BYTE_ARRAY decoder that supports the vectorized
+ * interface. The lengths of all values are DELTA_BINARY_PACKED and followed by the concatenated
+ * value bytes, so values are copied into the column straight out of the page.
+ */
+public class VectorizedDeltaLengthByteArrayReader extends ValuesReader
+    implements VectorizedValuesReader {
+  private final VectorizedDeltaBinaryPackedReader lengthReader =
+      new VectorizedDeltaBinaryPackedReader();
+
+  private byte[] in;
+  private int offset;
+
+  // Decoded lengths of the current page.
+  private int[] lengths = new int[0];
+  private int lengthsIdx;
+
+  @Override
+  public void initFromPage(int valueCount, byte[] page, int start) throws IOException {
+    lengthReader.initFromPage(valueCount, page, start);
+    int numValues = lengthReader.numValues();
+    if (lengths.length < numValues) {
+      lengths = new int[numValues];
+    }
+    lengthReader.readIntegers(numValues, lengths, 0);
+    this.lengthsIdx = 0;
+    this.in = page;
+    this.offset = lengthReader.getNextOffset();
+  }
+
+  @Override
+  public void skip() {
+    offset += lengths[lengthsIdx++];
+  }
+
+  @Override
+  public final void readBinary(int total, ColumnVector c, int rowId) {
+    for (int i = 0; i < total; i++) {
+      int len = lengths[lengthsIdx++];
+      c.putByteArray(rowId + i, in, offset, len);
+      offset += len;
+    }
+  }
+
+  /**
+   * Returns the next value. `len` is ignored as the length is encoded in the page.
+   */
+  @Override
+  public final Binary readBinary(int len) {
+    int valueLen = lengths[lengthsIdx++];
+    Binary result = Binary.fromByteArray(in, offset, valueLen);
+    offset += valueLen;
+    return result;
+  }
+
+  /**
+   * Returns the length of the next value without consuming it.
+   */
+  final int peekLength() {
+    return lengths[lengthsIdx];
+  }
+
+  /**
+   * Copies the next value into `dst` at `dstOffset` and consumes it.
+   */
+  final void readBinary(byte[] dst, int dstOffset) {
+    int len = lengths[lengthsIdx++];
+    System.arraycopy(in, offset, dst, dstOffset, len);
+    offset += len;
+  }
+
+  @Override
+  public boolean readBoolean() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public byte readByte() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public int readInteger() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public long readLong() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public float readFloat() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public double readDouble() {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readBooleans(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readBytes(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readIntegers(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readLongs(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readFloats(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+
+  @Override
+  public void readDoubles(int total, ColumnVector c, int rowId) {
+    throw new UnsupportedOperationException("only readBinary is valid.");
+  }
+}
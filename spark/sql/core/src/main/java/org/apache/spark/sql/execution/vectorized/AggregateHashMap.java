@@ -18,93 +18,433 @@
 package org.apache.spark.sql.execution.vectorized;
 
 import java.util.Arrays;
+import java.util.Iterator;
 
 import com.google.common.annotations.VisibleForTesting;
 
 import org.apache.spark.memory.MemoryMode;
+import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
+import org.apache.spark.unsafe.hash.Murmur3_x86_32;
+import org.apache.spark.unsafe.types.UTF8String;
 
-import static org.apache.spark.sql.types.DataTypes.LongType;
+import static org.apache.spark.sql.types.DataTypes.*;
 
 /**
- * This is an illustrative implementation of an append-only single-key/single value aggregate hash
- * map that can act as a 'cache' for extremely fast key-value lookups while evaluating aggregates
- * (and fall back to the `BytesToBytesMap` if a given key isn't found). This can be potentially
- * 'codegened' in HashAggregate to speed up aggregates w/ key.
+ * This is an illustrative implementation of an append-only aggregate hash map that can act as a
+ * 'cache' for extremely fast key-value lookups while evaluating aggregates (and fall back to the
+ * `BytesToBytesMap` if a given key can't be stored). This can be potentially 'codegened' in
+ * HashAggregate to speed up aggregates w/ key.
  *
- * It is backed by a power-of-2-sized array for index lookups and a columnar batch that stores the
- * key-value pairs. The index lookups in the array rely on linear probing (with a small number of
- * maximum tries) and use an inexpensive hash function which makes it really efficient for a
- * majority of lookups. However, using linear probing and an inexpensive hash function also makes it
- * less robust as compared to the `BytesToBytesMap` (especially for a large number of keys or even
- * for certain distribution of keys) and requires us to fall back on the latter for correctness.
+ * Grouping keys can be any number of fixed-width primitive columns plus strings of at most
+ * {@link #MAX_STRING_KEY_BYTES} bytes. Every aggregation buffer column is maintained by one of the
+ * {@link AggregateFunction}s. Keys and buffers are stored in a single columnar batch; the first
+ * columns hold the keys and the remaining ones the buffers.
+ *
+ * It is backed by a power-of-2-sized array for index lookups that relies on linear probing with a
+ * Murmur3 hash over all the key columns. The full hash of every occupied bucket is kept next to
+ * it so that most probes are resolved without touching the batch. The map never gives up while
+ * probing; it only refuses keys (returning null) once the batch is full, if a key is null or if a
+ * string key is too long, in which case the caller has to fall back to the `BytesToBytesMap`.
  */
 public class AggregateHashMap {
 
-  private ColumnarBatch batch;
-  private int[] buckets;
-  private int numBuckets;
-  private int numRows = 0;
-  private int maxSteps = 3;
+  /**
+   * The aggregates that can be maintained in an aggregation buffer column. SUM, MIN and MAX
+   * ignore null inputs and stay null until the first non-null input, COUNT counts the non-null
+   * inputs and requires a long buffer.
+   */
+  public enum AggregateFunction {
+    SUM,
+    COUNT,
+    MIN,
+    MAX
+  }
+
+  /** The longest string key, in bytes, that is stored in the map. */
+  public static final int MAX_STRING_KEY_BYTES = 32;
+
+  private static final int DEFAULT_CAPACITY = 1 << 16;
+  private static final double DEFAULT_LOAD_FACTOR = 0.25;
+  private static final int HASH_SEED = 42;
 
-  private static int DEFAULT_CAPACITY = 1 << 16;
-  private static double DEFAULT_LOAD_FACTOR = 0.25;
-  private static int DEFAULT_MAX_STEPS = 3;
+  private final ColumnarBatch batch;
+  private final int numKeys;
+  private final DataType[] keyTypes;
+  private final DataType[] bufferTypes;
+  private final AggregateFunction[] functions;
 
-  public AggregateHashMap(StructType schema, int capacity, double loadFactor, int maxSteps) {
+  // Row id stored in each bucket (-1 if empty) and the hash of its key.
+  private final int[] buckets;
+  private final int[] bucketHashes;
+  private final int numBuckets;
+  private final int capacity;
+  private int numRows = 0;
 
-    // We currently only support single key-value pair that are both longs
-    assert (schema.size() == 2 && schema.fields()[0].dataType() == LongType &&
-        schema.fields()[1].dataType() == LongType);
+  public AggregateHashMap(
+      StructType keySchema,
+      StructType bufferSchema,
+      AggregateFunction[] functions,
+      int capacity,
+      double loadFactor) {
+    assert (keySchema.size() > 0);
+    assert (bufferSchema.size() == functions.length);
+    assert (capacity > 0);
+    assert (loadFactor > 0 && loadFactor < 1);
 
-    // capacity should be a power of 2
-    assert (capacity > 0 && ((capacity & (capacity - 1)) == 0));
+    this.numKeys = keySchema.size();
+    this.keyTypes = new DataType[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      keyTypes[i] = keySchema.fields()[i].dataType();
+      if (!isSupportedKeyType(keyTypes[i])) {
+        throw new UnsupportedOperationException("Unsupported key type: " + keyTypes[i]);
+      }
+    }
+    this.bufferTypes = new DataType[bufferSchema.size()];
+    for (int i = 0; i < bufferTypes.length; i++) {
+      bufferTypes[i] = bufferSchema.fields()[i].dataType();
+      boolean supported = functions[i] == AggregateFunction.COUNT ?
+          bufferTypes[i] == LongType : isSupportedBufferType(bufferTypes[i]);
+      if (!supported) {
+        throw new UnsupportedOperationException(
+            "Unsupported buffer type for " + functions[i] + ": " + bufferTypes[i]);
+      }
+    }
+    this.functions = functions.clone();
 
-    this.maxSteps = maxSteps;
-    numBuckets = (int) (capacity / loadFactor);
-    batch = ColumnarBatch.allocate(schema, MemoryMode.ON_HEAP, capacity);
-    buckets = new int[numBuckets];
+    StructType schema = new StructType();
+    for (StructField f : keySchema.fields()) schema = schema.add(f);
+    for (StructField f : bufferSchema.fields()) schema = schema.add(f);
+
+    this.capacity = capacity;
+    // Round up to a power of 2 so that bucket indices can be computed with a mask.
+    this.numBuckets = Integer.highestOneBit((int) Math.ceil(capacity / loadFactor) - 1) << 1;
+    this.batch = ColumnarBatch.allocate(schema, MemoryMode.ON_HEAP, capacity);
+    this.buckets = new int[numBuckets];
+    this.bucketHashes = new int[numBuckets];
     Arrays.fill(buckets, -1);
   }
 
+  /**
+   * Creates a map whose first column is the key and all the remaining columns are SUM buffers.
+   */
+  public AggregateHashMap(StructType schema, int capacity, double loadFactor) {
+    this(new StructType(Arrays.copyOfRange(schema.fields(), 0, 1)),
+        new StructType(Arrays.copyOfRange(schema.fields(), 1, schema.size())),
+        sums(schema.size() - 1),
+        capacity,
+        loadFactor);
+  }
+
   public AggregateHashMap(StructType schema) {
-    this(schema, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, DEFAULT_MAX_STEPS);
+    this(schema, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  private static AggregateFunction[] sums(int n) {
+    AggregateFunction[] functions = new AggregateFunction[n];
+    Arrays.fill(functions, AggregateFunction.SUM);
+    return functions;
+  }
+
+  private static boolean isSupportedKeyType(DataType t) {
+    return t == BooleanType || t == ByteType || t == ShortType || t == IntegerType ||
+        t == DateType || t == LongType || t == TimestampType || t == FloatType ||
+        t == DoubleType || t == StringType;
+  }
+
+  private static boolean isSupportedBufferType(DataType t) {
+    return t == IntegerType || t == LongType || t == FloatType || t == DoubleType;
   }
 
+  /**
+   * Returns the row holding `key` and its aggregation buffers, inserting it if needed. Only valid
+   * if the map has a single long key. Returns null if the key is new and the map is full.
+   */
   public ColumnarBatch.Row findOrInsert(long key) {
-    int idx = find(key);
-    if (idx != -1 && buckets[idx] == -1) {
-      batch.column(0).putLong(numRows, key);
-      batch.column(1).putLong(numRows, 0);
-      buckets[idx] = numRows++;
+    assert (numKeys == 1 && keyTypes[0] == LongType);
+    int hash = Murmur3_x86_32.hashLong(key, HASH_SEED);
+    int idx = findBucket(hash, key);
+    if (buckets[idx] == -1) {
+      if (numRows == capacity) return null;
+      int rowId = numRows;
+      batch.column(0).putLong(rowId, key);
+      insert(idx, hash, rowId);
     }
     return batch.getRow(buckets[idx]);
   }
 
+  /**
+   * Returns the row holding `key` and its aggregation buffers, inserting it if needed. Returns
+   * null if the key can't be stored in this map and the caller needs to fall back.
+   */
+  public ColumnarBatch.Row findOrInsert(InternalRow key) {
+    int rowId = findOrInsertRowId(key);
+    return rowId == -1 ? null : batch.getRow(rowId);
+  }
+
+  /**
+   * Updates the aggregation buffers of `key` with `input`, which has one field per buffer.
+   * Returns false if the key can't be stored in this map and the caller needs to fall back.
+   */
+  public boolean aggregate(InternalRow key, InternalRow input) {
+    int rowId = findOrInsertRowId(key);
+    if (rowId == -1) return false;
+    update(rowId, input);
+    return true;
+  }
+
+  /**
+   * Returns the row id of `key`, or -1 if it is not in the map. Only valid if the map has a
+   * single long key.
+   */
   @VisibleForTesting
   public int find(long key) {
-    long h = hash(key);
-    int step = 0;
-    int idx = (int) h & (numBuckets - 1);
-    while (step < maxSteps) {
-      // Return bucket index if it's either an empty slot or already contains the key
-      if (buckets[idx] == -1) {
-        return idx;
-      } else if (equals(idx, key)) {
-        return idx;
+    int idx = findBucket(Murmur3_x86_32.hashLong(key, HASH_SEED), key);
+    return buckets[idx];
+  }
+
+  /**
+   * Returns the row id of `key`, or -1 if it is not in the map.
+   */
+  public int find(InternalRow key) {
+    if (!canStore(key)) return -1;
+    return buckets[findBucket(hash(key), key)];
+  }
+
+  /**
+   * Returns the number of distinct keys in the map.
+   */
+  public int numRows() {
+    return numRows;
+  }
+
+  /**
+   * Returns an iterator over the rows (keys followed by aggregation buffers) of the map.
+   */
+  public Iterator<ColumnarBatch.Row> rowIterator() {
+    return batch.rowIterator();
+  }
+
+  public void close() {
+    batch.close();
+  }
+
+  private int findOrInsertRowId(InternalRow key) {
+    if (!canStore(key)) return -1;
+    int hash = hash(key);
+    int idx = findBucket(hash, key);
+    if (buckets[idx] == -1) {
+      if (numRows == capacity) return -1;
+      int rowId = numRows;
+      for (int i = 0; i < numKeys; i++) {
+        putKey(batch.column(i), rowId, keyTypes[i], key, i);
+      }
+      insert(idx, hash, rowId);
+    }
+    return buckets[idx];
+  }
+
+  private void insert(int idx, int hash, int rowId) {
+    for (int i = 0; i < bufferTypes.length; i++) {
+      ColumnVector c = batch.column(numKeys + i);
+      if (bufferTypes[i] == IntegerType) {
+        c.putInt(rowId, 0);
+      } else if (bufferTypes[i] == LongType) {
+        c.putLong(rowId, 0);
+      } else if (bufferTypes[i] == FloatType) {
+        c.putFloat(rowId, 0);
+      } else {
+        c.putDouble(rowId, 0);
       }
+      if (functions[i] == AggregateFunction.COUNT) {
+        c.putNotNull(rowId);
+      } else {
+        c.putNull(rowId);
+      }
+    }
+    buckets[idx] = rowId;
+    bucketHashes[idx] = hash;
+    numRows++;
+    batch.setNumRows(numRows);
+  }
+
+  private void update(int rowId, InternalRow input) {
+    for (int i = 0; i < bufferTypes.length; i++) {
+      if (input.isNullAt(i)) continue;
+      ColumnVector c = batch.column(numKeys + i);
+      AggregateFunction f = functions[i];
+      if (f == AggregateFunction.COUNT) {
+        c.putLong(rowId, c.getLong(rowId) + 1);
+        continue;
+      }
+      boolean first = c.isNullAt(rowId);
+      DataType t = bufferTypes[i];
+      if (t == IntegerType) {
+        int v = input.getInt(i);
+        if (!first) v = combine(f, c.getInt(rowId), v);
+        c.putInt(rowId, v);
+      } else if (t == LongType) {
+        long v = input.getLong(i);
+        if (!first) v = combine(f, c.getLong(rowId), v);
+        c.putLong(rowId, v);
+      } else if (t == FloatType) {
+        float v = input.getFloat(i);
+        if (!first) v = combine(f, c.getFloat(rowId), v);
+        c.putFloat(rowId, v);
+      } else {
+        double v = input.getDouble(i);
+        if (!first) v = combine(f, c.getDouble(rowId), v);
+        c.putDouble(rowId, v);
+      }
+      if (first) c.putNotNull(rowId);
+    }
+  }
+
+  private static int combine(AggregateFunction f, int cur, int v) {
+    if (f == AggregateFunction.SUM) {
+      return cur + v;
+    } else if (f == AggregateFunction.MIN) {
+      return Math.min(cur, v);
+    } else {
+      return Math.max(cur, v);
+    }
+  }
+
+  private static long combine(AggregateFunction f, long cur, long v) {
+    if (f == AggregateFunction.SUM) {
+      return cur + v;
+    } else if (f == AggregateFunction.MIN) {
+      return Math.min(cur, v);
+    } else {
+      return Math.max(cur, v);
+    }
+  }
+
+  private static float combine(AggregateFunction f, float cur, float v) {
+    if (f == AggregateFunction.SUM) {
+      return cur + v;
+    } else if (f == AggregateFunction.MIN) {
+      return Math.min(cur, v);
+    } else {
+      return Math.max(cur, v);
+    }
+  }
+
+  private static double combine(AggregateFunction f, double cur, double v) {
+    if (f == AggregateFunction.SUM) {
+      return cur + v;
+    } else if (f == AggregateFunction.MIN) {
+      return Math.min(cur, v);
+    } else {
+      return Math.max(cur, v);
+    }
+  }
+
+  /**
+   * Returns the bucket that either holds `key` or is the empty bucket it should be inserted
+   * into. Always terminates as there are more buckets than rows.
+   */
+  private int findBucket(int hash, long key) {
+    int idx = hash & (numBuckets - 1);
+    ColumnVector keys = batch.column(0);
+    while (buckets[idx] != -1 &&
+        (bucketHashes[idx] != hash || keys.getLong(buckets[idx]) != key)) {
       idx = (idx + 1) & (numBuckets - 1);
-      step++;
     }
-    // Didn't find it
-    return -1;
+    return idx;
+  }
+
+  private int findBucket(int hash, InternalRow key) {
+    int idx = hash & (numBuckets - 1);
+    while (buckets[idx] != -1 && (bucketHashes[idx] != hash || !equals(buckets[idx], key))) {
+      idx = (idx + 1) & (numBuckets - 1);
+    }
+    return idx;
+  }
+
+  private boolean canStore(InternalRow key) {
+    for (int i = 0; i < numKeys; i++) {
+      if (key.isNullAt(i)) return false;
+      if (keyTypes[i] == StringType && key.getUTF8String(i).numBytes() > MAX_STRING_KEY_BYTES) {
+        return false;
+      }
+    }
+    return true;
   }
 
-  private long hash(long key) {
-    return key;
+  private int hash(InternalRow key) {
+    int h = HASH_SEED;
+    for (int i = 0; i < numKeys; i++) {
+      DataType t = keyTypes[i];
+      if (t == BooleanType) {
+        h = Murmur3_x86_32.hashInt(key.getBoolean(i) ? 1 : 0, h);
+      } else if (t == ByteType) {
+        h = Murmur3_x86_32.hashInt(key.getByte(i), h);
+      } else if (t == ShortType) {
+        h = Murmur3_x86_32.hashInt(key.getShort(i), h);
+      } else if (t == IntegerType || t == DateType) {
+        h = Murmur3_x86_32.hashInt(key.getInt(i), h);
+      } else if (t == LongType || t == TimestampType) {
+        h = Murmur3_x86_32.hashLong(key.getLong(i), h);
+      } else if (t == FloatType) {
+        h = Murmur3_x86_32.hashInt(Float.floatToIntBits(key.getFloat(i)), h);
+      } else if (t == DoubleType) {
+        h = Murmur3_x86_32.hashLong(Double.doubleToLongBits(key.getDouble(i)), h);
+      } else {
+        UTF8String s = key.getUTF8String(i);
+        h = Murmur3_x86_32.hashUnsafeBytes(s.getBaseObject(), s.getBaseOffset(), s.numBytes(), h);
+      }
+    }
+    return h;
   }
 
-  private boolean equals(int idx, long key1) {
-    return batch.column(0).getLong(buckets[idx]) == key1;
+  private boolean equals(int rowId, InternalRow key) {
+    for (int i = 0; i < numKeys; i++) {
+      ColumnVector c = batch.column(i);
+      DataType t = keyTypes[i];
+      boolean equal;
+      if (t == BooleanType) {
+        equal = c.getBoolean(rowId) == key.getBoolean(i);
+      } else if (t == ByteType) {
+        equal = c.getByte(rowId) == key.getByte(i);
+      } else if (t == ShortType) {
+        equal = c.getShort(rowId) == key.getShort(i);
+      } else if (t == IntegerType || t == DateType) {
+        equal = c.getInt(rowId) == key.getInt(i);
+      } else if (t == LongType || t == TimestampType) {
+        equal = c.getLong(rowId) == key.getLong(i);
+      } else if (t == FloatType) {
+        equal = Float.floatToIntBits(c.getFloat(rowId)) == Float.floatToIntBits(key.getFloat(i));
+      } else if (t == DoubleType) {
+        equal = Double.doubleToLongBits(c.getDouble(rowId)) ==
+            Double.doubleToLongBits(key.getDouble(i));
+      } else {
+        equal = c.getUTF8String(rowId).equals(key.getUTF8String(i));
+      }
+      if (!equal) return false;
+    }
+    return true;
+  }
+
+  private static void putKey(ColumnVector c, int rowId, DataType t, InternalRow key, int i) {
+    if (t == BooleanType) {
+      c.putBoolean(rowId, key.getBoolean(i));
+    } else if (t == ByteType) {
+      c.putByte(rowId, key.getByte(i));
+    } else if (t == ShortType) {
+      c.putShort(rowId, key.getShort(i));
+    } else if (t == IntegerType || t == DateType) {
+      c.putInt(rowId, key.getInt(i));
+    } else if (t == LongType || t == TimestampType) {
+      c.putLong(rowId, key.getLong(i));
+    } else if (t == FloatType) {
+      c.putFloat(rowId, key.getFloat(i));
+    } else if (t == DoubleType) {
+      c.putDouble(rowId, key.getDouble(i));
+    } else {
+      c.putByteArray(rowId, key.getUTF8String(i).getBytes());
+    }
   }
 }
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.spark.sql.execution.vectorized;
+
+import java.util.Arrays;
+
+import org.apache.spark.sql.catalyst.expressions.XXH64;
+import org.apache.spark.sql.types.*;
+import org.apache.spark.unsafe.Platform;
+import org.apache.spark.unsafe.hash.Murmur3_x86_32;
+
+/**
+ * Computes the Murmur3 and xxHash64 hashes of a range of rows of ColumnVectors, one column at a
+ * time, instead of making a call per row per column. The results are identical to the ones of
+ * the Murmur3Hash and XxHash64 expressions: the hash of a row for one column is the seed for the
+ * next column, and a null value leaves the hash of its row unchanged.
+ *
+ * Rows are addressed by their rowId in the columns, the filters of a ColumnarBatch are not
+ * applied. Nested types other than CalendarIntervalType are not supported.
+ */
+public final class ColumnVectorHashing {
+
+  private ColumnVectorHashing() {}
+
+  /**
+   * Computes the Murmur3 hashes of the rows [rowId, rowId + count) of `columns`, starting from
+   * `seed`. The hash of row rowId + i is stored in hashes[i].
+   */
+  public static void murmur3Hash(
+      ColumnVector[] columns, int rowId, int count, int seed, int[] hashes) {
+    Arrays.fill(hashes, 0, count, seed);
+    for (ColumnVector column : columns) {
+      murmur3Hash(column, rowId, count, hashes);
+    }
+  }
+
+  /**
+   * Combines the values of the rows [rowId, rowId + count) of `column` into their Murmur3
+   * hashes. hashes[i] is the seed of row rowId + i, and is replaced with its hash.
+   */
+  public static void murmur3Hash(ColumnVector column, int rowId, int count, int[] hashes) {
+    DataType type = column.dataType();
+    boolean checkNulls = column.anyNullsSet();
+    if (type instanceof BooleanType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashInt(column.getBoolean(rowId + i) ? 1 : 0, hashes[i]);
+      }
+    } else if (type instanceof ByteType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashInt(column.getByte(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof ShortType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashInt(column.getShort(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof IntegerType || type instanceof DateType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashInt(column.getInt(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof LongType || type instanceof TimestampType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashLong(column.getLong(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof FloatType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashInt(
+          Float.floatToIntBits(column.getFloat(rowId + i)), hashes[i]);
+      }
+    } else if (type instanceof DoubleType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashLong(
+          Double.doubleToLongBits(column.getDouble(rowId + i)), hashes[i]);
+      }
+    } else if (type instanceof DecimalType) {
+      // Decimals are hashed as their unscaled long value when it fits, as their unscaled bytes
+      // otherwise, which is how the column stores them.
+      int precision = ((DecimalType) type).precision();
+      if (precision <= Decimal.MAX_INT_DIGITS()) {
+        for (int i = 0; i < count; i++) {
+          if (checkNulls && column.isNullAt(rowId + i)) continue;
+          hashes[i] = Murmur3_x86_32.hashLong(column.getInt(rowId + i), hashes[i]);
+        }
+      } else if (precision <= Decimal.MAX_LONG_DIGITS()) {
+        for (int i = 0; i < count; i++) {
+          if (checkNulls && column.isNullAt(rowId + i)) continue;
+          hashes[i] = Murmur3_x86_32.hashLong(column.getLong(rowId + i), hashes[i]);
+        }
+      } else {
+        murmur3HashBytes(column, rowId, count, hashes);
+      }
+    } else if (type instanceof StringType || type instanceof BinaryType) {
+      murmur3HashBytes(column, rowId, count, hashes);
+    } else if (type instanceof CalendarIntervalType) {
+      ColumnVector months = column.getChildColumn(0);
+      ColumnVector microseconds = column.getChildColumn(1);
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = Murmur3_x86_32.hashInt(months.getInt(rowId + i),
+          Murmur3_x86_32.hashLong(microseconds.getLong(rowId + i), hashes[i]));
+      }
+    } else {
+      throw new UnsupportedOperationException("Cannot hash a column of type " + type);
+    }
+  }
+
+  /**
+   * Computes the xxHash64 hashes of the rows [rowId, rowId + count) of `columns`, starting from
+   * `seed`. The hash of row rowId + i is stored in hashes[i].
+   */
+  public static void xxHash64(
+      ColumnVector[] columns, int rowId, int count, long seed, long[] hashes) {
+    Arrays.fill(hashes, 0, count, seed);
+    for (ColumnVector column : columns) {
+      xxHash64(column, rowId, count, hashes);
+    }
+  }
+
+  /**
+   * Combines the values of the rows [rowId, rowId + count) of `column` into their xxHash64
+   * hashes. hashes[i] is the seed of row rowId + i, and is replaced with its hash.
+   */
+  public static void xxHash64(ColumnVector column, int rowId, int count, long[] hashes) {
+    DataType type = column.dataType();
+    boolean checkNulls = column.anyNullsSet();
+    if (type instanceof BooleanType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashInt(column.getBoolean(rowId + i) ? 1 : 0, hashes[i]);
+      }
+    } else if (type instanceof ByteType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashInt(column.getByte(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof ShortType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashInt(column.getShort(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof IntegerType || type instanceof DateType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashInt(column.getInt(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof LongType || type instanceof TimestampType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashLong(column.getLong(rowId + i), hashes[i]);
+      }
+    } else if (type instanceof FloatType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashInt(Float.floatToIntBits(column.getFloat(rowId + i)), hashes[i]);
+      }
+    } else if (type instanceof DoubleType) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashLong(
+          Double.doubleToLongBits(column.getDouble(rowId + i)), hashes[i]);
+      }
+    } else if (type instanceof DecimalType) {
+      int precision = ((DecimalType) type).precision();
+      if (precision <= Decimal.MAX_INT_DIGITS()) {
+        for (int i = 0; i < count; i++) {
+          if (checkNulls && column.isNullAt(rowId + i)) continue;
+          hashes[i] = XXH64.hashLong(column.getInt(rowId + i), hashes[i]);
+        }
+      } else if (precision <= Decimal.MAX_LONG_DIGITS()) {
+        for (int i = 0; i < count; i++) {
+          if (checkNulls && column.isNullAt(rowId + i)) continue;
+          hashes[i] = XXH64.hashLong(column.getLong(rowId + i), hashes[i]);
+        }
+      } else {
+        xxHash64Bytes(column, rowId, count, hashes);
+      }
+    } else if (type instanceof StringType || type instanceof BinaryType) {
+      xxHash64Bytes(column, rowId, count, hashes);
+    } else if (type instanceof CalendarIntervalType) {
+      ColumnVector months = column.getChildColumn(0);
+      ColumnVector microseconds = column.getChildColumn(1);
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        hashes[i] = XXH64.hashInt(months.getInt(rowId + i),
+          XXH64.hashLong(microseconds.getLong(rowId + i), hashes[i]));
+      }
+    } else {
+      throw new UnsupportedOperationException("Cannot hash a column of type " + type);
+    }
+  }
+
+  private static void murmur3HashBytes(ColumnVector column, int rowId, int count, int[] hashes) {
+    boolean checkNulls = column.anyNullsSet();
+    if (column.dictionary != null) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        byte[] bytes = column.getBinary(rowId + i);
+        hashes[i] = Murmur3_x86_32.hashUnsafeBytes(
+          bytes, Platform.BYTE_ARRAY_OFFSET, bytes.length, hashes[i]);
+      }
+      return;
+    }
+    ColumnVector data = column.arrayData();
+    Object base = bytesBase(data);
+    long baseOffset = bytesBaseOffset(data);
+    for (int i = 0; i < count; i++) {
+      if (checkNulls && column.isNullAt(rowId + i)) continue;
+      hashes[i] = Murmur3_x86_32.hashUnsafeBytes(base,
+        baseOffset + column.getArrayOffset(rowId + i), column.getArrayLength(rowId + i),
+        hashes[i]);
+    }
+  }
+
+  private static void xxHash64Bytes(ColumnVector column, int rowId, int count, long[] hashes) {
+    boolean checkNulls = column.anyNullsSet();
+    if (column.dictionary != null) {
+      for (int i = 0; i < count; i++) {
+        if (checkNulls && column.isNullAt(rowId + i)) continue;
+        byte[] bytes = column.getBinary(rowId + i);
+        hashes[i] = XXH64.hashUnsafeBytes(
+          bytes, Platform.BYTE_ARRAY_OFFSET, bytes.length, hashes[i]);
+      }
+      return;
+    }
+    ColumnVector data = column.arrayData();
+    Object base = bytesBase(data);
+    long baseOffset = bytesBaseOffset(data);
+    for (int i = 0; i < count; i++) {
+      if (checkNulls && column.isNullAt(rowId + i)) continue;
+      hashes[i] = XXH64.hashUnsafeBytes(base,
+        baseOffset + column.getArrayOffset(rowId + i), column.getArrayLength(rowId + i),
+        hashes[i]);
+    }
+  }
+
+  /**
+   * Returns the object the bytes of a byte column are read from: its backing array when it is
+   * on heap, null when it is off heap. The bytes are hashed in place, without being copied.
+   */
+  private static Object bytesBase(ColumnVector data) {
+    if (data instanceof OffHeapColumnVector) {
+      return null;
+    }
+    ColumnVector.Array array = new ColumnVector.Array(data);
+    data.loadBytes(array);
+    return array.byteArray;
+  }
+
+  private static long bytesBaseOffset(ColumnVector data) {
+    if (data instanceof OffHeapColumnVector) {
+      return data.valuesNativeAddress();
+    }
+    return Platform.BYTE_ARRAY_OFFSET;
+  }
+}
@@ -2233,6 +2233,28 @@ class Dataset[T] private[sql](
     }
   }
 
+  /**
+   * Like [[collect]], but returns the rows in Spark's internal format, for callers which convert
+   * them to their own representation (e.g. the thrift server) without going through [[Row]].
+   */
+  private[sql] def collectInternalRows(): Array[InternalRow] =
+    withCallback("collect", toDF()) { _ =>
+      withNewExecutionId {
+        queryExecution.executedPlan.executeCollect()
+      }
+    }
+
+  /**
+   * Like [[toLocalIterator]], but returns the rows in Spark's internal format, see
+   * [[collectInternalRows]].
+   */
+  private[sql] def toLocalInternalRowIterator(): Iterator[InternalRow] =
+    withCallback("toLocalIterator", toDF()) { _ =>
+      withNewExecutionId {
+        queryExecution.executedPlan.executeToIterator()
+      }
+    }
+
   /**
    * Returns the number of rows in the Dataset.
    * @group action
@@ -26,6 +26,7 @@ import org.apache.spark.sql.catalyst.expressions.codegen.{CodegenContext, ExprCo
 import org.apache.spark.sql.catalyst.plans.physical.{Distribution, OrderedDistribution, UnspecifiedDistribution}
 import org.apache.spark.sql.execution.metric.SQLMetrics
 import org.apache.spark.sql.types._
+import org.apache.spark.util.CompletionIterator
 import org.apache.spark.util.collection.unsafe.sort.RadixSort;
 
 /**
@@ -55,7 +56,8 @@ case class SortExec(
   override private[sql] lazy val metrics = Map(
     "sortTime" -> SQLMetrics.createTimingMetric(sparkContext, "sort time"),
     "peakMemory" -> SQLMetrics.createSizeMetric(sparkContext, "peak memory"),
-    "spillSize" -> SQLMetrics.createSizeMetric(sparkContext, "spill size"))
+    "spillSize" -> SQLMetrics.createSizeMetric(sparkContext, "spill size"),
+    "spillReadWaitTime" -> SQLMetrics.createTimingMetric(sparkContext, "spill read wait time"))
 
   def createSorter(): UnsafeExternalRowSorter = {
     val ordering = newOrdering(sortOrder, output)
@@ -95,6 +97,7 @@ case class SortExec(
     val peakMemory = longMetric("peakMemory")
     val spillSize = longMetric("spillSize")
     val sortTime = longMetric("sortTime")
+    val spillReadWaitTime = longMetric("spillReadWaitTime")
 
     child.execute().mapPartitionsInternal { iter =>
       val sorter = createSorter()
@@ -109,7 +112,9 @@ case class SortExec(
       spillSize += metrics.memoryBytesSpilled - spillSizeBefore
       metrics.incPeakExecutionMemory(sorter.getPeakMemoryUsage)
 
-      sortedIterator
+      // Spill files are read while the sorted rows are consumed.
+      CompletionIterator[InternalRow, Iterator[InternalRow]](sortedIterator,
+        spillReadWaitTime += sorter.getSpillReadWaitTimeNanos / 1000000)
     }
   }
 
@@ -137,6 +142,8 @@ case class SortExec(
       s"$metrics = org.apache.spark.TaskContext.get().taskMetrics();")
     val sortedIterator = ctx.freshName("sortedIter")
     ctx.addMutableState("scala.collection.Iterator<UnsafeRow>", sortedIterator, "")
+    val spillReadWaitReported = ctx.freshName("spillReadWaitReported")
+    ctx.addMutableState("boolean", spillReadWaitReported, s"$spillReadWaitReported = false;")
 
     val addToSorter = ctx.freshName("addToSorter")
     ctx.addNewFunction(addToSorter,
@@ -155,6 +162,7 @@ case class SortExec(
     val spillSize = metricTerm(ctx, "spillSize")
     val spillSizeBefore = ctx.freshName("spillSizeBefore")
     val sortTime = metricTerm(ctx, "sortTime")
+    val spillReadWaitTime = metricTerm(ctx, "spillReadWaitTime")
     s"""
        | if ($needToSort) {
        |   long $spillSizeBefore = $metrics.memoryBytesSpilled();
@@ -172,6 +180,11 @@ case class SortExec(
        |   ${consume(ctx, null, outputRow)}
        |   if (shouldStop()) return;
        | }
+       |
+       | if (!$spillReadWaitReported) {
+       |   $spillReadWaitTime.add($sorterVariable.getSpillReadWaitTimeNanos() / 1000000);
+       |   $spillReadWaitReported = true;
+       | }
      """.stripMargin.trim
   }
 
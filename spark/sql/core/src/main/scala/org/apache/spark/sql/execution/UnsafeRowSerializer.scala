@@ -22,8 +22,6 @@ import java.nio.ByteBuffer
 
 import scala.reflect.ClassTag
 
-import com.google.common.io.ByteStreams
-
 import org.apache.spark.serializer.{DeserializationStream, SerializationStream, Serializer, SerializerInstance}
 import org.apache.spark.sql.catalyst.expressions.UnsafeRow
 import org.apache.spark.sql.execution.metric.SQLMetric
@@ -51,25 +49,52 @@ private[sql] class UnsafeRowSerializer(
 private class UnsafeRowSerializerInstance(
     numFields: Int,
     dataSize: SQLMetric) extends SerializerInstance {
+  import UnsafeRowSerializerInstance._
+
   /**
    * Serializes a stream of UnsafeRows. Within the stream, each record consists of a record
    * length (stored as a 4-byte integer, written high byte first), followed by the record's bytes.
+   *
+   * Records are copied straight from the memory of the rows into a page, which is written to the
+   * output stream with a single call once it is full. Rows that do not fit in a page are written
+   * to the output stream directly.
    */
   override def serializeStream(out: OutputStream): SerializationStream = new SerializationStream {
-    private[this] var writeBuffer: Array[Byte] = new Array[Byte](4096)
-    private[this] val dOut: DataOutputStream =
-      new DataOutputStream(new BufferedOutputStream(out))
+    private[this] var page: Array[Byte] = new Array[Byte](PageSize)
+    private[this] var pageCursor: Int = 0
 
     override def writeValue[T: ClassTag](value: T): SerializationStream = {
       val row = value.asInstanceOf[UnsafeRow]
+      val rowSize = row.getSizeInBytes
       if (dataSize != null) {
-        dataSize.add(row.getSizeInBytes)
+        dataSize.add(rowSize)
+      }
+      if (page.length - pageCursor < 4 + rowSize) {
+        flushPage()
+      }
+      page(pageCursor) = (rowSize >>> 24).toByte
+      page(pageCursor + 1) = (rowSize >>> 16).toByte
+      page(pageCursor + 2) = (rowSize >>> 8).toByte
+      page(pageCursor + 3) = rowSize.toByte
+      pageCursor += 4
+      if (rowSize <= page.length - pageCursor) {
+        Platform.copyMemory(row.getBaseObject, row.getBaseOffset,
+          page, Platform.BYTE_ARRAY_OFFSET + pageCursor, rowSize)
+        pageCursor += rowSize
+      } else {
+        flushPage()
+        row.writeToStream(out, page)
       }
-      dOut.writeInt(row.getSizeInBytes)
-      row.writeToStream(dOut, writeBuffer)
       this
     }
 
+    private[this] def flushPage(): Unit = {
+      if (pageCursor > 0) {
+        out.write(page, 0, pageCursor)
+        pageCursor = 0
+      }
+    }
+
     override def writeKey[T: ClassTag](key: T): SerializationStream = {
       // The key is only needed on the map side when computing partition ids. It does not need to
       // be shuffled.
@@ -88,57 +113,113 @@ private class UnsafeRowSerializerInstance(
     }
 
     override def flush(): Unit = {
-      dOut.flush()
+      flushPage()
+      out.flush()
     }
 
     override def close(): Unit = {
-      writeBuffer = null
-      dOut.close()
+      if (page != null) {
+        flushPage()
+        page = null
+      }
+      out.close()
     }
   }
 
+  /**
+   * Deserializes a stream of UnsafeRows written by `serializeStream`. The stream is read in bulk
+   * into pages, and the returned row points to its bytes inside a page instead of having them
+   * copied out. The same UnsafeRow instance is returned for every record, and it is only valid
+   * until the next record is read.
+   */
   override def deserializeStream(in: InputStream): DeserializationStream = {
     new DeserializationStream {
-      private[this] val dIn: DataInputStream = new DataInputStream(new BufferedInputStream(in))
-      // 1024 is a default buffer size; this buffer will grow to accommodate larger rows
-      private[this] var rowBuffer: Array[Byte] = new Array[Byte](1024)
+      // The stream is read into `page`. When a record continues past its end, the remaining bytes
+      // are moved to `sparePage`, and the pages are swapped, so that the row returned last, which
+      // may point into the old page, stays valid while the size of the next record is read.
+      // Pages grow to accommodate larger rows.
+      private[this] var page: Array[Byte] = new Array[Byte](PageSize)
+      private[this] var sparePage: Array[Byte] = null
+      private[this] var pageStart: Int = 0
+      private[this] var pageEnd: Int = 0
       private[this] var row: UnsafeRow = new UnsafeRow(numFields)
       private[this] var rowTuple: (Int, UnsafeRow) = (0, row)
       private[this] val EOF: Int = -1
 
+      /**
+       * Makes `numBytes` bytes available in the page from `pageStart`, and returns false if the
+       * stream ends before.
+       */
+      private[this] def ensureAvailable(numBytes: Int): Boolean = {
+        if (pageEnd - pageStart >= numBytes) {
+          return true
+        }
+        val remaining = pageEnd - pageStart
+        if (sparePage == null || sparePage.length < numBytes) {
+          sparePage = new Array[Byte](math.max(numBytes, page.length))
+        }
+        System.arraycopy(page, pageStart, sparePage, 0, remaining)
+        val oldPage = page
+        page = sparePage
+        sparePage = oldPage
+        pageStart = 0
+        pageEnd = remaining
+        while (pageEnd < numBytes) {
+          val numRead = in.read(page, pageEnd, page.length - pageEnd)
+          if (numRead < 0) {
+            return false
+          }
+          pageEnd += numRead
+        }
+        true
+      }
+
+      private[this] def readSize(): Int = {
+        if (ensureAvailable(4)) {
+          val size = ((page(pageStart) & 0xFF) << 24) | ((page(pageStart + 1) & 0xFF) << 16) |
+            ((page(pageStart + 2) & 0xFF) << 8) | (page(pageStart + 3) & 0xFF)
+          pageStart += 4
+          size
+        } else if (pageEnd == pageStart) {
+          EOF
+        } else {
+          throw new EOFException("Stream ended in the size of a row")
+        }
+      }
+
+      private[this] def readRow(rowSize: Int): Unit = {
+        if (!ensureAvailable(rowSize)) {
+          throw new EOFException(s"Stream ended in a row of $rowSize bytes")
+        }
+        row.pointTo(page, Platform.BYTE_ARRAY_OFFSET + pageStart, rowSize)
+        pageStart += rowSize
+      }
+
       override def asKeyValueIterator: Iterator[(Int, UnsafeRow)] = {
         new Iterator[(Int, UnsafeRow)] {
 
-          private[this] def readSize(): Int = try {
-            dIn.readInt()
-          } catch {
-            case e: EOFException =>
-              dIn.close()
-              EOF
+          private[this] def readSizeOrClose(): Int = {
+            val size = readSize()
+            if (size == EOF) {
+              in.close()
+              // Null these out so that the pages can be garbage collected once the entire
+              // iterator has been consumed
+              page = null
+              sparePage = null
+              row = null
+              rowTuple = null
+            }
+            size
           }
 
-          private[this] var rowSize: Int = readSize()
+          private[this] var rowSize: Int = readSizeOrClose()
           override def hasNext: Boolean = rowSize != EOF
 
           override def next(): (Int, UnsafeRow) = {
-            if (rowBuffer.length < rowSize) {
-              rowBuffer = new Array[Byte](rowSize)
-            }
-            ByteStreams.readFully(dIn, rowBuffer, 0, rowSize)
-            row.pointTo(rowBuffer, Platform.BYTE_ARRAY_OFFSET, rowSize)
-            rowSize = readSize()
-            if (rowSize == EOF) { // We are returning the last row in this stream
-              dIn.close()
-              val _rowTuple = rowTuple
-              // Null these out so that the byte array can be garbage collected once the entire
-              // iterator has been consumed
-              row = null
-              rowBuffer = null
-              rowTuple = null
-              _rowTuple
-            } else {
-              rowTuple
-            }
+            readRow(rowSize)
+            val _rowTuple = rowTuple
+            rowSize = readSizeOrClose()
+            _rowTuple
           }
         }
       }
@@ -155,12 +236,11 @@ private class UnsafeRowSerializerInstance(
       }
 
       override def readValue[T: ClassTag](): T = {
-        val rowSize = dIn.readInt()
-        if (rowBuffer.length < rowSize) {
-          rowBuffer = new Array[Byte](rowSize)
+        val rowSize = readSize()
+        if (rowSize == EOF) {
+          throw new EOFException
         }
-        ByteStreams.readFully(dIn, rowBuffer, 0, rowSize)
-        row.pointTo(rowBuffer, Platform.BYTE_ARRAY_OFFSET, rowSize)
+        readRow(rowSize)
         row.asInstanceOf[T]
       }
 
@@ -170,7 +250,7 @@ private class UnsafeRowSerializerInstance(
       }
 
       override def close(): Unit = {
-        dIn.close()
+        in.close()
       }
     }
   }
@@ -182,3 +262,13 @@ private class UnsafeRowSerializerInstance(
   override def deserialize[T: ClassTag](bytes: ByteBuffer, loader: ClassLoader): T =
     throw new UnsupportedOperationException
 }
+
+private object UnsafeRowSerializerInstance {
+  /**
+   * Initial size of the pages that rows are copied into before being written, or read into. A
+   * map task writes to one stream per reduce partition at once with the bypass merge sort shuffle,
+   * and merging spills reads from one stream per spill at once, so this is kept as small as the
+   * buffered streams that the pages replace.
+   */
+  val PageSize: Int = 8 * 1024
+}
@@ -17,7 +17,7 @@
 
 package org.apache.spark.sql.execution
 
-import java.io.{ByteArrayInputStream, ByteArrayOutputStream, File}
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, EOFException, File}
 import java.util.Properties
 
 import org.apache.spark._
@@ -29,6 +29,7 @@ import org.apache.spark.sql.catalyst.{CatalystTypeConverters, InternalRow}
 import org.apache.spark.sql.catalyst.expressions.{UnsafeProjection, UnsafeRow}
 import org.apache.spark.sql.types._
 import org.apache.spark.storage.ShuffleBlockId
+import org.apache.spark.unsafe.Platform
 import org.apache.spark.util.collection.ExternalSorter
 import org.apache.spark.util.Utils
 
@@ -88,6 +89,68 @@ class UnsafeRowSerializerSuite extends SparkFunSuite with LocalSparkContext {
     assert(input.closed)
   }
 
+  test("rows larger than a page and rows across pages") {
+    val schema = Array[DataType](StringType, IntegerType)
+    val converter = unsafeRowConverter(schema)
+    val sizes = Seq(0, 10, 20000, 5, 100000, 3) ++ (1 to 2000).map(_ % 97)
+    val unsafeRows = sizes.zipWithIndex.map { case (size, i) =>
+      converter(Row("x" * size, i)).copy()
+    }
+    val serializer = new UnsafeRowSerializer(numFields = 2).newInstance()
+    val baos = new ByteArrayOutputStream()
+    val serializerStream = serializer.serializeStream(baos)
+    unsafeRows.foreach(serializerStream.writeValue(_))
+    serializerStream.close()
+
+    // Read with an input stream that returns few bytes at once, so that rows span several reads.
+    val input = new ClosableByteArrayInputStream(baos.toByteArray) {
+      override def read(b: Array[Byte], off: Int, len: Int): Int =
+        super.read(b, off, math.min(len, 1000))
+    }
+    val deserializerIter = serializer.deserializeStream(input).asKeyValueIterator
+    for (expectedRow <- unsafeRows) {
+      // next() also reads the size of the following row, which must not overwrite this one.
+      val actualRow = deserializerIter.next()._2
+      assert(expectedRow === actualRow)
+    }
+    assert(!deserializerIter.hasNext)
+    assert(input.closed)
+  }
+
+  test("serialize off-heap rows") {
+    val unsafeRows = (1 to 100).map { i =>
+      toUnsafeRow(Row(s"row $i", i), Array(StringType, IntegerType)).copy()
+    }
+    val totalSize = unsafeRows.map(_.getSizeInBytes.toLong).sum
+    val address = Platform.allocateMemory(totalSize)
+    try {
+      var offset = address
+      val offHeapRows = unsafeRows.map { row =>
+        Platform.copyMemory(row.getBaseObject, row.getBaseOffset, null, offset, row.getSizeInBytes)
+        val offHeapRow = new UnsafeRow(2)
+        offHeapRow.pointTo(null, offset, row.getSizeInBytes)
+        offset += row.getSizeInBytes
+        offHeapRow
+      }
+      val serializer = new UnsafeRowSerializer(numFields = 2).newInstance()
+      val baos = new ByteArrayOutputStream()
+      val serializerStream = serializer.serializeStream(baos)
+      offHeapRows.foreach(serializerStream.writeValue(_))
+      serializerStream.close()
+
+      val deserializerStream =
+        serializer.deserializeStream(new ByteArrayInputStream(baos.toByteArray))
+      for (expectedRow <- unsafeRows) {
+        assert(deserializerStream.readValue[UnsafeRow]() === expectedRow)
+      }
+      intercept[EOFException] {
+        deserializerStream.readValue[UnsafeRow]()
+      }
+    } finally {
+      Platform.freeMemory(address)
+    }
+  }
+
   test("close empty input stream") {
     val input = new ClosableByteArrayInputStream(Array.empty)
     val serializer = new UnsafeRowSerializer(numFields = 2).newInstance()
@@ -21,10 +21,11 @@ import java.util.HashMap
 
 import org.apache.spark.SparkConf
 import org.apache.spark.memory.{StaticMemoryManager, TaskMemoryManager}
-import org.apache.spark.sql.catalyst.expressions.UnsafeRow
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.catalyst.expressions.{GenericMutableRow, UnsafeRow}
 import org.apache.spark.sql.execution.joins.LongToUnsafeRowMap
 import org.apache.spark.sql.execution.vectorized.AggregateHashMap
-import org.apache.spark.sql.types.{LongType, StructType}
+import org.apache.spark.sql.types.{IntegerType, LongType, StructType}
 import org.apache.spark.unsafe.Platform
 import org.apache.spark.unsafe.hash.Murmur3_x86_32
 import org.apache.spark.unsafe.map.BytesToBytesMap
@@ -556,6 +557,36 @@ class AggregateBenchmark extends BenchmarkBase {
       }
     }
 
+    benchmark.addCase("Aggregate HashMap (two int keys)") { iter =>
+      var i = 0
+      val numKeys = 65536
+      val keySchema = new StructType()
+        .add("k1", IntegerType)
+        .add("k2", IntegerType)
+      val bufferSchema = new StructType().add("count", LongType)
+      val map = new AggregateHashMap(keySchema, bufferSchema,
+        Array(AggregateHashMap.AggregateFunction.COUNT), numKeys, 0.25)
+      val key = new GenericMutableRow(2)
+      val input = InternalRow(1L)
+      while (i < numKeys) {
+        key.setInt(0, i >> 8)
+        key.setInt(1, i & 0xff)
+        map.aggregate(key, input)
+        i += 1
+      }
+      var s = 0
+      i = 0
+      while (i < N) {
+        val k = i % 100000
+        key.setInt(0, k >> 8)
+        key.setInt(1, k & 0xff)
+        if (map.find(key) != -1) {
+          s += 1
+        }
+        i += 1
+      }
+    }
+
     /*
     Intel(R) Core(TM) i7-4960HQ CPU @ 2.60GHz
     BytesToBytesMap:                    Best/Avg Time(ms)    Rate(M/s)   Per Row(ns)   Relative
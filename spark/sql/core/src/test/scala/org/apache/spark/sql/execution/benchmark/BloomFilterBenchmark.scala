@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.benchmark
+
+import org.apache.spark.util.Benchmark
+import org.apache.spark.util.random.XORShiftRandom
+import org.apache.spark.util.sketch.BloomFilter
+
+/**
+ * Benchmark to compare the regular and the blocked (cache-line) Bloom filters of spark-sketch.
+ * To run this:
+ *  build/sbt "sql/test-only *benchmark.BloomFilterBenchmark"
+ *
+ * Benchmarks in this file are skipped in normal builds.
+ */
+class BloomFilterBenchmark extends BenchmarkBase {
+
+  private def createFilter(blocked: Boolean, numItems: Int): BloomFilter = {
+    if (blocked) BloomFilter.createBlocked(numItems, 0.03) else BloomFilter.create(numItems, 0.03)
+  }
+
+  private def runBenchmark(numItems: Int): Unit = {
+    val rand = new XORShiftRandom(123)
+    val items = Array.fill(numItems)(rand.nextLong())
+    val probes = Array.fill(numItems)(rand.nextLong())
+    val results = new Array[Boolean](numItems)
+
+    val putBenchmark = new Benchmark(s"bloom filter put $numItems", numItems)
+    Seq(false, true).foreach { blocked =>
+      val name = if (blocked) "blocked" else "regular"
+      putBenchmark.addCase(s"$name putLong") { _ =>
+        val filter = createFilter(blocked, numItems)
+        var i = 0
+        while (i < numItems) {
+          filter.putLong(items(i))
+          i += 1
+        }
+      }
+      putBenchmark.addCase(s"$name putLongs") { _ =>
+        createFilter(blocked, numItems).putLongs(items)
+      }
+    }
+    putBenchmark.run()
+
+    val probeBenchmark = new Benchmark(s"bloom filter mightContain $numItems", numItems)
+    Seq(false, true).foreach { blocked =>
+      val name = if (blocked) "blocked" else "regular"
+      val filter = createFilter(blocked, numItems)
+      filter.putLongs(items)
+      probeBenchmark.addCase(s"$name mightContainLong") { _ =>
+        var i = 0
+        while (i < numItems) {
+          results(i) = filter.mightContainLong(probes(i))
+          i += 1
+        }
+      }
+      probeBenchmark.addCase(s"$name mightContainLongs") { _ =>
+        filter.mightContainLongs(probes, results)
+      }
+    }
+    probeBenchmark.run()
+  }
+
+  ignore("bloom filter fits in cache") {
+    runBenchmark(1 << 16)
+  }
+
+  ignore("bloom filter exceeds cache") {
+    runBenchmark(1 << 24)
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.benchmark
+
+import scala.collection.mutable
+
+import org.apache.spark.SparkConf
+import org.apache.spark.memory.{StaticMemoryManager, TaskMemoryManager}
+import org.apache.spark.unsafe.Platform
+import org.apache.spark.unsafe.hash.Murmur3_x86_32
+import org.apache.spark.unsafe.map.BytesToBytesMap
+import org.apache.spark.util.Benchmark
+import org.apache.spark.util.random.XORShiftRandom
+
+/**
+ * Benchmark to compare the probing strategies of BytesToBytesMap.
+ * To run this:
+ *  build/sbt "sql/test-only *benchmark.BytesToBytesMapBenchmark"
+ *
+ * Benchmarks in this file are skipped in normal builds.
+ */
+class BytesToBytesMapBenchmark extends BenchmarkBase {
+
+  private def newMap(
+      probingStrategy: BytesToBytesMap.ProbingStrategy,
+      loadFactor: Double): BytesToBytesMap = {
+    val taskMemoryManager = new TaskMemoryManager(
+      new StaticMemoryManager(
+        new SparkConf().set("spark.memory.offHeap.enabled", "false"),
+        Long.MaxValue,
+        Long.MaxValue,
+        1),
+      0)
+    new BytesToBytesMap(
+      taskMemoryManager, null, null, 1024, loadFactor, 64L << 20, true, probingStrategy)
+  }
+
+  /**
+   * Inserts `numKeys` keys, then looks up `numLookups` keys drawn with a skewed distribution, of
+   * which about half are missing from the map.
+   */
+  private def runBenchmark(numKeys: Int, numLookups: Int, loadFactor: Double): Unit = {
+    val rand = new XORShiftRandom(42)
+    // Squaring a uniform value skews the lookups towards the small keys.
+    val lookups = Array.fill(numLookups) {
+      val u = rand.nextDouble()
+      (u * u * numKeys * 2).toLong
+    }
+    val keyBytes = new Array[Long](2)
+    // Filled by the timed cases and printed once the benchmark is done.
+    val probesPerLookup = mutable.LinkedHashMap[BytesToBytesMap.ProbingStrategy, Double]()
+
+    val benchmark = new Benchmark(
+      s"BytesToBytesMap $numKeys keys, load factor $loadFactor", numLookups)
+    BytesToBytesMap.ProbingStrategy.values().foreach { probingStrategy =>
+      benchmark.addCase(probingStrategy.toString) { _ =>
+        val map = newMap(probingStrategy, loadFactor)
+        var i = 0
+        while (i < numKeys) {
+          keyBytes(0) = i
+          val loc = map.lookup(keyBytes, Platform.LONG_ARRAY_OFFSET, 16,
+            Murmur3_x86_32.hashLong(i, 42))
+          if (!loc.isDefined) {
+            loc.append(keyBytes, Platform.LONG_ARRAY_OFFSET, 16,
+              keyBytes, Platform.LONG_ARRAY_OFFSET, 16)
+          }
+          i += 1
+        }
+        i = 0
+        var found = 0
+        while (i < numLookups) {
+          keyBytes(0) = lookups(i)
+          if (map.lookup(keyBytes, Platform.LONG_ARRAY_OFFSET, 16,
+              Murmur3_x86_32.hashLong(lookups(i), 42)).isDefined) {
+            found += 1
+          }
+          i += 1
+        }
+        probesPerLookup(probingStrategy) = map.getAverageProbesPerLookup
+        map.free()
+      }
+    }
+    benchmark.run()
+    // scalastyle:off println
+    probesPerLookup.foreach { case (probingStrategy, probes) =>
+      println(s"$probingStrategy: $probes probes per lookup")
+    }
+    // scalastyle:on println
+  }
+
+  ignore("BytesToBytesMap probing, default load factor") {
+    runBenchmark(1 << 20, 1 << 24, 0.5)
+  }
+
+  ignore("BytesToBytesMap probing, high load factor") {
+    runBenchmark(1 << 20, 1 << 24, 0.9)
+  }
+}
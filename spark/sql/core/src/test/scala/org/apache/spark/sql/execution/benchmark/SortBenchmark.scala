@@ -18,6 +18,7 @@
 package org.apache.spark.sql.execution.benchmark
 
 import java.util.{Arrays, Comparator}
+import java.util.concurrent.ForkJoinPool
 
 import org.apache.spark.unsafe.array.LongArray
 import org.apache.spark.unsafe.memory.MemoryBlock
@@ -113,6 +114,20 @@ class SortBenchmark extends BenchmarkBase {
       RadixSort.sortKeyPrefixArray(buf2, 0, size, 0, 7, false, false)
       timer.stopTiming()
     }
+    benchmark.addTimerCase("radix sort key prefix array MSD") { timer =>
+      val (_, buf2) = generateKeyPrefixTestData(size, rand.nextLong)
+      timer.startTiming()
+      RadixSort.sortKeyPrefixArrayMSD(buf2, 0, size, 0, 7, false, false, null)
+      timer.stopTiming()
+    }
+    benchmark.addTimerCase("radix sort key prefix array MSD parallel") { timer =>
+      val (_, buf2) = generateKeyPrefixTestData(size, rand.nextLong)
+      val pool = new ForkJoinPool()
+      timer.startTiming()
+      RadixSort.sortKeyPrefixArrayMSD(buf2, 0, size, 0, 7, false, false, pool)
+      timer.stopTiming()
+      pool.shutdown()
+    }
     benchmark.run()
 
     /*
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.spark.sql.execution.benchmark
+
+import java.io._
+
+import com.google.common.io.ByteStreams
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.catalyst.expressions.{UnsafeProjection, UnsafeRow}
+import org.apache.spark.sql.execution.UnsafeRowSerializer
+import org.apache.spark.sql.types._
+import org.apache.spark.unsafe.Platform
+import org.apache.spark.unsafe.types.UTF8String
+import org.apache.spark.util.Benchmark
+
+/**
+ * Benchmark to compare UnsafeRowSerializer with the previous way of serializing UnsafeRows, which
+ * wrote each row through a DataOutputStream and read it back with a copy into a row buffer.
+ * To run this:
+ *  build/sbt "sql/test-only *benchmark.UnsafeRowSerializerBenchmark"
+ *
+ * Benchmarks in this file are skipped in normal builds.
+ */
+class UnsafeRowSerializerBenchmark extends BenchmarkBase {
+
+  private val numFields = 3
+
+  /** Returns `numRows` rows, copied off-heap if `offHeap` is set, and the memory to free. */
+  private def generateRows(numRows: Int, offHeap: Boolean): (Array[UnsafeRow], Long) = {
+    val projection = UnsafeProjection.create(Array[DataType](LongType, IntegerType, StringType))
+    val rows = Array.tabulate(numRows) { i =>
+      projection(InternalRow(i.toLong, i, UTF8String.fromString(s"value $i"))).copy()
+    }
+    if (!offHeap) {
+      (rows, 0L)
+    } else {
+      val totalSize = rows.map(_.getSizeInBytes.toLong).sum
+      val address = Platform.allocateMemory(totalSize)
+      var offset = address
+      val offHeapRows = rows.map { row =>
+        Platform.copyMemory(row.getBaseObject, row.getBaseOffset, null, offset, row.getSizeInBytes)
+        val offHeapRow = new UnsafeRow(numFields)
+        offHeapRow.pointTo(null, offset, row.getSizeInBytes)
+        offset += row.getSizeInBytes
+        offHeapRow
+      }
+      (offHeapRows, address)
+    }
+  }
+
+  private def writePerRow(rows: Array[UnsafeRow], out: OutputStream): Unit = {
+    val writeBuffer = new Array[Byte](4096)
+    val dOut = new DataOutputStream(new BufferedOutputStream(out))
+    rows.foreach { row =>
+      dOut.writeInt(row.getSizeInBytes)
+      row.writeToStream(dOut, writeBuffer)
+    }
+    dOut.close()
+  }
+
+  private def readPerRow(bytes: Array[Byte]): Long = {
+    val dIn = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(bytes)))
+    var rowBuffer = new Array[Byte](1024)
+    val row = new UnsafeRow(numFields)
+    var sum = 0L
+    var remaining = bytes.length
+    while (remaining > 0) {
+      val rowSize = dIn.readInt()
+      if (rowBuffer.length < rowSize) {
+        rowBuffer = new Array[Byte](rowSize)
+      }
+      ByteStreams.readFully(dIn, rowBuffer, 0, rowSize)
+      row.pointTo(rowBuffer, Platform.BYTE_ARRAY_OFFSET, rowSize)
+      sum += row.getLong(0)
+      remaining -= 4 + rowSize
+    }
+    dIn.close()
+    sum
+  }
+
+  private def runSerializerBenchmark(numRows: Int, offHeap: Boolean): Unit = {
+    val (rows, address) = generateRows(numRows, offHeap)
+    val serializer = new UnsafeRowSerializer(numFields).newInstance()
+    val bytes = {
+      val out = new ByteArrayOutputStream()
+      writePerRow(rows, out)
+      out.toByteArray
+    }
+
+    val memory = if (offHeap) "off-heap" else "on-heap"
+    val writeBenchmark = new Benchmark(s"serialize $numRows $memory rows", numRows)
+    writeBenchmark.addCase("per row") { _ =>
+      writePerRow(rows, new ByteArrayOutputStream(bytes.length))
+    }
+    writeBenchmark.addCase("UnsafeRowSerializer") { _ =>
+      val stream = serializer.serializeStream(new ByteArrayOutputStream(bytes.length))
+      rows.foreach(stream.writeValue(_))
+      stream.close()
+    }
+    writeBenchmark.run()
+
+    val readBenchmark = new Benchmark(s"deserialize $numRows rows", numRows)
+    readBenchmark.addCase("per row") { _ =>
+      readPerRow(bytes)
+    }
+    readBenchmark.addCase("UnsafeRowSerializer") { _ =>
+      val iter = serializer.deserializeStream(new ByteArrayInputStream(bytes)).asKeyValueIterator
+      var sum = 0L
+      while (iter.hasNext) {
+        sum += iter.next()._2.asInstanceOf[UnsafeRow].getLong(0)
+      }
+    }
+    readBenchmark.run()
+
+    if (address != 0L) {
+      Platform.freeMemory(address)
+    }
+  }
+
+  ignore("serialize on-heap rows") {
+    runSerializerBenchmark(1 << 22, offHeap = false)
+  }
+
+  ignore("serialize off-heap rows") {
+    runSerializerBenchmark(1 << 22, offHeap = true)
+  }
+}
@@ -16,6 +16,13 @@
  */
 package org.apache.spark.sql.execution.datasources.parquet
 
+import scala.collection.JavaConverters._
+
+import org.apache.hadoop.fs.Path
+import org.apache.parquet.column.{Encoding, ParquetProperties}
+import org.apache.parquet.format.converter.ParquetMetadataConverter
+import org.apache.parquet.hadoop.{ParquetFileReader, ParquetOutputFormat}
+
 import org.apache.spark.sql.test.SharedSQLContext
 
 // TODO: this needs a lot more testing but it's currently not easy to test with the parquet
@@ -78,4 +85,59 @@ class ParquetEncodingSuite extends ParquetCompatibilityTest with SharedSQLContex
       }}
     }
   }
+
+  test("Read delta encoded (Parquet v2) pages") {
+    val extraOptions = Map(
+      ParquetOutputFormat.WRITER_VERSION -> ParquetProperties.WriterVersion.PARQUET_2_0.toString,
+      ParquetOutputFormat.ENABLE_DICTIONARY -> "false"
+    )
+    val hadoopConf = spark.sessionState.newHadoopConfWithOptions(extraOptions)
+
+    withTempPath { dir =>
+      val path = s"${dir.getCanonicalPath}/test.parquet"
+      val n = 5000
+      spark.range(n).selectExpr(
+        "IF(id % 7 = 0, NULL, cast(id * 31 - 100000 as INT)) as i",
+        "IF(id % 11 = 0, NULL, id * id * 17 - 3) as l",
+        "IF(id % 13 = 0, NULL, concat('prefix_', cast(id as STRING))) as s"
+      ).coalesce(1).write.options(extraOptions).mode("overwrite").parquet(path)
+
+      val file = SpecificParquetRecordReaderBase.listDirectory(new java.io.File(path)).asScala.head
+      val footer = ParquetFileReader.readFooter(
+        hadoopConf, new Path(file), ParquetMetadataConverter.NO_FILTER)
+      val blockMetadata = footer.getBlocks.asScala.head
+      val encodings = blockMetadata.getColumns.asScala.flatMap(_.getEncodings.asScala)
+      assert(encodings.contains(Encoding.DELTA_BINARY_PACKED))
+      assert(encodings.contains(Encoding.DELTA_BYTE_ARRAY))
+
+      val reader = new VectorizedParquetRecordReader
+      reader.initialize(file, null)
+      val batch = reader.resultBatch()
+      var id = 0
+      while (reader.nextBatch()) {
+        var i = 0
+        while (i < batch.numRows()) {
+          if (id % 7 == 0) {
+            assert(batch.column(0).isNullAt(i))
+          } else {
+            assert(batch.column(0).getInt(i) == id * 31 - 100000)
+          }
+          if (id % 11 == 0) {
+            assert(batch.column(1).isNullAt(i))
+          } else {
+            assert(batch.column(1).getLong(i) == id.toLong * id * 17 - 3)
+          }
+          if (id % 13 == 0) {
+            assert(batch.column(2).isNullAt(i))
+          } else {
+            assert(batch.column(2).getUTF8String(i).toString == s"prefix_$id")
+          }
+          i += 1
+          id += 1
+        }
+      }
+      assert(id == n)
+      reader.close()
+    }
+  }
 }
@@ -21,6 +21,9 @@ import java.io.File
 import scala.collection.JavaConverters._
 import scala.util.Try
 
+import org.apache.parquet.column.ParquetProperties
+import org.apache.parquet.hadoop.ParquetOutputFormat
+
 import org.apache.spark.SparkConf
 import org.apache.spark.sql.internal.SQLConf
 import org.apache.spark.sql.SparkSession
@@ -222,6 +225,37 @@ object ParquetReadBenchmark {
     }
   }
 
+  def deltaEncodingScanBenchmark(values: Int): Unit = {
+    withTempPath { dir =>
+      withTempTable("t1", "tempTable") {
+        spark.range(values).createOrReplaceTempView("t1")
+        // Parquet v2 writers without dictionary encoding use DELTA_BINARY_PACKED for ints and
+        // DELTA_BYTE_ARRAY for strings.
+        spark.sql("select cast(id as INT) as c1, cast(id as STRING) as c2 from t1")
+          .write
+          .option(ParquetOutputFormat.WRITER_VERSION,
+            ParquetProperties.WriterVersion.PARQUET_2_0.toString)
+          .option(ParquetOutputFormat.ENABLE_DICTIONARY, "false")
+          .parquet(dir.getCanonicalPath)
+        spark.read.parquet(dir.getCanonicalPath).createOrReplaceTempView("tempTable")
+
+        val benchmark = new Benchmark("Delta Encoded Int and String Scan", values)
+
+        benchmark.addCase("SQL Parquet Vectorized") { iter =>
+          spark.sql("select sum(c1), sum(length(c2)) from tempTable").collect
+        }
+
+        benchmark.addCase("SQL Parquet MR") { iter =>
+          withSQLConf(SQLConf.PARQUET_VECTORIZED_READER_ENABLED.key -> "false") {
+            spark.sql("select sum(c1), sum(length(c2)) from tempTable").collect
+          }
+        }
+
+        benchmark.run()
+      }
+    }
+  }
+
   def partitionTableScanBenchmark(values: Int): Unit = {
     withTempPath { dir =>
       withTempTable("t1", "tempTable") {
@@ -348,6 +382,7 @@ object ParquetReadBenchmark {
     intScanBenchmark(1024 * 1024 * 15)
     intStringScanBenchmark(1024 * 1024 * 10)
     stringDictionaryScanBenchmark(1024 * 1024 * 10)
+    deltaEncodingScanBenchmark(1024 * 1024 * 10)
     partitionTableScanBenchmark(1024 * 1024 * 15)
     for (fractionOfNulls <- List(0.0, 0.50, 0.95)) {
       stringWithNullsScanBenchmark(1024 * 1024 * 10, fractionOfNulls)
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.vectorized
+
+import scala.collection.JavaConverters._
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.execution.vectorized.AggregateHashMap.AggregateFunction
+import org.apache.spark.sql.types._
+import org.apache.spark.unsafe.types.UTF8String
+
+class AggregateHashMapSuite extends SparkFunSuite {
+
+  test("single long key") {
+    val schema = new StructType().add("key", LongType).add("value", LongType)
+    val map = new AggregateHashMap(schema)
+    (0 until 1000).foreach { i =>
+      val row = map.findOrInsert((i % 100).toLong)
+      row.setLong(1, row.getLong(1) + 1)
+    }
+    assert(map.numRows() == 100)
+    (0 until 100).foreach { i =>
+      val rowId = map.find(i.toLong)
+      assert(rowId != -1)
+      assert(map.findOrInsert(i.toLong).getLong(1) == 10)
+    }
+    assert(map.find(100L) == -1)
+    map.close()
+  }
+
+  test("multiple keys and aggregate functions") {
+    val keySchema = new StructType().add("k1", IntegerType).add("k2", LongType)
+    val bufferSchema = new StructType()
+      .add("sum", LongType)
+      .add("count", LongType)
+      .add("min", DoubleType)
+      .add("max", IntegerType)
+    val functions = Array(
+      AggregateFunction.SUM, AggregateFunction.COUNT, AggregateFunction.MIN, AggregateFunction.MAX)
+    val map = new AggregateHashMap(keySchema, bufferSchema, functions, 1024, 0.5)
+
+    (0 until 1000).foreach { i =>
+      val key = InternalRow(i % 10, (i % 20).toLong)
+      val input = InternalRow(i.toLong, if (i % 3 == 0) null else i.toLong, i.toDouble, i)
+      assert(map.aggregate(key, input))
+    }
+    assert(map.numRows() == 20)
+
+    val results = map.rowIterator().asScala.map { row =>
+      (row.getInt(0), row.getLong(1)) -> (row.getLong(2), row.getLong(3), row.getDouble(4),
+        row.getInt(5))
+    }.toMap
+    (0 until 20).foreach { k =>
+      val values = (0 until 1000).filter(_ % 20 == k)
+      val expected = (values.map(_.toLong).sum, values.count(_ % 3 != 0).toLong,
+        values.min.toDouble, values.max)
+      assert(results((k % 10, k.toLong)) == expected)
+    }
+    map.close()
+  }
+
+  test("string keys") {
+    val keySchema = new StructType().add("k", StringType)
+    val bufferSchema = new StructType().add("count", LongType)
+    val map = new AggregateHashMap(
+      keySchema, bufferSchema, Array(AggregateFunction.COUNT), 16, 0.5)
+
+    (0 until 100).foreach { i =>
+      assert(map.aggregate(InternalRow(UTF8String.fromString(s"key${i % 5}")), InternalRow(1L)))
+    }
+    assert(map.numRows() == 5)
+    val rowId = map.find(InternalRow(UTF8String.fromString("key3")))
+    assert(rowId != -1)
+    assert(map.findOrInsert(InternalRow(UTF8String.fromString("key3"))).getLong(1) == 20)
+
+    // Keys that can't be stored must be handled by the caller.
+    val longKey = UTF8String.fromString("x" * (AggregateHashMap.MAX_STRING_KEY_BYTES + 1))
+    assert(!map.aggregate(InternalRow(longKey), InternalRow(1L)))
+    assert(map.findOrInsert(InternalRow(null)) == null)
+    map.close()
+  }
+
+  test("full map refuses new keys") {
+    val keySchema = new StructType().add("k", IntegerType)
+    val bufferSchema = new StructType().add("sum", LongType)
+    val map = new AggregateHashMap(keySchema, bufferSchema, Array(AggregateFunction.SUM), 8, 0.9)
+    (0 until 8).foreach { i => assert(map.aggregate(InternalRow(i), InternalRow(1L))) }
+    assert(!map.aggregate(InternalRow(8), InternalRow(1L)))
+    // Existing keys are still updated.
+    assert(map.aggregate(InternalRow(0), InternalRow(1L)))
+    assert(map.findOrInsert(InternalRow(0)).getLong(1) == 2)
+    map.close()
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.spark.sql.execution.vectorized
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.memory.MemoryMode
+import org.apache.spark.sql.{RandomDataGenerator, Row}
+import org.apache.spark.sql.catalyst.{CatalystTypeConverters, InternalRow}
+import org.apache.spark.sql.catalyst.expressions.{BoundReference, Murmur3Hash, XxHash64}
+import org.apache.spark.sql.types._
+
+class ColumnVectorHashingSuite extends SparkFunSuite {
+
+  /**
+   * Checks that the batch hashes of `rows` are the ones of the Murmur3Hash and XxHash64
+   * expressions, over all the rows and over a range that does not start at the first row.
+   */
+  private def checkHashes(schema: StructType, rows: Seq[Row]): Unit = {
+    val refs = schema.fields.zipWithIndex.map { case (f, i) =>
+      BoundReference(i, f.dataType, f.nullable)
+    }
+    val murmur3 = Murmur3Hash(refs, 42)
+    val xxHash64 = XxHash64(refs, 42L)
+    val toCatalyst = CatalystTypeConverters.createToCatalystConverter(schema)
+    val internalRows = rows.map(toCatalyst(_).asInstanceOf[InternalRow])
+    val expectedMurmur3 = internalRows.map(murmur3.eval(_).asInstanceOf[Int])
+    val expectedXxHash64 = internalRows.map(xxHash64.eval(_).asInstanceOf[Long])
+
+    (MemoryMode.ON_HEAP :: MemoryMode.OFF_HEAP :: Nil).foreach { memMode =>
+      val batch = ColumnVectorUtils.toBatch(schema, memMode, rows.iterator.asJava)
+      val columns = (0 until batch.numCols()).map(batch.column).toArray
+      Seq(0, rows.length / 3).foreach { rowId =>
+        val count = rows.length - rowId
+        val intHashes = new Array[Int](count)
+        ColumnVectorHashing.murmur3Hash(columns, rowId, count, 42, intHashes)
+        assert(intHashes.toSeq === expectedMurmur3.drop(rowId), s"memMode=$memMode")
+        val longHashes = new Array[Long](count)
+        ColumnVectorHashing.xxHash64(columns, rowId, count, 42L, longHashes)
+        assert(longHashes.toSeq === expectedXxHash64.drop(rowId), s"memMode=$memMode")
+      }
+      batch.close()
+    }
+  }
+
+  test("strings, nulls and empty values") {
+    val schema = new StructType()
+      .add("s", StringType)
+      .add("i", IntegerType)
+    val rows = Seq(Row("a", 1), Row(null, 2), Row("", null), Row(null, null),
+      Row("a longer string that spans several words", -1))
+    checkHashes(schema, rows)
+  }
+
+  test("random flat schema") {
+    val types = Seq(
+      BooleanType, ByteType, ShortType, IntegerType, LongType, FloatType, DoubleType, DateType,
+      DecimalType.IntDecimal, DecimalType.LongDecimal, new DecimalType(30, 10),
+      CalendarIntervalType)
+    val seed = System.nanoTime()
+    val random = new Random(seed)
+    (0 until 20).foreach { _ =>
+      val schema = RandomDataGenerator.randomSchema(random, 10, types)
+      val rows = Seq.fill(100)(RandomDataGenerator.randomRow(random, schema))
+      withClue(s"seed=$seed") {
+        checkHashes(schema, rows)
+      }
+    }
+  }
+
+  test("unsupported types") {
+    val column = ColumnVector.allocate(4, new ArrayType(IntegerType, true), MemoryMode.ON_HEAP)
+    intercept[UnsupportedOperationException] {
+      ColumnVectorHashing.murmur3Hash(column, 0, 0, new Array[Int](0))
+    }
+    column.close()
+  }
+}
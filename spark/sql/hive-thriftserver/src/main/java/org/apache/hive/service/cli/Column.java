@@ -95,34 +95,43 @@ public class Column extends AbstractList {
   }
 
   public Column(Type type) {
-    nulls = new BitSet();
+    this(type, DEFAULT_SIZE);
+  }
+
+  /**
+   * Creates an empty column with room for the given number of values, e.g. the expected number of
+   * rows of a fetch.
+   */
+  public Column(Type type, int capacity) {
+    capacity = Math.max(capacity, 1);
+    nulls = new BitSet(capacity);
     switch (type) {
       case BOOLEAN_TYPE:
-        boolVars = new boolean[DEFAULT_SIZE];
+        boolVars = new boolean[capacity];
         break;
       case TINYINT_TYPE:
-        byteVars = new byte[DEFAULT_SIZE];
+        byteVars = new byte[capacity];
         break;
       case SMALLINT_TYPE:
-        shortVars = new short[DEFAULT_SIZE];
+        shortVars = new short[capacity];
         break;
       case INT_TYPE:
-        intVars = new int[DEFAULT_SIZE];
+        intVars = new int[capacity];
         break;
       case BIGINT_TYPE:
-        longVars = new long[DEFAULT_SIZE];
+        longVars = new long[capacity];
         break;
       case FLOAT_TYPE:
       case DOUBLE_TYPE:
         type = Type.DOUBLE_TYPE;
-        doubleVars = new double[DEFAULT_SIZE];
+        doubleVars = new double[capacity];
         break;
       case BINARY_TYPE:
-        binaryVars = new ArrayList<ByteBuffer>();
+        binaryVars = new ArrayList<ByteBuffer>(capacity);
         break;
       default:
         type = Type.STRING_TYPE;
-        stringVars = new ArrayList<String>();
+        stringVars = new ArrayList<String>(capacity);
     }
     this.type = type;
   }
@@ -295,22 +304,22 @@ public class Column extends AbstractList {
     ByteBuffer nullMasks = ByteBuffer.wrap(toBinary(nulls));
     switch (type) {
       case BOOLEAN_TYPE:
-        value.setBoolVal(new TBoolColumn(Booleans.asList(Arrays.copyOfRange(boolVars, 0, size)), nullMasks));
+        value.setBoolVal(new TBoolColumn(Booleans.asList(boolVars).subList(0, size), nullMasks));
         break;
       case TINYINT_TYPE:
-        value.setByteVal(new TByteColumn(Bytes.asList(Arrays.copyOfRange(byteVars, 0, size)), nullMasks));
+        value.setByteVal(new TByteColumn(Bytes.asList(byteVars).subList(0, size), nullMasks));
         break;
       case SMALLINT_TYPE:
-        value.setI16Val(new TI16Column(Shorts.asList(Arrays.copyOfRange(shortVars, 0, size)), nullMasks));
+        value.setI16Val(new TI16Column(Shorts.asList(shortVars).subList(0, size), nullMasks));
         break;
       case INT_TYPE:
-        value.setI32Val(new TI32Column(Ints.asList(Arrays.copyOfRange(intVars, 0, size)), nullMasks));
+        value.setI32Val(new TI32Column(Ints.asList(intVars).subList(0, size), nullMasks));
         break;
       case BIGINT_TYPE:
-        value.setI64Val(new TI64Column(Longs.asList(Arrays.copyOfRange(longVars, 0, size)), nullMasks));
+        value.setI64Val(new TI64Column(Longs.asList(longVars).subList(0, size), nullMasks));
         break;
       case DOUBLE_TYPE:
-        value.setDoubleVal(new TDoubleColumn(Doubles.asList(Arrays.copyOfRange(doubleVars, 0, size)), nullMasks));
+        value.setDoubleVal(new TDoubleColumn(Doubles.asList(doubleVars).subList(0, size), nullMasks));
         break;
       case STRING_TYPE:
         value.setStringVal(new TStringColumn(stringVars, nullMasks));
@@ -367,6 +376,77 @@ public class Column extends AbstractList {
     size++;
   }
 
+  /**
+   * Appends a null value to the column.
+   */
+  public void addNull() {
+    nulls.set(size);
+    switch (type) {
+      case BOOLEAN_TYPE:
+        boolVars()[size] = true;
+        break;
+      case TINYINT_TYPE:
+        byteVars()[size] = 0;
+        break;
+      case SMALLINT_TYPE:
+        shortVars()[size] = 0;
+        break;
+      case INT_TYPE:
+        intVars()[size] = 0;
+        break;
+      case BIGINT_TYPE:
+        longVars()[size] = 0;
+        break;
+      case DOUBLE_TYPE:
+        doubleVars()[size] = 0;
+        break;
+      case BINARY_TYPE:
+        binaryVars.add(EMPTY_BINARY);
+        break;
+      default:
+        stringVars.add(EMPTY_STRING);
+        break;
+    }
+    size++;
+  }
+
+  // The following methods append a non-null value without boxing it, unlike addValue(). The
+  // value must match the type of the column.
+
+  public void addBoolean(boolean value) {
+    boolVars()[size++] = value;
+  }
+
+  public void addByte(byte value) {
+    byteVars()[size++] = value;
+  }
+
+  public void addShort(short value) {
+    shortVars()[size++] = value;
+  }
+
+  public void addInt(int value) {
+    intVars()[size++] = value;
+  }
+
+  public void addLong(long value) {
+    longVars()[size++] = value;
+  }
+
+  public void addDouble(double value) {
+    doubleVars()[size++] = value;
+  }
+
+  public void addBinary(byte[] value) {
+    binaryVars.add(ByteBuffer.wrap(value));
+    size++;
+  }
+
+  public void addString(String value) {
+    stringVars.add(value);
+    size++;
+  }
+
   private boolean[] boolVars() {
     if (boolVars.length == size) {
       boolean[] newVars = new boolean[size << 1];
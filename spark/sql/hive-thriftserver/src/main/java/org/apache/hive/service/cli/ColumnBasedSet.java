@@ -44,6 +44,14 @@ public class ColumnBasedSet implements RowSet {
     }
   }
 
+  public ColumnBasedSet(TableSchema schema, int capacity) {
+    types = schema.toTypes();
+    columns = new ArrayList<Column>();
+    for (ColumnDescriptor colDesc : schema.getColumnDescriptors()) {
+      columns.add(new Column(colDesc.getType(), capacity));
+    }
+  }
+
   public ColumnBasedSet(TRowSet tRowSet) {
     types = null;
     columns = new ArrayList<Column>();
@@ -32,6 +32,16 @@ public class RowSetFactory {
     return new RowBasedSet(schema);
   }
 
+  /**
+   * Creates a row set for the results of a fetch, with room for the given number of rows.
+   */
+  public static RowSet create(TableSchema schema, TProtocolVersion version, int capacity) {
+    if (version.getValue() >= HIVE_CLI_SERVICE_PROTOCOL_V6.getValue()) {
+      return new ColumnBasedSet(schema, capacity);
+    }
+    return new RowBasedSet(schema);
+  }
+
   public static RowSet create(TRowSet results, TProtocolVersion version) {
     if (version.getValue() >= HIVE_CLI_SERVICE_PROTOCOL_V6.getValue()) {
       return new ColumnBasedSet(results);
@@ -113,7 +113,7 @@ public class GetColumnsOperation extends MetadataOperation {
 
   protected GetColumnsOperation(HiveSession parentSession, String catalogName, String schemaName,
       String tableName, String columnName) {
-    super(parentSession, OperationType.GET_COLUMNS);
+    super(parentSession, OperationType.GET_COLUMNS, isAsyncEnabled(parentSession));
     this.catalogName = catalogName;
     this.schemaName = schemaName;
     this.tableName = tableName;
@@ -126,6 +126,8 @@ public class GetColumnsOperation extends MetadataOperation {
     setState(OperationState.RUNNING);
     try {
       IMetaStoreClient metastoreClient = getParentSession().getMetaStoreClient();
+      MetadataCache cache = getMetadataCache();
+      String user = getParentSession().getUserName();
       String schemaPattern = convertSchemaPattern(schemaName);
       String tablePattern = convertIdentifierPattern(tableName, true);
 
@@ -134,12 +136,12 @@ public class GetColumnsOperation extends MetadataOperation {
         columnPattern = Pattern.compile(convertIdentifierPattern(columnName, false));
       }
 
-      List<String> dbNames = metastoreClient.getDatabases(schemaPattern);
+      List<String> dbNames = cache.getDatabases(metastoreClient, user, schemaPattern);
       Collections.sort(dbNames);
       Map<String, List<String>> db2Tabs = new HashMap<>();
 
       for (String dbName : dbNames) {
-        List<String> tableNames = metastoreClient.getTables(dbName, tablePattern);
+        List<String> tableNames = cache.getTables(metastoreClient, user, dbName, tablePattern);
         Collections.sort(tableNames);
         db2Tabs.put(dbName, tableNames);
       }
@@ -154,8 +156,9 @@ public class GetColumnsOperation extends MetadataOperation {
       for (Entry<String, List<String>> dbTabs : db2Tabs.entrySet()) {
         String dbName = dbTabs.getKey();
         List<String> tableNames = dbTabs.getValue();
-        for (Table table : metastoreClient.getTableObjectsByName(dbName, tableNames)) {
-          TableSchema schema = new TableSchema(metastoreClient.getSchema(dbName, table.getTableName()));
+        for (Table table : cache.getTableObjectsByName(metastoreClient, user, dbName, tableNames)) {
+          TableSchema schema = new TableSchema(
+              cache.getSchema(metastoreClient, user, dbName, table.getTableName()));
           for (ColumnDescriptor column : schema.getColumnDescriptors()) {
             if (columnPattern != null && !columnPattern.matcher(column.getName()).matches()) {
               continue;
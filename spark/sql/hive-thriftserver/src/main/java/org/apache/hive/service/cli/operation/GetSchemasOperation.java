@@ -45,7 +45,7 @@ public class GetSchemasOperation extends MetadataOperation {
 
   protected GetSchemasOperation(HiveSession parentSession,
       String catalogName, String schemaName) {
-    super(parentSession, OperationType.GET_SCHEMAS);
+    super(parentSession, OperationType.GET_SCHEMAS, isAsyncEnabled(parentSession));
     this.catalogName = catalogName;
     this.schemaName = schemaName;
     this.rowSet = RowSetFactory.create(RESULT_SET_SCHEMA, getProtocolVersion());
@@ -61,7 +61,8 @@ public class GetSchemasOperation extends MetadataOperation {
     try {
       IMetaStoreClient metastoreClient = getParentSession().getMetaStoreClient();
       String schemaPattern = convertSchemaPattern(schemaName);
-      for (String dbName : metastoreClient.getDatabases(schemaPattern)) {
+      String user = getParentSession().getUserName();
+      for (String dbName : getMetadataCache().getDatabases(metastoreClient, user, schemaPattern)) {
         rowSet.addRow(new Object[] {dbName, DEFAULT_HIVE_CATALOG});
       }
       setState(OperationState.FINISHED);
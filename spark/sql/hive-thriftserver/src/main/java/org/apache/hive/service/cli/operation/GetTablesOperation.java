@@ -60,7 +60,7 @@ public class GetTablesOperation extends MetadataOperation {
   protected GetTablesOperation(HiveSession parentSession,
       String catalogName, String schemaName, String tableName,
       List<String> tableTypes) {
-    super(parentSession, OperationType.GET_TABLES);
+    super(parentSession, OperationType.GET_TABLES, isAsyncEnabled(parentSession));
     this.catalogName = catalogName;
     this.schemaName = schemaName;
     this.tableName = tableName;
@@ -79,8 +79,10 @@ public class GetTablesOperation extends MetadataOperation {
     setState(OperationState.RUNNING);
     try {
       IMetaStoreClient metastoreClient = getParentSession().getMetaStoreClient();
+      MetadataCache cache = getMetadataCache();
+      String user = getParentSession().getUserName();
       String schemaPattern = convertSchemaPattern(schemaName);
-      List<String> matchingDbs = metastoreClient.getDatabases(schemaPattern);
+      List<String> matchingDbs = cache.getDatabases(metastoreClient, user, schemaPattern);
       if(isAuthV2Enabled()){
         List<HivePrivilegeObject> privObjs = HivePrivilegeObjectUtils.getHivePrivDbObjects(matchingDbs);
         String cmdStr = "catalog : " + catalogName + ", schemaPattern : " + schemaName;
@@ -88,9 +90,9 @@ public class GetTablesOperation extends MetadataOperation {
       }
 
       String tablePattern = convertIdentifierPattern(tableName, true);
-      for (String dbName : metastoreClient.getDatabases(schemaPattern)) {
-        List<String> tableNames = metastoreClient.getTables(dbName, tablePattern);
-        for (Table table : metastoreClient.getTableObjectsByName(dbName, tableNames)) {
+      for (String dbName : matchingDbs) {
+        List<String> tableNames = cache.getTables(metastoreClient, user, dbName, tablePattern);
+        for (Table table : cache.getTableObjectsByName(metastoreClient, user, dbName, tableNames)) {
           Object[] rowData = new Object[] {
               DEFAULT_HIVE_CATALOG,
               table.getDbName(),
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hive.service.cli.operation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+
+/**
+ * MetadataCache.
+ *
+ * Caches the results of the metastore calls made by metadata operations, so that tools which
+ * browse the catalog do not send the same requests to the metastore over and over. Entries are
+ * kept per user, expire after {@link #TTL_SECONDS} and are bounded by {@link #MAX_ENTRIES}.
+ * Statements that may change the catalog must call {@link #invalidateAll()}. A TTL of zero,
+ * the default, disables the cache.
+ */
+public class MetadataCache {
+
+  public static final String TTL_SECONDS = "hive.server2.metadata.cache.ttl.seconds";
+  public static final String MAX_ENTRIES = "hive.server2.metadata.cache.max.entries";
+
+  private final Cache<List<Object>, Object> cache;
+
+  public MetadataCache(long ttlSeconds, long maxEntries) {
+    if (ttlSeconds > 0 && maxEntries > 0) {
+      cache = CacheBuilder.newBuilder()
+          .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+          .maximumSize(maxEntries)
+          .recordStats()
+          .build();
+    } else {
+      cache = null;
+    }
+  }
+
+  public MetadataCache(HiveConf hiveConf) {
+    this(hiveConf.getLong(TTL_SECONDS, 0L), hiveConf.getLong(MAX_ENTRIES, 10000L));
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  public List<String> getDatabases(final IMetaStoreClient client, String user,
+      final String databasePattern) throws Exception {
+    return new ArrayList<String>(get(Arrays.<Object>asList(user, "databases", databasePattern),
+        new Callable<List<String>>() {
+          @Override
+          public List<String> call() throws Exception {
+            return client.getDatabases(databasePattern);
+          }
+        }));
+  }
+
+  public List<String> getTables(final IMetaStoreClient client, String user, final String dbName,
+      final String tablePattern) throws Exception {
+    return new ArrayList<String>(get(Arrays.<Object>asList(user, "tables", dbName, tablePattern),
+        new Callable<List<String>>() {
+          @Override
+          public List<String> call() throws Exception {
+            return client.getTables(dbName, tablePattern);
+          }
+        }));
+  }
+
+  public List<Table> getTableObjectsByName(final IMetaStoreClient client, String user,
+      final String dbName, List<String> tableNames) throws Exception {
+    final List<String> names = new ArrayList<String>(tableNames);
+    return get(Arrays.<Object>asList(user, "tableObjects", dbName, names),
+        new Callable<List<Table>>() {
+          @Override
+          public List<Table> call() throws Exception {
+            return client.getTableObjectsByName(dbName, names);
+          }
+        });
+  }
+
+  public List<FieldSchema> getSchema(final IMetaStoreClient client, String user,
+      final String dbName, final String tableName) throws Exception {
+    return get(Arrays.<Object>asList(user, "schema", dbName, tableName),
+        new Callable<List<FieldSchema>>() {
+          @Override
+          public List<FieldSchema> call() throws Exception {
+            return client.getSchema(dbName, tableName);
+          }
+        });
+  }
+
+  /**
+   * Drops all the cached results. Called after statements that may have created, altered or
+   * dropped databases or tables.
+   */
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Returns the hit, miss and load statistics of the cache, which are all zero when the cache
+   * is disabled.
+   */
+  public CacheStats getStats() {
+    return cache != null ? cache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T get(List<Object> key, Callable<T> loader) throws Exception {
+    if (cache == null) {
+      return loader.call();
+    }
+    try {
+      return (T) cache.get(key, loader);
+    } catch (ExecutionException e) {
+      throw (Exception) e.getCause();
+    } catch (UncheckedExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+}
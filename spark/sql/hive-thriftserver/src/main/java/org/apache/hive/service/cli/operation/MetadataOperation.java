@@ -19,6 +19,7 @@
 package org.apache.hive.service.cli.operation;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.security.authorization.plugin.HiveAccessControlException;
@@ -43,11 +44,89 @@ public abstract class MetadataOperation extends Operation {
   protected static TableSchema RESULT_SET_SCHEMA;
   private static final char SEARCH_STRING_ESCAPE = '\\';
 
+  /**
+   * Whether the metadata operations that query the metastore run in the metadata thread pool of
+   * the session manager, so that slow metastore calls neither hold the handler threads nor
+   * prevent the operations from being cancelled. Like for asynchronous statements, clients must
+   * then poll the operation status until it is FINISHED before they fetch the results, which
+   * the JDBC driver does not do for metadata calls, so this is off by default.
+   */
+  public static final String ASYNC_METADATA_OPERATIONS = "hive.server2.async.metadata.operations";
+
+  /**
+   * The number of threads and the size of the wait queue of the metadata thread pool.
+   */
+  public static final String ASYNC_METADATA_EXEC_THREADS =
+      "hive.server2.async.metadata.exec.threads";
+  public static final String ASYNC_METADATA_EXEC_WAIT_QUEUE_SIZE =
+      "hive.server2.async.metadata.exec.wait.queue.size";
+
   protected MetadataOperation(HiveSession parentSession, OperationType opType) {
-    super(parentSession, opType, false);
+    this(parentSession, opType, false);
+  }
+
+  protected MetadataOperation(HiveSession parentSession, OperationType opType,
+      boolean runInBackground) {
+    super(parentSession, opType, runInBackground);
     setHasResultSet(true);
   }
 
+  protected static boolean isAsyncEnabled(HiveSession parentSession) {
+    return parentSession.getHiveConf().getBoolean(ASYNC_METADATA_OPERATIONS, false);
+  }
+
+  @Override
+  public void run() throws HiveSQLException {
+    long startTime = System.nanoTime();
+    if (!shouldRunAsync()) {
+      try {
+        super.run();
+      } finally {
+        recordLatency(startTime);
+      }
+      return;
+    }
+    beforeRun();
+    try {
+      runInBackground(startTime);
+    } finally {
+      afterRun();
+    }
+  }
+
+  private void runInBackground(final long startTime) throws HiveSQLException {
+    setState(OperationState.PENDING);
+    runInBackgroundPool("metadata operation " + getType(), new BackgroundWork() {
+      @Override
+      public void run() throws HiveSQLException {
+        try {
+          runInternal();
+        } catch (HiveSQLException e) {
+          // Failures caused by the operation being cancelled or closed are expected.
+          if (!isAborted()) {
+            throw e;
+          }
+        } finally {
+          recordLatency(startTime);
+        }
+      }
+    });
+  }
+
+  /**
+   * Submits to the metadata operation pool of the session manager, so that bursts of metadata
+   * operations cannot take the background threads of statements.
+   */
+  @Override
+  protected Future<?> submitBackgroundOperation(Runnable backgroundOperation) {
+    return getParentSession().getSessionManager().submitMetadataOperation(backgroundOperation);
+  }
+
+  @Override
+  public void cancel() throws HiveSQLException {
+    setState(OperationState.CANCELED);
+    cancelBackgroundOperation();
+  }
 
   /* (non-Javadoc)
    * @see org.apache.hive.service.cli.Operation#close()
@@ -55,9 +134,38 @@ public abstract class MetadataOperation extends Operation {
   @Override
   public void close() throws HiveSQLException {
     setState(OperationState.CLOSED);
+    cancelBackgroundOperation();
     cleanupOperationLog();
   }
 
+  private void cancelBackgroundOperation() {
+    Future<?> backgroundHandle = getBackgroundHandle();
+    if (backgroundHandle != null) {
+      backgroundHandle.cancel(true);
+    }
+  }
+
+  private boolean isAborted() {
+    OperationState state = getStatus().getState();
+    return state == OperationState.CANCELED || state == OperationState.CLOSED;
+  }
+
+  private void recordLatency(long startTime) {
+    getOperationManager().getMetadataOperationStats()
+        .record(getType(), System.nanoTime() - startTime);
+  }
+
+  private OperationManager getOperationManager() {
+    return getParentSession().getSessionManager().getOperationManager();
+  }
+
+  /**
+   * Returns the cache through which the metastore should be queried.
+   */
+  protected MetadataCache getMetadataCache() {
+    return getOperationManager().getMetadataCache();
+  }
+
   /**
    * Convert wildchars and escape sequence from JDBC format to datanucleous/regex
    */
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hive.service.cli.operation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hive.service.cli.OperationType;
+
+/**
+ * MetadataOperationStats.
+ *
+ * Latency histograms of metadata operations, by operation type. Bucket i counts the operations
+ * that took at most 2^i milliseconds (and more than 2^(i-1)), and the last bucket counts all
+ * the operations that took longer.
+ */
+public class MetadataOperationStats {
+
+  public static final int NUM_BUCKETS = 16;
+
+  private static class Histogram {
+    final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    final AtomicLong count = new AtomicLong();
+    final AtomicLong totalTimeNanos = new AtomicLong();
+  }
+
+  private final Map<OperationType, Histogram> histograms =
+      new EnumMap<OperationType, Histogram>(OperationType.class);
+
+  public MetadataOperationStats() {
+    // The map is never modified after this, so it can be read concurrently.
+    for (OperationType opType : OperationType.values()) {
+      histograms.put(opType, new Histogram());
+    }
+  }
+
+  public void record(OperationType opType, long elapsedNanos) {
+    Histogram histogram = histograms.get(opType);
+    histogram.buckets.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+    histogram.count.incrementAndGet();
+    histogram.totalTimeNanos.addAndGet(elapsedNanos);
+  }
+
+  public long getCount(OperationType opType) {
+    return histograms.get(opType).count.get();
+  }
+
+  public long getTotalTimeNanos(OperationType opType) {
+    return histograms.get(opType).totalTimeNanos.get();
+  }
+
+  /** Returns a copy of the bucket counts of the given operation type. */
+  public long[] getHistogram(OperationType opType) {
+    AtomicLongArray buckets = histograms.get(opType).buckets;
+    long[] counts = new long[NUM_BUCKETS];
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return counts;
+  }
+
+  /** Returns the longest latency counted by a bucket, or Long.MAX_VALUE for the last one. */
+  public static long getBucketUpperBoundMillis(int bucket) {
+    return bucket < NUM_BUCKETS - 1 ? 1L << bucket : Long.MAX_VALUE;
+  }
+
+  static int bucketOf(long elapsedMillis) {
+    if (elapsedMillis <= 1) {
+      return 0;
+    }
+    int bucket = 64 - Long.numberOfLeadingZeros(elapsedMillis - 1);
+    return Math.min(bucket, NUM_BUCKETS - 1);
+  }
+}
@@ -19,15 +19,22 @@ package org.apache.hive.service.cli.operation;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.security.PrivilegedExceptionAction;
 import java.util.EnumSet;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.metadata.Hive;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.processors.CommandProcessorResponse;
 import org.apache.hadoop.hive.ql.session.OperationLog;
+import org.apache.hadoop.hive.ql.session.SessionState;
+import org.apache.hadoop.hive.shims.Utils;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hive.service.cli.FetchOrientation;
 import org.apache.hive.service.cli.HiveSQLException;
 import org.apache.hive.service.cli.OperationHandle;
@@ -38,6 +45,7 @@ import org.apache.hive.service.cli.RowSet;
 import org.apache.hive.service.cli.TableSchema;
 import org.apache.hive.service.cli.session.HiveSession;
 import org.apache.hive.service.cli.thrift.TProtocolVersion;
+import org.apache.hive.service.server.ThreadWithGarbageCleanup;
 
 public abstract class Operation {
   protected final HiveSession parentSession;
@@ -223,6 +231,18 @@ public abstract class Operation {
     }
   }
 
+  protected void registerCurrentOperationLog() {
+    if (isOperationLogEnabled) {
+      if (operationLog == null) {
+        LOG.warn("Failed to get current OperationLog object of Operation: " +
+            getHandle().getHandleIdentifier());
+        isOperationLogEnabled = false;
+        return;
+      }
+      OperationLog.setCurrentOperationLog(operationLog);
+    }
+  }
+
   protected void unregisterOperationLog() {
     if (isOperationLogEnabled) {
       OperationLog.removeCurrentOperationLog();
@@ -260,6 +280,116 @@ public abstract class Operation {
     }
   }
 
+  /**
+   * Work of an operation that runs in a background thread, see {@link #runInBackgroundPool}.
+   */
+  protected interface BackgroundWork {
+    void run() throws HiveSQLException;
+  }
+
+  /**
+   * Runs the work in a thread of the pool that {@link #submitBackgroundOperation} submits to,
+   * with the SessionState, Hive object and UGI of the calling (handler) thread and with the
+   * operation log of this operation. A failure of the work becomes the operation exception.
+   */
+  protected void runInBackgroundPool(final String description, final BackgroundWork work)
+      throws HiveSQLException {
+    // We'll pass ThreadLocals in the background thread from the foreground (handler) thread
+    final SessionState parentSessionState = SessionState.get();
+    // ThreadLocal Hive object needs to be set in background thread.
+    // The metastore client in Hive is associated with right user.
+    final Hive parentHive = getSessionHive();
+    // Current UGI will get used by metastore when metastore is in embedded mode
+    // So this needs to get passed to the new background thread
+    final UserGroupInformation currentUGI = getCurrentUGI();
+    // Runnable impl to call the work asynchronously,
+    // from a different thread
+    Runnable backgroundOperation = new Runnable() {
+      @Override
+      public void run() {
+        PrivilegedExceptionAction<Object> doAsAction = new PrivilegedExceptionAction<Object>() {
+          @Override
+          public Object run() throws HiveSQLException {
+            Hive.set(parentHive);
+            SessionState.setCurrentSessionState(parentSessionState);
+            // Set current OperationLog in this async thread for keeping on saving query log.
+            registerCurrentOperationLog();
+            try {
+              work.run();
+            } catch (HiveSQLException e) {
+              setOperationException(e);
+              LOG.error("Error running " + description + ": ", e);
+            } finally {
+              unregisterOperationLog();
+            }
+            return null;
+          }
+        };
+
+        try {
+          currentUGI.doAs(doAsAction);
+        } catch (Exception e) {
+          setOperationException(new HiveSQLException(e));
+          LOG.error("Error running " + description + " as user : " +
+              currentUGI.getShortUserName(), e);
+        }
+        finally {
+          /**
+           * We'll cache the ThreadLocal RawStore object for this background thread for an orderly cleanup
+           * when this thread is garbage collected later.
+           * @see org.apache.hive.service.server.ThreadWithGarbageCleanup#finalize()
+           */
+          if (ThreadWithGarbageCleanup.currentThread() instanceof ThreadWithGarbageCleanup) {
+            ThreadWithGarbageCleanup currentThread =
+                (ThreadWithGarbageCleanup) ThreadWithGarbageCleanup.currentThread();
+            currentThread.cacheThreadLocalRawStore();
+          }
+        }
+      }
+    };
+    try {
+      // This submit blocks if no background threads are available to run this operation
+      setBackgroundHandle(submitBackgroundOperation(backgroundOperation));
+    } catch (RejectedExecutionException rejected) {
+      setState(OperationState.ERROR);
+      throw new HiveSQLException("The background threadpool cannot accept" +
+          " new task for execution, please retry the operation", rejected);
+    }
+  }
+
+  /**
+   * Submits a background operation to the background thread pool of the session manager.
+   */
+  protected Future<?> submitBackgroundOperation(Runnable backgroundOperation) {
+    return getParentSession().getSessionManager().submitBackgroundOperation(backgroundOperation);
+  }
+
+  /**
+   * Returns the current UGI on the stack
+   * @return UserGroupInformation
+   * @throws HiveSQLException
+   */
+  protected UserGroupInformation getCurrentUGI() throws HiveSQLException {
+    try {
+      return Utils.getUGI();
+    } catch (Exception e) {
+      throw new HiveSQLException("Unable to get current user", e);
+    }
+  }
+
+  /**
+   * Returns the ThreadLocal Hive for the current thread
+   * @return Hive
+   * @throws HiveSQLException
+   */
+  protected Hive getSessionHive() throws HiveSQLException {
+    try {
+      return Hive.get();
+    } catch (HiveException e) {
+      throw new HiveSQLException("Failed to get ThreadLocal Hive object", e);
+    }
+  }
+
   protected void cleanupOperationLog() {
     if (isOperationLogEnabled) {
       if (operationLog == null) {
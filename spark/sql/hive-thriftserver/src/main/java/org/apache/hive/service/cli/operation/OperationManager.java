@@ -53,6 +53,9 @@ public class OperationManager extends AbstractService {
   private final Map<OperationHandle, Operation> handleToOperation =
       new HashMap<OperationHandle, Operation>();
 
+  private final MetadataOperationStats metadataOperationStats = new MetadataOperationStats();
+  private MetadataCache metadataCache = new MetadataCache(0, 0);
+
   public OperationManager() {
     super(OperationManager.class.getSimpleName());
   }
@@ -65,6 +68,7 @@ public class OperationManager extends AbstractService {
     } else {
       LOG.debug("Operation level logging is turned off");
     }
+    metadataCache = new MetadataCache(hiveConf);
     super.init(hiveConf);
   }
 
@@ -86,6 +90,20 @@ public class OperationManager extends AbstractService {
     Logger.getRootLogger().addAppender(ap);
   }
 
+  /**
+   * Returns the cache of metastore results shared by the metadata operations of all sessions.
+   */
+  public MetadataCache getMetadataCache() {
+    return metadataCache;
+  }
+
+  /**
+   * Returns the latency histograms of the metadata operations of all sessions.
+   */
+  public MetadataOperationStats getMetadataOperationStats() {
+    return metadataOperationStats;
+  }
+
   public ExecuteStatementOperation newExecuteStatementOperation(HiveSession parentSession,
       String statement, Map<String, String> confOverlay, boolean runAsync)
           throws HiveSQLException {
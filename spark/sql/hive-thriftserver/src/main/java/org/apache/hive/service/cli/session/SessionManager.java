@@ -37,6 +37,7 @@ import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 import org.apache.hive.service.CompositeService;
 import org.apache.hive.service.cli.HiveSQLException;
 import org.apache.hive.service.cli.SessionHandle;
+import org.apache.hive.service.cli.operation.MetadataOperation;
 import org.apache.hive.service.cli.operation.OperationManager;
 import org.apache.hive.service.cli.thrift.TProtocolVersion;
 import org.apache.hive.service.server.HiveServer2;
@@ -55,6 +56,7 @@ public class SessionManager extends CompositeService {
       new ConcurrentHashMap<SessionHandle, HiveSession>();
   private final OperationManager operationManager = new OperationManager();
   private ThreadPoolExecutor backgroundOperationPool;
+  private ThreadPoolExecutor metadataOperationPool;
   private boolean isOperationLogEnabled;
   private File operationLogRootDir;
 
@@ -79,6 +81,7 @@ public class SessionManager extends CompositeService {
       initOperationLogRootDir();
     }
     createBackgroundOperationPool();
+    createMetadataOperationPool();
     addService(operationManager);
     super.init(hiveConf);
   }
@@ -184,6 +187,24 @@ public class SessionManager extends CompositeService {
     backgroundOperationPool.execute(timeoutChecker);
   }
 
+  private void createMetadataOperationPool() {
+    int poolSize = hiveConf.getInt(MetadataOperation.ASYNC_METADATA_EXEC_THREADS, 4);
+    int poolQueueSize = hiveConf.getInt(MetadataOperation.ASYNC_METADATA_EXEC_WAIT_QUEUE_SIZE, 100);
+    LOG.info("HiveServer2: Metadata operation thread pool size: " + poolSize +
+        ", wait queue size: " + poolQueueSize);
+    long keepAliveTime = HiveConf.getTimeVar(
+        hiveConf, ConfVars.HIVE_SERVER2_ASYNC_EXEC_KEEPALIVE_TIME, TimeUnit.SECONDS);
+
+    // Separate from the background operation pool, so that bursts of asynchronous metadata
+    // operations neither delay nor get rejected instead of statements; idle threads terminate
+    // like in the background operation pool.
+    String threadPoolName = "HiveServer2-Metadata-Pool";
+    metadataOperationPool = new ThreadPoolExecutor(poolSize, poolSize,
+        keepAliveTime, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(poolQueueSize),
+        new ThreadFactoryWithGarbageCleanup(threadPoolName));
+    metadataOperationPool.allowCoreThreadTimeOut(true);
+  }
+
   @Override
   public synchronized void stop() {
     super.stop();
@@ -200,6 +221,11 @@ public class SessionManager extends CompositeService {
       }
       backgroundOperationPool = null;
     }
+    if (metadataOperationPool != null) {
+      // Metadata operations only read from the metastore, so they are not waited for.
+      metadataOperationPool.shutdownNow();
+      metadataOperationPool = null;
+    }
     cleanupLoggingRootDir();
   }
 
@@ -352,6 +378,10 @@ public class SessionManager extends CompositeService {
     return backgroundOperationPool.submit(r);
   }
 
+  public Future<?> submitMetadataOperation(Runnable r) {
+    return metadataOperationPool.submit(r);
+  }
+
   public int getOpenSessionCount() {
     return handleToSession.size();
   }
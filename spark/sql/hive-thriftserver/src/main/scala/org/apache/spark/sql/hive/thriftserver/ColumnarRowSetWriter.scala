@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.hive.thriftserver
+
+import org.apache.hive.service.cli.{Column, ColumnBasedSet}
+
+import org.apache.spark.sql.catalyst.{CatalystTypeConverters, InternalRow}
+import org.apache.spark.sql.catalyst.util.DateTimeUtils
+import org.apache.spark.sql.hive.HiveUtils
+import org.apache.spark.sql.types._
+
+/**
+ * Appends Spark's internal rows to the typed columns of a [[ColumnBasedSet]], without converting
+ * them to [[org.apache.spark.sql.Row]]s first or boxing primitive values. The writer for each
+ * column is chosen once from its data type, so the per-value work is a single virtual call.
+ *
+ * The values are formatted as SparkExecuteStatementOperation.addNonNullColumnValue formats the
+ * values of external rows.
+ */
+private[thriftserver] class ColumnarRowSetWriter(dataTypes: Array[DataType]) {
+  import ColumnarRowSetWriter._
+
+  private val writers = dataTypes.map(createWriter)
+
+  /**
+   * Appends at most `maxRows` rows of `rows` to `rowSet`, and returns an estimate of the size
+   * of the appended values in bytes.
+   */
+  def write(rows: Iterator[InternalRow], rowSet: ColumnBasedSet, maxRows: Int): Long = {
+    val columns = rowSet.getColumns
+    val numColumns = writers.length
+    var bytes = 0L
+    var numRows = 0
+    while (numRows < maxRows && rows.hasNext) {
+      val row = rows.next()
+      var i = 0
+      while (i < numColumns) {
+        val column = columns.get(i)
+        if (row.isNullAt(i)) {
+          column.addNull()
+        } else {
+          bytes += writers(i).write(row, i, column)
+        }
+        i += 1
+      }
+      numRows += 1
+    }
+    bytes
+  }
+}
+
+private[thriftserver] object ColumnarRowSetWriter {
+
+  /**
+   * Upper bound of the room reserved up front in the columns of a result set, so that large
+   * fetch sizes do not allocate memory for rows that may not exist.
+   */
+  val MaxInitialCapacity = 4096
+
+  /** Appends a non-null value to a column, and returns its size in bytes. */
+  private abstract class ValueWriter {
+    def write(row: InternalRow, ordinal: Int, column: Column): Int
+  }
+
+  private def createWriter(dataType: DataType): ValueWriter = dataType match {
+    case StringType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        val value = row.getUTF8String(ordinal)
+        column.addString(value.toString)
+        value.numBytes()
+      }
+    }
+    case IntegerType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        column.addInt(row.getInt(ordinal))
+        4
+      }
+    }
+    case BooleanType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        column.addBoolean(row.getBoolean(ordinal))
+        1
+      }
+    }
+    case DoubleType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        column.addDouble(row.getDouble(ordinal))
+        8
+      }
+    }
+    case FloatType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        // Float columns are sent as double columns.
+        column.addDouble(row.getFloat(ordinal).toDouble)
+        8
+      }
+    }
+    case t: DecimalType => stringWriter { (row, ordinal) =>
+      row.getDecimal(ordinal, t.precision, t.scale).toJavaBigDecimal.toString
+    }
+    case LongType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        column.addLong(row.getLong(ordinal))
+        8
+      }
+    }
+    case ByteType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        column.addByte(row.getByte(ordinal))
+        1
+      }
+    }
+    case ShortType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        column.addShort(row.getShort(ordinal))
+        2
+      }
+    }
+    case DateType => stringWriter { (row, ordinal) =>
+      DateTimeUtils.toJavaDate(row.getInt(ordinal)).toString
+    }
+    case TimestampType => stringWriter { (row, ordinal) =>
+      DateTimeUtils.toJavaTimestamp(row.getLong(ordinal)).toString
+    }
+    case BinaryType => new ValueWriter {
+      override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+        val value = row.getBinary(ordinal)
+        column.addBinary(value)
+        value.length
+      }
+    }
+    case _: ArrayType | _: StructType | _: MapType =>
+      val toScala = CatalystTypeConverters.createToScalaConverter(dataType)
+      stringWriter { (row, ordinal) =>
+        HiveUtils.toHiveString((toScala(row.get(ordinal, dataType)), dataType))
+      }
+  }
+
+  private def stringWriter(format: (InternalRow, Int) => String): ValueWriter = new ValueWriter {
+    override def write(row: InternalRow, ordinal: Int, column: Column): Int = {
+      val value = format(row, ordinal)
+      column.addString(value)
+      value.length
+    }
+  }
+}
@@ -121,6 +121,9 @@ object HiveThriftServer2 extends Logging {
       val userName: String) {
     var finishTimestamp: Long = 0L
     var totalExecution: Int = 0
+    var fetchedRows: Long = 0L
+    var fetchedBytes: Long = 0L
+    var fetchTimeNs: Long = 0L
     def totalTime: Long = {
       if (finishTimestamp == 0L) {
         System.currentTimeMillis - startTimestamp
@@ -146,6 +149,9 @@ object HiveThriftServer2 extends Logging {
     var state: ExecutionState.Value = ExecutionState.STARTED
     val jobId: ArrayBuffer[String] = ArrayBuffer[String]()
     var groupId: String = ""
+    var fetchedRows: Long = 0L
+    var fetchedBytes: Long = 0L
+    var fetchTimeNs: Long = 0L
     def totalTime: Long = {
       if (finishTimestamp == 0L) {
         System.currentTimeMillis - startTimestamp
@@ -248,6 +254,25 @@ object HiveThriftServer2 extends Logging {
       trimExecutionIfNecessary()
     }
 
+    /**
+     * Records a fetch of results of a statement. `bytes` is an estimate of the size of the
+     * fetched values, and `fetchTimeNs` the time spent producing them.
+     */
+    def onStatementFetch(id: String, rows: Long, bytes: Long, fetchTimeNs: Long): Unit = {
+      synchronized {
+        executionList.get(id).foreach { info =>
+          info.fetchedRows += rows
+          info.fetchedBytes += bytes
+          info.fetchTimeNs += fetchTimeNs
+          sessionList.get(info.sessionId).foreach { session =>
+            session.fetchedRows += rows
+            session.fetchedBytes += bytes
+            session.fetchTimeNs += fetchTimeNs
+          }
+        }
+      }
+    }
+
     private def trimExecutionIfNecessary() = {
       if (executionList.size > retainedStatements) {
         val toRemove = math.max(retainedStatements / 10, 1)
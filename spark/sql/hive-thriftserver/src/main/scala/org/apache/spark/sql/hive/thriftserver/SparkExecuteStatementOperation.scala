@@ -34,6 +34,8 @@ import org.apache.hive.service.cli.session.HiveSession
 
 import org.apache.spark.internal.Logging
 import org.apache.spark.sql.{DataFrame, Row => SparkRow, SQLContext}
+import org.apache.spark.sql.catalyst.{CatalystTypeConverters, InternalRow}
+import org.apache.spark.sql.catalyst.plans.logical.Command
 import org.apache.spark.sql.execution.command.SetCommand
 import org.apache.spark.sql.hive.HiveUtils
 import org.apache.spark.sql.internal.SQLConf
@@ -50,10 +52,18 @@ private[hive] class SparkExecuteStatementOperation(
   with Logging {
 
   private var result: DataFrame = _
-  private var iter: Iterator[SparkRow] = _
+  private var iter: Iterator[InternalRow] = _
   private var dataTypes: Array[DataType] = _
   private var statementId: String = _
 
+  /** Converts the rows of `iter` for clients that need row-based result sets. */
+  private lazy val rowConverter: InternalRow => SparkRow = {
+    val converter = CatalystTypeConverters.createToScalaConverter(result.schema)
+    (row: InternalRow) => converter(row).asInstanceOf[SparkRow]
+  }
+
+  private lazy val columnarWriter = new ColumnarRowSetWriter(dataTypes)
+
   private lazy val resultSchema: TableSchema = {
     if (result == null || result.queryExecution.analyzed.output.size == 0) {
       new TableSchema(Arrays.asList(new FieldSchema("Result", "string", "")))
@@ -71,6 +81,8 @@ private[hive] class SparkExecuteStatementOperation(
     sqlContext.sparkContext.clearJobGroup()
     logDebug(s"CLOSING $statementId")
     cleanup(OperationState.CLOSED)
+    // Release the rows that were not fetched.
+    iter = null
   }
 
   def addNonNullColumnValue(from: SparkRow, to: ArrayBuffer[Any], ordinal: Int) {
@@ -109,28 +121,40 @@ private[hive] class SparkExecuteStatementOperation(
     validateDefaultFetchOrientation(order)
     assertState(OperationState.FINISHED)
     setHasResultSet(true)
-    val resultRowSet: RowSet = RowSetFactory.create(getResultSetSchema, getProtocolVersion)
+    // maxRowsL here typically maps to java.sql.Statement.getFetchSize, which is an int
+    val maxRows = maxRowsL.toInt
+    val resultRowSet: RowSet = RowSetFactory.create(getResultSetSchema, getProtocolVersion,
+      math.min(maxRows, ColumnarRowSetWriter.MaxInitialCapacity))
     if (!iter.hasNext) {
       resultRowSet
     } else {
-      // maxRowsL here typically maps to java.sql.Statement.getFetchSize, which is an int
-      val maxRows = maxRowsL.toInt
-      var curRow = 0
-      while (curRow < maxRows && iter.hasNext) {
-        val sparkRow = iter.next()
-        val row = ArrayBuffer[Any]()
-        var curCol = 0
-        while (curCol < sparkRow.length) {
-          if (sparkRow.isNullAt(curCol)) {
-            row += null
-          } else {
-            addNonNullColumnValue(sparkRow, row, curCol)
+      val fetchStart = System.nanoTime()
+      val bytes = resultRowSet match {
+        case columnSet: ColumnBasedSet =>
+          // Fill the columns of the result set directly from the internal rows.
+          columnarWriter.write(iter, columnSet, maxRows)
+        case _ =>
+          var curRow = 0
+          while (curRow < maxRows && iter.hasNext) {
+            val sparkRow = rowConverter(iter.next())
+            val row = ArrayBuffer[Any]()
+            var curCol = 0
+            while (curCol < sparkRow.length) {
+              if (sparkRow.isNullAt(curCol)) {
+                row += null
+              } else {
+                addNonNullColumnValue(sparkRow, row, curCol)
+              }
+              curCol += 1
+            }
+            resultRowSet.addRow(row.toArray.asInstanceOf[Array[Object]])
+            curRow += 1
           }
-          curCol += 1
-        }
-        resultRowSet.addRow(row.toArray.asInstanceOf[Array[Object]])
-        curRow += 1
+          // The size of the values is not tracked for row-based result sets.
+          0L
       }
+      HiveThriftServer2.listener.onStatementFetch(statementId, resultRowSet.numRows, bytes,
+        System.nanoTime() - fetchStart)
       resultRowSet
     }
   }
@@ -216,16 +240,23 @@ private[hive] class SparkExecuteStatementOperation(
         case SetCommand(Some((SQLConf.THRIFTSERVER_POOL.key, Some(value)))) =>
           sessionToActivePool(parentSession.getSessionHandle) = value
           logInfo(s"Setting spark.scheduler.pool=$value for future statements in this session.")
+        case _: SetCommand =>
+        case _: Command =>
+          // Commands run eagerly, and may have changed the databases or tables that metadata
+          // operations return.
+          parentSession.getSessionManager.getOperationManager.getMetadataCache.invalidateAll()
         case _ =>
       }
       HiveThriftServer2.listener.onStatementParsed(statementId, result.queryExecution.toString())
       iter = {
         val useIncrementalCollect =
           sqlContext.getConf("spark.sql.thriftServer.incrementalCollect", "false").toBoolean
+        // Keep the rows in Spark's internal format: they are more compact than Rows, and can be
+        // written to the columns of the result sets without conversion.
         if (useIncrementalCollect) {
-          result.toLocalIterator.asScala
+          result.toLocalInternalRowIterator()
         } else {
-          result.collect().iterator
+          result.collectInternalRows().iterator
         }
       }
       dataTypes = result.queryExecution.analyzed.output.map(_.dataType).toArray
@@ -18,16 +18,21 @@
 package org.apache.spark.sql.hive.thriftserver.ui
 
 import java.util.Calendar
+import java.util.concurrent.TimeUnit
 import javax.servlet.http.HttpServletRequest
 
+import scala.collection.JavaConverters._
 import scala.xml.Node
 
 import org.apache.commons.lang3.StringEscapeUtils
+import org.apache.hive.service.cli.{CLIService, OperationType}
+import org.apache.hive.service.cli.operation.MetadataOperationStats
 
 import org.apache.spark.internal.Logging
 import org.apache.spark.sql.hive.thriftserver.HiveThriftServer2.{ExecutionInfo, ExecutionState, SessionInfo}
 import org.apache.spark.ui._
 import org.apache.spark.ui.UIUtils._
+import org.apache.spark.util.Utils
 
 
 /** Page for Spark Web UI that shows statistics of the thrift server */
@@ -48,7 +53,8 @@ private[ui] class ThriftServerPage(parent: ThriftServerTab) extends WebUIPage(""
         running {listener.getTotalRunning} SQL statement(s)
         </h4> ++
         generateSessionStatsTable() ++
-        generateSQLStatsTable()
+        generateSQLStatsTable() ++
+        generateMetadataStatsTable()
       }
     UIUtils.headerSparkPage("JDBC/ODBC Server", content, parent, Some(5000))
   }
@@ -113,6 +119,51 @@ private[ui] class ThriftServerPage(parent: ThriftServerTab) extends WebUIPage(""
     content
   }
 
+  /** Generate stats of the metadata operations and of the cache of their metastore calls */
+  private def generateMetadataStatsTable(): Seq[Node] = {
+    val operationManager = listener.server.getServices.asScala.collectFirst {
+      case cliService: CLIService => cliService.getSessionManager.getOperationManager
+    }
+    val content = operationManager.map { manager =>
+      val stats = manager.getMetadataOperationStats
+      val dataRows = OperationType.values.toSeq
+        .filter(opType => opType != OperationType.EXECUTE_STATEMENT && stats.getCount(opType) > 0)
+        .map { opType =>
+          val count = stats.getCount(opType)
+          val histogram = stats.getHistogram(opType).zipWithIndex.collect {
+            case (n, bucket) if n > 0 =>
+              val bound = MetadataOperationStats.getBucketUpperBoundMillis(bucket)
+              if (bound == Long.MaxValue) s"longer: $n" else s"<= $bound ms: $n"
+          }
+          Seq(opType.toString, count.toString,
+            formatDuration(TimeUnit.NANOSECONDS.toMillis(stats.getTotalTimeNanos(opType) / count)),
+            histogram.mkString(", "))
+        }
+      val table = if (dataRows.nonEmpty) {
+        listingTable(Seq("Operation", "Count", "Average Time", "Latency Histogram"), dataRows)
+      } else {
+        "No statistics have been generated yet."
+      }
+      val cache = manager.getMetadataCache
+      val cacheStats = cache.getStats
+      val cacheSummary = if (cache.isEnabled) {
+        f"Metastore cache hit rate: ${cacheStats.hitRate * 100}%.1f%% " +
+          s"(${cacheStats.hitCount} hits, ${cacheStats.missCount} misses)"
+      } else {
+        "Metastore cache is disabled."
+      }
+      <div>
+        <ul class="unstyled">
+          <li>{cacheSummary}</li>
+          {table}
+        </ul>
+      </div>
+    }
+
+    <h5 id="metadatastat">Metadata Operation Statistics</h5> ++
+      content.getOrElse(<div>No statistics have been generated yet.</div>)
+  }
+
   private def errorMessageCell(errorMessage: String): Seq[Node] = {
     val isMultiline = errorMessage.indexOf('\n') >= 0
     val errorSummary = StringEscapeUtils.escapeHtml4(
@@ -144,7 +195,7 @@ private[ui] class ThriftServerPage(parent: ThriftServerTab) extends WebUIPage(""
     val table = if (numBatches > 0) {
       val dataRows = sessionList
       val headerRow = Seq("User", "IP", "Session ID", "Start Time", "Finish Time", "Duration",
-        "Total Execute")
+        "Total Execute", "Fetched Rows", "Fetched Bytes", "Fetch Time")
       def generateDataRow(session: SessionInfo): Seq[Node] = {
         val sessionLink = "%s/%s/session?id=%s"
           .format(UIUtils.prependBaseUri(parent.basePath), parent.prefix, session.sessionId)
@@ -156,6 +207,9 @@ private[ui] class ThriftServerPage(parent: ThriftServerTab) extends WebUIPage(""
           <td> {if (session.finishTimestamp > 0) formatDate(session.finishTimestamp)} </td>
           <td> {formatDurationOption(Some(session.totalTime))} </td>
           <td> {session.totalExecution.toString} </td>
+          <td> {session.fetchedRows.toString} </td>
+          <td> {Utils.bytesToString(session.fetchedBytes)} </td>
+          <td> {formatDuration(TimeUnit.NANOSECONDS.toMillis(session.fetchTimeNs))} </td>
         </tr>
       }
       Some(UIUtils.listingTable(headerRow, generateDataRow, dataRows, true, None, Seq(null), false))
@@ -18,6 +18,7 @@
 package org.apache.spark.sql.hive.thriftserver.ui
 
 import java.util.Calendar
+import java.util.concurrent.TimeUnit
 import javax.servlet.http.HttpServletRequest
 
 import scala.xml.Node
@@ -28,6 +29,7 @@ import org.apache.spark.internal.Logging
 import org.apache.spark.sql.hive.thriftserver.HiveThriftServer2.{ExecutionInfo, ExecutionState}
 import org.apache.spark.ui._
 import org.apache.spark.ui.UIUtils._
+import org.apache.spark.util.Utils
 
 /** Page for Spark Web UI that shows statistics of jobs running in the thrift server */
 private[ui] class ThriftServerSessionPage(parent: ThriftServerTab)
@@ -160,11 +162,14 @@ private[ui] class ThriftServerSessionPage(parent: ThriftServerTab)
           formatDate(session.startTimestamp),
           formatDate(session.finishTimestamp),
           formatDurationOption(Some(session.totalTime)),
-          session.totalExecution.toString
+          session.totalExecution.toString,
+          session.fetchedRows.toString,
+          Utils.bytesToString(session.fetchedBytes),
+          formatDuration(TimeUnit.NANOSECONDS.toMillis(session.fetchTimeNs))
         )
       ).toSeq
       val headerRow = Seq("User", "IP", "Session ID", "Start Time", "Finish Time", "Duration",
-        "Total Execute")
+        "Total Execute", "Fetched Rows", "Fetched Bytes", "Fetch Time")
       Some(listingTable(headerRow, dataRows))
     } else {
       None
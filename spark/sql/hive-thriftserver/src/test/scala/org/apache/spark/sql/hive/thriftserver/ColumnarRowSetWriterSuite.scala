@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.hive.thriftserver
+
+import java.sql.{Date, Timestamp}
+
+import scala.collection.JavaConverters._
+
+import org.apache.hadoop.hive.metastore.api.FieldSchema
+import org.apache.hive.service.cli.{ColumnBasedSet, TableSchema}
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.catalyst.{CatalystTypeConverters, InternalRow}
+import org.apache.spark.sql.types._
+
+class ColumnarRowSetWriterSuite extends SparkFunSuite {
+
+  private val schema = new StructType()
+    .add("i", IntegerType)
+    .add("l", LongType)
+    .add("f", FloatType)
+    .add("b", BooleanType)
+    .add("s", StringType)
+    .add("bin", BinaryType)
+    .add("d", DecimalType(10, 2))
+    .add("date", DateType)
+    .add("ts", TimestampType)
+    .add("a", ArrayType(IntegerType))
+
+  private val rows = Seq(
+    Row(1, 2L, 1.5f, true, "abc", Array[Byte](1, 2), BigDecimal("12.34"),
+      Date.valueOf("2016-01-02"), Timestamp.valueOf("2016-01-02 03:04:05"), Seq(1, 2)),
+    Row(null, null, null, null, null, null, null, null, null, null),
+    Row(-1, Long.MaxValue, -2.0f, false, "", Array[Byte](), BigDecimal("-0.50"),
+      Date.valueOf("1970-01-01"), Timestamp.valueOf("1970-01-01 00:00:00"), Seq.empty[Int]))
+
+  private def newRowSet(capacity: Int): ColumnBasedSet = {
+    val fields = schema.map(f => new FieldSchema(f.name, f.dataType.catalogString, ""))
+    new ColumnBasedSet(new TableSchema(fields.asJava), capacity)
+  }
+
+  test("write internal rows to the columns of a result set") {
+    val toCatalyst = CatalystTypeConverters.createToCatalystConverter(schema)
+    val internalRows = rows.map(toCatalyst(_).asInstanceOf[InternalRow])
+    val writer = new ColumnarRowSetWriter(schema.map(_.dataType).toArray)
+
+    // Start with less room than the rows, and fetch them in two batches.
+    val iter = internalRows.iterator
+    val rowSet = newRowSet(1)
+    assert(writer.write(iter, rowSet, 2) > 0)
+    assert(rowSet.numRows === 2)
+    val rowSet2 = newRowSet(1)
+    writer.write(iter, rowSet2, 2)
+    assert(rowSet2.numRows === 1)
+    assert(!iter.hasNext)
+
+    val first = rowSet.fill(0, new Array[AnyRef](schema.length))
+    assert(first(0) === 1)
+    assert(first(1) === 2L)
+    assert(first(2) === 1.5d)
+    assert(first(3) === true)
+    assert(first(4) === "abc")
+    assert(first(5).asInstanceOf[Array[Byte]].toSeq === Seq[Byte](1, 2))
+    assert(first(6) === "12.34")
+    assert(first(7) === "2016-01-02")
+    assert(first(8) === "2016-01-02 03:04:05.0")
+    assert(first(9) === "[1,2]")
+
+    val second = rowSet.fill(1, new Array[AnyRef](schema.length))
+    assert(second.forall(_ == null))
+
+    val third = rowSet2.fill(0, new Array[AnyRef](schema.length))
+    assert(third(0) === -1)
+    assert(third(1) === Long.MaxValue)
+    assert(third(2) === -2.0d)
+    assert(third(3) === false)
+    assert(third(4) === "")
+    assert(third(5).asInstanceOf[Array[Byte]].isEmpty)
+    assert(third(6) === "-0.50")
+    assert(third(7) === "1970-01-01")
+    assert(third(9) === "[]")
+  }
+}
@@ -33,12 +33,13 @@ import com.google.common.io.Files
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars
 import org.apache.hive.jdbc.HiveDriver
 import org.apache.hive.service.auth.PlainSaslHelper
-import org.apache.hive.service.cli.GetInfoType
+import org.apache.hive.service.cli.{GetInfoType, OperationState}
 import org.apache.hive.service.cli.thrift.TCLIService.Client
 import org.apache.hive.service.cli.thrift.ThriftCLIServiceClient
 import org.apache.thrift.protocol.TBinaryProtocol
 import org.apache.thrift.transport.TSocket
 import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.Eventually._
 
 import org.apache.spark.{SparkException, SparkFunSuite}
 import org.apache.spark.internal.Logging
@@ -58,18 +59,6 @@ object TestData {
 class HiveThriftBinaryServerSuite extends HiveThriftJdbcTest {
   override def mode: ServerMode.Value = ServerMode.binary
 
-  private def withCLIServiceClient(f: ThriftCLIServiceClient => Unit): Unit = {
-    // Transport creation logic below mimics HiveConnection.createBinaryTransport
-    val rawTransport = new TSocket("localhost", serverPort)
-    val user = System.getProperty("user.name")
-    val transport = PlainSaslHelper.getPlainTransport(user, "anonymous", rawTransport)
-    val protocol = new TBinaryProtocol(transport)
-    val client = new ThriftCLIServiceClient(new Client(protocol))
-
-    transport.open()
-    try f(client) finally transport.close()
-  }
-
   test("GetInfo Thrift API") {
     withCLIServiceClient { client =>
       val user = System.getProperty("user.name")
@@ -616,6 +605,71 @@ class SingleSessionSuite extends HiveThriftJdbcTest {
   }
 }
 
+class MetadataCacheSuite extends HiveThriftJdbcTest {
+  override def mode: ServerMode.Value = ServerMode.binary
+
+  override protected def extraConf: Seq[String] =
+    "--hiveconf hive.server2.metadata.cache.ttl.seconds=600" :: Nil
+
+  test("metadata operations see the tables created after their results were cached") {
+    withJdbcStatement { statement =>
+      val metaData = statement.getConnection.getMetaData
+      def tableNames(): Seq[String] = {
+        val rs = metaData.getTables(null, "default", "metadata_cache_%", null)
+        val names = Iterator.continually(rs).takeWhile(_.next()).map(_.getString(3)).toList
+        rs.close()
+        names
+      }
+      def columnNames(table: String): Seq[String] = {
+        val rs = metaData.getColumns(null, "default", table, null)
+        val names = Iterator.continually(rs).takeWhile(_.next()).map(_.getString(4)).toList
+        rs.close()
+        names
+      }
+
+      try {
+        statement.execute("CREATE TABLE metadata_cache_1(key INT)")
+        assert(tableNames() === Seq("metadata_cache_1"))
+        assert(columnNames("metadata_cache_1") === Seq("key"))
+
+        statement.execute("CREATE TABLE metadata_cache_2(key INT, value STRING)")
+        assert(tableNames().sorted === Seq("metadata_cache_1", "metadata_cache_2"))
+        assert(columnNames("metadata_cache_2") === Seq("key", "value"))
+
+        statement.execute("DROP TABLE metadata_cache_1")
+        assert(tableNames() === Seq("metadata_cache_2"))
+      } finally {
+        statement.execute("DROP TABLE IF EXISTS metadata_cache_1")
+        statement.execute("DROP TABLE IF EXISTS metadata_cache_2")
+      }
+    }
+  }
+}
+
+class AsyncMetadataOperationSuite extends HiveThriftJdbcTest {
+  override def mode: ServerMode.Value = ServerMode.binary
+
+  override protected def extraConf: Seq[String] =
+    "--hiveconf hive.server2.async.metadata.operations=true" :: Nil
+
+  test("fetching the results of a metadata operation does not wait for it to finish") {
+    withCLIServiceClient { client =>
+      val sessionHandle = client.openSession(System.getProperty("user.name"), "")
+      val operationHandle = client.getSchemas(sessionHandle, null, "default")
+
+      // Like for asynchronous statements, the client polls the status before fetching.
+      eventually(timeout(1.minute), interval(100.milliseconds)) {
+        val state = client.getOperationStatus(operationHandle).getState
+        assert(state === OperationState.FINISHED)
+      }
+      assert(client.fetchResults(operationHandle).numRows() === 1)
+
+      client.closeOperation(operationHandle)
+      client.closeSession(sessionHandle)
+    }
+  }
+}
+
 class HiveThriftHttpServerSuite extends HiveThriftJdbcTest {
   override def mode: ServerMode.Value = ServerMode.http
 
@@ -681,6 +735,18 @@ abstract class HiveThriftJdbcTest extends HiveThriftServer2Test {
   def withJdbcStatement(f: Statement => Unit) {
     withMultipleConnectionJdbcStatement(f)
   }
+
+  def withCLIServiceClient(f: ThriftCLIServiceClient => Unit): Unit = {
+    // Transport creation logic below mimics HiveConnection.createBinaryTransport
+    val rawTransport = new TSocket("localhost", serverPort)
+    val user = System.getProperty("user.name")
+    val transport = PlainSaslHelper.getPlainTransport(user, "anonymous", rawTransport)
+    val protocol = new TBinaryProtocol(transport)
+    val client = new ThriftCLIServiceClient(new Client(protocol))
+
+    transport.open()
+    try f(client) finally transport.close()
+  }
 }
 
 abstract class HiveThriftServer2Test extends SparkFunSuite with BeforeAndAfterAll with Logging {
@@ -18,13 +18,15 @@ package org.apache.spark.streaming.util
 
 import java.nio.ByteBuffer
 import java.util.{Iterator => JIterator}
-import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.{LinkedBlockingQueue, RejectedExecutionException, TimeUnit}
 
 import scala.collection.JavaConverters._
 import scala.collection.mutable.ArrayBuffer
 import scala.collection.parallel.ExecutionContextTaskSupport
-import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.concurrent.{Await, ExecutionContext, Future, Promise}
+import scala.concurrent.duration.Duration
 import scala.language.postfixOps
+import scala.util.control.NonFatal
 
 import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.fs.Path
@@ -43,8 +45,16 @@ import org.apache.spark.util.{CompletionIterator, ThreadUtils}
  * Uses [[org.apache.spark.streaming.util.FileBasedWriteAheadLogWriter]] to write
  * and [[org.apache.spark.streaming.util.FileBasedWriteAheadLogReader]] to read.
  *
+ * With group commit allowed, concurrent writes are queued and written by a single thread, which
+ * appends a group of records to the log file and flushes them once. Every write still returns
+ * the handle of its own record, only after the record has been flushed.
+ *
  * @param logDirectory Directory when rotating log files will be created.
  * @param hadoopConf Hadoop configuration for reading/writing log files.
+ * @param allowGroupCommit Whether concurrent writes are flushed together.
+ * @param groupCommitMaxBytes Size of the records above which a group is flushed without waiting
+ *                            for more records.
+ * @param groupCommitMaxDelayMs How long a group waits for more records before it is flushed.
  */
 private[streaming] class FileBasedWriteAheadLog(
     conf: SparkConf,
@@ -52,7 +62,10 @@ private[streaming] class FileBasedWriteAheadLog(
     hadoopConf: Configuration,
     rollingIntervalSecs: Int,
     maxFailures: Int,
-    closeFileAfterWrite: Boolean
+    closeFileAfterWrite: Boolean,
+    allowGroupCommit: Boolean = false,
+    groupCommitMaxBytes: Long = 1024 * 1024,
+    groupCommitMaxDelayMs: Long = 0
   ) extends WriteAheadLog with Logging {
 
   import FileBasedWriteAheadLog._
@@ -76,6 +89,12 @@ private[streaming] class FileBasedWriteAheadLog(
   private var currentLogWriterStartTime: Long = -1L
   private var currentLogWriterStopTime: Long = -1L
 
+  // Writes waiting for the group commit thread, and whether it accepts new ones. Both are
+  // guarded by the queue itself rather than by this log, which the thread holds while writing.
+  private val groupCommitQueue = new LinkedBlockingQueue[PendingWrite]()
+  private var groupCommitActive = allowGroupCommit
+  private val groupCommitThread = if (allowGroupCommit) startGroupCommitThread() else null
+
   initializeOrRecover()
 
   /**
@@ -83,18 +102,43 @@ private[streaming] class FileBasedWriteAheadLog(
    * ByteBuffer to HDFS. When this method returns, the data is guaranteed to have been flushed
    * to HDFS, and will be available for readers to read.
    */
-  def write(byteBuffer: ByteBuffer, time: Long): FileBasedWriteAheadLogSegment = synchronized {
-    var fileSegment: FileBasedWriteAheadLogSegment = null
+  def write(byteBuffer: ByteBuffer, time: Long): FileBasedWriteAheadLogSegment = {
+    if (allowGroupCommit) {
+      val promise = Promise[FileBasedWriteAheadLogSegment]()
+      val queued = groupCommitQueue.synchronized {
+        if (groupCommitActive) {
+          groupCommitQueue.offer(PendingWrite(byteBuffer, time, promise))
+        }
+        groupCommitActive
+      }
+      if (!queued) {
+        throw new IllegalStateException("close() was called on FileBasedWriteAheadLog before " +
+          s"write request with time $time could be fulfilled.")
+      }
+      ThreadUtils.awaitResult(promise.future, Duration.Inf)
+    } else {
+      writeAndFlush(Seq(PendingWrite(byteBuffer, time, null))).head
+    }
+  }
+
+  /**
+   * Append the records to the log files and flush them once, retrying the whole group with a new
+   * writer on failures.
+   */
+  private def writeAndFlush(
+      records: Seq[PendingWrite]): Seq[FileBasedWriteAheadLogSegment] = synchronized {
+    var fileSegments: Seq[FileBasedWriteAheadLogSegment] = null
     var failures = 0
     var lastException: Exception = null
-    var succeeded = false
-    while (!succeeded && failures < maxFailures) {
+    while (fileSegments == null && failures < maxFailures) {
       try {
-        fileSegment = getLogWriter(time).write(byteBuffer)
+        // Appending a record may roll the log over, which closes and flushes the previous file.
+        val appended = records.map { record => getLogWriter(record.time).append(record.data) }
+        currentLogWriter.flush()
         if (closeFileAfterWrite) {
           resetWriter()
         }
-        succeeded = true
+        fileSegments = appended
       } catch {
         case ex: Exception =>
           lastException = ex
@@ -103,11 +147,11 @@ private[streaming] class FileBasedWriteAheadLog(
           failures += 1
       }
     }
-    if (fileSegment == null) {
+    if (fileSegments == null) {
       logError(s"Failed to write to write ahead log after $failures failures")
       throw lastException
     }
-    fileSegment
+    fileSegments
   }
 
   def read(segment: WriteAheadLogRecordHandle): ByteBuffer = {
@@ -201,14 +245,88 @@ private[streaming] class FileBasedWriteAheadLog(
 
 
   /** Stop the manager, close any open log writer */
-  def close(): Unit = synchronized {
-    if (currentLogWriter != null) {
-      currentLogWriter.close()
+  def close(): Unit = {
+    if (groupCommitThread != null) {
+      groupCommitQueue.synchronized {
+        groupCommitActive = false
+      }
+      groupCommitThread.interrupt()
+      groupCommitThread.join()
+      while (!groupCommitQueue.isEmpty) {
+        val PendingWrite(_, time, promise) = groupCommitQueue.poll()
+        promise.failure(new IllegalStateException("close() was called on " +
+          s"FileBasedWriteAheadLog before write request with time $time could be fulfilled."))
+      }
+    }
+    synchronized {
+      if (currentLogWriter != null) {
+        currentLogWriter.close()
+      }
+      executionContext.shutdown()
     }
-    executionContext.shutdown()
     logInfo("Stopped write ahead log manager")
   }
 
+  /** Start the thread that writes and flushes the queued records in groups. */
+  private def startGroupCommitThread(): Thread = {
+    val thread = new Thread(new Runnable {
+      override def run(): Unit = {
+        while (groupCommitQueue.synchronized(groupCommitActive)) {
+          try {
+            commitGroup()
+          } catch {
+            case _: InterruptedException =>
+              logDebug("FileBasedWriteAheadLog group commit thread interrupted.")
+            case NonFatal(e) =>
+              logWarning("Encountered exception in group commit thread.", e)
+          }
+        }
+        logInfo("FileBasedWriteAheadLog group commit thread exiting.")
+      }
+    }, "FileBasedWriteAheadLog Group Commit" + callerName.map(c => s" for $c").getOrElse(""))
+    thread.setDaemon(true)
+    thread.start()
+    thread
+  }
+
+  /**
+   * Take the next group of queued records, and write and flush them together. A group grows
+   * until it holds `groupCommitMaxBytes`, or no more records arrive within
+   * `groupCommitMaxDelayMs` of its first record.
+   */
+  private def commitGroup(): Unit = {
+    val group = new ArrayBuffer[PendingWrite]()
+    group += groupCommitQueue.take()
+    var groupBytes = group.head.data.limit().toLong
+    val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitMaxDelayMs)
+    var waiting = true
+    while (waiting && groupBytes < groupCommitMaxBytes) {
+      try {
+        val next = groupCommitQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+        if (next != null) {
+          group += next
+          groupBytes += next.data.limit()
+        } else {
+          waiting = false
+        }
+      } catch {
+        case _: InterruptedException =>
+          // close() was called, but the records taken from the queue must still be written.
+          waiting = false
+      }
+    }
+    logDebug(s"Group committing ${group.size} records of $groupBytes bytes")
+    try {
+      val fileSegments = writeAndFlush(group)
+      group.zip(fileSegments).foreach { case (record, fileSegment) =>
+        record.promise.success(fileSegment)
+      }
+    } catch {
+      case NonFatal(e) =>
+        group.foreach(_.promise.failure(e))
+    }
+  }
+
   /** Get the current log writer while taking care of rotation */
   private def getLogWriter(currentTime: Long): FileBasedWriteAheadLogWriter = synchronized {
     if (currentLogWriter == null || currentTime > currentLogWriterStopTime) {
@@ -253,6 +371,12 @@ private[streaming] object FileBasedWriteAheadLog {
 
   case class LogInfo(startTime: Long, endTime: Long, path: String)
 
+  /** A record waiting to be written, and the promise of its segment for the writer. */
+  case class PendingWrite(
+      data: ByteBuffer,
+      time: Long,
+      promise: Promise[FileBasedWriteAheadLogSegment])
+
   val logFileRegex = """log-(\d+)-(\d+)""".r
 
   def timeToLogFile(startTime: Long, stopTime: Long): String = {
@@ -32,14 +32,19 @@ private[streaming] class FileBasedWriteAheadLogRandomReader(path: String, conf:
   private val instream = HdfsUtils.getInputStream(path, conf)
   private var closed = (instream == null) // the file may be deleted as we're opening the stream
 
+  /**
+   * Read the record of a segment with positional reads. Unlike a seek followed by a read, they do
+   * not make the stream read ahead past the record.
+   */
   def read(segment: FileBasedWriteAheadLogSegment): ByteBuffer = synchronized {
     assertOpen()
-    instream.seek(segment.offset)
-    val nextLength = instream.readInt()
+    val lengthBuffer = new Array[Byte](4)
+    instream.readFully(segment.offset, lengthBuffer)
+    val nextLength = ByteBuffer.wrap(lengthBuffer).getInt()
     HdfsUtils.checkState(nextLength == segment.length,
       s"Expected message length to be ${segment.length}, but was $nextLength")
     val buffer = new Array[Byte](nextLength)
-    instream.readFully(buffer)
+    instream.readFully(segment.offset + 4, buffer)
     ByteBuffer.wrap(buffer)
   }
 
@@ -37,28 +37,39 @@ private[streaming] class FileBasedWriteAheadLogWriter(path: String, hadoopConf:
 
   /** Write the bytebuffer to the log file */
   def write(data: ByteBuffer): FileBasedWriteAheadLogSegment = synchronized {
+    val segment = append(data)
+    flush()
+    segment
+  }
+
+  /**
+   * Write the bytebuffer to the log file without flushing it, so that several records can be
+   * made durable by a single `flush()`.
+   */
+  def append(data: ByteBuffer): FileBasedWriteAheadLogSegment = synchronized {
     assertOpen()
     data.rewind() // Rewind to ensure all data in the buffer is retrieved
     val lengthToWrite = data.remaining()
     val segment = new FileBasedWriteAheadLogSegment(path, nextOffset, lengthToWrite)
     stream.writeInt(lengthToWrite)
     Utils.writeByteBuffer(data, stream: OutputStream)
-    flush()
     nextOffset = stream.getPos()
     segment
   }
 
-  override def close(): Unit = synchronized {
-    closed = true
-    stream.close()
-  }
-
-  private def flush() {
+  /** Flush the records appended so far, so that they are durable and visible to readers. */
+  def flush(): Unit = synchronized {
+    assertOpen()
     stream.hflush()
     // Useful for local file system where hflush/sync does not work (HADOOP-7844)
     stream.getWrappedStream.flush()
   }
 
+  override def close(): Unit = synchronized {
+    closed = true
+    stream.close()
+  }
+
   private def assertOpen() {
     HdfsUtils.checkState(!closed, "Stream is closed. Create a new Writer to write to file.")
   }
@@ -34,6 +34,12 @@ private[streaming] object WriteAheadLogUtils extends Logging {
   val RECEIVER_WAL_MAX_FAILURES_CONF_KEY = "spark.streaming.receiver.writeAheadLog.maxFailures"
   val RECEIVER_WAL_CLOSE_AFTER_WRITE_CONF_KEY =
     "spark.streaming.receiver.writeAheadLog.closeFileAfterWrite"
+  val RECEIVER_WAL_GROUP_COMMIT_CONF_KEY =
+    "spark.streaming.receiver.writeAheadLog.allowGroupCommit"
+  val RECEIVER_WAL_GROUP_COMMIT_MAX_BYTES_CONF_KEY =
+    "spark.streaming.receiver.writeAheadLog.groupCommitMaxBytes"
+  val RECEIVER_WAL_GROUP_COMMIT_MAX_DELAY_CONF_KEY =
+    "spark.streaming.receiver.writeAheadLog.groupCommitMaxDelay"
 
   val DRIVER_WAL_CLASS_CONF_KEY = "spark.streaming.driver.writeAheadLog.class"
   val DRIVER_WAL_ROLLING_INTERVAL_CONF_KEY =
@@ -79,6 +85,22 @@ private[streaming] object WriteAheadLogUtils extends Logging {
     conf.getLong(DRIVER_WAL_BATCHING_TIMEOUT_CONF_KEY, defaultValue = 5000)
   }
 
+  /**
+   * Whether the default WriteAheadLog of receivers flushes concurrent writes together. The
+   * driver batches its records with a BatchedWriteAheadLog instead.
+   */
+  def isGroupCommitEnabled(conf: SparkConf, isDriver: Boolean): Boolean = {
+    !isDriver && conf.getBoolean(RECEIVER_WAL_GROUP_COMMIT_CONF_KEY, defaultValue = false)
+  }
+
+  def getGroupCommitMaxBytes(conf: SparkConf): Long = {
+    conf.getSizeAsBytes(RECEIVER_WAL_GROUP_COMMIT_MAX_BYTES_CONF_KEY, "1m")
+  }
+
+  def getGroupCommitMaxDelayMs(conf: SparkConf): Long = {
+    conf.getTimeAsMs(RECEIVER_WAL_GROUP_COMMIT_MAX_DELAY_CONF_KEY, "0ms")
+  }
+
   def shouldCloseFileAfterWrite(conf: SparkConf, isDriver: Boolean): Boolean = {
     if (isDriver) {
       conf.getBoolean(DRIVER_WAL_CLOSE_AFTER_WRITE_CONF_KEY, defaultValue = false)
@@ -141,7 +163,8 @@ private[streaming] object WriteAheadLogUtils extends Logging {
     }.getOrElse {
       new FileBasedWriteAheadLog(sparkConf, fileWalLogDirectory, fileWalHadoopConf,
         getRollingIntervalSecs(sparkConf, isDriver), getMaxFailures(sparkConf, isDriver),
-        shouldCloseFileAfterWrite(sparkConf, isDriver))
+        shouldCloseFileAfterWrite(sparkConf, isDriver), isGroupCommitEnabled(sparkConf, isDriver),
+        getGroupCommitMaxBytes(sparkConf), getGroupCommitMaxDelayMs(sparkConf))
     }
     if (isBatchingEnabled(sparkConf, isDriver)) {
       new BatchedWriteAheadLog(wal, sparkConf)
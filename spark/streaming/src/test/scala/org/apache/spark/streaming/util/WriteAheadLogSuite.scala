@@ -280,6 +280,46 @@ class FileBasedWriteAheadLogSuite
     }
   }
 
+  test("FileBasedWriteAheadLog - group commit of concurrent writes") {
+    val wal = new FileBasedWriteAheadLog(new SparkConf, testDir, hadoopConf, 1, 1,
+      closeFileAfterWrite = false, allowGroupCommit = true, groupCommitMaxBytes = 1024,
+      groupCommitMaxDelayMs = 10)
+    val pool = ThreadUtils.newDaemonFixedThreadPool(8, "wal-test-thread-pool")
+    val executionContext = ExecutionContext.fromExecutorService(pool)
+    try {
+      val dataToWrite = generateRandomData()
+      val writes = dataToWrite.map { item =>
+        Future {
+          // All the records have the same time, so that the log does not roll over.
+          (item, wal.write(item, 10000L))
+        }(executionContext)
+      }
+      val written = writes.map(ThreadUtils.awaitResult(_, 10.seconds))
+
+      // Every write got the segment of its own record.
+      written.foreach { case (item, segment) =>
+        assert(byteBufferToString(wal.read(segment)) === item)
+      }
+      assert(getLogFilesInDirectory(testDir).size === 1)
+      assert(wal.readAll().asScala.map(byteBufferToString).toSet === dataToWrite.toSet)
+    } finally {
+      wal.close()
+      executionContext.shutdownNow()
+    }
+    intercept[IllegalStateException] {
+      wal.write("closed", 10000L)
+    }
+  }
+
+  test("FileBasedWriteAheadLogWriter - appending data and flushing it once") {
+    val dataToWrite = generateRandomData()
+    val writer = new FileBasedWriteAheadLogWriter(testFile, hadoopConf)
+    val segments = dataToWrite.map { data => writer.append(stringToByteBuffer(data)) }
+    writer.flush()
+    assert(readDataManually(segments) === dataToWrite)
+    writer.close()
+  }
+
   test("FileBasedWriteAheadLogWriter - writing data") {
     val dataToWrite = generateRandomData()
     val segments = writeDataUsingWriter(testFile, dataToWrite)